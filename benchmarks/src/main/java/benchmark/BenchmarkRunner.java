@@ -0,0 +1,39 @@
+package benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * 不带参数时运行全部基准，只有一个参数时作为基准名称的正则表达式；
+ * 默认附加GC分析器（分配速率），结果另存为benchmark-results.json，便于与上次的结果比较。
+ * 参数中含有以“-”开头的选项时全部原样交给JMH命令行，例如 ReadBenchmark -p rows=1000 -prof gc
+ */
+public final class BenchmarkRunner {
+    private static final String RESULT_FILE = "benchmark-results.json";
+    // 访问包内可见类的基准放在model包中
+    private static final String DEFAULT_INCLUDE = "^(benchmark|model)\\.\\w+Benchmark\\.";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String arg : args) {
+            if (arg.startsWith("-")) {
+                Main.main(args);
+                return;
+            }
+        }
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : DEFAULT_INCLUDE)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULT_FILE)
+                .build();
+        new Runner(options).run();
+    }
+}
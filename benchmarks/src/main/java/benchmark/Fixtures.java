@@ -0,0 +1,171 @@
+package benchmark;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试的数据生成工具
+ * 生成固定随机种子的表格数据和工作簿文件，同样的参数每次得到相同的内容；
+ * 工作簿按参数缓存在临时目录中，多次运行只生成一次
+ */
+final class Fixtures {
+    /** 单元格的种类，各列按顺序循环使用 */
+    enum CellKind {
+        /** 重复较多的文本（状态、地区等） */
+        TEXT,
+        /** 几乎不重复的文本（编号、备注等） */
+        UNIQUE_TEXT,
+        INTEGER,
+        DECIMAL,
+        /** 日期格式的数字 */
+        DATE,
+        /** 以上各种混合 */
+        MIXED
+    }
+
+    private static final long SEED = 20240101L;
+    private static final String[] WORDS = {"北京", "上海", "广州", "深圳", "杭州", "成都", "武汉", "南京",
+            "已完成", "处理中", "待审核", "已取消"};
+    private static final File DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "excel-mvc-benchmarks");
+
+    private Fixtures() {
+    }
+
+    /**
+     * 表头：列1、列2……
+     */
+    static List<String> headers(int columns) {
+        List<String> headers = new ArrayList<>(columns);
+        for (int c = 0; c < columns; c++) {
+            headers.add("列" + (c + 1));
+        }
+        return headers;
+    }
+
+    /**
+     * 生成数据行，各列的值与工作簿中导入后的文本一致
+     */
+    static List<List<String>> rows(int rows, int columns, CellKind kind) {
+        Random random = new Random(SEED);
+        List<List<String>> data = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            List<String> row = new ArrayList<>(columns);
+            for (int c = 0; c < columns; c++) {
+                row.add(text(kindOf(kind, c), r, random));
+            }
+            data.add(row);
+        }
+        return data;
+    }
+
+    /**
+     * 生成（或复用已生成的）工作簿文件：数字和日期写为数值单元格，与真实文件的结构一致
+     */
+    static File workbook(int rows, int columns, CellKind kind) throws IOException {
+        File file = new File(DIRECTORY, "fixture-" + kind.name().toLowerCase() + "-" + rows + "x" + columns + ".xlsx");
+        if (file.isFile()) {
+            return file;
+        }
+        Files.createDirectories(DIRECTORY.toPath());
+        File partial = new File(DIRECTORY, file.getName() + ".tmp");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try (OutputStream out = new FileOutputStream(partial)) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+            Sheet sheet = workbook.createSheet("数据");
+            Row header = sheet.createRow(0);
+            List<String> headers = headers(columns);
+            for (int c = 0; c < columns; c++) {
+                header.createCell(c).setCellValue(headers.get(c));
+            }
+            Random random = new Random(SEED);
+            for (int r = 0; r < rows; r++) {
+                Row row = sheet.createRow(r + 1);
+                for (int c = 0; c < columns; c++) {
+                    Cell cell = row.createCell(c);
+                    CellKind cellKind = kindOf(kind, c);
+                    switch (cellKind) {
+                        case INTEGER:
+                            cell.setCellValue(integer(r, random));
+                            break;
+                        case DECIMAL:
+                            cell.setCellValue(decimal(random));
+                            break;
+                        case DATE:
+                            cell.setCellValue(dateSerial(r));
+                            cell.setCellStyle(dateStyle);
+                            break;
+                        default:
+                            cell.setCellValue(text(cellKind, r, random));
+                            break;
+                    }
+                }
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("无法生成测试文件: " + file);
+        }
+        return file;
+    }
+
+    /**
+     * 一个可以写入的临时文件，用完由调用方删除
+     */
+    static File tempFile(String suffix) throws IOException {
+        Files.createDirectories(DIRECTORY.toPath());
+        return File.createTempFile("output-", suffix, DIRECTORY);
+    }
+
+    private static CellKind kindOf(CellKind kind, int column) {
+        if (kind != CellKind.MIXED) {
+            return kind;
+        }
+        CellKind[] kinds = {CellKind.TEXT, CellKind.INTEGER, CellKind.DECIMAL, CellKind.DATE, CellKind.UNIQUE_TEXT};
+        return kinds[column % kinds.length];
+    }
+
+    private static String text(CellKind kind, int row, Random random) {
+        switch (kind) {
+            case TEXT:
+                return WORDS[random.nextInt(WORDS.length)];
+            case UNIQUE_TEXT:
+                return "编号-" + row + "-" + random.nextInt(1000);
+            case INTEGER:
+                return String.valueOf((long) integer(row, random));
+            case DECIMAL:
+                return String.valueOf(decimal(random));
+            default:
+                return DateUtil.getJavaDate(dateSerial(row)).toString();
+        }
+    }
+
+    private static double integer(int row, Random random) {
+        return row * 10 + random.nextInt(10);
+    }
+
+    private static double decimal(Random random) {
+        return Math.round(random.nextDouble() * 1_000_000) / 100.0;
+    }
+
+    private static double dateSerial(int row) {
+        // 2020年起的日期
+        return 43831 + row % 3650;
+    }
+}
@@ -0,0 +1,139 @@
+package benchmark;
+
+import model.ExcelDataModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据模型基准：整表替换、单元格和整行修改、追加删除行，以及getData读取全部数据
+ * 每轮迭代前重新载入数据，修改类的操作保持行数不变
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ModelBenchmark {
+    // 随机位置预先生成，循环使用
+    private static final int POSITIONS = 4096;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"10", "50"})
+    public int columns;
+
+    @Param({"MIXED"})
+    public String kind;
+
+    private List<String> headers;
+    private List<List<String>> data;
+    private ExcelDataModel model;
+    private int[] positionRows;
+    private int[] positionColumns;
+    private String[] values;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createData() {
+        headers = Fixtures.headers(columns);
+        data = Fixtures.rows(rows, columns, Fixtures.CellKind.valueOf(kind));
+        Random random = new Random(42);
+        positionRows = new int[POSITIONS];
+        positionColumns = new int[POSITIONS];
+        values = new String[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            positionRows[i] = random.nextInt(rows);
+            positionColumns[i] = random.nextInt(columns);
+            // 修改后的值与该列原有的值同类
+            values[i] = data.get(random.nextInt(rows)).get(positionColumns[i]);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void loadModel() {
+        model = new ExcelDataModel();
+        model.setData(data, headers);
+    }
+
+    @Benchmark
+    public ExcelDataModel setData() {
+        ExcelDataModel fresh = new ExcelDataModel();
+        fresh.setData(data, headers);
+        return fresh;
+    }
+
+    @Benchmark
+    public String setValueAt() {
+        int i = nextPosition();
+        model.setValueAt(positionRows[i], positionColumns[i], values[i]);
+        return model.getValueAt(positionRows[i], positionColumns[i]);
+    }
+
+    @Benchmark
+    public int updateRow() {
+        int i = nextPosition();
+        model.updateRow(positionRows[i], data.get(positionRows[(i + 1) % POSITIONS]));
+        return model.getRowCount();
+    }
+
+    @Benchmark
+    public int addAndDeleteRow() {
+        int i = nextPosition();
+        model.addRow(new ArrayList<>(data.get(positionRows[i])));
+        model.deleteRow(positionRows[i]);
+        return model.getRowCount();
+    }
+
+    /**
+     * 数据未变化时getData返回缓存的快照，这里先修改一个单元格，测量生成快照并读取全部值的代价
+     */
+    @Benchmark
+    public long getDataAfterEdit() {
+        int i = nextPosition();
+        model.setValueAt(positionRows[i], positionColumns[i], values[i]);
+        long length = 0;
+        for (List<String> row : model.getData()) {
+            for (String value : row) {
+                length += value.length();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 表格显示时按单元格读取的方式
+     */
+    @Benchmark
+    public long getValueAtScan() {
+        long length = 0;
+        int rowCount = model.getRowCount();
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columns; column++) {
+                length += model.getValueAt(row, column).length();
+            }
+        }
+        return length;
+    }
+
+    private int nextPosition() {
+        next = (next + 1) & (POSITIONS - 1);
+        return next;
+    }
+}
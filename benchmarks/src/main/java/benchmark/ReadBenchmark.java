@@ -0,0 +1,70 @@
+package benchmark;
+
+import model.ExcelDataAccess;
+import model.RowHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Excel读取基准：readExcel一次读入全部行，以及只流式回调、不保留行的读取
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ReadBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Param({"10", "50"})
+    public int columns;
+
+    /** 单元格种类，见Fixtures.CellKind */
+    @Param({"MIXED"})
+    public String kind;
+
+    private final ExcelDataAccess dataAccess = new ExcelDataAccess();
+    private String path;
+
+    @Setup(Level.Trial)
+    public void createWorkbook() throws IOException {
+        path = Fixtures.workbook(rows, columns, Fixtures.CellKind.valueOf(kind)).getPath();
+    }
+
+    @Benchmark
+    public Object[] readExcel() throws IOException {
+        return dataAccess.readExcel(path);
+    }
+
+    @Benchmark
+    public void readExcelStreaming(Blackhole blackhole) throws IOException {
+        dataAccess.readExcel(path, new RowHandler() {
+            @Override
+            public void handleHeaders(List<String> headers) {
+                blackhole.consume(headers);
+            }
+
+            @Override
+            public void handleRow(int rowIndex, List<String> rowData) {
+                blackhole.consume(rowData);
+            }
+        });
+    }
+}
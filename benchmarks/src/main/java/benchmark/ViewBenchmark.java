@@ -0,0 +1,90 @@
+package benchmark;
+
+import model.ExcelDataModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import view.ExcelView;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 视图刷新基准：在事件调度线程中调用ExcelView.updateTable，以及刷新后把窗口内容绘制到离屏图像
+ * 需要图形环境（无头环境中初始化失败）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ViewBenchmark {
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"10", "50"})
+    public int columns;
+
+    @Param({"MIXED"})
+    public String kind;
+
+    private ExcelView view;
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void createView() throws Exception {
+        if (GraphicsEnvironment.isHeadless()) {
+            throw new IllegalStateException("视图基准需要图形环境");
+        }
+        ExcelDataModel model = new ExcelDataModel();
+        model.setData(Fixtures.rows(rows, columns, Fixtures.CellKind.valueOf(kind)), Fixtures.headers(columns));
+        SwingUtilities.invokeAndWait(() -> {
+            view = new ExcelView();
+            view.setSheets(Collections.singletonList("数据"), Collections.singletonList(model));
+            view.setSize(1280, 800);
+            view.validate();
+        });
+        image = new BufferedImage(1280, 800, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @TearDown(Level.Trial)
+    public void disposeView() throws Exception {
+        SwingUtilities.invokeAndWait(() -> view.dispose());
+    }
+
+    @Benchmark
+    public void updateTable() throws Exception {
+        SwingUtilities.invokeAndWait(() -> view.updateTable());
+    }
+
+    /**
+     * 刷新后立即绘制可见部分，包含表格按需读取可见单元格的代价
+     */
+    @Benchmark
+    public void updateTableAndPaint() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            view.updateTable();
+            view.getContentPane().validate();
+            Graphics2D graphics = image.createGraphics();
+            try {
+                view.getContentPane().paint(graphics);
+            } finally {
+                graphics.dispose();
+            }
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import model.ExcelDataAccess;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Excel写入基准：行数超过流式阈值（默认10000行）时writeExcel改用SXSSF，两种方式都会被覆盖
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class WriteBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Param({"10", "50"})
+    public int columns;
+
+    @Param({"MIXED"})
+    public String kind;
+
+    private final ExcelDataAccess dataAccess = new ExcelDataAccess();
+    private List<String> headers;
+    private List<List<String>> data;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void createData() throws IOException {
+        headers = Fixtures.headers(columns);
+        data = Fixtures.rows(rows, columns, Fixtures.CellKind.valueOf(kind));
+        output = Fixtures.tempFile(".xlsx");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteOutput() {
+        output.delete();
+    }
+
+    @Benchmark
+    public File writeExcel() throws IOException {
+        // 每次覆盖同一个文件
+        dataAccess.writeExcel(output.getPath(), headers, data);
+        return output;
+    }
+}
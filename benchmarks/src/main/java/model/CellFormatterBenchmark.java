@@ -0,0 +1,104 @@
+package model;
+
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单元格值转换基准：直接调用CellFormatter，不经过解压和XML解析，按单元格计的耗时只反映数字到文本的转换
+ * （CellFormatter是包内可见的，基准放在model包中）
+ *
+ * format按导入时的方式复用同一样式的格式化器，REPEATED_DATE中相邻的单元格是同一天，覆盖日期格式化器的结果缓存；
+ * forStyle是按样式编号缓存未命中时创建格式化器的代价
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class CellFormatterBenchmark {
+    private static final int CELLS = 100000;
+    private static final long SEED = 20240101L;
+
+    @Param({"INTEGER", "DECIMAL", "DATE", "REPEATED_DATE"})
+    public String kind;
+
+    private XSSFWorkbook workbook;
+    private StylesTable styles;
+    private int styleIndex;
+    private double[] values;
+    private CellFormatter formatter;
+
+    @Setup(Level.Trial)
+    public void createValues() {
+        workbook = new XSSFWorkbook();
+        styles = workbook.getStylesSource();
+        boolean date = kind.endsWith("DATE");
+        if (date) {
+            XSSFCellStyle style = workbook.createCellStyle();
+            style.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+            styleIndex = style.getIndex();
+        }
+
+        Random random = new Random(SEED);
+        values = new double[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            switch (kind) {
+                case "INTEGER":
+                    values[i] = random.nextInt(1000000);
+                    break;
+                case "DECIMAL":
+                    values[i] = random.nextInt(10000000) / 100.0;
+                    break;
+                case "DATE":
+                    // 2018年到2026年之间的日期和时间，几乎不重复
+                    values[i] = 43101 + random.nextInt(3000) + random.nextInt(86400) / 86400.0;
+                    break;
+                default:
+                    // 每20个单元格是同一天
+                    values[i] = i % 20 == 0 ? 43101 + random.nextInt(3000) : values[i - 1];
+                    break;
+            }
+        }
+        formatter = CellFormatter.forStyle(styles, styleIndex, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeWorkbook() throws IOException {
+        workbook.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void format(Blackhole blackhole) {
+        CellFormatter cellFormatter = formatter;
+        for (double value : values) {
+            blackhole.consume(cellFormatter.format(value));
+        }
+    }
+
+    @Benchmark
+    public CellFormatter forStyle() {
+        return CellFormatter.forStyle(styles, styleIndex, false);
+    }
+}
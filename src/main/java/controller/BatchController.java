@@ -0,0 +1,883 @@
+package controller;
+
+import model.CsvDataAccess;
+import model.ExcelDataAccess;
+import model.FileMetrics;
+import model.MetricsPhase;
+import model.PerformanceMetrics;
+import model.RowHandler;
+import model.RowWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 批量处理控制器 - MVC架构中的Controller层
+ * 不依赖界面，在固定大小的线程池中并行转换、合并或拆分大量Excel和CSV/TSV文件；
+ * 每个工作线程流式读取、流式写入，内存占用与文件大小无关
+ */
+public class BatchController {
+    // 合并时每个文件最多预读的行批数，限制等待写入的数据量
+    private static final int MERGE_QUEUE_BATCHES = 4;
+    private static final int MERGE_BATCH_ROWS = 1000;
+    // 合并时等待文件读取完成期间在内存中暂存的行数，超过时转存到临时文件
+    private static final int MERGE_HOLD_ROWS = 20 * MERGE_BATCH_ROWS;
+    private static final List<String> FORMATS = Arrays.asList("xlsx", "csv", "tsv");
+
+    private final ExcelDataAccess dataAccess;
+    private final CsvDataAccess csvAccess = new CsvDataAccess();
+    private final int workers;
+    private final AtomicLong rowsProcessed = new AtomicLong();
+    private String outputFormat = "xlsx";
+
+    /**
+     * @param dataAccess 数据访问对象，各工作线程共用，处理期间不应修改其配置
+     * @param workers 工作线程数
+     */
+    public BatchController(ExcelDataAccess dataAccess, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("线程数必须大于0");
+        }
+        this.dataAccess = dataAccess;
+        this.workers = workers;
+    }
+
+    /**
+     * 设置convert和split输出文件的格式：xlsx、csv或tsv
+     */
+    public void setOutputFormat(String outputFormat) {
+        if (!FORMATS.contains(outputFormat)) {
+            throw new IllegalArgumentException("不支持的输出格式: " + outputFormat);
+        }
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * 获取convert和split输出文件的格式
+     */
+    public String getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * 查找输入文件：目录时取其中所有.xlsx、.csv和.tsv文件，否则按通配符（如data/2024-*.xlsx、in/**.xlsx）匹配
+     * @return 按路径排序的文件列表
+     */
+    public static List<Path> findInputs(String pattern) throws IOException {
+        Path path = Paths.get(pattern);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                return files.filter(file -> Files.isRegularFile(file) && isSupported(file))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        if (Files.isRegularFile(path)) {
+            return Collections.singletonList(path);
+        }
+
+        // 从第一个含通配符的部分之前的目录开始查找
+        Path base = null;
+        for (Path part : path) {
+            if (part.toString().matches(".*[*?\\[{].*")) {
+                break;
+            }
+            base = base == null ? part : base.resolve(part);
+        }
+        if (path.isAbsolute()) {
+            base = base == null ? path.getRoot() : path.getRoot().resolve(base);
+        }
+        Path start = base != null ? base : Paths.get("");
+        if (!Files.isDirectory(start)) {
+            return Collections.emptyList();
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        try (Stream<Path> files = Files.walk(start)) {
+            return files.filter(file -> Files.isRegularFile(file) && matcher.matches(file))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 把每个输入文件的第一个工作表转换为输出目录中的同名文件，格式由setOutputFormat决定
+     * 输出文件的命名见outputStems
+     */
+    public Summary convert(List<Path> inputs, Path outputDir) throws IOException {
+        List<Path> stems = outputStems(inputs, outputDir);
+        Set<Path> inputPaths = new HashSet<>();
+        for (Path input : inputs) {
+            inputPaths.add(input.toAbsolutePath().normalize());
+        }
+        for (Path stem : stems) {
+            if (inputPaths.contains(withExtension(stem, outputFormat))) {
+                throw new IllegalArgumentException("输出文件会覆盖输入文件: " + withExtension(stem, outputFormat));
+            }
+        }
+        return runEach(inputs, stems,
+                (input, stem) -> copySheet(input, new SheetSink(withExtension(stem, outputFormat)), "转换"));
+    }
+
+    /**
+     * 把每个输入文件拆分为若干个文件，每个文件最多rowsPerFile行数据，都带表头
+     * 输出文件在outputStems给出的名称后加上_part1、_part2等
+     */
+    public Summary split(List<Path> inputs, Path outputDir, int rowsPerFile) throws IOException {
+        if (rowsPerFile <= 0) {
+            throw new IllegalArgumentException("每个文件的行数必须大于0");
+        }
+        List<Path> stems = outputStems(inputs, outputDir);
+        return runEach(inputs, stems, (input, stem) -> copySheet(input, new SplitSink(stem, rowsPerFile), "拆分"));
+    }
+
+    /**
+     * 计算每个输入文件在输出目录中的路径（不含扩展名），并创建所需的子目录
+     * 保留输入文件相对于所有输入的共同上级目录的子目录，不同子目录中的同名文件互不覆盖；
+     * 同一目录中只有扩展名不同的文件（如a.csv和a.xlsx）在名称后加上源扩展名（a_csv、a_xlsx）。
+     * 在提交任何任务之前检查，仍有重名（如只有大小写不同）时整批失败
+     * @return 与inputs一一对应的路径
+     * @throws IllegalArgumentException 两个输入文件的输出路径相同
+     */
+    static List<Path> outputStems(List<Path> inputs, Path outputDir) throws IOException {
+        List<Path> files = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            files.add(input.toAbsolutePath().normalize());
+        }
+        Path common = commonParent(files);
+        List<String> names = new ArrayList<>(files.size());
+        Map<String, Integer> counts = new HashMap<>();
+        for (Path file : files) {
+            Path parent = file.getParent();
+            Path relative = common != null ? common.relativize(parent) : parent.getRoot().relativize(parent);
+            String name = relative.resolve(baseName(file)).toString();
+            names.add(name);
+            counts.merge(nameKey(name), 1, Integer::sum);
+        }
+
+        Path base = outputDir.toAbsolutePath().normalize();
+        Files.createDirectories(base);
+        List<Path> stems = new ArrayList<>(files.size());
+        Map<String, Path> used = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            String name = names.get(i);
+            if (counts.get(nameKey(name)) > 1) {
+                name += "_" + extension(files.get(i));
+            }
+            Path previous = used.put(nameKey(name), files.get(i));
+            if (previous != null) {
+                throw new IllegalArgumentException("输出文件重名: " + previous + " 与 " + files.get(i));
+            }
+            stems.add(base.resolve(name));
+        }
+        for (Path stem : stems) {
+            Files.createDirectories(stem.getParent());
+        }
+        return stems;
+    }
+
+    /**
+     * 按输入顺序把所有文件的第一个工作表合并到一个文件，表头取第一个成功读取的文件，输出格式由扩展名决定
+     * 各文件并行解析，写入按顺序进行；每个文件最多预读几批行，内存占用有上限。
+     * 一个文件读取成功后才写出它的行，读取失败的文件不会在结果中留下部分数据
+     */
+    public Summary merge(List<Path> inputs, Path output) throws IOException {
+        resetPeakHeap();
+        long start = System.nanoTime();
+        rowsProcessed.set(0);
+        List<String> failures = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<BlockingQueue<List<List<String>>>> queues = new ArrayList<>();
+            List<Future<Long>> readers = new ArrayList<>();
+            for (Path input : inputs) {
+                BlockingQueue<List<List<String>>> queue = new ArrayBlockingQueue<>(MERGE_QUEUE_BATCHES);
+                queues.add(queue);
+                readers.add(pool.submit(() -> readInto(input, queue)));
+            }
+
+            RowWriter writer = null;
+            int files = 0;
+            FileMetrics outputMetrics = PerformanceMetrics.getInstance().startFile(output.toString(), "合并输出");
+            boolean succeeded = false;
+            try {
+                for (int i = 0; i < inputs.size(); i++) {
+                    BlockingQueue<List<List<String>>> queue = queues.get(i);
+                    // 第一批是表头，之后每批若干行，空批表示文件结束；读取成功后才写出，失败的文件不留下部分数据
+                    List<List<String>> header = queue.take();
+                    PendingRows pending = new PendingRows();
+                    try {
+                        List<List<String>> batch;
+                        while (!(batch = queue.take()).isEmpty()) {
+                            pending.add(batch);
+                        }
+                        try {
+                            readers.get(i).get();
+                        } catch (ExecutionException e) {
+                            failures.add(inputs.get(i) + ": " + rootMessage(e));
+                            continue;
+                        }
+                        if (writer == null && (!header.isEmpty() || pending.size() > 0)) {
+                            writer = openWriter(output, header.isEmpty() ? Collections.<String>emptyList() : header.get(0));
+                        }
+                        long batchStart = System.nanoTime();
+                        pending.writeTo(writer);
+                        outputMetrics.record(MetricsPhase.EXPORT, System.nanoTime() - batchStart);
+                        outputMetrics.addRowsWritten(pending.size());
+                        rowsProcessed.addAndGet(pending.size());
+                        files++;
+                    } finally {
+                        pending.discard();
+                    }
+                }
+                if (writer == null) {
+                    writer = openWriter(output, Collections.<String>emptyList());
+                }
+                // 关闭时才写出压缩包，这部分也计入导出
+                long writeStart = System.nanoTime();
+                writer.close();
+                writer = null;
+                outputMetrics.record(MetricsPhase.EXPORT, System.nanoTime() - writeStart);
+                succeeded = true;
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+                outputMetrics.finish(succeeded);
+            }
+            return new Summary(files, rowsProcessed.get(), failures, System.nanoTime() - start, peakHeapBytes());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("合并被中断", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 在线程池中对每个文件执行任务，单个文件失败不影响其他文件
+     */
+    private Summary runEach(List<Path> inputs, List<Path> stems, FileTask task) throws IOException {
+        resetPeakHeap();
+        long start = System.nanoTime();
+        rowsProcessed.set(0);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < inputs.size(); i++) {
+                Path input = inputs.get(i);
+                Path stem = stems.get(i);
+                results.add(pool.submit(() -> task.process(input, stem)));
+            }
+            int files = 0;
+            List<String> failures = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                    files++;
+                } catch (ExecutionException e) {
+                    failures.add(inputs.get(i) + ": " + rootMessage(e));
+                }
+            }
+            return new Summary(files, rowsProcessed.get(), failures, System.nanoTime() - start, peakHeapBytes());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("批量处理被中断", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 流式读取文件的第一个工作表，逐行交给输出；写出的耗时计入导出，同时也包含在解析的耗时中。
+     * 读取失败时输出删除已写出的文件，输出目录中不留下不完整的结果
+     * @param operation 性能统计中的操作名称
+     * @return 数据行数
+     */
+    private long copySheet(Path input, RowSink sink, String operation) throws IOException {
+        final long[] rows = new long[1];
+        final long[] writeNanos = new long[1];
+        FileMetrics metrics = PerformanceMetrics.getInstance().startFile(input.toString(), operation);
+        boolean succeeded = false;
+        try {
+            boolean complete = false;
+            try {
+                readSheet(input, new RowHandler() {
+                    @Override
+                    public void handleHeaders(List<String> headers) {
+                        sink.start(headers);
+                    }
+
+                    @Override
+                    public void handleRow(int rowIndex, List<String> rowData) {
+                        long start = System.nanoTime();
+                        sink.write(rowData);
+                        writeNanos[0] += System.nanoTime() - start;
+                        rows[0]++;
+                        if (rows[0] % 1024 == 0) {
+                            rowsProcessed.addAndGet(1024);
+                        }
+                    }
+
+                    @Override
+                    public FileMetrics getMetrics() {
+                        return metrics;
+                    }
+                });
+                long start = System.nanoTime();
+                sink.finish();
+                writeNanos[0] += System.nanoTime() - start;
+                complete = true;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                sink.close(complete);
+            }
+            succeeded = true;
+        } finally {
+            // 失败的文件也结束统计，记为失败
+            metrics.record(MetricsPhase.EXPORT, writeNanos[0]);
+            if (succeeded) {
+                metrics.addRowsWritten(rows[0]);
+            }
+            metrics.finish(succeeded);
+        }
+        rowsProcessed.addAndGet(rows[0] % 1024);
+        return rows[0];
+    }
+
+    /**
+     * 合并时在工作线程中读取一个文件：先放入表头，再分批放入行，最后放入空批
+     * @return 数据行数
+     */
+    private long readInto(Path input, BlockingQueue<List<List<String>>> queue) throws IOException {
+        QueueingHandler handler = new QueueingHandler(queue,
+                PerformanceMetrics.getInstance().startFile(input.toString(), "合并"));
+        boolean complete = false;
+        try {
+            readSheet(input, handler);
+            complete = true;
+            return handler.rows;
+        } finally {
+            handler.metrics.finish(complete);
+            // 无论成功与否都让写入方能继续处理下一个文件
+            handler.finish(complete);
+        }
+    }
+
+    /**
+     * 按扩展名流式读取Excel文件的第一个工作表或CSV/TSV文件
+     */
+    private void readSheet(Path input, RowHandler handler) throws IOException {
+        if (CsvDataAccess.isCsvFile(input.toString())) {
+            csvAccess.readCsv(input.toString(), handler);
+        } else {
+            dataAccess.readExcel(input.toString(), handler);
+        }
+    }
+
+    /**
+     * 按扩展名打开Excel或CSV/TSV写入器
+     */
+    private RowWriter openWriter(Path output, List<String> headers) throws IOException {
+        if (CsvDataAccess.isCsvFile(output.toString())) {
+            return csvAccess.openCsvWriter(output.toString(), headers);
+        }
+        return dataAccess.openSheetWriter(output.toString(), headers, -1);
+    }
+
+    private static boolean isSupported(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".xlsx") || CsvDataAccess.isCsvFile(name);
+    }
+
+    private static void put(BlockingQueue<List<List<String>>> queue, List<List<String>> batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("读取被中断", e);
+        }
+    }
+
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static Path withExtension(Path stem, String extension) {
+        return stem.resolveSibling(stem.getFileName() + "." + extension);
+    }
+
+    /**
+     * 比较输出名称用的键：Windows和macOS的文件系统通常不区分大小写
+     */
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 所有文件的最近共同上级目录，不在同一个根目录下时返回null
+     */
+    private static Path commonParent(List<Path> files) {
+        Path common = null;
+        for (Path file : files) {
+            Path parent = file.getParent();
+            if (common == null) {
+                common = parent;
+                continue;
+            }
+            while (common != null && !parent.startsWith(common)) {
+                common = common.getParent();
+            }
+            if (common == null) {
+                return null;
+            }
+        }
+        return common;
+    }
+
+    private static String rootMessage(ExecutionException e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * 各堆内存区峰值之和，是实际峰值的上限
+     */
+    static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * 把读取的行分批放入队列，队列满时等待写入方取走
+     */
+    private static final class QueueingHandler implements RowHandler {
+        private final BlockingQueue<List<List<String>>> queue;
+        private final FileMetrics metrics;
+        private List<List<String>> batch = new ArrayList<>();
+        private boolean headerSent;
+        private long rows;
+
+        QueueingHandler(BlockingQueue<List<List<String>>> queue, FileMetrics metrics) {
+            this.queue = queue;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void handleHeaders(List<String> headers) {
+            put(queue, Collections.singletonList(headers));
+            headerSent = true;
+        }
+
+        @Override
+        public void handleRow(int rowIndex, List<String> rowData) {
+            batch.add(rowData);
+            rows++;
+            if (batch.size() == MERGE_BATCH_ROWS) {
+                put(queue, batch);
+                batch = new ArrayList<>();
+            }
+        }
+
+        @Override
+        public FileMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * 放入剩余的行和结束标记
+         * @param complete 文件是否读取成功，失败时丢弃尚未放入队列的行
+         */
+        void finish(boolean complete) {
+            if (!headerSent) {
+                put(queue, Collections.<List<String>>emptyList());
+            }
+            if (complete && !batch.isEmpty()) {
+                put(queue, batch);
+            }
+            batch = null;
+            put(queue, Collections.<List<String>>emptyList());
+        }
+    }
+
+    /**
+     * 合并时暂存一个文件已读取的行，确认该文件读取成功后再写出；
+     * 超过MERGE_HOLD_ROWS行时转存到临时文件，内存占用仍有上限
+     */
+    private static final class PendingRows {
+        private final List<List<String>> rows = new ArrayList<>();
+        private Path spillFile;
+        private DataOutputStream spill;
+        private long size;
+
+        void add(List<List<String>> batch) throws IOException {
+            size += batch.size();
+            if (spill == null && rows.size() + batch.size() <= MERGE_HOLD_ROWS) {
+                rows.addAll(batch);
+                return;
+            }
+            if (spill == null) {
+                spillFile = Files.createTempFile("excel-merge", ".rows");
+                spill = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)));
+                spillRows(rows);
+                rows.clear();
+            }
+            spillRows(batch);
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * 按读取顺序写出所有暂存的行
+         */
+        void writeTo(RowWriter writer) throws IOException {
+            if (spill == null) {
+                for (List<String> row : rows) {
+                    writer.writeRow(row);
+                }
+                return;
+            }
+            spill.close();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile)))) {
+                for (long r = 0; r < size; r++) {
+                    int cells = in.readInt();
+                    List<String> row = new ArrayList<>(cells);
+                    for (int c = 0; c < cells; c++) {
+                        int length = in.readInt();
+                        if (length < 0) {
+                            row.add(null);
+                        } else {
+                            byte[] bytes = new byte[length];
+                            in.readFully(bytes);
+                            row.add(new String(bytes, StandardCharsets.UTF_8));
+                        }
+                    }
+                    writer.writeRow(row);
+                }
+            }
+        }
+
+        /**
+         * 释放暂存的行并删除临时文件
+         */
+        void discard() {
+            rows.clear();
+            if (spill != null) {
+                try {
+                    spill.close();
+                } catch (IOException e) {
+                    // 只是清理，忽略
+                }
+                try {
+                    Files.deleteIfExists(spillFile);
+                } catch (IOException e) {
+                    spillFile.toFile().deleteOnExit();
+                }
+                spill = null;
+            }
+        }
+
+        private void spillRows(List<List<String>> batch) throws IOException {
+            for (List<String> row : batch) {
+                spill.writeInt(row.size());
+                for (String value : row) {
+                    if (value == null) {
+                        spill.writeInt(-1);
+                    } else {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        spill.writeInt(bytes.length);
+                        spill.write(bytes);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理单个文件的任务
+     */
+    private interface FileTask {
+        /**
+         * @param outputStem 该文件的输出路径，不含扩展名
+         */
+        long process(Path input, Path outputStem) throws IOException;
+    }
+
+    /**
+     * 一个文件的行输出
+     */
+    private interface RowSink {
+        void start(List<String> headers);
+
+        void write(List<String> row);
+
+        /**
+         * 读取正常结束
+         */
+        void finish();
+
+        /**
+         * 释放资源，无论读取是否成功都会调用
+         * @param complete 读取是否成功：成功时把写好的文件移到输出位置，否则删除已写出的文件
+         */
+        void close(boolean complete) throws IOException;
+    }
+
+    /**
+     * 写出时使用的临时文件：同一目录中的隐藏文件，保留扩展名以确定输出格式，完成后再改名为output
+     */
+    private static Path partialPath(Path output) {
+        return output.resolveSibling(".partial-" + output.getFileName());
+    }
+
+    /**
+     * 关闭写入器并把临时文件移到输出位置；读取失败或写出出错时删除临时文件
+     */
+    private static void closePart(RowWriter writer, Path output, boolean complete) throws IOException {
+        Path partial = partialPath(output);
+        boolean closed = false;
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+            closed = true;
+        } finally {
+            if (closed && complete) {
+                Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+
+    /**
+     * 写入单个文件
+     */
+    private final class SheetSink implements RowSink {
+        private final Path output;
+        private RowWriter writer;
+
+        SheetSink(Path output) {
+            this.output = output;
+        }
+
+        @Override
+        public void start(List<String> headers) {
+            try {
+                writer = openWriter(partialPath(output), headers);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(List<String> row) {
+            try {
+                writer.writeRow(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (writer == null) {
+                start(Collections.<String>emptyList());
+            }
+        }
+
+        @Override
+        public void close(boolean complete) throws IOException {
+            closePart(writer, output, complete);
+        }
+    }
+
+    /**
+     * 按行数拆分写入多个文件；写满的部分先留在临时文件中，整个文件读取成功后才一起移到输出位置
+     */
+    private final class SplitSink implements RowSink {
+        private final Path outputStem;
+        private final int rowsPerFile;
+        private final List<Path> parts = new ArrayList<>();
+        private List<String> headers = Collections.emptyList();
+        private RowWriter writer;
+        private int rowsInPart;
+
+        SplitSink(Path outputStem, int rowsPerFile) {
+            this.outputStem = outputStem;
+            this.rowsPerFile = rowsPerFile;
+        }
+
+        @Override
+        public void start(List<String> headerRow) {
+            headers = headerRow;
+        }
+
+        @Override
+        public void write(List<String> row) {
+            try {
+                if (writer == null || rowsInPart == rowsPerFile) {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                    openPart();
+                    rowsInPart = 0;
+                }
+                writer.writeRow(row);
+                rowsInPart++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void finish() {
+            // 没有数据行时也输出一个只有表头的文件
+            if (writer == null) {
+                try {
+                    openPart();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void openPart() throws IOException {
+            Path output = outputStem.resolveSibling(
+                    outputStem.getFileName() + "_part" + (parts.size() + 1) + "." + outputFormat);
+            parts.add(output);
+            writer = openWriter(partialPath(output), headers);
+        }
+
+        @Override
+        public void close(boolean complete) throws IOException {
+            RowWriter last = writer;
+            writer = null;
+            boolean closed = false;
+            try {
+                if (last != null) {
+                    last.close();
+                }
+                closed = true;
+            } finally {
+                for (Path output : parts) {
+                    closePart(null, output, closed && complete);
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量处理结果
+     */
+    public static final class Summary {
+        private final int files;
+        private final long rows;
+        private final List<String> failures;
+        private final long elapsedNanos;
+        private final long peakHeapBytes;
+
+        Summary(int files, long rows, List<String> failures, long elapsedNanos, long peakHeapBytes) {
+            this.files = files;
+            this.rows = rows;
+            this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+            this.elapsedNanos = elapsedNanos;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        /**
+         * 成功处理的文件数
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * 处理的数据行数
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * 失败的文件及原因
+         */
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double getFilesPerSecond() {
+            return files / Math.max(getElapsedSeconds(), 1e-9);
+        }
+
+        public double getRowsPerSecond() {
+            return rows / Math.max(getElapsedSeconds(), 1e-9);
+        }
+
+        /**
+         * 处理期间的堆内存峰值（字节）
+         */
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+    }
+}
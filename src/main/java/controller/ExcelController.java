@@ -1,25 +1,48 @@
 package controller;
 
+import model.Aggregate;
+import model.CsvDataAccess;
 import model.ExcelDataAccess;
 import model.ExcelDataModel;
+import model.FileMetrics;
+import model.MetricsPhase;
+import model.ModelChangeEvent;
+import model.PerformanceMetrics;
+import model.RowQuery;
+import model.SortKey;
+import model.StorageMode;
+import model.TableAggregator;
+import model.TableSnapshot;
 import view.ExcelView;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Excel控制器类 - MVC架构中的Controller层
  * 负责处理用户请求，协调Model和View之间的交互
  */
 public class ExcelController implements Observer {
+    // 新建表格时的工作表名称
+    private static final String DEFAULT_SHEET_NAME = "Sheet1";
+
+    // 每个工作表一个Model，model为当前选中的工作表
+    private final List<ExcelDataModel> sheetModels = new ArrayList<>();
     private ExcelDataModel model;
     private ExcelView view;
     private ExcelDataAccess dataAccess;
+    private CsvDataAccess csvAccess;
+    private ImportWorker importWorker;
+    private ExportWorker exportWorker;
+    private StorageMode storageMode = StorageMode.MEMORY;
 
     /**
      * 构造函数，初始化Controller并建立Model和View的连接
@@ -28,53 +51,120 @@ public class ExcelController implements Observer {
         this.model = model;
         this.view = view;
         this.dataAccess = new ExcelDataAccess();
+        this.csvAccess = new CsvDataAccess();
 
         // 将Controller注册为Model的观察者，以便接收数据变化通知
         this.model.addObserver(this);
+        this.sheetModels.add(model);
 
         // 将Controller传递给View，以便View可以调用Controller的方法
         this.view.setController(this);
 
+        // 表格直接从Model读取数据
+        this.view.setSheets(Collections.singletonList(DEFAULT_SHEET_NAME), sheetModels);
+
         // 初始化时更新View
         updateView();
     }
 
     /**
      * 处理Excel文件导入
+     * 文件在后台线程中解析，解析出的行分批显示
      */
     public void importExcel() {
+        if (importWorker != null && !importWorker.isDone()) {
+            JOptionPane.showMessageDialog(view, "正在导入文件，请等待完成或先取消", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("选择Excel文件");
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
-                "Excel文件 (*.xlsx)", "xlsx"));
+        fileChooser.setFileFilter(new FileNameExtensionFilter(
+                "表格文件 (*.xlsx, *.csv, *.tsv)", "xlsx", "csv", "tsv"));
 
         int userSelection = fileChooser.showOpenDialog(view);
         if (userSelection == JFileChooser.APPROVE_OPTION) {
             File fileToOpen = fileChooser.getSelectedFile();
-            try {
-                // 从文件读取数据
-                Object[] result = dataAccess.readExcel(fileToOpen.getAbsolutePath());
-                List<String> headers = (List<String>) result[0];
-                List<List<String>> data = (List<List<String>>) result[1];
+            importWorker = new ImportWorker(this, view, dataAccess, csvAccess, fileToOpen);
+            view.setImportInProgress(true);
+            importWorker.execute();
+        }
+    }
 
-                // 更新Model
-                model.setFileName(fileToOpen.getName());
-                model.setData(data, headers);
+    /**
+     * 取消正在进行的导入，已载入的行保留
+     */
+    public void cancelImport() {
+        if (importWorker != null) {
+            importWorker.cancel(false);
+        }
+    }
 
-                // 显示成功消息
-                JOptionPane.showMessageDialog(view, "Excel文件导入成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-            } catch (IOException e) {
-                // 显示错误消息
-                JOptionPane.showMessageDialog(view, "导入失败：" + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-            }
+    /**
+     * 设置打开文件时使用的存储方式，对之后打开或新建的表格生效
+     */
+    public void setStorageMode(StorageMode storageMode) {
+        this.storageMode = storageMode;
+    }
+
+    /**
+     * 切换当前工作表，之后的编辑和导出都作用于该工作表
+     */
+    public void setActiveSheet(int sheetIndex) {
+        if (sheetIndex >= 0 && sheetIndex < sheetModels.size()) {
+            model = sheetModels.get(sheetIndex);
+            view.updateTitle(model.getFileName());
+        }
+    }
+
+    /**
+     * 为新打开的工作簿创建每个工作表的Model和标签页，替换当前的所有工作表
+     * @param fileName 文件名
+     * @param sheetNames 工作表名称，为空时创建一个空工作表
+     * @return 与工作表名称一一对应的Model
+     */
+    List<ExcelDataModel> openSheets(String fileName, List<String> sheetNames) {
+        if (sheetNames.isEmpty()) {
+            sheetNames = Collections.singletonList(DEFAULT_SHEET_NAME);
+        }
+        for (ExcelDataModel sheetModel : sheetModels) {
+            sheetModel.deleteObserver(this);
+            sheetModel.dispose();
+        }
+        sheetModels.clear();
+        for (int i = 0; i < sheetNames.size(); i++) {
+            ExcelDataModel sheetModel = new ExcelDataModel();
+            sheetModel.setStorageMode(storageMode);
+            sheetModel.setFileName(fileName);
+            sheetModel.addObserver(this);
+            sheetModels.add(sheetModel);
         }
+        model = sheetModels.get(0);
+        view.setSheets(sheetNames, sheetModels);
+        updateView();
+        return new ArrayList<>(sheetModels);
     }
 
     /**
-     * 处理Excel文件导出
+     * 所有工作表的Model占用内存的估算值（字节）
+     */
+    long estimateModelMemory() {
+        long bytes = 0;
+        for (ExcelDataModel sheetModel : sheetModels) {
+            bytes += sheetModel.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 处理Excel文件导出，导出当前选中的工作表
+     * 文件在后台线程中写入，完成后提示结果
      */
     public void exportExcel() {
+        if (exportWorker != null && !exportWorker.isDone()) {
+            JOptionPane.showMessageDialog(view, "正在导出文件，请等待完成", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
         if (model.getHeaders().isEmpty()) {
             JOptionPane.showMessageDialog(view, "没有数据可导出", "警告", JOptionPane.WARNING_MESSAGE);
             return;
@@ -82,8 +172,12 @@ public class ExcelController implements Observer {
 
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("保存Excel文件");
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
-                "Excel文件 (*.xlsx)", "xlsx"));
+        FileNameExtensionFilter xlsxFilter = new FileNameExtensionFilter("Excel文件 (*.xlsx)", "xlsx");
+        fileChooser.addChoosableFileFilter(xlsxFilter);
+        fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("CSV文件 (*.csv)", "csv"));
+        fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("TSV文件 (*.tsv)", "tsv"));
+        fileChooser.setAcceptAllFileFilterUsed(false);
+        fileChooser.setFileFilter(xlsxFilter);
 
         // 设置默认文件名
         fileChooser.setSelectedFile(new File(model.getFileName()));
@@ -92,27 +186,19 @@ public class ExcelController implements Observer {
         if (userSelection == JFileChooser.APPROVE_OPTION) {
             File fileToSave = fileChooser.getSelectedFile();
             
-            // 确保文件扩展名为.xlsx
+            // 确保文件扩展名与选择的格式一致
             String filePath = fileToSave.getAbsolutePath();
-            if (!filePath.toLowerCase().endsWith(".xlsx")) {
-                filePath += ".xlsx";
+            String extension = ((FileNameExtensionFilter) fileChooser.getFileFilter()).getExtensions()[0];
+            if (!filePath.toLowerCase().endsWith("." + extension)) {
+                filePath += "." + extension;
                 fileToSave = new File(filePath);
             }
 
-            try {
-                // 写入文件
-                dataAccess.writeExcel(filePath, model.getHeaders(), model.getData());
-
-                // 更新Model中的文件名
-                model.setFileName(fileToSave.getName());
-
-                // 显示成功消息
-                JOptionPane.showMessageDialog(view, "Excel文件导出成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-            } catch (IOException e) {
-                // 显示错误消息
-                JOptionPane.showMessageDialog(view, "导出失败：" + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-            }
+            // 在事件调度线程中取快照，后台线程从快照写入文件，导出期间可以继续编辑
+            exportWorker = new ExportWorker(filePath, model.snapshot(), new ArrayList<>(sheetModels),
+                    fileToSave.getName());
+            view.setStatus("正在导出...");
+            exportWorker.execute();
         }
     }
 
@@ -123,6 +209,13 @@ public class ExcelController implements Observer {
         model.addRow(rowData);
     }
 
+    /**
+     * 批量添加多行数据（如粘贴），整体只刷新一次界面
+     */
+    public void addRows(List<List<String>> rows) {
+        model.addRows(rows);
+    }
+
     /**
      * 更新指定行数据
      */
@@ -130,6 +223,21 @@ public class ExcelController implements Observer {
         model.updateRow(rowIndex, newData);
     }
 
+    /**
+     * 更新单个单元格，以等号开头的输入作为公式
+     */
+    public void updateCell(int rowIndex, int columnIndex, String value) {
+        if (value.length() > 1 && value.startsWith("=")) {
+            try {
+                model.setFormula(rowIndex, columnIndex, value);
+            } catch (IllegalArgumentException e) {
+                view.setStatus(e.getMessage());
+            }
+            return;
+        }
+        model.setValueAt(rowIndex, columnIndex, value);
+    }
+
     /**
      * 删除指定行数据
      */
@@ -137,14 +245,117 @@ public class ExcelController implements Observer {
         model.deleteRow(rowIndex);
     }
 
+    /**
+     * 按输入的条件筛选当前工作表显示的行，条件为空时显示所有行
+     * 条件的写法见RowQuery.parse
+     * @param text 搜索框中输入的条件
+     */
+    public void filterRows(String text) {
+        int sheetIndex = view.getSelectedSheetIndex();
+        if (sheetIndex < 0) {
+            return;
+        }
+        if (text.trim().isEmpty()) {
+            view.filterSheet(sheetIndex, null);
+            view.setStatus("已显示所有行");
+            return;
+        }
+        RowQuery query;
+        try {
+            query = RowQuery.parse(text, model.getHeaders());
+        } catch (IllegalArgumentException e) {
+            view.setStatus("筛选条件有误：" + e.getMessage());
+            return;
+        }
+        boolean indexed = model.isSearchIndexReady();
+        long start = System.nanoTime();
+        int rows = view.filterSheet(sheetIndex, query);
+        view.setStatus(String.format("找到%d行，用时%d毫秒%s", rows,
+                (System.nanoTime() - start) / 1000000, indexed ? "" : "（索引建立中，逐行查找）"));
+    }
+
+    /**
+     * 按指定的列排序当前工作表的显示顺序，模型中的行顺序不变
+     * @param keys 排序键，依次为主次关键字，为空时恢复原始顺序
+     */
+    public void sortRows(List<SortKey> keys) {
+        int sheetIndex = view.getSelectedSheetIndex();
+        if (sheetIndex < 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        view.sortSheet(sheetIndex, keys);
+        if (keys.isEmpty()) {
+            view.setStatus("已恢复原始顺序");
+        } else {
+            view.setStatus(String.format("已按%d列排序，用时%d毫秒",
+                    keys.size(), (System.nanoTime() - start) / 1000000));
+        }
+    }
+
+    /**
+     * 按指定的列分组汇总当前工作表，结果放在新的工作表中，可以像其他工作表一样导出
+     * 在后台线程中汇总当前数据的快照，汇总期间可以继续编辑
+     * @param groupColumns 分组列，为空时汇总整张表
+     * @param aggregates 汇总项
+     */
+    public void aggregateRows(List<Integer> groupColumns, List<Aggregate> aggregates) {
+        ExcelDataModel source = model;
+        TableSnapshot snapshot = source.snapshot();
+        long start = System.nanoTime();
+        view.setStatus("正在汇总...");
+        new SwingWorker<TableSnapshot, Void>() {
+            @Override
+            protected TableSnapshot doInBackground() {
+                return TableAggregator.aggregate(snapshot, groupColumns, aggregates);
+            }
+
+            @Override
+            protected void done() {
+                TableSnapshot result;
+                try {
+                    result = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    view.setStatus("汇总失败：" + cause.getMessage());
+                    return;
+                }
+                // 汇总期间打开了其他文件时不再添加结果
+                if (!sheetModels.contains(source)) {
+                    return;
+                }
+                addAggregateSheet(source, groupColumns, result, (System.nanoTime() - start) / 1000000);
+            }
+        }.execute();
+    }
+
+    /**
+     * 把汇总结果作为新的工作表显示
+     */
+    private void addAggregateSheet(ExcelDataModel source, List<Integer> groupColumns, TableSnapshot result,
+                                   long elapsed) {
+        // 工作表名称列出分组列，如"按城市、类别汇总"
+        List<String> groupNames = result.getHeaders().subList(0, groupColumns.size());
+        String sheetName = groupNames.isEmpty() ? "汇总" : "按" + String.join("、", groupNames) + "汇总";
+        ExcelDataModel sheetModel = new ExcelDataModel();
+        sheetModel.setFileName(source.getFileName());
+        sheetModel.setData(result);
+        sheetModel.addObserver(this);
+        sheetModels.add(sheetModel);
+        view.appendSheet(sheetName, sheetModel);
+        view.setStatus(String.format("已汇总为%d组，用时%d毫秒", result.getRowCount(), elapsed));
+    }
+
     /**
      * 清空所有数据
      */
     public void clearAllData() {
         int confirm = JOptionPane.showConfirmDialog(view, "确定要清空所有数据吗？", "确认", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            model.clearData();
-            model.setFileName("未命名.xlsx");
+            openSheets("未命名.xlsx", Collections.singletonList(DEFAULT_SHEET_NAME));
         }
     }
 
@@ -160,23 +371,118 @@ public class ExcelController implements Observer {
         
         List<List<String>> emptyData = new ArrayList<>();
         
+        openSheets("未命名.xlsx", Collections.singletonList(DEFAULT_SHEET_NAME));
         model.setData(emptyData, defaultHeaders);
-        model.setFileName("未命名.xlsx");
     }
 
     /**
      * 从Model获取数据并更新View
      */
     private void updateView() {
-        view.updateTable(model.getHeaders(), model.getData());
+        view.updateTable();
         view.updateTitle(model.getFileName());
     }
 
     /**
      * 当Model数据变化时，自动调用此方法更新View
+     * 根据变化事件只刷新受影响的部分
      */
     @Override
     public void update(Observable o, Object arg) {
-        updateView();
+        int sheetIndex = sheetModels.indexOf(o);
+        if (sheetIndex < 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (arg instanceof ModelChangeEvent) {
+            applyChange(sheetIndex, (ModelChangeEvent) arg);
+        } else {
+            updateView();
+        }
+        PerformanceMetrics.getInstance().record(MetricsPhase.TABLE_REFRESH, System.nanoTime() - start);
+    }
+
+    /**
+     * 把一个变化事件应用到对应工作表的View
+     * 事件整体交给表格模型，它会连同事件携带的快照一起处理批量事件中的各个变化
+     */
+    private void applyChange(int sheetIndex, ModelChangeEvent event) {
+        if (containsType(event, ModelChangeEvent.Type.METADATA_CHANGED)) {
+            view.updateTitle(model.getFileName());
+        }
+        view.applyModelChange(sheetIndex, event);
+    }
+
+    private static boolean containsType(ModelChangeEvent event, ModelChangeEvent.Type type) {
+        if (event.getType() == type) {
+            return true;
+        }
+        for (ModelChangeEvent change : event.getChanges()) {
+            if (containsType(change, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 后台导出任务：从快照写入文件，完成后在事件调度线程中更新文件名并提示结果
+     */
+    private final class ExportWorker extends SwingWorker<Void, Void> {
+        private final String filePath;
+        private final TableSnapshot snapshot;
+        private final List<ExcelDataModel> sheets;
+        private final String fileName;
+        private final long startTime = System.nanoTime();
+
+        ExportWorker(String filePath, TableSnapshot snapshot, List<ExcelDataModel> sheets, String fileName) {
+            this.filePath = filePath;
+            this.snapshot = snapshot;
+            this.sheets = sheets;
+            this.fileName = fileName;
+        }
+
+        @Override
+        protected Void doInBackground() throws IOException {
+            FileMetrics metrics = PerformanceMetrics.getInstance().startFile(filePath, "导出");
+            long start = System.nanoTime();
+            boolean succeeded = false;
+            try {
+                if (CsvDataAccess.isCsvFile(filePath)) {
+                    csvAccess.writeCsv(filePath, snapshot.getHeaders(), snapshot.getRows());
+                } else {
+                    dataAccess.writeExcel(filePath, snapshot.getHeaders(), snapshot.getRows());
+                }
+                metrics.addRowsWritten(snapshot.getRowCount());
+                succeeded = true;
+            } finally {
+                metrics.record(MetricsPhase.EXPORT, System.nanoTime() - start);
+                metrics.finish(succeeded);
+            }
+            return null;
+        }
+
+        @Override
+        protected void done() {
+            try {
+                get();
+                // 更新导出时各工作表Model中的文件名
+                for (ExcelDataModel sheetModel : sheets) {
+                    sheetModel.setFileName(fileName);
+                }
+                view.setStatus(String.format("导出完成：%d行，用时%.1f秒", snapshot.getRowCount(),
+                        (System.nanoTime() - startTime) / 1e9));
+                // 显示成功消息
+                JOptionPane.showMessageDialog(view, "文件导出成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                view.setStatus("导出失败");
+                // 显示错误消息
+                JOptionPane.showMessageDialog(view, "导出失败：" + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                cause.printStackTrace();
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,458 @@
+package controller;
+
+import model.CsvDataAccess;
+import model.ExcelDataAccess;
+import model.ExcelDataModel;
+import model.FileMetrics;
+import model.MetricsPhase;
+import model.PerformanceMetrics;
+import model.RowHandler;
+import model.SheetHandlerFactory;
+import model.SnapshotFile;
+import model.TableSnapshot;
+import view.ExcelView;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Excel后台导入任务 - MVC架构中的Controller层组件
+ * 在后台线程中流式解析文件，各工作表并行解析，边解析边把行分批交给事件调度线程写入对应的Model，
+ * 界面在导入期间保持响应，用户可以随时取消；CSV/TSV文件作为只有一个工作表的工作簿导入
+ *
+ * 工作簿导入完成后放入内存缓存并在后台写入二进制快照；再次打开未修改的工作簿时
+ * 先查内存缓存，再查快照文件，都没有时才重新解析。快照不保存公式，含公式的工作簿不缓存
+ */
+public class ImportWorker extends SwingWorker<Integer, ImportWorker.Chunk> {
+    // 第一批行尽快显示，之后按行数或时间间隔分批
+    private static final int FIRST_BATCH_ROWS = 200;
+    private static final int BATCH_ROWS = 5000;
+    private static final long BATCH_INTERVAL_NANOS = 200_000_000L;
+
+    private final ExcelController controller;
+    private final ExcelView view;
+    private final ExcelDataAccess dataAccess;
+    private final CsvDataAccess csvAccess;
+    private final File file;
+    private final long startTime = System.nanoTime();
+    private final FileMetrics metrics;
+    private final List<BatchingHandler> handlers = new CopyOnWriteArrayList<>();
+    private volatile SnapshotFile snapshotFile;
+    private volatile boolean fromSnapshot;
+    private volatile boolean fromCache;
+    private int rowsLoadedFromSnapshot;
+
+    // 以下字段只在事件调度线程中访问
+    private List<String> sheetNames = new ArrayList<>();
+    private List<ExcelDataModel> sheetModels = new ArrayList<>();
+    private int[] sheetEstimatedRows = new int[0];
+    private long[] sheetBytesRead = new long[0];
+    private int rowsLoaded;
+    private int formulasLoaded;
+    private boolean applying;
+    private boolean edited;
+    // 导入期间用户修改了数据时不写快照
+    private final Observer editWatcher = (o, arg) -> {
+        if (!applying) {
+            edited = true;
+        }
+    };
+
+    public ImportWorker(ExcelController controller, ExcelView view, ExcelDataAccess dataAccess,
+                        CsvDataAccess csvAccess, File file) {
+        this.controller = controller;
+        this.view = view;
+        this.dataAccess = dataAccess;
+        this.csvAccess = csvAccess;
+        this.file = file;
+        this.metrics = PerformanceMetrics.getInstance().startFile(file.getAbsolutePath(), "导入");
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        String path = file.getAbsolutePath();
+        if (CsvDataAccess.isCsvFile(path)) {
+            publish(new Chunk(Collections.singletonList(CsvDataAccess.baseName(path))));
+            BatchingHandler handler = new BatchingHandler(0);
+            handlers.add(handler);
+            csvAccess.readCsv(path, handler);
+        } else {
+            Map<String, TableSnapshot> cached = dataAccess.getWorkbookCache().get(path);
+            if (cached != null) {
+                fromCache = true;
+                return publishSheets(cached);
+            }
+            snapshotFile = new SnapshotFile(path);
+            if (readSnapshot()) {
+                return rowsLoadedFromSnapshot;
+            }
+            readWorkbook(path);
+        }
+        int rowsRead = 0;
+        for (BatchingHandler handler : handlers) {
+            handler.finish();
+            rowsRead += handler.rowsRead;
+        }
+        return rowsRead;
+    }
+
+    /**
+     * 工作簿自上次导入后未修改时直接载入快照，快照不存在或已损坏时返回false
+     */
+    private boolean readSnapshot() {
+        try {
+            if (!snapshotFile.isUpToDate()) {
+                return false;
+            }
+            Map<String, TableSnapshot> sheets = snapshotFile.read();
+            rowsLoadedFromSnapshot = publishSheets(sheets);
+            fromSnapshot = true;
+            dataAccess.getWorkbookCache().put(file.getAbsolutePath(), snapshotFile.getSourceSize(),
+                    snapshotFile.getSourceModified(), sheets);
+            return true;
+        } catch (IOException e) {
+            // 重新解析工作簿，完成后会覆盖损坏的快照
+            return false;
+        }
+    }
+
+    /**
+     * 发布已解析好的各工作表
+     * @return 总行数
+     */
+    private int publishSheets(Map<String, TableSnapshot> sheets) {
+        publish(new Chunk(new ArrayList<>(sheets.keySet())));
+        int rows = 0;
+        int sheetIndex = 0;
+        for (TableSnapshot sheet : sheets.values()) {
+            publish(new Chunk(sheetIndex++, sheet));
+            rows += sheet.getRowCount();
+        }
+        return rows;
+    }
+
+    private void readWorkbook(String path) throws IOException {
+        dataAccess.readWorkbook(path, new SheetHandlerFactory() {
+            @Override
+            public void startWorkbook(List<String> sheetNames) {
+                // 先发布工作表名称，让界面建立各工作表的Model和标签页
+                publish(new Chunk(new ArrayList<>(sheetNames)));
+            }
+
+            @Override
+            public FileMetrics getMetrics() {
+                return metrics;
+            }
+
+            @Override
+            public RowHandler createHandler(int sheetIndex, String sheetName) {
+                BatchingHandler handler = new BatchingHandler(sheetIndex);
+                handlers.add(handler);
+                return handler;
+            }
+        });
+    }
+
+    /**
+     * 在事件调度线程中把解析好的行写入对应工作表的Model并更新进度
+     */
+    @Override
+    protected void process(List<Chunk> chunks) {
+        if (isCancelled()) {
+            return;
+        }
+        for (Chunk chunk : chunks) {
+            if (chunk.sheetNames != null) {
+                sheetNames = chunk.sheetNames;
+                sheetModels = controller.openSheets(file.getName(), chunk.sheetNames);
+                for (ExcelDataModel model : sheetModels) {
+                    model.addObserver(editWatcher);
+                }
+                sheetEstimatedRows = new int[sheetModels.size()];
+                sheetBytesRead = new long[sheetModels.size()];
+                Arrays.fill(sheetEstimatedRows, -1);
+                continue;
+            }
+            ExcelDataModel model = sheetModels.get(chunk.sheetIndex);
+            long start = System.nanoTime();
+            applying = true;
+            try {
+                if (chunk.snapshot != null) {
+                    model.setData(chunk.snapshot);
+                    rowsLoaded += chunk.snapshot.getRowCount();
+                }
+                if (chunk.headers != null) {
+                    model.setData(new ArrayList<List<String>>(), chunk.headers);
+                }
+                if (!chunk.rows.isEmpty()) {
+                    model.addRows(chunk.rows);
+                    rowsLoaded += chunk.rows.size();
+                }
+                for (FormulaCell formula : chunk.formulas) {
+                    if (model.loadFormula(formula.row, formula.column, formula.formula)) {
+                        formulasLoaded++;
+                    }
+                }
+            } finally {
+                applying = false;
+                metrics.record(MetricsPhase.MODEL_POPULATION, System.nanoTime() - start);
+            }
+            sheetEstimatedRows[chunk.sheetIndex] = chunk.estimatedRows;
+            sheetBytesRead[chunk.sheetIndex] = chunk.bytesRead;
+            updateProgress();
+        }
+    }
+
+    /**
+     * 汇总所有工作表的进度；任一工作表的行数未知时总行数也未知
+     */
+    private void updateProgress() {
+        int estimatedRows = 0;
+        long bytesRead = 0;
+        for (int i = 0; i < sheetEstimatedRows.length; i++) {
+            if (estimatedRows >= 0) {
+                estimatedRows = sheetEstimatedRows[i] >= 0 ? estimatedRows + sheetEstimatedRows[i] : -1;
+            }
+            bytesRead += sheetBytesRead[i];
+        }
+        view.updateImportProgress(rowsLoaded, estimatedRows, bytesRead);
+    }
+
+    @Override
+    protected void done() {
+        view.setImportInProgress(false);
+        for (ExcelDataModel model : sheetModels) {
+            model.deleteObserver(editWatcher);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        boolean succeeded = false;
+        try {
+            int rows = get();
+            succeeded = true;
+            String source = fromCache ? "（缓存）" : fromSnapshot ? "（快照）" : "";
+            String formulaNote = formulasLoaded > 0 ? "，" + formulasLoaded + "个公式" : "";
+            view.setStatus(String.format("导入完成%s：%d行%s%s，用时%.1f秒", source, rows, formulaNote,
+                    dedupNote(), seconds));
+            if (fromCache || fromSnapshot) {
+                // 解析时行数由读取器计入，从缓存或快照载入时在这里计入
+                metrics.addRows(rows);
+            }
+            PerformanceMetrics.getInstance().updateModelMemory(controller.estimateModelMemory());
+            metrics.finish();
+            // 在后台建立搜索索引，之后的筛选不必逐行查找
+            for (ExcelDataModel model : sheetModels) {
+                model.buildSearchIndex();
+            }
+            if (snapshotFile != null && !fromSnapshot && !edited && formulasLoaded == 0) {
+                saveSnapshot();
+            }
+            JOptionPane.showMessageDialog(view, "文件导入成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
+        } catch (CancellationException e) {
+            view.setStatus("导入已取消，已载入" + rowsLoaded + "行");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            view.setStatus("导入失败");
+            // 显示错误消息
+            JOptionPane.showMessageDialog(view, "导入失败：" + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            cause.printStackTrace();
+        } finally {
+            // 成功时已在上面结束；失败或取消的导入同样计入统计
+            metrics.finish(succeeded);
+        }
+    }
+
+    /**
+     * 各工作表解析时文本去重的比例，没有解析文件（从缓存或快照载入）时为空
+     */
+    private String dedupNote() {
+        long values = 0;
+        long reused = 0;
+        for (BatchingHandler handler : handlers) {
+            values += handler.dedupValues;
+            reused += handler.dedupReused;
+        }
+        return values > 0 ? String.format("，文本去重%.0f%%", 100.0 * reused / values) : "";
+    }
+
+    /**
+     * 把刚导入的各工作表放入缓存，并在后台线程中写入快照文件；
+     * 快照与模型共享数据块，写入期间可以继续编辑
+     */
+    private void saveSnapshot() {
+        Map<String, TableSnapshot> sheets = new LinkedHashMap<>();
+        for (int i = 0; i < sheetModels.size() && i < sheetNames.size(); i++) {
+            sheets.put(sheetNames.get(i), sheetModels.get(i).snapshot());
+        }
+        SnapshotFile target = snapshotFile;
+        // 用解析之前记录的文件大小和修改时间作为缓存键，解析期间文件被替换时不缓存
+        dataAccess.getWorkbookCache().put(file.getAbsolutePath(), target.getSourceSize(),
+                target.getSourceModified(), sheets);
+        Thread writer = new Thread(() -> {
+            try {
+                target.write(sheets);
+            } catch (IOException e) {
+                // 快照只用于加速下次打开，写入失败不影响本次导入
+                e.printStackTrace();
+            }
+        }, "snapshot-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 一批解析结果：工作簿的工作表名称，某个工作表的一批行，或从快照载入的整个工作表
+     */
+    static final class Chunk {
+        private final List<String> sheetNames;
+        private final int sheetIndex;
+        private final List<String> headers;
+        private final List<List<String>> rows;
+        private final List<FormulaCell> formulas;
+        private final TableSnapshot snapshot;
+        private final int estimatedRows;
+        private final long bytesRead;
+
+        Chunk(List<String> sheetNames) {
+            this(sheetNames, -1, null, new ArrayList<List<String>>(), new ArrayList<FormulaCell>(), null, -1, 0);
+        }
+
+        Chunk(int sheetIndex, List<String> headers, List<List<String>> rows, List<FormulaCell> formulas,
+              int estimatedRows, long bytesRead) {
+            this(null, sheetIndex, headers, rows, formulas, null, estimatedRows, bytesRead);
+        }
+
+        Chunk(int sheetIndex, TableSnapshot snapshot) {
+            this(null, sheetIndex, null, new ArrayList<List<String>>(), new ArrayList<FormulaCell>(), snapshot,
+                    snapshot.getRowCount(), 0);
+        }
+
+        private Chunk(List<String> sheetNames, int sheetIndex, List<String> headers, List<List<String>> rows,
+                      List<FormulaCell> formulas, TableSnapshot snapshot, int estimatedRows, long bytesRead) {
+            this.sheetNames = sheetNames;
+            this.sheetIndex = sheetIndex;
+            this.headers = headers;
+            this.rows = rows;
+            this.formulas = formulas;
+            this.snapshot = snapshot;
+            this.estimatedRows = estimatedRows;
+            this.bytesRead = bytesRead;
+        }
+    }
+
+    /**
+     * 文件中的一个公式，随所在工作表的最后一批行发布
+     */
+    static final class FormulaCell {
+        private final int row;
+        private final int column;
+        private final String formula;
+
+        FormulaCell(int row, int column, String formula) {
+            this.row = row;
+            this.column = column;
+            this.formula = formula;
+        }
+    }
+
+    /**
+     * 在解析线程中收集一个工作表的行，攒够一批后发布
+     */
+    private final class BatchingHandler implements RowHandler {
+        private final int sheetIndex;
+        private List<String> headers;
+        private List<List<String>> rows = new ArrayList<>();
+        private List<FormulaCell> formulas = new ArrayList<>();
+        private int batchLimit = FIRST_BATCH_ROWS;
+        private long lastPublish = System.nanoTime();
+        private int estimatedRows = -1;
+        private long bytesRead;
+        private int rowsRead;
+        private long dedupValues;
+        private long dedupReused;
+        private boolean published;
+
+        BatchingHandler(int sheetIndex) {
+            this.sheetIndex = sheetIndex;
+        }
+
+        @Override
+        public void handleHeaders(List<String> headerRow) {
+            headers = headerRow;
+        }
+
+        @Override
+        public void handleRow(int rowIndex, List<String> rowData) {
+            rows.add(rowData);
+            rowsRead++;
+            if (rows.size() >= batchLimit || System.nanoTime() - lastPublish >= BATCH_INTERVAL_NANOS) {
+                flush();
+                batchLimit = BATCH_ROWS;
+            }
+        }
+
+        @Override
+        public void handleFormula(int rowIndex, int columnIndex, String formula) {
+            formulas.add(new FormulaCell(rowIndex, columnIndex, formula));
+        }
+
+        @Override
+        public void handleDeduplication(long values, long reused) {
+            dedupValues = values;
+            dedupReused = reused;
+        }
+
+        @Override
+        public void handleEstimatedRowCount(int rowCount) {
+            estimatedRows = rowCount;
+        }
+
+        @Override
+        public void handleProgress(int rowsSoFar, long bytesSoFar) {
+            bytesRead = bytesSoFar;
+        }
+
+        @Override
+        public FileMetrics getMetrics() {
+            return metrics;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return ImportWorker.this.isCancelled();
+        }
+
+        void flush() {
+            publish(new Chunk(sheetIndex, headers, rows, formulas, estimatedRows, bytesRead));
+            published = true;
+            headers = null;
+            rows = new ArrayList<>();
+            formulas = new ArrayList<>();
+            lastPublish = System.nanoTime();
+        }
+
+        /**
+         * 发布剩余的行；工作表为空时也发布一次空表头
+         */
+        void finish() {
+            if (!published && headers == null) {
+                headers = new ArrayList<>();
+            }
+            if (headers != null || !rows.isEmpty() || !formulas.isEmpty()) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package controller;
+
+import model.CsvDataAccess;
+import model.ExcelDataAccess;
+import model.ExcelDataModel;
+import model.RowHandler;
+import model.RowQuery;
+import model.SortKey;
+import model.StorageMode;
+import model.SyntheticWorkbookGenerator;
+import model.TableSnapshot;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 规模测试 - MVC架构中的Controller层组件
+ * 按一组逐步增大的行数生成合成工作簿，依次执行导入、建立索引、编辑、排序、筛选和导出，
+ * 记录每一步各阶段的耗时和堆内存峰值，并估计各阶段耗时随数据量增长的阶数，
+ * 看出哪些处理随数据量线性增长、哪些增长得更快
+ *
+ * 导入与ImportWorker相同：各工作表并行解析，按批写入各自的Model，最后登记公式；
+ * 之后的操作都在第一个工作表的Model上进行。不依赖界面，可以在没有显示器的服务器上运行
+ */
+public class ScaleTestRunner {
+    // 导入时每批写入Model的行数，与ImportWorker一致
+    private static final int BATCH_ROWS = 5000;
+    // 正式测试前先用这么多行预热一遍，排除类加载和即时编译对第一步的影响
+    private static final int WARMUP_ROWS = 2000;
+
+    /**
+     * 测试的阶段
+     */
+    public enum Phase {
+        GENERATE("生成"),
+        IMPORT("导入"),
+        INDEX("建立索引"),
+        /** 固定次数的修改，理想情况下耗时不随数据量增长 */
+        EDIT("编辑"),
+        SORT("排序"),
+        FILTER("筛选"),
+        EXPORT("导出");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final ExcelDataAccess dataAccess;
+    private final CsvDataAccess csvAccess;
+    private final SyntheticWorkbookGenerator generator;
+    private String format = "xlsx";
+    private int edits = 1000;
+    private StorageMode storageMode = StorageMode.MEMORY;
+    private boolean keepFiles;
+    private PrintStream log;
+
+    /**
+     * @param generator 生成器，除行数外的参数（列数、类型比例、公式列等）按其当前设置
+     */
+    public ScaleTestRunner(ExcelDataAccess dataAccess, CsvDataAccess csvAccess, SyntheticWorkbookGenerator generator) {
+        this.dataAccess = dataAccess;
+        this.csvAccess = csvAccess;
+        this.generator = generator;
+    }
+
+    /**
+     * 设置生成和导出的文件格式：xlsx、csv或tsv
+     */
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * 设置编辑阶段的单元格修改次数，另外追加同样多的行、删除十分之一的行
+     */
+    public void setEdits(int edits) {
+        this.edits = edits;
+    }
+
+    public void setStorageMode(StorageMode storageMode) {
+        this.storageMode = storageMode;
+    }
+
+    /**
+     * 设置是否保留生成和导出的文件，默认每一步结束后删除
+     */
+    public void setKeepFiles(boolean keepFiles) {
+        this.keepFiles = keepFiles;
+    }
+
+    /**
+     * 设置输出各阶段进度的流，为null时不输出
+     */
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * 按给定的行数依次测试
+     * @param rowSteps 每个工作表的数据行数，通常按倍数递增
+     * @param workDir 存放生成和导出文件的目录
+     */
+    public Report run(List<Integer> rowSteps, Path workDir) throws IOException {
+        Files.createDirectories(workDir);
+        PrintStream output = log;
+        log = null;
+        try {
+            runStep(WARMUP_ROWS, workDir);
+        } finally {
+            log = output;
+        }
+        List<Step> steps = new ArrayList<>();
+        for (int rows : rowSteps) {
+            steps.add(runStep(rows, workDir));
+        }
+        return new Report(steps, edits);
+    }
+
+    private Step runStep(int rows, Path workDir) throws IOException {
+        generator.setRows(rows);
+        Path input = workDir.resolve("scale-" + rows + "." + format);
+        Path output = workDir.resolve("scale-" + rows + "-export." + format);
+        Step step = new Step(rows, generator.cellsPerSheet() * generator.getSheets());
+        List<ExcelDataModel> models = Collections.emptyList();
+        try {
+            measure(step, Phase.GENERATE, () -> {
+                generator.generate(input);
+                return null;
+            });
+            step.fileBytes = Files.size(input);
+            models = measure(step, Phase.IMPORT, () -> importFile(input));
+            ExcelDataModel model = models.get(0);
+            measure(step, Phase.INDEX, () -> buildIndex(model));
+            measure(step, Phase.EDIT, () -> edit(model));
+            measure(step, Phase.SORT, () -> sort(model));
+            measure(step, Phase.FILTER, () -> filter(model));
+            measure(step, Phase.EXPORT, () -> export(model, output));
+        } finally {
+            for (ExcelDataModel model : models) {
+                model.dispose();
+            }
+            if (!keepFiles) {
+                Files.deleteIfExists(input);
+                Files.deleteIfExists(output);
+            }
+        }
+        return step;
+    }
+
+    /**
+     * 执行一个阶段并记录耗时和堆内存峰值；开始前先回收垃圾，使各阶段的峰值互不影响
+     */
+    private <T> T measure(Step step, Phase phase, Task<T> task) throws IOException {
+        System.gc();
+        BatchController.resetPeakHeap();
+        long start = System.nanoTime();
+        T result = task.run();
+        long nanos = System.nanoTime() - start;
+        long peak = BatchController.peakHeapBytes();
+        step.nanos.put(phase, nanos);
+        step.peakHeapBytes.put(phase, peak);
+        if (log != null) {
+            log.printf("%d行 %s：%.2f秒，堆内存峰值%.1f MB%n", step.rows, phase.getDisplayName(), nanos / 1e9,
+                    peak / 1048576.0);
+        }
+        return result;
+    }
+
+    /**
+     * 导入文件，每个工作表一个Model
+     */
+    private List<ExcelDataModel> importFile(Path input) throws IOException {
+        String path = input.toString();
+        if (CsvDataAccess.isCsvFile(path)) {
+            ModelLoader loader = new ModelLoader();
+            csvAccess.readCsv(path, loader);
+            loader.flush();
+            return Collections.singletonList(loader.model);
+        }
+        List<ModelLoader> loaders = Collections.synchronizedList(new ArrayList<>());
+        dataAccess.readWorkbook(path, (sheetIndex, sheetName) -> {
+            ModelLoader loader = new ModelLoader();
+            loaders.add(loader);
+            return loader;
+        });
+        List<ExcelDataModel> models = new ArrayList<>();
+        for (ModelLoader loader : loaders) {
+            loader.flush();
+            models.add(loader.model);
+        }
+        if (models.isEmpty()) {
+            throw new IOException("工作簿中没有工作表: " + input);
+        }
+        return models;
+    }
+
+    /**
+     * 建立搜索索引并等待完成，导入完成后界面同样会建立
+     */
+    private Void buildIndex(ExcelDataModel model) throws IOException {
+        model.buildSearchIndex();
+        try {
+            while (!model.isSearchIndexReady()) {
+                Thread.sleep(5);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待建立索引时被中断");
+        }
+        return null;
+    }
+
+    /**
+     * 随机修改数字列的单元格（引用它们的公式随之重算），再追加和删除一些行
+     */
+    private Void edit(ExcelDataModel model) {
+        int rowCount = model.getRowCount();
+        if (rowCount == 0) {
+            return null;
+        }
+        List<Integer> numericColumns = numericColumns();
+        Random random = new Random(generator.getSeed());
+        for (int i = 0; i < edits; i++) {
+            int column = numericColumns.get(i % numericColumns.size());
+            model.setValueAt(random.nextInt(rowCount), column, String.valueOf(random.nextInt(1_000_000)));
+        }
+        TableSnapshot snapshot = model.snapshot();
+        List<List<String>> added = new ArrayList<>(edits);
+        for (int i = 0; i < edits; i++) {
+            added.add(new ArrayList<>(snapshot.getRow(random.nextInt(rowCount))));
+        }
+        model.addRows(added);
+        for (int i = 0; i < edits / 10; i++) {
+            model.deleteRow(random.nextInt(model.getRowCount()));
+        }
+        return null;
+    }
+
+    /**
+     * 按第一列升序、第二列降序排序
+     */
+    private Void sort(ExcelDataModel model) {
+        List<SortKey> keys = new ArrayList<>();
+        keys.add(SortKey.ascending(0));
+        if (model.getColumnCount() > 1) {
+            keys.add(SortKey.descending(1));
+        }
+        model.sort(keys);
+        return null;
+    }
+
+    /**
+     * 依次执行等值、前缀和数值范围筛选
+     */
+    private Void filter(ExcelDataModel model) {
+        if (model.getRowCount() == 0) {
+            return null;
+        }
+        String value = model.getValueAt(0, 0);
+        model.filter(RowQuery.exact(0, value));
+        model.filter(RowQuery.prefix(0, value.substring(0, Math.min(1, value.length()))));
+        model.filter(RowQuery.range(numericColumns().get(0), 0, 500_000));
+        return null;
+    }
+
+    /**
+     * 与界面的导出相同：从快照写出
+     */
+    private Void export(ExcelDataModel model, Path output) throws IOException {
+        TableSnapshot snapshot = model.snapshot();
+        if (CsvDataAccess.isCsvFile(output.toString())) {
+            csvAccess.writeCsv(output.toString(), snapshot.getHeaders(), snapshot.getRows());
+        } else {
+            dataAccess.writeExcel(output.toString(), snapshot.getHeaders(), snapshot.getRows());
+        }
+        return null;
+    }
+
+    /**
+     * 整数和金额列，没有时用第一列
+     */
+    private List<Integer> numericColumns() {
+        List<Integer> columns = new ArrayList<>();
+        List<SyntheticWorkbookGenerator.ColumnType> types = generator.columnTypes();
+        for (int c = 0; c < types.size(); c++) {
+            if (types.get(c) == SyntheticWorkbookGenerator.ColumnType.INTEGER
+                    || types.get(c) == SyntheticWorkbookGenerator.ColumnType.DECIMAL) {
+                columns.add(c);
+            }
+        }
+        if (columns.isEmpty()) {
+            columns.add(0);
+        }
+        return columns;
+    }
+
+    /**
+     * 一个阶段的任务
+     */
+    private interface Task<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * 把一个工作表的行按批写入Model；公式在所有行之后回调，登记前先写入剩余的行
+     */
+    private final class ModelLoader implements RowHandler {
+        private final ExcelDataModel model = new ExcelDataModel();
+        private List<List<String>> batch = new ArrayList<>();
+
+        ModelLoader() {
+            model.setStorageMode(storageMode);
+        }
+
+        @Override
+        public void handleHeaders(List<String> headers) {
+            model.setData(new ArrayList<List<String>>(), headers);
+        }
+
+        @Override
+        public void handleRow(int rowIndex, List<String> rowData) {
+            batch.add(rowData);
+            if (batch.size() == BATCH_ROWS) {
+                flush();
+            }
+        }
+
+        @Override
+        public void handleFormula(int rowIndex, int columnIndex, String formula) {
+            flush();
+            model.loadFormula(rowIndex, columnIndex, formula);
+        }
+
+        void flush() {
+            if (!batch.isEmpty()) {
+                model.addRows(batch);
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * 一步测试的结果
+     */
+    public static final class Step {
+        private final int rows;
+        private final long cells;
+        private long fileBytes;
+        private final Map<Phase, Long> nanos = new EnumMap<>(Phase.class);
+        private final Map<Phase, Long> peakHeapBytes = new EnumMap<>(Phase.class);
+
+        Step(int rows, long cells) {
+            this.rows = rows;
+            this.cells = cells;
+        }
+
+        /** 每个工作表的数据行数 */
+        public int getRows() {
+            return rows;
+        }
+
+        /** 所有工作表的单元格数 */
+        public long getCells() {
+            return cells;
+        }
+
+        public long getFileBytes() {
+            return fileBytes;
+        }
+
+        public double getSeconds(Phase phase) {
+            Long value = nanos.get(phase);
+            return value != null ? value / 1e9 : Double.NaN;
+        }
+
+        public long getPeakHeapBytes(Phase phase) {
+            Long value = peakHeapBytes.get(phase);
+            return value != null ? value : 0;
+        }
+    }
+
+    /**
+     * 所有步的结果和各阶段的增长阶数
+     */
+    public static final class Report {
+        private final List<Step> steps;
+        private final int edits;
+
+        Report(List<Step> steps, int edits) {
+            this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+            this.edits = edits;
+        }
+
+        public List<Step> getSteps() {
+            return steps;
+        }
+
+        /**
+         * 耗时随单元格数增长的阶数：各步耗时与单元格数取对数后的最小二乘斜率，
+         * 约1为线性，明显大于1说明增长快于数据量；少于两步时为NaN
+         */
+        public double getExponent(Phase phase) {
+            double sumX = 0;
+            double sumY = 0;
+            double sumXX = 0;
+            double sumXY = 0;
+            int n = 0;
+            for (Step step : steps) {
+                double seconds = step.getSeconds(phase);
+                if (step.cells <= 0 || !(seconds > 0)) {
+                    continue;
+                }
+                double x = Math.log(step.cells);
+                double y = Math.log(seconds);
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumXY += x * y;
+                n++;
+            }
+            double denominator = n * sumXX - sumX * sumX;
+            if (n < 2 || denominator == 0) {
+                return Double.NaN;
+            }
+            return (n * sumXY - sumX * sumY) / denominator;
+        }
+
+        /**
+         * 按增长阶数描述增长方式；编辑阶段的操作次数固定，阶数即每次操作的耗时随数据量增长的阶数
+         */
+        public static String describeGrowth(Phase phase, double exponent) {
+            if (Double.isNaN(exponent)) {
+                return "-";
+            }
+            if (phase == Phase.EDIT) {
+                if (exponent < 0.2) {
+                    return "每次操作的耗时与数据量无关";
+                }
+                return exponent < 0.8 ? "每次操作的耗时随数据量缓慢增长" : "每次操作的耗时与数据量成正比或更快";
+            }
+            if (exponent < 0.8) {
+                return "亚线性";
+            }
+            if (exponent < 1.2) {
+                return "线性";
+            }
+            if (exponent < 1.5) {
+                return "略超线性";
+            }
+            return "超线性";
+        }
+
+        /**
+         * 文本表格：各步各阶段的耗时和堆内存峰值，最后是各阶段的增长阶数
+         */
+        public String format() {
+            StringBuilder text = new StringBuilder();
+            pad(text, "行数", 10);
+            pad(text, "单元格", 12);
+            pad(text, "文件", 10);
+            for (Phase phase : Phase.values()) {
+                pad(text, phase.getDisplayName(), 18);
+            }
+            text.append(String.format("%n"));
+            for (Step step : steps) {
+                pad(text, String.valueOf(step.rows), 10);
+                pad(text, String.valueOf(step.cells), 12);
+                pad(text, megabytes(step.fileBytes), 10);
+                for (Phase phase : Phase.values()) {
+                    pad(text, String.format("%.2fs/%s", step.getSeconds(phase), megabytes(step.getPeakHeapBytes(phase))), 18);
+                }
+                text.append(String.format("%n"));
+            }
+            text.append(String.format("（各阶段为耗时/堆内存峰值；编辑为固定的%d次修改、%d行追加和%d行删除）%n",
+                    edits, edits, edits / 10));
+            text.append(String.format("%n增长阶数（耗时 ∝ 单元格数^k）：%n"));
+            for (Phase phase : Phase.values()) {
+                double exponent = getExponent(phase);
+                text.append("  ");
+                pad(text, phase.getDisplayName(), 10);
+                pad(text, "k=" + (Double.isNaN(exponent) ? "-" : String.format("%.2f", exponent)), 8);
+                text.append(describeGrowth(phase, exponent)).append(String.format("%n"));
+            }
+            return text.toString();
+        }
+
+        /**
+         * 写出CSV格式的结果，便于绘图比较
+         */
+        public void writeCsv(Path file) throws IOException {
+            List<String> lines = new ArrayList<>();
+            StringBuilder header = new StringBuilder("rows,cells,file_bytes");
+            for (Phase phase : Phase.values()) {
+                String name = phase.name().toLowerCase();
+                header.append(',').append(name).append("_seconds,").append(name).append("_peak_heap_bytes");
+            }
+            lines.add(header.toString());
+            for (Step step : steps) {
+                StringBuilder line = new StringBuilder();
+                line.append(step.rows).append(',').append(step.cells).append(',').append(step.fileBytes);
+                for (Phase phase : Phase.values()) {
+                    line.append(',').append(String.format("%.4f", step.getSeconds(phase)))
+                            .append(',').append(step.getPeakHeapBytes(phase));
+                }
+                lines.add(line.toString());
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * 按显示宽度左对齐，中文字符占两格
+         */
+        private static void pad(StringBuilder text, String value, int width) {
+            text.append(value);
+            int used = 0;
+            for (int i = 0; i < value.length(); i++) {
+                used += value.charAt(i) >= 0x2E80 ? 2 : 1;
+            }
+            for (int i = used; i < width; i++) {
+                text.append(' ');
+            }
+            text.append(' ');
+        }
+
+        private static String megabytes(long bytes) {
+            return String.format("%.1fMB", bytes / 1048576.0);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package model;
+
+/**
+ * 汇总项 - MVC架构中的Model层组件
+ * 对哪一列计算哪种统计量；ROWS表示统计每组的行数
+ */
+public final class Aggregate {
+    /**
+     * 不针对某一列，统计每组的行数
+     */
+    public static final int ROWS = -1;
+
+    private final AggregateFunction function;
+    private final int column;
+
+    public Aggregate(AggregateFunction function, int column) {
+        if (function == null) {
+            throw new IllegalArgumentException("汇总函数为空");
+        }
+        if (column < 0 && !(column == ROWS && function == AggregateFunction.COUNT)) {
+            throw new IllegalArgumentException("列索引不能小于0");
+        }
+        this.function = function;
+        this.column = column;
+    }
+
+    /**
+     * 每组的行数
+     */
+    public static Aggregate rowCount() {
+        return new Aggregate(AggregateFunction.COUNT, ROWS);
+    }
+
+    /**
+     * 指定列的非空值个数
+     */
+    public static Aggregate count(int column) {
+        return new Aggregate(AggregateFunction.COUNT, column);
+    }
+
+    /**
+     * 指定列的数值之和
+     */
+    public static Aggregate sum(int column) {
+        return new Aggregate(AggregateFunction.SUM, column);
+    }
+
+    /**
+     * 指定列的数值平均值
+     */
+    public static Aggregate average(int column) {
+        return new Aggregate(AggregateFunction.AVERAGE, column);
+    }
+
+    /**
+     * 指定列的最小值
+     */
+    public static Aggregate min(int column) {
+        return new Aggregate(AggregateFunction.MIN, column);
+    }
+
+    /**
+     * 指定列的最大值
+     */
+    public static Aggregate max(int column) {
+        return new Aggregate(AggregateFunction.MAX, column);
+    }
+
+    /**
+     * 指定列的不同值个数
+     */
+    public static Aggregate distinct(int column) {
+        return new Aggregate(AggregateFunction.DISTINCT, column);
+    }
+
+    public AggregateFunction getFunction() {
+        return function;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * 结果表中该项的表头，如"求和(数量)"
+     * @param columnName 所汇总的列的表头
+     */
+    public String getLabel(String columnName) {
+        return column == ROWS ? "行数" : function.getLabel() + "(" + columnName + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Aggregate)) {
+            return false;
+        }
+        Aggregate other = (Aggregate) o;
+        return function == other.function && column == other.column;
+    }
+
+    @Override
+    public int hashCode() {
+        return column * 31 + function.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return column == ROWS ? "行数" : function.getLabel() + " #" + column;
+    }
+}
@@ -0,0 +1,33 @@
+package model;
+
+/**
+ * 汇总函数 - MVC架构中的Model层组件
+ * 分组汇总时对每组的一列值计算的统计量，空单元格不参与计算
+ */
+public enum AggregateFunction {
+    /** 非空值的个数 */
+    COUNT("计数"),
+    /** 数值之和 */
+    SUM("求和"),
+    /** 数值的平均值 */
+    AVERAGE("平均值"),
+    /** 最小值，文本按排序时的顺序比较 */
+    MIN("最小值"),
+    /** 最大值，文本按排序时的顺序比较 */
+    MAX("最大值"),
+    /** 不同值的个数 */
+    DISTINCT("不同值个数");
+
+    private final String label;
+
+    AggregateFunction(String label) {
+        this.label = label;
+    }
+
+    /**
+     * 显示名称，用作结果表的表头
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,87 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 布尔列 - MVC架构中的Model层组件
+ * 值按块存放在位图中，每行占1位
+ */
+class BooleanColumn extends Column {
+    private long[][] values = new long[0][];
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.BOOLEAN;
+    }
+
+    @Override
+    boolean accepts(String value) {
+        return "true".equals(value) || "false".equals(value);
+    }
+
+    /**
+     * 获取指定行的布尔值（该行非空）
+     */
+    boolean getBoolean(int row) {
+        return getBit(values[row >>> CHUNK_SHIFT], row & CHUNK_MASK);
+    }
+
+    /**
+     * 在末尾追加一个布尔值
+     */
+    void addBoolean(boolean value) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        int chunk = row >>> CHUNK_SHIFT;
+        prepareWrite(chunk);
+        setBit(nulls[chunk], row & CHUNK_MASK, false);
+        setBit(values[chunk], row & CHUNK_MASK, value);
+    }
+
+    @Override
+    protected String format(int row) {
+        return String.valueOf(getBoolean(row));
+    }
+
+    @Override
+    protected void store(int row, String value) {
+        setBit(values[row >>> CHUNK_SHIFT], row & CHUNK_MASK, "true".equals(value));
+    }
+
+    @Override
+    protected void resizeChunk(int chunk, int capacity) {
+        if (chunk >= values.length) {
+            values = Arrays.copyOf(values, Math.max(chunk + 1, values.length * 2));
+        }
+        int words = (capacity + 63) >>> 6;
+        values[chunk] = values[chunk] == null ? new long[words] : Arrays.copyOf(values[chunk], words);
+    }
+
+    @Override
+    protected void removeFromChunk(int chunk, int index, int length) {
+        removeBit(values[chunk], index, length);
+    }
+
+    @Override
+    protected void copyValue(int fromChunk, int fromIndex, int toChunk, int toIndex) {
+        setBit(values[toChunk], toIndex, getBit(values[fromChunk], fromIndex));
+    }
+
+    @Override
+    protected Column shareChunks() {
+        BooleanColumn copy = new BooleanColumn();
+        copy.values = values.clone();
+        return copy;
+    }
+
+    @Override
+    protected long valueMemoryBytes() {
+        long bytes = 16 + 8L * values.length;
+        for (long[] chunk : values) {
+            if (chunk != null) {
+                bytes += 16 + 8L * chunk.length;
+            }
+        }
+        return bytes;
+    }
+}
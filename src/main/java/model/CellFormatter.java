@@ -0,0 +1,86 @@
+package model;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 数字单元格格式化器 - MVC架构中的Model层组件
+ * 导入时按单元格样式把数字转换为文本；是否为日期格式在创建时判断一次，
+ * 由XlsxSheetHandler按样式编号缓存，解析单元格时不再查询样式和解析格式字符串
+ *
+ * 日期输出为java.util.Date.toString()的格式（DateValues可识别），其他数字输出规范的数字文本，
+ * 与列式存储推断类型所用的文本一致
+ */
+abstract class CellFormatter {
+    /** 常规格式，也用于没有样式的单元格 */
+    static final CellFormatter GENERAL = new CellFormatter() {
+        @Override
+        String format(double value) {
+            return formatGeneral(value);
+        }
+    };
+
+    /**
+     * 将数字转换为单元格文本
+     */
+    abstract String format(double value);
+
+    /**
+     * 为样式表中的指定样式创建格式化器：日期格式用日期格式化器，其余用常规格式
+     */
+    static CellFormatter forStyle(StylesTable styles, int styleIndex, boolean date1904) {
+        if (styles == null) {
+            return GENERAL;
+        }
+        XSSFCellStyle style = styles.getStyleAt(styleIndex);
+        if (style == null || !DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString())) {
+            return GENERAL;
+        }
+        return new DateFormatter(date1904);
+    }
+
+    /**
+     * 整数不带小数点，避免科学计数法
+     */
+    static String formatGeneral(double value) {
+        if (value == Math.floor(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * 日期格式：有效的Excel日期转换为日期文本，否则按常规格式；
+     * 同一列中相邻的单元格常是同一天，缓存上一次的结果
+     */
+    private static final class DateFormatter extends CellFormatter {
+        private final boolean date1904;
+        private final ZoneId zone = ZoneId.systemDefault();
+        private double lastValue = Double.NaN;
+        private String lastText;
+
+        DateFormatter(boolean date1904) {
+            this.date1904 = date1904;
+        }
+
+        @Override
+        String format(double value) {
+            if (value == lastValue) {
+                return lastText;
+            }
+            if (!DateUtil.isValidExcelDate(value)) {
+                return formatGeneral(value);
+            }
+            LocalDateTime dateTime = DateUtil.getLocalDateTime(value, date1904);
+            // 夏令时结束时重复的一小时取较晚的偏移，与Date.toString()一致
+            String text = DateValues.JAVA_DATE.format(dateTime.atZone(zone).withLaterOffsetAtOverlap());
+            lastValue = value;
+            lastText = text;
+            return text;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package model;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 单元格样式注册表 - MVC架构中的Model层组件
+ * 按字体、填充、边框和数字格式对样式去重，同一工作簿中属性相同的单元格共用一个CellStyle
+ */
+public class CellStyleRegistry {
+    /** 不填充背景色 */
+    public static final short NO_FILL = -1;
+
+    private final Workbook workbook;
+    private final Map<StyleKey, CellStyle> styles = new HashMap<>();
+    private final Map<Boolean, Font> fonts = new HashMap<>();
+
+    public CellStyleRegistry(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    /**
+     * 获取具有指定属性的样式，不存在时创建
+     * @param bold 字体是否加粗
+     * @param fillColor 背景色索引，NO_FILL表示不填充
+     * @param border 四周边框样式
+     * @param dataFormat 数字格式，null表示常规格式
+     */
+    public CellStyle getStyle(boolean bold, short fillColor, BorderStyle border, String dataFormat) {
+        StyleKey key = new StyleKey(bold, fillColor, border, dataFormat);
+        CellStyle style = styles.get(key);
+        if (style == null) {
+            style = createStyle(key);
+            styles.put(key, style);
+        }
+        return style;
+    }
+
+    /**
+     * 已创建的样式数量
+     */
+    public int size() {
+        return styles.size();
+    }
+
+    private CellStyle createStyle(StyleKey key) {
+        CellStyle style = workbook.createCellStyle();
+        if (key.bold) {
+            style.setFont(getFont(true));
+        }
+        if (key.fillColor != NO_FILL) {
+            style.setFillForegroundColor(key.fillColor);
+            style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        }
+        style.setBorderBottom(key.border);
+        style.setBorderTop(key.border);
+        style.setBorderLeft(key.border);
+        style.setBorderRight(key.border);
+        if (key.dataFormat != null) {
+            style.setDataFormat(workbook.createDataFormat().getFormat(key.dataFormat));
+        }
+        return style;
+    }
+
+    private Font getFont(boolean bold) {
+        Font font = fonts.get(bold);
+        if (font == null) {
+            font = workbook.createFont();
+            font.setBold(bold);
+            fonts.put(bold, font);
+        }
+        return font;
+    }
+
+    /**
+     * 样式属性组合，作为去重的键
+     */
+    private static final class StyleKey {
+        private final boolean bold;
+        private final short fillColor;
+        private final BorderStyle border;
+        private final String dataFormat;
+
+        StyleKey(boolean bold, short fillColor, BorderStyle border, String dataFormat) {
+            this.bold = bold;
+            this.fillColor = fillColor;
+            this.border = border;
+            this.dataFormat = dataFormat;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StyleKey)) {
+                return false;
+            }
+            StyleKey other = (StyleKey) o;
+            return bold == other.bold && fillColor == other.fillColor
+                    && border == other.border && Objects.equals(dataFormat, other.dataFormat);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bold, fillColor, border, dataFormat);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 变化事件合并器 - MVC架构中的Model层组件
+ * 批量操作期间收集变化事件，把相邻或重叠的范围合并成尽量少的事件
+ */
+class ChangeCoalescer {
+    // 事件过多时不再逐个跟踪，改为整体刷新
+    private static final int MAX_EVENTS = 64;
+
+    private final List<ModelChangeEvent> rowEvents = new ArrayList<>();
+    private boolean dataChanged;
+    private boolean headersChanged;
+    private boolean metadataChanged;
+
+    /**
+     * 记录一个事件，尽量与上一个行事件合并
+     */
+    void add(ModelChangeEvent event) {
+        switch (event.getType()) {
+            case METADATA_CHANGED:
+                metadataChanged = true;
+                return;
+            case HEADERS_CHANGED:
+                headersChanged = true;
+                return;
+            case DATA_CHANGED:
+                dataChanged = true;
+                rowEvents.clear();
+                return;
+            case BATCH:
+                for (ModelChangeEvent change : event.getChanges()) {
+                    add(change);
+                }
+                return;
+            default:
+                break;
+        }
+        if (dataChanged) {
+            return;
+        }
+        if (!rowEvents.isEmpty()) {
+            ModelChangeEvent last = rowEvents.get(rowEvents.size() - 1);
+            ModelChangeEvent merged = merge(last, event);
+            if (merged != null) {
+                rowEvents.set(rowEvents.size() - 1, merged);
+                if (isEmpty(merged)) {
+                    rowEvents.remove(rowEvents.size() - 1);
+                }
+                return;
+            }
+        }
+        if (rowEvents.size() == MAX_EVENTS) {
+            dataChanged = true;
+            rowEvents.clear();
+            return;
+        }
+        rowEvents.add(event);
+    }
+
+    /**
+     * 合并后的事件；只有一个事件时直接返回它，否则返回批量事件；没有变化时返回null
+     */
+    ModelChangeEvent result() {
+        List<ModelChangeEvent> changes = new ArrayList<>();
+        if (dataChanged) {
+            changes.add(ModelChangeEvent.dataChanged());
+        } else {
+            changes.addAll(rowEvents);
+            if (headersChanged) {
+                changes.add(ModelChangeEvent.headersChanged());
+            }
+        }
+        if (metadataChanged) {
+            changes.add(ModelChangeEvent.metadataChanged());
+        }
+        if (changes.isEmpty()) {
+            return null;
+        }
+        return changes.size() == 1 ? changes.get(0) : ModelChangeEvent.batch(changes);
+    }
+
+    /**
+     * 尝试合并两个相继发生的行事件，不能合并时返回null
+     */
+    private static ModelChangeEvent merge(ModelChangeEvent last, ModelChangeEvent next) {
+        ModelChangeEvent.Type lastType = last.getType();
+        ModelChangeEvent.Type nextType = next.getType();
+        int count = next.getLastRow() - next.getFirstRow() + 1;
+
+        if (lastType == ModelChangeEvent.Type.ROWS_INSERTED) {
+            boolean insideInserted = next.getFirstRow() >= last.getFirstRow() && next.getLastRow() <= last.getLastRow();
+            if (nextType == ModelChangeEvent.Type.ROWS_INSERTED
+                    && next.getFirstRow() >= last.getFirstRow() && next.getFirstRow() <= last.getLastRow() + 1) {
+                // 在刚插入的行块内部或紧接其后继续插入
+                return ModelChangeEvent.rowsInserted(last.getFirstRow(), last.getLastRow() + count);
+            }
+            if (nextType == ModelChangeEvent.Type.ROWS_UPDATED && insideInserted) {
+                // 新插入的行会整体读取，无需单独更新
+                return last;
+            }
+            if (nextType == ModelChangeEvent.Type.ROWS_DELETED && insideInserted) {
+                return ModelChangeEvent.rowsInserted(last.getFirstRow(), last.getLastRow() - count);
+            }
+            return null;
+        }
+
+        if (lastType == ModelChangeEvent.Type.ROWS_UPDATED && nextType == ModelChangeEvent.Type.ROWS_UPDATED
+                && next.getFirstRow() <= last.getLastRow() + 1 && next.getLastRow() >= last.getFirstRow() - 1) {
+            int first = Math.min(last.getFirstRow(), next.getFirstRow());
+            int lastRow = Math.max(last.getLastRow(), next.getLastRow());
+            if (first == lastRow && last.getColumn() == next.getColumn()
+                    && last.getColumn() != ModelChangeEvent.ALL_COLUMNS) {
+                return last;
+            }
+            return ModelChangeEvent.rowsUpdated(first, lastRow);
+        }
+
+        if (lastType == ModelChangeEvent.Type.ROWS_DELETED && nextType == ModelChangeEvent.Type.ROWS_DELETED) {
+            if (next.getFirstRow() == last.getFirstRow()) {
+                // 在同一位置连续删除，原来的行范围向后延伸
+                return ModelChangeEvent.rowsDeleted(last.getFirstRow(), last.getLastRow() + count);
+            }
+            if (next.getLastRow() + 1 == last.getFirstRow()) {
+                // 向上连续删除
+                return ModelChangeEvent.rowsDeleted(next.getFirstRow(), last.getLastRow());
+            }
+        }
+        return null;
+    }
+
+    private static boolean isEmpty(ModelChangeEvent event) {
+        return event.getLastRow() < event.getFirstRow();
+    }
+}
@@ -0,0 +1,370 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 列式存储中的一列 - MVC架构中的Model层组件
+ * 值按类型存放在基本类型数组中，空单元格记录在空值位图里
+ *
+ * 数组按固定行数分块，每块记录所属的纪元：生成快照时只复制块引用并进入新纪元，
+ * 之后写入旧纪元的块前先复制该块，快照因此与原列共享未修改的块
+ */
+abstract class Column {
+    // 超过2^53的整数无法用double精确表示
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    // 每块的行数，是64的倍数，位图按块对齐
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final AtomicInteger EPOCHS = new AtomicInteger();
+
+    protected int size;
+    protected long[][] nulls = new long[0][];
+    private int[] chunkCapacities = new int[0];
+    private int[] chunkEpochs = new int[0];
+    private int chunkCount;
+    private int epoch = EPOCHS.incrementAndGet();
+
+    /**
+     * 列的存储类型
+     */
+    abstract ColumnType getType();
+
+    /**
+     * 判断非空值能否在本列中无损存储
+     */
+    abstract boolean accepts(String value);
+
+    /**
+     * 将指定行的值格式化为文本（该行非空）
+     */
+    protected abstract String format(int row);
+
+    /**
+     * 存储指定行的非空值，调用前已确认accepts且所在块可写
+     */
+    protected abstract void store(int row, String value);
+
+    /**
+     * 把指定块的值数组换成容量为capacity的新数组（保留原有的值），必要时加长块数组
+     */
+    protected abstract void resizeChunk(int chunk, int capacity);
+
+    /**
+     * 删除块内index处的值，块内其后length之前的值前移
+     */
+    protected abstract void removeFromChunk(int chunk, int index, int length);
+
+    /**
+     * 把一个块中的值复制到另一个块的指定位置
+     */
+    protected abstract void copyValue(int fromChunk, int fromIndex, int toChunk, int toIndex);
+
+    /**
+     * 创建同类型的空列，并让它与本列共享当前所有的块
+     */
+    protected abstract Column shareChunks();
+
+    /**
+     * 值数组占用的字节数估算
+     */
+    protected abstract long valueMemoryBytes();
+
+    int size() {
+        return size;
+    }
+
+    boolean isNull(int row) {
+        return getBit(nulls[row >>> CHUNK_SHIFT], row & CHUNK_MASK);
+    }
+
+    /**
+     * 获取指定行的文本值，空单元格返回空字符串
+     */
+    String get(int row) {
+        return isNull(row) ? "" : format(row);
+    }
+
+    /**
+     * 设置指定行的值，空字符串记为空值
+     */
+    void set(int row, String value) {
+        int chunk = row >>> CHUNK_SHIFT;
+        prepareWrite(chunk);
+        if (value == null || value.isEmpty()) {
+            setBit(nulls[chunk], row & CHUNK_MASK, true);
+        } else {
+            setBit(nulls[chunk], row & CHUNK_MASK, false);
+            store(row, value);
+        }
+    }
+
+    /**
+     * 在末尾追加一个值
+     */
+    void add(String value) {
+        ensureCapacity(size + 1);
+        size++;
+        set(size - 1, value);
+    }
+
+    /**
+     * 删除指定行，其后各块的值依次前移
+     */
+    void remove(int row) {
+        int lastChunk = (size - 1) >>> CHUNK_SHIFT;
+        int index = row & CHUNK_MASK;
+        for (int chunk = row >>> CHUNK_SHIFT; chunk <= lastChunk; chunk++) {
+            prepareWrite(chunk);
+            int length = chunk == lastChunk ? ((size - 1) & CHUNK_MASK) + 1 : CHUNK_ROWS;
+            removeFromChunk(chunk, index, length);
+            removeBit(nulls[chunk], index, length);
+            if (chunk < lastChunk) {
+                // 下一块的第一个值移到本块末尾
+                copyValue(chunk + 1, 0, chunk, CHUNK_MASK);
+                setBit(nulls[chunk], CHUNK_MASK, getBit(nulls[chunk + 1], 0));
+            }
+            index = 0;
+        }
+        size--;
+    }
+
+    /**
+     * 生成只读快照：复制块引用，本列进入新纪元，之后写入时再复制被修改的块
+     */
+    Column snapshot() {
+        Column copy = shareChunks();
+        copy.size = size;
+        copy.nulls = Arrays.copyOf(nulls, chunkCount);
+        copy.chunkCapacities = Arrays.copyOf(chunkCapacities, chunkCount);
+        copy.chunkEpochs = Arrays.copyOf(chunkEpochs, chunkCount);
+        copy.chunkCount = chunkCount;
+        epoch = EPOCHS.incrementAndGet();
+        return copy;
+    }
+
+    /**
+     * 列中是否全部为空值
+     */
+    boolean isAllNull() {
+        for (int chunk = 0; chunk * CHUNK_ROWS < size; chunk++) {
+            long[] bits = nulls[chunk];
+            int length = Math.min(CHUNK_ROWS, size - chunk * CHUNK_ROWS);
+            int fullWords = length >>> 6;
+            for (int i = 0; i < fullWords; i++) {
+                if (bits[i] != -1L) {
+                    return false;
+                }
+            }
+            int rest = length & 63;
+            if (rest != 0 && (bits[fullWords] | -(1L << rest)) != -1L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 转换为另一种类型的列，目标类型无法无损容纳全部值时转换为文本列
+     */
+    Column convertTo(ColumnType type) {
+        Column converted = create(type, size);
+        for (int row = 0; row < size; row++) {
+            String value = get(row);
+            if (!value.isEmpty() && !converted.accepts(value)) {
+                return convertTo(ColumnType.STRING);
+            }
+            converted.add(value);
+        }
+        return converted;
+    }
+
+    /**
+     * 估算本列占用的字节数
+     */
+    long estimateMemoryBytes() {
+        long bytes = 48 + 12L * chunkCapacities.length;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            bytes += 16 + 8L * nulls[chunk].length;
+        }
+        return bytes + valueMemoryBytes();
+    }
+
+    /**
+     * 保证至少能容纳capacity行；末块按需增长，写满后再分配下一块
+     */
+    protected void ensureCapacity(int capacity) {
+        if (capacity <= 0) {
+            return;
+        }
+        int lastChunk = (capacity - 1) >>> CHUNK_SHIFT;
+        // 除最后一块外已分配的块总是满容量，从最后一块开始检查，逐行追加时代价不随行数增长
+        for (int chunk = Math.max(0, chunkCount - 1); chunk <= lastChunk; chunk++) {
+            int needed = chunk < lastChunk ? CHUNK_ROWS : ((capacity - 1) & CHUNK_MASK) + 1;
+            if (chunk >= chunkCount) {
+                allocateChunk(chunk, needed);
+            } else if (chunkCapacities[chunk] < needed) {
+                allocateChunk(chunk, Math.min(CHUNK_ROWS, grownLength(chunkCapacities[chunk], needed)));
+            }
+        }
+    }
+
+    /**
+     * 写入前确保块属于当前纪元，与快照共享的块先复制一份
+     */
+    protected final void prepareWrite(int chunk) {
+        if (chunkEpochs[chunk] != epoch) {
+            allocateChunk(chunk, chunkCapacities[chunk]);
+        }
+    }
+
+    /**
+     * 为块分配新数组（保留原有的值），新数组属于当前纪元
+     */
+    private void allocateChunk(int chunk, int capacity) {
+        if (chunk >= chunkCapacities.length) {
+            int length = Math.max(chunk + 1, chunkCapacities.length * 2);
+            nulls = Arrays.copyOf(nulls, length);
+            chunkCapacities = Arrays.copyOf(chunkCapacities, length);
+            chunkEpochs = Arrays.copyOf(chunkEpochs, length);
+        }
+        int words = (capacity + 63) >>> 6;
+        nulls[chunk] = nulls[chunk] == null ? new long[words] : Arrays.copyOf(nulls[chunk], words);
+        resizeChunk(chunk, capacity);
+        chunkCapacities[chunk] = capacity;
+        chunkEpochs[chunk] = epoch;
+        chunkCount = Math.max(chunkCount, chunk + 1);
+    }
+
+    /**
+     * 创建指定类型的空列
+     */
+    static Column create(ColumnType type, int capacity) {
+        Column column;
+        switch (type) {
+            case LONG:
+                column = new LongColumn();
+                break;
+            case DOUBLE:
+                column = new DoubleColumn();
+                break;
+            case BOOLEAN:
+                column = new BooleanColumn();
+                break;
+            default:
+                column = new StringColumn();
+                break;
+        }
+        column.ensureCapacity(capacity);
+        return column;
+    }
+
+    /**
+     * 能无损存储该非空值的最紧凑类型
+     */
+    static ColumnType classify(String value) {
+        if (isLongText(value)) {
+            return ColumnType.LONG;
+        }
+        if (isDecimalText(value)) {
+            return ColumnType.DOUBLE;
+        }
+        if ("true".equals(value) || "false".equals(value)) {
+            return ColumnType.BOOLEAN;
+        }
+        return ColumnType.STRING;
+    }
+
+    /**
+     * 能同时容纳两种类型的值的类型
+     */
+    static ColumnType widen(ColumnType a, ColumnType b) {
+        if (a == null || a == b) {
+            return b;
+        }
+        if ((a == ColumnType.LONG && b == ColumnType.DOUBLE) || (a == ColumnType.DOUBLE && b == ColumnType.LONG)) {
+            return ColumnType.DOUBLE;
+        }
+        return ColumnType.STRING;
+    }
+
+    /**
+     * 是否为规范的整数文本（可与long互相转换而不改变文本）
+     */
+    static boolean isLongText(String value) {
+        int length = value.length();
+        int start = value.charAt(0) == '-' ? 1 : 0;
+        int digits = length - start;
+        if (digits < 1 || digits > 18) {
+            return false;
+        }
+        if (value.charAt(start) == '0' && (digits > 1 || start == 1)) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否为可用double精确表示的整数文本
+     */
+    static boolean isExactDoubleLong(String value) {
+        if (!isLongText(value)) {
+            return false;
+        }
+        long parsed = Long.parseLong(value);
+        return parsed <= MAX_EXACT_DOUBLE && parsed >= -MAX_EXACT_DOUBLE;
+    }
+
+    /**
+     * 是否为与String.valueOf(double)结果一致的小数文本
+     */
+    static boolean isDecimalText(String value) {
+        char first = value.charAt(0);
+        if ((first < '0' || first > '9') && first != '-') {
+            return false;
+        }
+        try {
+            return String.valueOf(Double.parseDouble(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        } else {
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * 从位图中删除一位，后面的位前移；size之后的位保持为0
+     */
+    static void removeBit(long[] bits, int index, int size) {
+        int word = index >>> 6;
+        long below = (1L << index) - 1;
+        long current = bits[word];
+        bits[word] = (current & below) | ((current >>> 1) & ~below);
+        int lastWord = (size - 1) >>> 6;
+        for (int i = word; i < lastWord; i++) {
+            bits[i] |= (bits[i + 1] & 1L) << 63;
+            bits[i + 1] >>>= 1;
+        }
+    }
+
+    static int grownLength(int currentLength, int capacity) {
+        return Math.max(capacity, currentLength + (currentLength >> 1) + 16);
+    }
+}
@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * 列存储类型 - MVC架构中的Model层组件
+ * 列式存储根据列中的值选择最紧凑的类型
+ */
+public enum ColumnType {
+    /** 整数，存储为long[] */
+    LONG,
+    /** 小数，存储为double[] */
+    DOUBLE,
+    /** 布尔值，存储为位图 */
+    BOOLEAN,
+    /** 文本，字典编码 */
+    STRING
+}
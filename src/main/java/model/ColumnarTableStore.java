@@ -0,0 +1,241 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 列式表格存储 - MVC架构中的Model层组件
+ * 每列按类型存放在基本类型数组或字典编码的文本列中，另记录每行的原始宽度，
+ * 一个单元格通常只占几个字节，按列扫描时访问连续内存
+ */
+class ColumnarTableStore implements TableStore {
+    private final List<Column> columns = new ArrayList<>();
+    private LongColumn rowWidths = new LongColumn();
+    private int rowCount;
+
+    /**
+     * 由行数据批量构建，先扫描每列推断类型，避免逐行写入时反复升级列类型
+     */
+    static ColumnarTableStore fromRows(List<List<String>> rows) {
+        ColumnarTableStore store = new ColumnarTableStore();
+        int width = 0;
+        for (List<String> row : rows) {
+            store.rowWidths.addLong(row.size());
+            width = Math.max(width, row.size());
+        }
+        store.rowCount = rows.size();
+
+        for (int c = 0; c < width; c++) {
+            ColumnType type = inferType(rows, c);
+            store.columns.add(Column.create(type != null ? type : ColumnType.STRING, rows.size()));
+            for (List<String> row : rows) {
+                String value = c < row.size() ? row.get(c) : "";
+                store.acceptingColumn(c, value).add(value);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * 由已构建好的列组装，各列的行数都应为rowCount
+     */
+    static ColumnarTableStore fromColumns(List<Column> columns, LongColumn rowWidths, int rowCount) {
+        ColumnarTableStore store = new ColumnarTableStore();
+        store.columns.addAll(columns);
+        store.rowWidths = rowWidths;
+        store.rowCount = rowCount;
+        return store;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String getValue(int rowIndex, int columnIndex) {
+        checkRow(rowIndex);
+        if (columnIndex >= getRowWidth(rowIndex)) {
+            return "";
+        }
+        return columns.get(columnIndex).get(rowIndex);
+    }
+
+    @Override
+    public List<String> getRow(int rowIndex) {
+        int width = getRowWidth(rowIndex);
+        List<String> row = new ArrayList<>(width);
+        for (int c = 0; c < width; c++) {
+            row.add(columns.get(c).get(rowIndex));
+        }
+        return row;
+    }
+
+    @Override
+    public void addRow(List<String> rowData) {
+        ensureColumns(rowData.size());
+        rowWidths.addLong(rowData.size());
+        for (int c = 0; c < columns.size(); c++) {
+            String value = c < rowData.size() ? rowData.get(c) : "";
+            acceptingColumn(c, value).add(value);
+        }
+        rowCount++;
+    }
+
+    /**
+     * 本批数据中新出现的列先按这批数据推断类型，导入时第一批行即作为样本，
+     * 之后逐行追加不必先建成整数列再整列转换
+     */
+    @Override
+    public void addRows(List<List<String>> rows) {
+        int width = 0;
+        for (List<String> row : rows) {
+            width = Math.max(width, row.size());
+        }
+        for (int c = columns.size(); c < width; c++) {
+            ColumnType type = inferType(rows, c);
+            Column column = Column.create(type != null ? type : ColumnType.LONG, rowCount + rows.size());
+            for (int r = 0; r < rowCount; r++) {
+                column.add("");
+            }
+            columns.add(column);
+        }
+        for (List<String> row : rows) {
+            addRow(row);
+        }
+    }
+
+    @Override
+    public void setRow(int rowIndex, List<String> rowData) {
+        checkRow(rowIndex);
+        ensureColumns(rowData.size());
+        rowWidths.setLong(rowIndex, rowData.size());
+        for (int c = 0; c < columns.size(); c++) {
+            String value = c < rowData.size() ? rowData.get(c) : "";
+            acceptingColumn(c, value).set(rowIndex, value);
+        }
+    }
+
+    @Override
+    public void setValue(int rowIndex, int columnIndex, String value) {
+        checkRow(rowIndex);
+        ensureColumns(columnIndex + 1);
+        if (columnIndex >= getRowWidth(rowIndex)) {
+            rowWidths.setLong(rowIndex, columnIndex + 1);
+        }
+        acceptingColumn(columnIndex, value).set(rowIndex, value);
+    }
+
+    @Override
+    public void removeRow(int rowIndex) {
+        checkRow(rowIndex);
+        for (Column column : columns) {
+            column.remove(rowIndex);
+        }
+        rowWidths.remove(rowIndex);
+        rowCount--;
+    }
+
+    @Override
+    public void clear() {
+        columns.clear();
+        rowWidths = new LongColumn();
+        rowCount = 0;
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        long bytes = 64 + rowWidths.estimateMemoryBytes();
+        for (Column column : columns) {
+            bytes += column.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 快照复制每列的块引用，代价与块数成正比，之后的修改只复制被修改的块
+     */
+    @Override
+    public TableStore snapshot() {
+        ColumnarTableStore copy = new ColumnarTableStore();
+        for (Column column : columns) {
+            copy.columns.add(column.snapshot());
+        }
+        copy.rowWidths = (LongColumn) rowWidths.snapshot();
+        copy.rowCount = rowCount;
+        return copy;
+    }
+
+    /**
+     * 获取指定列，供按列计算使用
+     */
+    Column getColumn(int columnIndex) {
+        return columns.get(columnIndex);
+    }
+
+    /**
+     * 获取指定行的原始宽度
+     */
+    int getRowWidth(int rowIndex) {
+        checkRow(rowIndex);
+        return (int) rowWidths.getLong(rowIndex);
+    }
+
+    /**
+     * 能容纳各行中指定列的全部非空值的类型，没有非空值时返回null
+     */
+    private static ColumnType inferType(List<List<String>> rows, int columnIndex) {
+        ColumnType type = null;
+        for (List<String> row : rows) {
+            if (columnIndex < row.size() && !row.get(columnIndex).isEmpty()) {
+                type = Column.widen(type, Column.classify(row.get(columnIndex)));
+                if (type == ColumnType.STRING) {
+                    break;
+                }
+            }
+        }
+        return type;
+    }
+
+    /**
+     * 补足列数，新列对已有行均为空值
+     */
+    private void ensureColumns(int width) {
+        while (columns.size() < width) {
+            Column column = Column.create(ColumnType.LONG, rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                column.add("");
+            }
+            columns.add(column);
+        }
+    }
+
+    /**
+     * 返回能容纳该值的列，必要时把列升级为更宽的类型
+     */
+    private Column acceptingColumn(int columnIndex, String value) {
+        Column column = columns.get(columnIndex);
+        if (value == null || value.isEmpty() || column.accepts(value)) {
+            return column;
+        }
+        ColumnType valueType = Column.classify(value);
+        ColumnType type = column.isAllNull() ? valueType : Column.widen(column.getType(), valueType);
+        Column converted = column.convertTo(type);
+        if (!converted.accepts(value)) {
+            converted = converted.convertTo(ColumnType.STRING);
+        }
+        columns.set(columnIndex, converted);
+        return converted;
+    }
+
+    private void checkRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= rowCount) {
+            throw new IndexOutOfBoundsException("行索引越界: " + rowIndex);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * CSV/TSV文件访问类 - MVC架构中的Model层组件
+ * 与ExcelDataAccess对应，负责文本表格文件的读取和写入；
+ * 扩展名为.tsv时以制表符分隔，否则以逗号分隔
+ */
+public class CsvDataAccess {
+    // 检测编码时最多检查的字节数
+    private static final int DETECT_BYTES = 64 * 1024;
+    private static final Charset GB18030 = Charset.forName("GB18030");
+
+    private Charset writeCharset = StandardCharsets.UTF_8;
+    private boolean writeBom = true;
+
+    /**
+     * 判断文件是否为CSV或TSV文件
+     */
+    public static boolean isCsvFile(String filePath) {
+        String lower = filePath.toLowerCase();
+        return lower.endsWith(".csv") || lower.endsWith(".tsv");
+    }
+
+    /**
+     * 根据扩展名确定分隔符
+     */
+    public static char delimiterFor(String filePath) {
+        return filePath.toLowerCase().endsWith(".tsv") ? '\t' : ',';
+    }
+
+    /**
+     * 不含扩展名的文件名，作为唯一工作表的名称
+     */
+    public static String baseName(String filePath) {
+        String name = Paths.get(filePath).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * 流式读取CSV/TSV文件，逐行回调处理器
+     * 第一行作为表头回调，其余非空行作为数据行回调；编码由detectCharset自动识别
+     * @param filePath 文件路径
+     * @param handler 行处理器
+     * @throws IOException 文件操作异常
+     */
+    public void readCsv(String filePath, RowHandler handler) throws IOException {
+        FileMetrics metrics = handler.getMetrics();
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            ByteBuffer head = readHead(channel);
+            int bomLength = bomLength(head);
+            Charset charset = detectCharset(head);
+            channel.position(bomLength);
+            // 打开文件和识别编码计入文件打开阶段，其余计入解析阶段
+            long opened = System.nanoTime();
+            PerformanceMetrics.record(metrics, MetricsPhase.FILE_OPEN, opened - start);
+            start = opened;
+            handler.startSheet(baseName(filePath));
+            new CsvReader(channel, delimiterFor(filePath), charset, handler).read();
+            PerformanceMetrics.record(metrics, MetricsPhase.PARSE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 检测文件编码：有BOM时按BOM，否则开头部分是合法UTF-8时为UTF-8，再否则按GB18030
+     * @param filePath 文件路径
+     * @return 文件编码
+     * @throws IOException 文件操作异常
+     */
+    public Charset detectCharset(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            return detectCharset(readHead(channel));
+        }
+    }
+
+    /**
+     * 打开逐行写入的CSV/TSV写入器，先写入表头，写入器关闭时完成文件
+     * @param filePath 目标文件路径
+     * @param headers 表头数据
+     * @return CSV写入器
+     * @throws IOException 文件操作异常
+     */
+    public CsvWriter openCsvWriter(String filePath, List<String> headers) throws IOException {
+        CsvWriter writer = new CsvWriter(filePath, delimiterFor(filePath), writeCharset, writeBom);
+        try {
+            writer.writeRow(headers);
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    /**
+     * 将数据写入CSV/TSV文件
+     * @param filePath 目标文件路径
+     * @param headers 表头数据
+     * @param data 表格数据
+     * @throws IOException 文件操作异常
+     */
+    public void writeCsv(String filePath, List<String> headers, List<List<String>> data) throws IOException {
+        try (CsvWriter writer = openCsvWriter(filePath, headers)) {
+            for (List<String> row : data) {
+                writer.writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * 设置写入时使用的编码
+     */
+    public void setWriteCharset(Charset writeCharset) {
+        this.writeCharset = writeCharset;
+    }
+
+    /**
+     * 获取写入时使用的编码
+     */
+    public Charset getWriteCharset() {
+        return writeCharset;
+    }
+
+    /**
+     * 设置以UTF-8或UTF-16写入时是否在文件开头写入BOM
+     */
+    public void setWriteBom(boolean writeBom) {
+        this.writeBom = writeBom;
+    }
+
+    /**
+     * 以UTF-8或UTF-16写入时是否在文件开头写入BOM
+     */
+    public boolean isWriteBom() {
+        return writeBom;
+    }
+
+    private static ByteBuffer readHead(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(DETECT_BYTES, channel.size()));
+        while (head.hasRemaining() && channel.read(head) >= 0) {
+            // 读满为止
+        }
+        head.flip();
+        return head;
+    }
+
+    private static int bomLength(ByteBuffer head) {
+        if (startsWith(head, 0xEF, 0xBB, 0xBF)) {
+            return 3;
+        }
+        if (startsWith(head, 0xFF, 0xFE) || startsWith(head, 0xFE, 0xFF)) {
+            return 2;
+        }
+        return 0;
+    }
+
+    private static Charset detectCharset(ByteBuffer head) {
+        if (startsWith(head, 0xEF, 0xBB, 0xBF)) {
+            return StandardCharsets.UTF_8;
+        }
+        if (startsWith(head, 0xFF, 0xFE)) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (startsWith(head, 0xFE, 0xFF)) {
+            return StandardCharsets.UTF_16BE;
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            // 不当作输入结尾，截断在多字节字符中间不算错误
+            CoderResult result = decoder.decode(head.duplicate(),
+                    CharBuffer.allocate(head.remaining()), false);
+            if (result.isError()) {
+                result.throwException();
+            }
+            return StandardCharsets.UTF_8;
+        } catch (CharacterCodingException e) {
+            return GB18030;
+        }
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int... prefix) {
+        if (buffer.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((buffer.get(buffer.position() + i) & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
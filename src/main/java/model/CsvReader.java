@@ -0,0 +1,206 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV解析器 - MVC架构中的Model层组件
+ * 从FileChannel按块读入直接缓冲区，解码后在字符数组上用状态机切分字段；
+ * 支持引号包围的字段（含分隔符、换行和""转义）以及CR、LF、CRLF换行，
+ * 完全位于缓冲区内的未加引号字段直接在字符数组上查去重表，同一列中已出现过的文本不再创建字符串
+ */
+class CsvReader {
+    private static final int BUFFER_BYTES = 1 << 20;
+    // 每读取这么多行报告一次进度
+    private static final int PROGRESS_INTERVAL = 1024;
+
+    private final FileChannel channel;
+    private final char delimiter;
+    private final CharsetDecoder decoder;
+    private final RowHandler handler;
+    private final long fileSize;
+
+    // 解析状态，跨缓冲区保持
+    private final StringBuilder field = new StringBuilder();
+    private final StringInterner interner = new StringInterner();
+    private String directField;
+    private boolean inQuotes;
+    private boolean quoted;
+    private boolean pendingQuote;
+    private boolean afterCR;
+    private List<String> row = new ArrayList<>();
+    private boolean headersDone;
+    private int dataRowIndex;
+    private long cellCount;
+    private boolean stopped;
+    private boolean estimated;
+    private long bytesConsumed;
+
+    CsvReader(FileChannel channel, char delimiter, Charset charset, RowHandler handler) throws IOException {
+        this.channel = channel;
+        this.delimiter = delimiter;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.handler = handler;
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * 从通道当前位置读到文件末尾
+     */
+    void read() throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_BYTES);
+        boolean eof = false;
+        while (!eof && !stopped) {
+            eof = channel.read(bytes) < 0;
+            bytes.flip();
+            int before = bytes.remaining();
+            decoder.decode(bytes, chars, eof);
+            if (eof) {
+                decoder.flush(chars);
+            }
+            bytesConsumed += before - bytes.remaining();
+            bytes.compact();
+            chars.flip();
+            parse(chars.array(), chars.arrayOffset() + chars.position(), chars.arrayOffset() + chars.limit());
+            chars.clear();
+            if (!estimated && !eof && dataRowIndex > 0) {
+                // 按第一块的平均行长估计总行数
+                estimated = true;
+                handler.handleEstimatedRowCount((int) Math.min(Integer.MAX_VALUE,
+                        fileSize * (double) dataRowIndex / bytesConsumed));
+            }
+        }
+        if (!stopped) {
+            finish();
+        }
+        handler.handleDeduplication(interner.getLookups(), interner.getReused());
+        // 文本字段无需转换，只计单元格数
+        PerformanceMetrics.addCells(handler.getMetrics(), cellCount);
+        PerformanceMetrics.addRows(handler.getMetrics(), dataRowIndex);
+        handler.handleProgress(dataRowIndex, bytesConsumed);
+    }
+
+    private void parse(char[] a, int start, int limit) {
+        int i = start;
+        if (pendingQuote && i < limit) {
+            // 上一块以引号结尾，由本块第一个字符决定是转义还是结束引号
+            pendingQuote = false;
+            if (a[i] == '"') {
+                field.append('"');
+                i++;
+            } else {
+                inQuotes = false;
+            }
+        }
+        while (i < limit && !stopped) {
+            if (inQuotes) {
+                int q = i;
+                while (q < limit && a[q] != '"') {
+                    q++;
+                }
+                field.append(a, i, q - i);
+                if (q == limit) {
+                    return;
+                }
+                if (q + 1 == limit) {
+                    pendingQuote = true;
+                    return;
+                }
+                if (a[q + 1] == '"') {
+                    field.append('"');
+                    i = q + 2;
+                } else {
+                    inQuotes = false;
+                    i = q + 1;
+                }
+                continue;
+            }
+
+            char c = a[i];
+            if (c == '\n' && afterCR) {
+                afterCR = false;
+                i++;
+                continue;
+            }
+            afterCR = false;
+            if (c == delimiter) {
+                row.add(takeField());
+                i++;
+            } else if (c == '\r' || c == '\n') {
+                endLine();
+                afterCR = c == '\r';
+                i++;
+            } else if (c == '"' && field.length() == 0 && !quoted) {
+                inQuotes = true;
+                quoted = true;
+                i++;
+            } else {
+                int j = i + 1;
+                while (j < limit && (c = a[j]) != delimiter && c != '\r' && c != '\n') {
+                    j++;
+                }
+                if (j < limit && field.length() == 0 && !quoted) {
+                    // 整个字段都在缓冲区内
+                    directField = interner.intern(row.size(), a, i, j);
+                } else {
+                    field.append(a, i, j - i);
+                }
+                i = j;
+            }
+        }
+    }
+
+    private String takeField() {
+        String value = directField != null ? directField : interner.intern(row.size(), field.toString());
+        directField = null;
+        field.setLength(0);
+        quoted = false;
+        return value;
+    }
+
+    /**
+     * 一行结束；完全空白的行跳过
+     */
+    private void endLine() {
+        if (row.isEmpty() && directField == null && field.length() == 0 && !quoted) {
+            return;
+        }
+        row.add(takeField());
+        List<String> completed = row;
+        row = new ArrayList<>(completed.size());
+        if (!headersDone) {
+            headersDone = true;
+            handler.handleHeaders(completed);
+            return;
+        }
+        cellCount += completed.size();
+        handler.handleRow(dataRowIndex++, completed);
+        if (dataRowIndex % PROGRESS_INTERVAL == 0) {
+            handler.handleProgress(dataRowIndex, bytesConsumed);
+        }
+        if (handler.isCancelled()) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * 文件结束：最后一行可能没有换行符
+     */
+    private void finish() {
+        if (pendingQuote) {
+            pendingQuote = false;
+            inQuotes = false;
+        }
+        endLine();
+    }
+}
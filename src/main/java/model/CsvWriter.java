@@ -0,0 +1,153 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * CSV逐行写入器 - MVC架构中的Model层组件
+ * 字段直接追加到字符缓冲区，满了才编码进直接缓冲区写入FileChannel，
+ * 不为每行拼接字符串；含分隔符、引号或换行的字段加引号并把引号写成两个
+ */
+public class CsvWriter implements RowWriter {
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final FileChannel channel;
+    private final char delimiter;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_CHARS);
+    private final ByteBuffer bytes;
+    private boolean closed;
+
+    CsvWriter(String filePath, char delimiter, Charset charset, boolean writeBom) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.delimiter = delimiter;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocateDirect((int) (BUFFER_CHARS * encoder.maxBytesPerChar()) + 16);
+        if (writeBom && (StandardCharsets.UTF_8.equals(charset)
+                || StandardCharsets.UTF_16LE.equals(charset) || StandardCharsets.UTF_16BE.equals(charset))) {
+            // Excel靠BOM识别Unicode编码，否则中文会显示为乱码；由编码器按字节序写出
+            chars.put('\uFEFF');
+        }
+    }
+
+    /**
+     * 写入一行数据
+     */
+    @Override
+    public void writeRow(List<String> rowData) throws IOException {
+        for (int i = 0; i < rowData.size(); i++) {
+            if (i > 0) {
+                put(delimiter);
+            }
+            String value = rowData.get(i);
+            if (value != null && !value.isEmpty()) {
+                writeField(value);
+            }
+        }
+        put('\r');
+        put('\n');
+    }
+
+    private void writeField(String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == delimiter || c == '"' || c == '\r' || c == '\n') {
+                needsQuotes = true;
+                break;
+            }
+        }
+        if (!needsQuotes) {
+            putString(value);
+            return;
+        }
+        put('"');
+        int start = 0;
+        int quote;
+        while ((quote = value.indexOf('"', start)) >= 0) {
+            putString(value.substring(start, quote + 1));
+            put('"');
+            start = quote + 1;
+        }
+        putString(value.substring(start));
+        put('"');
+    }
+
+    private void put(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            flushChars(false);
+        }
+        chars.put(c);
+    }
+
+    private void putString(String s) throws IOException {
+        int offset = 0;
+        while (offset < s.length()) {
+            if (!chars.hasRemaining()) {
+                flushChars(false);
+            }
+            int n = Math.min(chars.remaining(), s.length() - offset);
+            chars.put(s, offset, offset + n);
+            offset += n;
+        }
+    }
+
+    /**
+     * 把字符缓冲区编码后写入文件
+     */
+    private void flushChars(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            drainBytes();
+            if (!result.isOverflow()) {
+                break;
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                drainBytes();
+            }
+            drainBytes();
+        }
+        // 未编码完的代理对前半部分留到下次
+        chars.compact();
+    }
+
+    private void drainBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * 写出缓冲区中剩余的内容并关闭文件
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushChars(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
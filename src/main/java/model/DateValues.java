@@ -0,0 +1,64 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * 日期文本解析工具 - MVC架构中的Model层组件
+ * 识别导入时生成的日期文本以及常见的年月日格式，线程安全
+ */
+final class DateValues {
+    /** 无法解析为日期 */
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter DATE_TIME_DASH = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_DASH = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter DATE_TIME_SLASH = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_SLASH = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    // java.util.Date.toString()的格式，导入日期单元格时也用它输出
+    static final DateTimeFormatter JAVA_DATE =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+
+    private DateValues() {
+    }
+
+    /**
+     * 将文本解析为毫秒时间戳（按系统默认时区）
+     * @return 时间戳，无法解析时返回INVALID
+     */
+    static long parseMillis(String value) {
+        int length = value.length();
+        if (length < 10) {
+            return INVALID;
+        }
+        try {
+            char separator = value.charAt(4);
+            if (separator == '-' || separator == '/') {
+                boolean dash = separator == '-';
+                if (length == 10) {
+                    LocalDate date = LocalDate.parse(value, dash ? DATE_DASH : DATE_SLASH);
+                    return toMillis(date.atStartOfDay());
+                }
+                if (length == 19) {
+                    return toMillis(LocalDateTime.parse(value, dash ? DATE_TIME_DASH : DATE_TIME_SLASH));
+                }
+                return INVALID;
+            }
+            if (length >= 28 && value.charAt(3) == ' ') {
+                return ZonedDateTime.parse(value, JAVA_DATE).toInstant().toEpochMilli();
+            }
+        } catch (DateTimeParseException e) {
+            return INVALID;
+        }
+        return INVALID;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,106 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 小数列 - MVC架构中的Model层组件
+ * 值按块存放在double[]中，另用位图记录哪些值原本是整数文本，以便原样还原
+ */
+class DoubleColumn extends Column {
+    private double[][] values = new double[0][];
+    private long[][] integral = new long[0][];
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.DOUBLE;
+    }
+
+    @Override
+    boolean accepts(String value) {
+        return isExactDoubleLong(value) || isDecimalText(value);
+    }
+
+    /**
+     * 获取指定行的数值（该行非空）
+     */
+    double getDouble(int row) {
+        return values[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * 在末尾追加一个数值
+     * @param integral 该值原本是否为整数文本
+     */
+    void addDouble(double value, boolean integral) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        int chunk = row >>> CHUNK_SHIFT;
+        prepareWrite(chunk);
+        setBit(nulls[chunk], row & CHUNK_MASK, false);
+        values[chunk][row & CHUNK_MASK] = value;
+        setBit(this.integral[chunk], row & CHUNK_MASK, integral);
+    }
+
+    /**
+     * 指定行的值原本是否为整数文本（该行非空）
+     */
+    boolean isIntegral(int row) {
+        return getBit(integral[row >>> CHUNK_SHIFT], row & CHUNK_MASK);
+    }
+
+    @Override
+    protected String format(int row) {
+        double value = getDouble(row);
+        return getBit(integral[row >>> CHUNK_SHIFT], row & CHUNK_MASK) ? Long.toString((long) value) : String.valueOf(value);
+    }
+
+    @Override
+    protected void store(int row, String value) {
+        boolean isInteger = isLongText(value);
+        values[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = isInteger ? Long.parseLong(value) : Double.parseDouble(value);
+        setBit(integral[row >>> CHUNK_SHIFT], row & CHUNK_MASK, isInteger);
+    }
+
+    @Override
+    protected void resizeChunk(int chunk, int capacity) {
+        if (chunk >= values.length) {
+            int length = Math.max(chunk + 1, values.length * 2);
+            values = Arrays.copyOf(values, length);
+            integral = Arrays.copyOf(integral, length);
+        }
+        int words = (capacity + 63) >>> 6;
+        values[chunk] = values[chunk] == null ? new double[capacity] : Arrays.copyOf(values[chunk], capacity);
+        integral[chunk] = integral[chunk] == null ? new long[words] : Arrays.copyOf(integral[chunk], words);
+    }
+
+    @Override
+    protected void removeFromChunk(int chunk, int index, int length) {
+        System.arraycopy(values[chunk], index + 1, values[chunk], index, length - index - 1);
+        removeBit(integral[chunk], index, length);
+    }
+
+    @Override
+    protected void copyValue(int fromChunk, int fromIndex, int toChunk, int toIndex) {
+        values[toChunk][toIndex] = values[fromChunk][fromIndex];
+        setBit(integral[toChunk], toIndex, getBit(integral[fromChunk], fromIndex));
+    }
+
+    @Override
+    protected Column shareChunks() {
+        DoubleColumn copy = new DoubleColumn();
+        copy.values = values.clone();
+        copy.integral = integral.clone();
+        return copy;
+    }
+
+    @Override
+    protected long valueMemoryBytes() {
+        long bytes = 32 + 16L * values.length;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                bytes += 32 + 8L * values[i].length + 8L * integral[i].length;
+            }
+        }
+        return bytes;
+    }
+}
@@ -1,21 +1,27 @@
 package model;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Excel数据访问类 - MVC架构中的Model层组件
  * 负责Excel文件的读取和写入操作，实现数据持久化
  */
 public class ExcelDataAccess {
+    /** 默认的流式写入阈值（数据行数） */
+    public static final int DEFAULT_STREAMING_THRESHOLD = 10000;
+    /** 默认的流式写入窗口行数 */
+    public static final int DEFAULT_STREAMING_WINDOW_SIZE = 100;
+
+    private int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+    private int streamingWindowSize = DEFAULT_STREAMING_WINDOW_SIZE;
+    private boolean compressTempFiles = true;
+    private final Map<Integer, String> columnFormats = new HashMap<>();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private final WorkbookCache workbookCache = new WorkbookCache();
 
     /**
      * 从Excel文件读取数据
@@ -24,148 +30,191 @@ public class ExcelDataAccess {
      * @throws IOException 文件操作异常
      */
     public Object[] readExcel(String filePath) throws IOException {
-        List<String> headers = new ArrayList<>();
-        List<List<String>> data = new ArrayList<>();
-
-        try (FileInputStream fis = new FileInputStream(new File(filePath));
-             Workbook workbook = new XSSFWorkbook(fis)) {
+        final List<String> headers = new ArrayList<>();
+        final List<List<String>> data = new ArrayList<>();
 
-            // 获取第一个工作表
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet == null) {
-                return new Object[]{headers, data};
+        readExcel(filePath, new RowHandler() {
+            @Override
+            public void handleHeaders(List<String> headerRow) {
+                headers.addAll(headerRow);
             }
 
-            Iterator<Row> rowIterator = sheet.iterator();
-            boolean isFirstRow = true;
-
-            while (rowIterator.hasNext()) {
-                Row row = rowIterator.next();
-                List<String> rowData = new ArrayList<>();
-
-                // 获取当前行的最大列数
-                int lastCellNum = row.getLastCellNum();
-                
-                for (int cellIndex = 0; cellIndex < lastCellNum; cellIndex++) {
-                    Cell cell = row.getCell(cellIndex, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                    String cellValue = getCellValueAsString(cell);
-                    
-                    if (isFirstRow) {
-                        // 第一行作为表头
-                        headers.add(cellValue);
-                    } else {
-                        rowData.add(cellValue);
-                    }
-                }
-
-                if (!isFirstRow && !rowData.isEmpty()) {
-                    data.add(rowData);
-                }
-                isFirstRow = false;
+            @Override
+            public void handleRow(int rowIndex, List<String> rowData) {
+                data.add(rowData);
             }
-        }
+        });
 
         return new Object[]{headers, data};
     }
 
+    /**
+     * 流式读取Excel文件的第一个工作表，逐行回调处理器
+     * 基于SAX事件解析，内存占用与文件大小无关
+     * @param filePath Excel文件路径
+     * @param handler 行处理器，第一行作为表头回调，其余非空行作为数据行回调
+     * @throws IOException 文件操作异常
+     */
+    public void readExcel(String filePath, RowHandler handler) throws IOException {
+        try (XlsxWorkbookReader reader = openTimed(filePath, handler.getMetrics())) {
+            reader.readSheet(0, handler);
+        }
+    }
+
+    /**
+     * 读取工作簿中所有工作表的名称
+     * @param filePath Excel文件路径
+     * @return 按工作簿顺序排列的工作表名称
+     * @throws IOException 文件操作异常
+     */
+    public List<String> readSheetNames(String filePath) throws IOException {
+        try (XlsxWorkbookReader reader = XlsxWorkbookReader.open(filePath)) {
+            return reader.getSheetNames();
+        }
+    }
+
+    /**
+     * 流式读取工作簿中的所有工作表，各工作表在有界的ForkJoin线程池中并行解析
+     * 总耗时接近最大的工作表，而不是所有工作表之和
+     * @param filePath Excel文件路径
+     * @param factory 为每个工作表创建行处理器，处理器会在不同线程中被回调
+     * @throws IOException 文件操作异常
+     */
+    public void readWorkbook(String filePath, SheetHandlerFactory factory) throws IOException {
+        try (XlsxWorkbookReader reader = openTimed(filePath, factory.getMetrics())) {
+            reader.readAllSheets(factory, parallelism);
+        }
+    }
+
+    /**
+     * 打开工作簿（含共享字符串表和样式表），耗时计入文件打开阶段
+     */
+    private static XlsxWorkbookReader openTimed(String filePath, FileMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return XlsxWorkbookReader.open(filePath);
+        } finally {
+            PerformanceMetrics.record(metrics, MetricsPhase.FILE_OPEN, System.nanoTime() - start);
+        }
+    }
+
     /**
      * 将数据写入Excel文件
+     * 数据行数超过流式阈值时自动使用SXSSF流式写入，内存占用与行数无关
      * @param filePath 目标文件路径
      * @param headers 表头数据
      * @param data 表格数据
      * @throws IOException 文件操作异常
      */
     public void writeExcel(String filePath, List<String> headers, List<List<String>> data) throws IOException {
-        try (Workbook workbook = new XSSFWorkbook();
-             FileOutputStream fos = new FileOutputStream(new File(filePath))) {
-
-            // 创建工作表
-            Sheet sheet = workbook.createSheet("数据");
-
-            // 创建表头行
-            Row headerRow = sheet.createRow(0);
-            for (int i = 0; i < headers.size(); i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers.get(i));
-                
-                // 设置表头样式
-                CellStyle headerStyle = workbook.createCellStyle();
-                Font font = workbook.createFont();
-                font.setBold(true);
-                headerStyle.setFont(font);
-                headerStyle.setFillForegroundColor(IndexedColors.LIGHT_BLUE.getIndex());
-                headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-                headerStyle.setBorderBottom(BorderStyle.THIN);
-                headerStyle.setBorderTop(BorderStyle.THIN);
-                headerStyle.setBorderLeft(BorderStyle.THIN);
-                headerStyle.setBorderRight(BorderStyle.THIN);
-                
-                cell.setCellStyle(headerStyle);
-            }
-
+        try (ExcelSheetWriter writer = openSheetWriter(filePath, headers, data.size())) {
             // 写入数据行
-            for (int rowIndex = 0; rowIndex < data.size(); rowIndex++) {
-                Row dataRow = sheet.createRow(rowIndex + 1); // +1 因为第一行是表头
-                List<String> rowData = data.get(rowIndex);
-                
-                for (int cellIndex = 0; cellIndex < rowData.size(); cellIndex++) {
-                    Cell cell = dataRow.createCell(cellIndex);
-                    cell.setCellValue(rowData.get(cellIndex));
-                    
-                    // 设置数据单元格样式
-                    CellStyle dataStyle = workbook.createCellStyle();
-                    dataStyle.setBorderBottom(BorderStyle.THIN);
-                    dataStyle.setBorderTop(BorderStyle.THIN);
-                    dataStyle.setBorderLeft(BorderStyle.THIN);
-                    dataStyle.setBorderRight(BorderStyle.THIN);
-                    
-                    cell.setCellStyle(dataStyle);
-                }
+            for (List<String> rowData : data) {
+                writer.writeRow(rowData);
             }
+        }
+    }
 
-            // 自动调整列宽
-            for (int i = 0; i < headers.size(); i++) {
-                sheet.autoSizeColumn(i);
-            }
+    /**
+     * 打开逐行写入的工作表写入器，写入器关闭时保存文件
+     * @param filePath 目标文件路径
+     * @param headers 表头数据
+     * @param expectedRows 预计写入的数据行数，用于选择是否使用流式写入；未知时传-1
+     * @return 工作表写入器
+     */
+    public ExcelSheetWriter openSheetWriter(String filePath, List<String> headers, int expectedRows) {
+        boolean streaming = expectedRows < 0 || expectedRows > streamingThreshold;
+        return new ExcelSheetWriter(filePath, headers, streaming, streamingWindowSize, compressTempFiles,
+                new HashMap<>(columnFormats));
+    }
 
-            // 写入文件
-            workbook.write(fos);
+    /**
+     * 设置导出时指定列的数字或日期格式（如"#,##0.00"、"yyyy-mm-dd"）
+     * 该列中能解析为数字或日期的值将以数值写入并应用此格式
+     * @param columnIndex 列索引
+     * @param dataFormat Excel格式字符串，null表示恢复为文本
+     */
+    public void setColumnFormat(int columnIndex, String dataFormat) {
+        if (dataFormat == null) {
+            columnFormats.remove(columnIndex);
+        } else {
+            columnFormats.put(columnIndex, dataFormat);
         }
     }
 
     /**
-     * 获取单元格的值作为字符串
+     * 清除所有列格式
+     */
+    public void clearColumnFormats() {
+        columnFormats.clear();
+    }
+
+    /**
+     * 设置并行读取工作表时最多使用的线程数
      */
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("线程数必须大于0");
         }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 获取并行读取工作表时最多使用的线程数
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 获取最近打开过的工作簿的缓存
+     */
+    public WorkbookCache getWorkbookCache() {
+        return workbookCache;
+    }
+
+    /**
+     * 设置启用流式写入的行数阈值
+     */
+    public void setStreamingThreshold(int streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * 获取启用流式写入的行数阈值
+     */
+    public int getStreamingThreshold() {
+        return streamingThreshold;
+    }
 
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
-                } else {
-                    // 处理数字，避免科学计数法
-                    double value = cell.getNumericCellValue();
-                    if (value == Math.floor(value)) {
-                        return String.valueOf((long) value);
-                    } else {
-                        return String.valueOf(value);
-                    }
-                }
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                try {
-                    return String.valueOf(cell.getNumericCellValue());
-                } catch (IllegalStateException e) {
-                    return cell.getStringCellValue();
-                }
-            default:
-                return "";
+    /**
+     * 设置流式写入时内存中保留的行数
+     */
+    public void setStreamingWindowSize(int streamingWindowSize) {
+        if (streamingWindowSize <= 0) {
+            throw new IllegalArgumentException("窗口行数必须大于0");
         }
+        this.streamingWindowSize = streamingWindowSize;
+    }
+
+    /**
+     * 获取流式写入时内存中保留的行数
+     */
+    public int getStreamingWindowSize() {
+        return streamingWindowSize;
+    }
+
+    /**
+     * 设置流式写入时是否压缩临时文件
+     */
+    public void setCompressTempFiles(boolean compressTempFiles) {
+        this.compressTempFiles = compressTempFiles;
+    }
+
+    /**
+     * 流式写入时是否压缩临时文件
+     */
+    public boolean isCompressTempFiles() {
+        return compressTempFiles;
     }
 }
\ No newline at end of file
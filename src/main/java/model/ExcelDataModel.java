@@ -1,21 +1,48 @@
 package model;
 
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Excel数据模型类 - MVC架构中的Model层
  * 管理Excel数据，提供数据操作方法，并通知观察者（View）数据变化
+ *
+ * 可以从多个线程同时读写：修改持有写锁，单元格读取先尝试乐观读；
+ * 长时间的读取（导出、统计等）应使用snapshot()，不持有锁，不会阻塞编辑。
+ * 变化通知总是在事件调度线程中发出，事件携带与之对应的快照
+ *
+ * 搜索索引在后台建立，建立期间的修改先记录下来，建好后补做；之后随修改增量维护
+ *
+ * 公式单元格的值是公式的计算结果：修改单元格后只重算依赖它的公式，结果写回存储并一起通知
  */
 public class ExcelDataModel extends Observable {
-    private List<List<String>> data; // 存储Excel数据的二维列表
-    private List<String> headers;    // 存储表头信息
-    private String currentFileName;  // 当前文件名
+    private final StampedLock lock = new StampedLock();
+    private TableStore store;        // 存储Excel数据的列式存储或磁盘映射存储
+    private volatile StorageMode storageMode; // 数据存储方式
+    private volatile List<String> headers;    // 存储表头信息（不可修改的列表）
+    private volatile String currentFileName;  // 当前文件名
+    private int batchDepth;          // 批量操作嵌套层数
+    private ChangeCoalescer pendingChanges; // 批量操作期间暂存的变化
+    private ChangeCoalescer undeliveredChanges = new ChangeCoalescer(); // 尚未通知观察者的变化
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean();
+    private volatile TableSnapshot snapshot;  // 最近一次生成的快照，数据变化后失效
+    private SearchIndex searchIndex;  // 与当前数据一致的搜索索引，没有时为null
+    private List<Consumer<SearchIndex>> pendingIndexUpdates; // 正在建立索引时记录的修改，不在建立时为null
+    private FormulaEngine formulas = new FormulaEngine(); // 公式及其依赖关系
 
     public ExcelDataModel() {
-        this.data = new ArrayList<>();
-        this.headers = new ArrayList<>();
+        this.store = new ColumnarTableStore();
+        this.storageMode = StorageMode.MEMORY;
+        this.headers = Collections.emptyList();
         this.currentFileName = "未命名.xlsx";
     }
 
@@ -23,59 +50,411 @@ public class ExcelDataModel extends Observable {
      * 设置数据并通知观察者
      */
     public void setData(List<List<String>> newData, List<String> newHeaders) {
-        this.data = new ArrayList<>(newData);
-        this.headers = new ArrayList<>(newHeaders);
-        notifyObservers();
+        // 新存储在锁外构建，只有替换时才持有写锁
+        TableStore newStore = createStore(newData);
+        long stamp = lock.writeLock();
+        try {
+            replaceStore(newStore);
+            this.headers = copyHeaders(newHeaders);
+            queueChange(ModelChangeEvent.dataChanged());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
+    }
+
+    /**
+     * 用快照中的表头和数据替换当前内容
+     * 内存存储时与快照共享列式数据块，不复制数据；之后的修改不影响快照
+     */
+    public void setData(TableSnapshot source) {
+        TableStore sourceStore = source.getStore();
+        TableStore newStore = storageMode == StorageMode.MEMORY && sourceStore instanceof ColumnarTableStore
+                ? sourceStore.snapshot() : createStore(source.getRows());
+        long stamp = lock.writeLock();
+        try {
+            replaceStore(newStore);
+            this.headers = copyHeaders(source.getHeaders());
+            queueChange(ModelChangeEvent.dataChanged());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
+    }
+
+    /**
+     * 设置数据存储方式，从下一次setData开始生效
+     */
+    public void setStorageMode(StorageMode storageMode) {
+        this.storageMode = storageMode;
+    }
+
+    /**
+     * 获取数据存储方式
+     */
+    public StorageMode getStorageMode() {
+        return storageMode;
     }
 
     /**
      * 添加新行数据
      */
     public void addRow(List<String> rowData) {
-        this.data.add(new ArrayList<>(rowData));
-        notifyObservers();
+        long stamp = lock.writeLock();
+        try {
+            store.addRow(rowData);
+            if (isIndexing()) {
+                List<List<String>> added = Collections.<List<String>>singletonList(new ArrayList<>(rowData));
+                updateIndex(index -> index.rowsAppended(added));
+            }
+            int lastRow = store.getRowCount() - 1;
+            queueChange(ModelChangeEvent.rowsInserted(lastRow, lastRow));
+            recalculateRows(lastRow, lastRow);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
+    }
+
+    /**
+     * 批量添加多行数据，只发出一次通知
+     */
+    public void addRows(List<List<String>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int firstRow = store.getRowCount();
+            store.addRows(rows);
+            if (isIndexing()) {
+                List<List<String>> added = new ArrayList<>(rows.size());
+                for (List<String> row : rows) {
+                    added.add(new ArrayList<>(row));
+                }
+                updateIndex(index -> index.rowsAppended(added));
+            }
+            queueChange(ModelChangeEvent.rowsInserted(firstRow, store.getRowCount() - 1));
+            recalculateRows(firstRow, store.getRowCount() - 1);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
     }
 
     /**
      * 更新指定行数据
+     * 值被改动的公式单元格不再是公式，值未变的公式保留
      */
     public void updateRow(int rowIndex, List<String> newData) {
-        if (rowIndex >= 0 && rowIndex < data.size()) {
-            this.data.set(rowIndex, new ArrayList<>(newData));
-            notifyObservers();
+        long stamp = lock.writeLock();
+        try {
+            if (rowIndex >= 0 && rowIndex < store.getRowCount()) {
+                List<String> oldRow = store.getRow(rowIndex);
+                if (isIndexing()) {
+                    List<String> newRow = new ArrayList<>(newData);
+                    updateIndex(index -> index.rowUpdated(rowIndex, oldRow, newRow));
+                }
+                store.setRow(rowIndex, newData);
+                queueChange(ModelChangeEvent.rowsUpdated(rowIndex, rowIndex));
+                if (!formulas.isEmpty()) {
+                    List<FormulaEngine.FormulaCell> affected = new ArrayList<>();
+                    for (int c = 0; c < Math.max(oldRow.size(), newData.size()); c++) {
+                        String oldValue = c < oldRow.size() ? oldRow.get(c) : "";
+                        String newValue = c < newData.size() ? newData.get(c) : "";
+                        if (!oldValue.equals(newValue)) {
+                            formulas.remove(rowIndex, c);
+                            affected.addAll(formulas.dependents(rowIndex, c));
+                        }
+                    }
+                    recalculate(affected);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        deliverChanges();
+    }
+
+    /**
+     * 更新单个单元格，依赖它的公式随之重算
+     * 公式单元格被改为其他值后不再是公式；值未变时保留公式
+     */
+    public void setValueAt(int rowIndex, int columnIndex, String value) {
+        long stamp = lock.writeLock();
+        try {
+            if (rowIndex >= 0 && rowIndex < store.getRowCount() && columnIndex >= 0) {
+                String oldValue = store.getValue(rowIndex, columnIndex);
+                if (isIndexing()) {
+                    updateIndex(index -> index.cellUpdated(rowIndex, columnIndex, oldValue, value));
+                }
+                store.setValue(rowIndex, columnIndex, value);
+                queueChange(ModelChangeEvent.cellUpdated(rowIndex, columnIndex));
+                if (!formulas.isEmpty() && !oldValue.equals(value)) {
+                    formulas.remove(rowIndex, columnIndex);
+                    recalculate(formulas.dependents(rowIndex, columnIndex));
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
     }
 
     /**
      * 删除指定行数据
      */
     public void deleteRow(int rowIndex) {
-        if (rowIndex >= 0 && rowIndex < data.size()) {
-            this.data.remove(rowIndex);
-            notifyObservers();
+        long stamp = lock.writeLock();
+        try {
+            if (rowIndex >= 0 && rowIndex < store.getRowCount()) {
+                updateIndex(index -> index.rowDeleted(rowIndex));
+                store.removeRow(rowIndex);
+                queueChange(ModelChangeEvent.rowsDeleted(rowIndex, rowIndex));
+                if (!formulas.isEmpty()) {
+                    recalculate(formulas.deleteRow(rowIndex));
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
         }
+        deliverChanges();
     }
 
     /**
      * 获取所有数据
+     * 返回当前快照的只读视图，之后的修改不影响返回的列表
      */
     public List<List<String>> getData() {
-        return new ArrayList<>(data); // 返回副本以保护数据
+        return snapshot().getRows();
+    }
+
+    /**
+     * 获取表头和数据的只读快照
+     * 快照与模型共享未修改的数据块；数据未变化时重复调用返回同一个快照
+     */
+    public TableSnapshot snapshot() {
+        TableSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        // 生成快照会让存储进入新纪元，与修改互斥；只复制块引用，持锁时间很短
+        long stamp = lock.writeLock();
+        try {
+            return snapshotLocked();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 按指定的列排序，返回显示顺序到模型行号的映射，模型中的行顺序不变
+     * 在当前快照上排序，不持有锁，排序期间的修改不影响结果
+     * @param keys 排序键，依次为主次关键字
+     * @return 排序后的行视图
+     */
+    public RowView sort(List<SortKey> keys) {
+        return TableSorter.sort(snapshot(), keys);
+    }
+
+    /**
+     * 按指定的列分组汇总，在当前数据的快照上计算，不阻塞编辑
+     * @param groupColumns 分组列，为空时整张表作为一组
+     * @param aggregates 汇总项
+     * @return 汇总结果，可以用setData显示或用writeExcel导出
+     */
+    public TableSnapshot aggregate(List<Integer> groupColumns, List<Aggregate> aggregates) {
+        return TableAggregator.aggregate(snapshot(), groupColumns, aggregates);
+    }
+
+    /**
+     * 筛选满足条件的行，返回按模型顺序排列的行视图
+     */
+    public RowView filter(RowQuery query) {
+        return filter(snapshot(), query);
+    }
+
+    /**
+     * 在指定的快照上筛选满足条件的行
+     * 快照就是当前数据且搜索索引已建好时查索引，否则逐行检查快照并在后台开始建立索引
+     * @param source 要筛选的快照，通常是表格正在显示的快照
+     * @param query 筛选条件
+     * @return 按模型顺序排列的满足条件的行
+     */
+    public RowView filter(TableSnapshot source, RowQuery query) {
+        RowView result = null;
+        boolean rebuild;
+        long stamp = lock.readLock();
+        try {
+            if (searchIndex != null && source == snapshot) {
+                result = searchIndex.search(query, source.getColumnCount());
+            }
+            rebuild = pendingIndexUpdates == null && (searchIndex == null || searchIndex.needsCompaction());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        if (rebuild) {
+            buildSearchIndex();
+        }
+        return result != null ? result : SearchIndex.scan(source, query);
+    }
+
+    /**
+     * 在后台线程中建立搜索索引，已在建立或已有索引时不重复建立
+     * 已有的索引增量过多时重新建立，新索引建好前继续使用旧索引
+     */
+    public void buildSearchIndex() {
+        TableSnapshot source;
+        List<Consumer<SearchIndex>> updates = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            if (pendingIndexUpdates != null || (searchIndex != null && !searchIndex.needsCompaction())) {
+                return;
+            }
+            pendingIndexUpdates = updates;
+            source = snapshotLocked();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        Thread builder = new Thread(() -> {
+            SearchIndex built = SearchIndex.build(source);
+            long writeStamp = lock.writeLock();
+            try {
+                // 建立期间数据被整体替换时放弃
+                if (pendingIndexUpdates == updates) {
+                    for (Consumer<SearchIndex> update : updates) {
+                        update.accept(built);
+                    }
+                    searchIndex = built;
+                    pendingIndexUpdates = null;
+                }
+            } finally {
+                lock.unlockWrite(writeStamp);
+            }
+        }, "search-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * 搜索索引是否已建好
+     */
+    public boolean isSearchIndexReady() {
+        long stamp = lock.readLock();
+        try {
+            return searchIndex != null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 把单元格设为公式并立即计算，依赖它的公式随之重算
+     * @param formula 公式文本，开头的等号可有可无
+     * @throws IllegalArgumentException 公式有语法错误或使用了不支持的函数、跨工作表引用
+     */
+    public void setFormula(int rowIndex, int columnIndex, String formula) {
+        FormulaNode node = FormulaParser.parse(formula);
+        long stamp = lock.writeLock();
+        try {
+            if (rowIndex >= 0 && rowIndex < store.getRowCount() && columnIndex >= 0) {
+                recalculate(Collections.singletonList(formulas.put(rowIndex, columnIndex, node)));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
+    }
+
+    /**
+     * 载入文件中保存的公式：只登记依赖关系，单元格保留文件中的计算结果，不重新计算
+     * @return 是否登记成功；不支持的公式返回false，该单元格作为普通值处理
+     */
+    public boolean loadFormula(int rowIndex, int columnIndex, String formula) {
+        FormulaNode node;
+        try {
+            node = FormulaParser.parse(formula);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (rowIndex < 0 || rowIndex >= store.getRowCount() || columnIndex < 0) {
+                return false;
+            }
+            formulas.put(rowIndex, columnIndex, node);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 获取单元格的公式（以等号开头），不是公式单元格时返回null
+     */
+    public String getFormula(int rowIndex, int columnIndex) {
+        long stamp = lock.readLock();
+        try {
+            FormulaEngine.FormulaCell cell = formulas.get(rowIndex, columnIndex);
+            return cell != null ? cell.getFormula() : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 公式单元格的个数
+     */
+    public int getFormulaCount() {
+        long stamp = lock.readLock();
+        try {
+            return formulas.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 获取单元格的值，超出该行宽度时返回空字符串
+     */
+    public String getValueAt(int rowIndex, int columnIndex) {
+        return read(() -> store.getValue(rowIndex, columnIndex));
     }
 
     /**
      * 获取表头信息
      */
     public List<String> getHeaders() {
-        return new ArrayList<>(headers); // 返回副本以保护数据
+        return headers; // 表头不可修改，直接返回
+    }
+
+    /**
+     * 设置表头，数据不变
+     */
+    public void setHeaders(List<String> newHeaders) {
+        long stamp = lock.writeLock();
+        try {
+            this.headers = copyHeaders(newHeaders);
+            queueChange(ModelChangeEvent.headersChanged());
+            recalculateRows(-1, -1);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
     }
 
     /**
      * 设置文件名
      */
     public void setFileName(String fileName) {
-        this.currentFileName = fileName;
-        notifyObservers();
+        long stamp = lock.writeLock();
+        try {
+            this.currentFileName = fileName;
+            queueChange(ModelChangeEvent.metadataChanged());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
     }
 
     /**
@@ -89,7 +468,7 @@ public class ExcelDataModel extends Observable {
      * 获取数据行数
      */
     public int getRowCount() {
-        return data.size();
+        return read(() -> store.getRowCount());
     }
 
     /**
@@ -103,16 +482,254 @@ public class ExcelDataModel extends Observable {
      * 清空数据
      */
     public void clearData() {
-        this.data.clear();
-        this.headers.clear();
-        notifyObservers();
+        TableStore emptyStore = createStore(Collections.<List<String>>emptyList());
+        long stamp = lock.writeLock();
+        try {
+            replaceStore(emptyStore);
+            this.headers = Collections.emptyList();
+            queueChange(ModelChangeEvent.dataChanged());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
+    }
+
+    /**
+     * 估算数据占用的堆内存字节数
+     */
+    public long estimateMemoryBytes() {
+        long stamp = lock.readLock();
+        try {
+            return store.estimateMemoryBytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 释放存储占用的外部资源（如映射文件），模型不再使用时调用
+     */
+    public void dispose() {
+        long stamp = lock.writeLock();
+        try {
+            replaceStore(new ColumnarTableStore());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 按当前存储方式创建存储并写入初始数据
+     */
+    private TableStore createStore(List<List<String>> rows) {
+        if (storageMode == StorageMode.MEMORY) {
+            return ColumnarTableStore.fromRows(rows);
+        }
+        try {
+            TableStore mapped = MappedRowStore.createTemporary();
+            for (List<String> row : rows) {
+                mapped.addRow(row);
+            }
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建磁盘映射存储失败", e);
+        }
+    }
+
+    private static List<String> copyHeaders(List<String> newHeaders) {
+        return Collections.unmodifiableList(new ArrayList<>(newHeaders));
+    }
+
+    /**
+     * 替换存储，调用方持有写锁
+     */
+    private void replaceStore(TableStore newStore) {
+        TableStore oldStore = this.store;
+        this.store = newStore;
+        this.snapshot = null;
+        this.searchIndex = null;
+        this.pendingIndexUpdates = null;
+        this.formulas = new FormulaEngine();
+        if (oldStore != newStore) {
+            oldStore.dispose();
+        }
+    }
+
+    /**
+     * 是否需要维护搜索索引，调用方持有写锁
+     */
+    private boolean isIndexing() {
+        return searchIndex != null || pendingIndexUpdates != null;
+    }
+
+    /**
+     * 把一次修改应用到搜索索引，正在建立时同时记录下来，调用方持有写锁
+     */
+    private void updateIndex(Consumer<SearchIndex> update) {
+        if (searchIndex != null) {
+            update.accept(searchIndex);
+        }
+        if (pendingIndexUpdates != null) {
+            pendingIndexUpdates.add(update);
+        }
+    }
+
+    /**
+     * 重算引用了指定行的公式，用于追加行和修改表头，调用方持有写锁
+     */
+    private void recalculateRows(int firstRow, int lastRow) {
+        if (!formulas.isEmpty()) {
+            recalculate(formulas.dependentsOfRows(firstRow, lastRow));
+        }
+    }
+
+    /**
+     * 从seeds开始重算受影响的公式，把结果有变化的单元格写回存储，调用方持有写锁
+     * 公式在列式存储上可以并行计算；计算期间持有写锁，存储不会变化
+     */
+    private void recalculate(List<FormulaEngine.FormulaCell> seeds) {
+        if (seeds.isEmpty()) {
+            return;
+        }
+        List<FormulaEngine.FormulaCell> updated = new ArrayList<>(formulas.recalculate(seeds,
+                FormulaEngine.storeValues(store, headers), store instanceof ColumnarTableStore));
+        // 按位置写回，相邻的行合并成一个变化事件
+        updated.sort((a, b) -> a.getRow() != b.getRow()
+                ? Integer.compare(a.getRow(), b.getRow()) : Integer.compare(a.getColumn(), b.getColumn()));
+        for (FormulaEngine.FormulaCell cell : updated) {
+            int row = cell.getRow();
+            int column = cell.getColumn();
+            String value = cell.getText();
+            String oldValue = store.getValue(row, column);
+            if (!value.equals(oldValue)) {
+                if (isIndexing()) {
+                    updateIndex(index -> index.cellUpdated(row, column, oldValue, value));
+                }
+                store.setValue(row, column, value);
+                queueChange(ModelChangeEvent.cellUpdated(row, column));
+            }
+        }
+    }
+
+    /**
+     * 先乐观读，读取期间有修改（或因并发修改读到不一致的状态）时改为加读锁重读
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T value = reader.get();
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 生成或复用快照，调用方持有写锁
+     */
+    private TableSnapshot snapshotLocked() {
+        if (snapshot == null) {
+            snapshot = new TableSnapshot(store.snapshot(), headers);
+        }
+        return snapshot;
     }
 
     /**
-     * 通知观察者数据变化
+     * 开始批量操作：提交前的所有修改只在commitBatch时合并通知一次，可以嵌套
+     * 调用方应在finally中调用commitBatch；批量期间其他线程的修改也会并入本次通知
      */
-    private void notifyObservers() {
+    public void beginBatch() {
+        long stamp = lock.writeLock();
+        try {
+            if (batchDepth++ == 0) {
+                pendingChanges = new ChangeCoalescer();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 结束批量操作，最外层结束时发出合并后的变化通知
+     */
+    public void commitBatch() {
+        long stamp = lock.writeLock();
+        try {
+            if (batchDepth == 0) {
+                throw new IllegalStateException("没有进行中的批量操作");
+            }
+            if (--batchDepth == 0) {
+                ModelChangeEvent merged = pendingChanges.result();
+                pendingChanges = null;
+                if (merged != null) {
+                    undeliveredChanges.add(merged);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        deliverChanges();
+    }
+
+    /**
+     * 记录一个变化，调用方持有写锁
+     * 批量操作期间只记录到批量事件中，等提交时合并
+     */
+    private void queueChange(ModelChangeEvent event) {
+        snapshot = null;
+        if (batchDepth > 0) {
+            pendingChanges.add(event);
+        } else {
+            undeliveredChanges.add(event);
+        }
+    }
+
+    /**
+     * 在事件调度线程中通知观察者：已在该线程时立即通知，否则安排一次通知，
+     * 期间积累的变化合并后一起发出
+     */
+    private void deliverChanges() {
+        if (EventQueue.isDispatchThread()) {
+            fireModelChanged();
+        } else if (deliveryScheduled.compareAndSet(false, true)) {
+            EventQueue.invokeLater(() -> {
+                deliveryScheduled.set(false);
+                fireModelChanged();
+            });
+        }
+    }
+
+    /**
+     * 取出尚未通知的变化，连同此刻的快照作为参数传给Observer.update
+     */
+    private void fireModelChanged() {
+        ModelChangeEvent merged;
+        long stamp = lock.writeLock();
+        try {
+            merged = undeliveredChanges.result();
+            if (merged == null) {
+                return;
+            }
+            undeliveredChanges = new ChangeCoalescer();
+            if (countObservers() > 0) {
+                merged = merged.withSnapshot(snapshotLocked());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
         setChanged();
-        super.notifyObservers();
+        notifyObservers(merged);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package model;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Excel工作表写入器 - MVC架构中的Model层组件
+ * 逐行写入数据；流式模式下基于SXSSFWorkbook，内存中只保留最近的若干行，其余行刷到临时文件
+ */
+public class ExcelSheetWriter implements RowWriter {
+    private static final byte KIND_TEXT = 0;
+    private static final byte KIND_NUMBER = 1;
+    private static final byte KIND_DATE = 2;
+    // 只接受普通的十进制或科学计数法，不接受Double.parseDouble允许的1d、1f、0x1p3、NaN等写法
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    private final String filePath;
+    private final Workbook workbook;
+    private final Sheet sheet;
+    private final int columnCount;
+    private final int autoSizeSampleRows;
+    private final CellStyleRegistry styles;
+    private final CellStyle dataStyle;
+    private final CellStyle[] columnStyles;
+    private final byte[] columnKinds;
+    private int nextRowIndex;
+    private boolean columnsSized;
+
+    /**
+     * 创建写入器并写入表头
+     * @param streaming 是否使用SXSSF流式工作簿
+     * @param windowSize 流式模式下内存中保留的行数
+     * @param compressTempFiles 流式模式下是否压缩临时文件
+     * @param columnFormats 按列指定的数字或日期格式，键为列索引
+     */
+    ExcelSheetWriter(String filePath, List<String> headers, boolean streaming,
+                     int windowSize, boolean compressTempFiles, Map<Integer, String> columnFormats) {
+        this.filePath = filePath;
+        this.columnCount = headers.size();
+        if (streaming) {
+            SXSSFWorkbook streamingWorkbook = new SXSSFWorkbook(windowSize);
+            streamingWorkbook.setCompressTempFiles(compressTempFiles);
+            SXSSFSheet streamingSheet = streamingWorkbook.createSheet("数据");
+            // 只根据第一个窗口内的行计算列宽，之后不再跟踪
+            streamingSheet.trackAllColumnsForAutoSizing();
+            this.workbook = streamingWorkbook;
+            this.sheet = streamingSheet;
+            this.autoSizeSampleRows = windowSize;
+        } else {
+            this.workbook = new XSSFWorkbook();
+            this.sheet = workbook.createSheet("数据");
+            this.autoSizeSampleRows = Integer.MAX_VALUE;
+        }
+
+        // 所有单元格都从注册表取共享样式
+        this.styles = new CellStyleRegistry(workbook);
+        this.dataStyle = styles.getStyle(false, CellStyleRegistry.NO_FILL, BorderStyle.THIN, null);
+        int formattedColumns = columnCount;
+        for (Integer column : columnFormats.keySet()) {
+            formattedColumns = Math.max(formattedColumns, column + 1);
+        }
+        this.columnStyles = new CellStyle[formattedColumns];
+        this.columnKinds = new byte[formattedColumns];
+        for (int i = 0; i < formattedColumns; i++) {
+            String format = columnFormats.get(i);
+            columnStyles[i] = format != null
+                    ? styles.getStyle(false, CellStyleRegistry.NO_FILL, BorderStyle.THIN, format)
+                    : dataStyle;
+            if (format == null) {
+                columnKinds[i] = KIND_TEXT;
+            } else {
+                columnKinds[i] = DateUtil.isADateFormat(-1, format) ? KIND_DATE : KIND_NUMBER;
+            }
+        }
+
+        writeHeaders(headers);
+    }
+
+    /**
+     * 写入一行数据
+     */
+    @Override
+    public void writeRow(List<String> rowData) throws IOException {
+        Row dataRow = sheet.createRow(nextRowIndex++);
+        for (int cellIndex = 0; cellIndex < rowData.size(); cellIndex++) {
+            Cell cell = dataRow.createCell(cellIndex);
+            if (cellIndex < columnStyles.length) {
+                setCellValue(cell, rowData.get(cellIndex), columnKinds[cellIndex]);
+                cell.setCellStyle(columnStyles[cellIndex]);
+            } else {
+                cell.setCellValue(rowData.get(cellIndex));
+                cell.setCellStyle(dataStyle);
+            }
+        }
+        if (nextRowIndex - 1 == autoSizeSampleRows) {
+            autoSizeColumns();
+        }
+    }
+
+    /**
+     * 完成写入：调整列宽、保存文件并释放临时文件
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            autoSizeColumns();
+            try (FileOutputStream fos = new FileOutputStream(new File(filePath))) {
+                workbook.write(fos);
+            }
+        } finally {
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+            workbook.close();
+        }
+    }
+
+    /**
+     * 按列格式写入单元格值：数字列和日期列的值能解析时写为数值，否则按文本写入
+     */
+    private void setCellValue(Cell cell, String value, byte kind) {
+        if (kind == KIND_NUMBER && looksNumeric(value)) {
+            try {
+                cell.setCellValue(Double.parseDouble(value));
+                return;
+            } catch (NumberFormatException e) {
+                // 按文本写入
+            }
+        } else if (kind == KIND_DATE) {
+            long millis = DateValues.parseMillis(value);
+            if (millis != DateValues.INVALID) {
+                cell.setCellValue(new Date(millis));
+                return;
+            }
+        }
+        cell.setCellValue(value);
+    }
+
+    private static boolean looksNumeric(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        // 先用首字符排除大部分文本，再做完整匹配
+        char first = value.charAt(0);
+        return ((first >= '0' && first <= '9') || first == '-' || first == '+' || first == '.')
+                && DECIMAL.matcher(value).matches();
+    }
+
+    private void writeHeaders(List<String> headers) {
+        // 设置表头样式
+        CellStyle headerStyle = styles.getStyle(true, IndexedColors.LIGHT_BLUE.getIndex(), BorderStyle.THIN, null);
+
+        Row headerRow = sheet.createRow(nextRowIndex++);
+        for (int i = 0; i < headers.size(); i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers.get(i));
+            cell.setCellStyle(headerStyle);
+        }
+    }
+
+    /**
+     * 自动调整列宽
+     */
+    private void autoSizeColumns() {
+        if (columnsSized) {
+            return;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            sheet.autoSizeColumn(i);
+        }
+        if (sheet instanceof SXSSFSheet) {
+            ((SXSSFSheet) sheet).untrackAllColumnsForAutoSizing();
+        }
+        columnsSized = true;
+    }
+}
@@ -0,0 +1,193 @@
+package model;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个文件的性能统计 - MVC架构中的Model层组件
+ * 由PerformanceMetrics.startFile创建，记录该文件各阶段的耗时、读取和写出的行数以及单元格数，
+ * 同时计入全局统计；多个工作表并行解析时可以在不同线程中同时记录
+ */
+public final class FileMetrics {
+    private final PerformanceMetrics global;
+    private final String path;
+    private final String operation;
+    private final long startNanos = System.nanoTime();
+    private final Map<MetricsPhase, LongAdder> phaseNanos = new EnumMap<>(MetricsPhase.class);
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder cells = new LongAdder();
+    private volatile long elapsedNanos = -1;
+    private volatile long bytes;
+    private volatile boolean failed;
+
+    FileMetrics(PerformanceMetrics global, String path, String operation) {
+        this.global = global;
+        this.path = path;
+        this.operation = operation;
+        for (MetricsPhase phase : MetricsPhase.values()) {
+            phaseNanos.put(phase, new LongAdder());
+        }
+    }
+
+    /**
+     * 记录一个阶段的一次耗时
+     */
+    public void record(MetricsPhase phase, long nanos) {
+        phaseNanos.get(phase).add(nanos);
+        global.record(phase, nanos);
+    }
+
+    /**
+     * 增加读取的数据行数
+     */
+    public void addRows(long count) {
+        rows.add(count);
+    }
+
+    /**
+     * 增加写出的数据行数
+     */
+    public void addRowsWritten(long count) {
+        rowsWritten.add(count);
+    }
+
+    /**
+     * 增加转换的单元格数
+     */
+    public void addCells(long count) {
+        cells.add(count);
+    }
+
+    /**
+     * 文件处理成功完毕，同finish(true)
+     */
+    public void finish() {
+        finish(true);
+    }
+
+    /**
+     * 文件处理结束：以文件当前的大小作为字节数，计入全局统计并通知报告器；重复调用无效。
+     * 出错或被取消的文件同样要结束，记为失败，慢而失败的文件也能在统计中看到
+     * @param succeeded 是否处理成功
+     */
+    public void finish(boolean succeeded) {
+        synchronized (this) {
+            if (elapsedNanos >= 0) {
+                return;
+            }
+            failed = !succeeded;
+            bytes = new File(path).length();
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+        global.fileFinished(this);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * 是否处理失败（出错或被取消），结束之前为false
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * 指定阶段的累计耗时（纳秒）
+     */
+    public long getPhaseNanos(MetricsPhase phase) {
+        return phaseNanos.get(phase).sum();
+    }
+
+    /**
+     * 读取的数据行数
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * 写出的数据行数
+     */
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    /**
+     * 计算吞吐量的行数：同一文件既读取又写出（转换、拆分）时同一行只算一次
+     */
+    public long getRowsHandled() {
+        return Math.max(getRows(), getRowsWritten());
+    }
+
+    public long getCellsConverted() {
+        return cells.sum();
+    }
+
+    /**
+     * 文件字节数，finish之前为0
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 从开始到finish的总耗时（纳秒），尚未结束时为到目前为止的耗时
+     */
+    public long getElapsedNanos() {
+        long elapsed = elapsedNanos;
+        return elapsed >= 0 ? elapsed : System.nanoTime() - startNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return PerformanceMetrics.perSecond(getRowsHandled(), getElapsedNanos());
+    }
+
+    public double getBytesPerSecond() {
+        return PerformanceMetrics.perSecond(bytes, getElapsedNanos());
+    }
+
+    /**
+     * 一行摘要：总耗时、吞吐量和有耗时记录的各阶段
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(operation).append(' ').append(new File(path).getName())
+                .append(failed ? "（失败）" : "")
+                .append(String.format("：%.1f秒，%s，%d字节，%.0f行/秒，%.1fMB/秒",
+                        getElapsedNanos() / 1e9, rowsText(), bytes, getRowsPerSecond(), getBytesPerSecond() / 1e6));
+        long cellCount = getCellsConverted();
+        if (cellCount > 0) {
+            summary.append("，").append(cellCount).append("个单元格");
+        }
+        for (MetricsPhase phase : MetricsPhase.values()) {
+            long nanos = getPhaseNanos(phase);
+            if (nanos > 0) {
+                summary.append(String.format("；%s %.0f毫秒", phase.getDisplayName(), nanos / 1e6));
+            }
+        }
+        return summary.toString();
+    }
+
+    private String rowsText() {
+        long read = getRows();
+        long written = getRowsWritten();
+        if (written == 0) {
+            return "读取" + read + "行";
+        }
+        return read == 0 ? "写出" + written + "行" : "读取" + read + "行，写出" + written + "行";
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
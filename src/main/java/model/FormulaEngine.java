@@ -0,0 +1,746 @@
+package model;
+
+import model.FormulaNode.CellVisitor;
+import model.FormulaNode.Context;
+import model.FormulaNode.ErrorValue;
+import model.FormulaNode.Reference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 公式依赖图与增量重算 - MVC架构中的Model层组件
+ * 记录每个公式单元格引用了哪些单元格；某个单元格变化后只重算直接或间接依赖它的公式，
+ * 按拓扑顺序计算，互不相关的子图在ForkJoin公共池中并行计算。循环引用的公式得到#CIRCULAR!
+ *
+ * 引用按列建立区间索引：单元格引用是长度为1的区间，区域和整列引用是一段行区间，
+ * 查找依赖某个单元格的公式只需在该列的索引中找出包含这一行的区间。
+ * 不是线程安全的，由ExcelDataModel在写锁内调用
+ */
+final class FormulaEngine {
+    // 受影响的公式达到这么多且分成多个独立子图时并行计算
+    private static final int PARALLEL_THRESHOLD = 2048;
+    // 并行计算时每个任务至少计算这么多个公式
+    private static final int TASK_CELLS = 512;
+
+    private final Map<Long, FormulaCell> cells = new HashMap<>();
+    private final List<RangeIndex> columns = new ArrayList<>();
+    private int pass;
+
+    /**
+     * 公式个数
+     */
+    int size() {
+        return cells.size();
+    }
+
+    boolean isEmpty() {
+        return cells.isEmpty();
+    }
+
+    /**
+     * 指定单元格的公式，没有公式时返回null
+     */
+    FormulaCell get(int row, int column) {
+        return cells.get(key(row, column));
+    }
+
+    /**
+     * 设置单元格的公式，替换原有的公式
+     */
+    FormulaCell put(int row, int column, FormulaNode node) {
+        remove(row, column);
+        FormulaCell cell = new FormulaCell(row, column, node);
+        register(cell);
+        return cell;
+    }
+
+    /**
+     * 删除单元格的公式
+     * @return 该单元格原来是否有公式
+     */
+    boolean remove(int row, int column) {
+        FormulaCell cell = cells.remove(key(row, column));
+        if (cell == null) {
+            return false;
+        }
+        // 索引中的条目在下次整理时清除
+        cell.removed = true;
+        List<Reference> references = new ArrayList<>();
+        cell.node.collectReferences(references);
+        for (Reference reference : references) {
+            for (int c = reference.firstColumn; c <= reference.lastColumn && c < columns.size(); c++) {
+                columns.get(c).removed++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 直接引用了指定单元格的公式
+     */
+    List<FormulaCell> dependents(int row, int column) {
+        List<FormulaCell> result = new ArrayList<>();
+        if (column < columns.size()) {
+            columns.get(column).query(row, row, result);
+        }
+        return result;
+    }
+
+    /**
+     * 引用了指定行范围内任一单元格的公式，用于追加行和修改表头
+     */
+    List<FormulaCell> dependentsOfRows(int firstRow, int lastRow) {
+        Map<FormulaCell, Boolean> result = new LinkedHashMap<>();
+        List<FormulaCell> found = new ArrayList<>();
+        for (RangeIndex index : columns) {
+            found.clear();
+            index.query(firstRow, lastRow, found);
+            for (FormulaCell cell : found) {
+                result.put(cell, Boolean.TRUE);
+            }
+        }
+        return new ArrayList<>(result.keySet());
+    }
+
+    /**
+     * 删除一行：该行的公式被删除，下方的公式和引用上移一行，引用被删除单元格的公式变为#REF!，
+     * 包含被删除行的区域缩小一行
+     * @return 结果可能变化、需要重算的公式
+     */
+    List<FormulaCell> deleteRow(int row) {
+        List<FormulaCell> all = new ArrayList<>(cells.values());
+        cells.clear();
+        columns.clear();
+        List<FormulaCell> changed = new ArrayList<>();
+        for (FormulaCell cell : all) {
+            if (cell.row == row) {
+                cell.removed = true;
+                continue;
+            }
+            boolean[] covered = new boolean[1];
+            cell.node = cell.node.transform(reference -> {
+                if (reference.firstRow <= row && row <= reference.lastRow) {
+                    covered[0] = true;
+                }
+                return shiftForDeletedRow(reference, row);
+            });
+            if (cell.row > row) {
+                cell.row--;
+            }
+            register(cell);
+            if (covered[0]) {
+                changed.add(cell);
+            }
+        }
+        return changed;
+    }
+
+    private static Reference shiftForDeletedRow(Reference reference, int row) {
+        if (reference.wholeColumns || reference.lastRow < row) {
+            return reference;
+        }
+        if (reference.firstRow > row) {
+            return reference.withRows(reference.firstRow - 1, reference.lastRow - 1);
+        }
+        if (reference.firstRow == reference.lastRow) {
+            return null;
+        }
+        return reference.withRows(reference.firstRow, reference.lastRow - 1);
+    }
+
+    /**
+     * 重算从seeds出发可以到达的所有公式（包括seeds本身），按拓扑顺序返回，
+     * 每个公式的新结果由FormulaCell.getText()取得
+     * @param seeds 值已变化的单元格的直接依赖，或公式本身刚被修改的单元格
+     * @param values 其他单元格的当前值
+     * @param concurrentReads values能否同时被多个线程读取，不能时不并行计算
+     */
+    List<FormulaCell> recalculate(Collection<FormulaCell> seeds, Context values, boolean concurrentReads) {
+        Ordering ordering = new Ordering(++pass);
+        for (FormulaCell seed : seeds) {
+            if (!seed.removed && seed.pass != ordering.pass) {
+                ordering.visit(seed);
+            }
+        }
+        List<FormulaCell> order = ordering.topologicalOrder();
+        List<List<FormulaCell>> groups = concurrentReads && order.size() >= PARALLEL_THRESHOLD
+                ? ordering.components(order) : Collections.singletonList(order);
+        Context passValues = new PassValues(order, values);
+        if (groups.size() > 1) {
+            ForkJoinPool.commonPool().invoke(new GroupTask(groups, 0, groups.size(), values, passValues));
+        } else {
+            evaluate(order, values, passValues);
+        }
+        return order;
+    }
+
+    /**
+     * 按顺序计算一组公式；同一组内的公式只依赖组内排在前面的公式或本次未受影响的单元格
+     */
+    private static void evaluate(List<FormulaCell> group, Context values, Context passValues) {
+        for (FormulaCell cell : group) {
+            if (cell.cyclic) {
+                cell.value = ErrorValue.CIRCULAR;
+            } else {
+                // 没有受影响的前驱时直接读取当前值，不必逐个查找本次的计算结果
+                cell.value = cell.node.evaluateSafely(cell.fed ? passValues : values);
+            }
+        }
+    }
+
+    private void register(FormulaCell cell) {
+        cells.put(key(cell.row, cell.column), cell);
+        List<Reference> references = new ArrayList<>();
+        cell.node.collectReferences(references);
+        for (Reference reference : references) {
+            for (int c = reference.firstColumn; c <= reference.lastColumn; c++) {
+                while (columns.size() <= c) {
+                    columns.add(new RangeIndex());
+                }
+                columns.get(c).add(cell, reference.firstRow, reference.lastRow);
+            }
+        }
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 读取存储中的单元格作为公式的输入；列式存储中的数字直接读取，不经过文本
+     */
+    static Context storeValues(TableStore store, List<String> headers) {
+        ColumnarTableStore columnar = store instanceof ColumnarTableStore ? (ColumnarTableStore) store : null;
+        int rowCount = store.getRowCount();
+        return new Context() {
+            @Override
+            public Object cell(int row, int column) {
+                if (row < 0) {
+                    return column < headers.size() ? FormulaNode.parseCellText(headers.get(column)) : FormulaNode.BLANK;
+                }
+                if (row >= rowCount || column < 0) {
+                    return FormulaNode.BLANK;
+                }
+                if (columnar == null) {
+                    return FormulaNode.parseCellText(store.getValue(row, column));
+                }
+                if (column >= columnar.getColumnCount() || column >= columnar.getRowWidth(row)) {
+                    return FormulaNode.BLANK;
+                }
+                Column values = columnar.getColumn(column);
+                if (values.isNull(row)) {
+                    return FormulaNode.BLANK;
+                }
+                if (values instanceof LongColumn) {
+                    return (double) ((LongColumn) values).getLong(row);
+                }
+                if (values instanceof DoubleColumn) {
+                    return ((DoubleColumn) values).getDouble(row);
+                }
+                if (values instanceof BooleanColumn) {
+                    return ((BooleanColumn) values).getBoolean(row);
+                }
+                return FormulaNode.parseCellText(values.get(row));
+            }
+
+            @Override
+            public void visit(int column, int firstRow, int lastRow, CellVisitor visitor) {
+                int row = firstRow;
+                if (row < 0) {
+                    FormulaNode.dispatch(cell(-1, column), visitor);
+                    row = 0;
+                }
+                int last = Math.min(lastRow, rowCount - 1);
+                if (columnar == null || column < 0 || column >= columnar.getColumnCount()) {
+                    for (; row <= last; row++) {
+                        FormulaNode.dispatch(cell(row, column), visitor);
+                    }
+                    return;
+                }
+                // 按列的类型分开循环，数字列逐行读取原始值
+                Column values = columnar.getColumn(column);
+                if (values instanceof LongColumn) {
+                    LongColumn longs = (LongColumn) values;
+                    for (; row <= last; row++) {
+                        if (column >= columnar.getRowWidth(row) || longs.isNull(row)) {
+                            visitor.other(FormulaNode.BLANK);
+                        } else {
+                            visitor.number(longs.getLong(row));
+                        }
+                    }
+                } else if (values instanceof DoubleColumn) {
+                    DoubleColumn doubles = (DoubleColumn) values;
+                    for (; row <= last; row++) {
+                        if (column >= columnar.getRowWidth(row) || doubles.isNull(row)) {
+                            visitor.other(FormulaNode.BLANK);
+                        } else {
+                            visitor.number(doubles.getDouble(row));
+                        }
+                    }
+                } else {
+                    for (; row <= last; row++) {
+                        FormulaNode.dispatch(cell(row, column), visitor);
+                    }
+                }
+            }
+
+            @Override
+            public int rowCount() {
+                return rowCount;
+            }
+        };
+    }
+
+    /**
+     * 一个公式单元格及其在重算中的状态
+     */
+    static final class FormulaCell {
+        private int row;
+        private final int column;
+        private FormulaNode node;
+        private boolean removed;
+
+        // 以下字段只在pass等于当前重算的编号时有效
+        private int pass;
+        private int index;
+        private int lowLink;
+        private boolean onStack;
+        private boolean fed;
+        private boolean cyclic;
+        private Object value;
+
+        FormulaCell(int row, int column, FormulaNode node) {
+            this.row = row;
+            this.column = column;
+            this.node = node;
+        }
+
+        int getRow() {
+            return row;
+        }
+
+        int getColumn() {
+            return column;
+        }
+
+        /**
+         * 公式文本（以等号开头）
+         */
+        String getFormula() {
+            return node.toFormula();
+        }
+
+        /**
+         * 最近一次重算的结果，按单元格文本格式化
+         */
+        String getText() {
+            return FormulaNode.formatValue(value);
+        }
+    }
+
+    /**
+     * 用Tarjan算法找出受影响的公式及其中的循环引用，同时用并查集划分互不相关的子图
+     * 显式维护调用栈，长依赖链不会栈溢出
+     */
+    private final class Ordering {
+        private final int pass;
+        private final List<FormulaCell> nodes = new ArrayList<>();
+        private final List<FormulaCell> emitted = new ArrayList<>();
+        private final Deque<FormulaCell> stack = new ArrayDeque<>();
+        private int[] parent = new int[16];
+
+        Ordering(int pass) {
+            this.pass = pass;
+        }
+
+        void visit(FormulaCell root) {
+            Deque<Frame> frames = new ArrayDeque<>();
+            frames.push(enter(root));
+            while (!frames.isEmpty()) {
+                Frame frame = frames.peek();
+                FormulaCell cell = frame.cell;
+                if (frame.next < frame.successors.size()) {
+                    FormulaCell successor = frame.successors.get(frame.next++);
+                    if (successor.pass != pass) {
+                        frames.push(enter(successor));
+                    } else if (successor.onStack) {
+                        cell.lowLink = Math.min(cell.lowLink, successor.index);
+                        if (successor == cell) {
+                            cell.cyclic = true;
+                        }
+                    }
+                    successor.fed = true;
+                    union(cell.index, successor.index);
+                    continue;
+                }
+                frames.pop();
+                if (cell.lowLink == cell.index) {
+                    // cell是一个强连通分量的根，分量中有多个公式时互相循环引用
+                    int start = emitted.size();
+                    FormulaCell member;
+                    do {
+                        member = stack.pop();
+                        member.onStack = false;
+                        emitted.add(member);
+                    } while (member != cell);
+                    if (emitted.size() - start > 1) {
+                        for (int i = start; i < emitted.size(); i++) {
+                            emitted.get(i).cyclic = true;
+                        }
+                    }
+                }
+                if (!frames.isEmpty()) {
+                    FormulaCell caller = frames.peek().cell;
+                    caller.lowLink = Math.min(caller.lowLink, cell.lowLink);
+                }
+            }
+        }
+
+        private Frame enter(FormulaCell cell) {
+            cell.pass = pass;
+            cell.index = nodes.size();
+            cell.lowLink = cell.index;
+            cell.onStack = true;
+            cell.fed = false;
+            cell.cyclic = false;
+            nodes.add(cell);
+            stack.push(cell);
+            if (parent.length == cell.index) {
+                parent = Arrays.copyOf(parent, parent.length * 2);
+            }
+            parent[cell.index] = cell.index;
+            return new Frame(cell, dependents(cell.row, cell.column));
+        }
+
+        /**
+         * Tarjan算法按依赖的逆序输出分量，反过来就是计算顺序
+         */
+        List<FormulaCell> topologicalOrder() {
+            List<FormulaCell> order = new ArrayList<>(emitted);
+            Collections.reverse(order);
+            return order;
+        }
+
+        /**
+         * 按所在的子图分组，组内保持计算顺序
+         */
+        List<List<FormulaCell>> components(List<FormulaCell> order) {
+            Map<Integer, List<FormulaCell>> groups = new LinkedHashMap<>();
+            for (FormulaCell cell : order) {
+                groups.computeIfAbsent(find(cell.index), k -> new ArrayList<>()).add(cell);
+            }
+            return new ArrayList<>(groups.values());
+        }
+
+        private int find(int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        private void union(int a, int b) {
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA != rootB) {
+                parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+            }
+        }
+    }
+
+    private static final class Frame {
+        private final FormulaCell cell;
+        private final List<FormulaCell> successors;
+        private int next;
+
+        Frame(FormulaCell cell, List<FormulaCell> successors) {
+            this.cell = cell;
+            this.successors = successors;
+        }
+    }
+
+    /**
+     * 并行计算若干互不相关的子图，子图太少时不再拆分
+     */
+    private static final class GroupTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<FormulaCell>> groups;
+        private final int from;
+        private final int to;
+        private final Context values;
+        private final Context passValues;
+
+        GroupTask(List<List<FormulaCell>> groups, int from, int to, Context values, Context passValues) {
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+            this.values = values;
+            this.passValues = passValues;
+        }
+
+        @Override
+        protected void compute() {
+            int cellCount = 0;
+            for (int i = from; i < to; i++) {
+                cellCount += groups.get(i).size();
+            }
+            if (to - from == 1 || cellCount <= TASK_CELLS) {
+                for (int i = from; i < to; i++) {
+                    evaluate(groups.get(i), values, passValues);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new GroupTask(groups, from, middle, values, passValues),
+                    new GroupTask(groups, middle, to, values, passValues));
+        }
+    }
+
+    /**
+     * 本次重算涉及的公式优先取新结果，其他单元格取当前值；
+     * 只在本次涉及的公式中查找（开放寻址的长整型散列表），计算期间只读，可以多线程共用
+     */
+    private static final class PassValues implements Context {
+        private final Context values;
+        private final long[] keys;
+        private final FormulaCell[] slots;
+        private final int mask;
+        /** 每列中本次涉及的公式所在的行（升序），区域读取时在这些行换用新结果 */
+        private final Map<Integer, int[]> passRows = new HashMap<>();
+
+        PassValues(List<FormulaCell> passCells, Context values) {
+            this.values = values;
+            int capacity = Integer.highestOneBit(Math.max(passCells.size(), 2) * 2 - 1) << 1;
+            keys = new long[capacity];
+            slots = new FormulaCell[capacity];
+            mask = capacity - 1;
+            for (FormulaCell cell : passCells) {
+                long key = key(cell.row, cell.column);
+                int slot = slot(key);
+                while (slots[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                slots[slot] = cell;
+            }
+            Map<Integer, List<Integer>> rowsByColumn = new HashMap<>();
+            for (FormulaCell cell : passCells) {
+                rowsByColumn.computeIfAbsent(cell.column, c -> new ArrayList<>()).add(cell.row);
+            }
+            for (Map.Entry<Integer, List<Integer>> entry : rowsByColumn.entrySet()) {
+                int[] rows = entry.getValue().stream().mapToInt(Integer::intValue).sorted().toArray();
+                passRows.put(entry.getKey(), rows);
+            }
+        }
+
+        @Override
+        public void visit(int column, int firstRow, int lastRow, CellVisitor visitor) {
+            int[] rows = passRows.get(column);
+            if (rows == null) {
+                values.visit(column, firstRow, lastRow, visitor);
+                return;
+            }
+            int next = firstRow;
+            int i = Arrays.binarySearch(rows, firstRow);
+            for (i = i < 0 ? -i - 1 : i; i < rows.length && rows[i] <= lastRow; i++) {
+                if (rows[i] > next) {
+                    values.visit(column, next, rows[i] - 1, visitor);
+                }
+                FormulaNode.dispatch(cell(rows[i], column), visitor);
+                next = rows[i] + 1;
+            }
+            if (next <= lastRow) {
+                values.visit(column, next, lastRow, visitor);
+            }
+        }
+
+        @Override
+        public Object cell(int row, int column) {
+            long key = key(row, column);
+            for (int slot = slot(key); slots[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slots[slot].value;
+                }
+            }
+            return values.cell(row, column);
+        }
+
+        @Override
+        public int rowCount() {
+            return values.rowCount();
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+    }
+
+    /**
+     * 一列上的引用区间索引：按起始行排序，并在隐式二叉树上记录子树中最大的结束行，
+     * 查询与某段行相交的区间时跳过结束行不够的子树。新增的区间先放在待合并列表中，
+     * 查询时待合并或已删除的条目过多才重建
+     */
+    private static final class RangeIndex {
+        private static final int PENDING_LIMIT = 64;
+        private static final int LEAF_SIZE = 16;
+
+        private int[] starts = new int[0];
+        private int[] ends = new int[0];
+        private FormulaCell[] owners = new FormulaCell[0];
+        private int[] maxEnds = new int[0];
+        private final List<FormulaCell> pendingOwners = new ArrayList<>();
+        private int[] pendingStarts = new int[8];
+        private int[] pendingEnds = new int[8];
+        private int removed;
+
+        void add(FormulaCell owner, int start, int end) {
+            int n = pendingOwners.size();
+            if (n == pendingStarts.length) {
+                pendingStarts = Arrays.copyOf(pendingStarts, n * 2);
+                pendingEnds = Arrays.copyOf(pendingEnds, n * 2);
+            }
+            pendingStarts[n] = start;
+            pendingEnds[n] = end;
+            pendingOwners.add(owner);
+        }
+
+        /**
+         * 找出与[first, last]相交的区间所属的公式，已删除的公式不返回
+         */
+        void query(int first, int last, List<FormulaCell> out) {
+            if (pendingOwners.size() > PENDING_LIMIT || removed > Math.max(PENDING_LIMIT, owners.length / 2)) {
+                rebuild();
+            }
+            // 起始行不超过last的条目是有序数组的一个前缀
+            int limit = upperBound(starts, last);
+            if (limit > 0) {
+                query(1, 0, owners.length, limit, first, out);
+            }
+            for (int i = 0; i < pendingOwners.size(); i++) {
+                FormulaCell owner = pendingOwners.get(i);
+                if (pendingStarts[i] <= last && pendingEnds[i] >= first && !owner.removed) {
+                    out.add(owner);
+                }
+            }
+        }
+
+        private void query(int node, int lo, int hi, int limit, int first, List<FormulaCell> out) {
+            if (lo >= limit || maxEnds[node] < first) {
+                return;
+            }
+            if (hi - lo <= LEAF_SIZE) {
+                for (int i = lo; i < Math.min(hi, limit); i++) {
+                    if (ends[i] >= first && !owners[i].removed) {
+                        out.add(owners[i]);
+                    }
+                }
+                return;
+            }
+            int middle = (lo + hi) >>> 1;
+            query(2 * node, lo, middle, limit, first, out);
+            query(2 * node + 1, middle, hi, limit, first, out);
+        }
+
+        /**
+         * 合并待合并的条目，去掉已删除的公式，重新排序并计算子树的最大结束行
+         */
+        private void rebuild() {
+            int count = 0;
+            for (FormulaCell owner : owners) {
+                if (!owner.removed) {
+                    count++;
+                }
+            }
+            for (FormulaCell owner : pendingOwners) {
+                if (!owner.removed) {
+                    count++;
+                }
+            }
+            // 起始行（可能为-1）放在高位、原位置放在低位，一次排序得到顺序
+            long[] keys = new long[count];
+            int[] allStarts = new int[count];
+            int[] allEnds = new int[count];
+            FormulaCell[] allOwners = new FormulaCell[count];
+            int n = 0;
+            for (int i = 0; i < owners.length; i++) {
+                if (!owners[i].removed) {
+                    allStarts[n] = starts[i];
+                    allEnds[n] = ends[i];
+                    allOwners[n] = owners[i];
+                    keys[n] = ((long) (starts[i] + 1) << 32) | n;
+                    n++;
+                }
+            }
+            for (int i = 0; i < pendingOwners.size(); i++) {
+                FormulaCell owner = pendingOwners.get(i);
+                if (!owner.removed) {
+                    allStarts[n] = pendingStarts[i];
+                    allEnds[n] = pendingEnds[i];
+                    allOwners[n] = owner;
+                    keys[n] = ((long) (pendingStarts[i] + 1) << 32) | n;
+                    n++;
+                }
+            }
+            Arrays.sort(keys);
+            starts = new int[count];
+            ends = new int[count];
+            owners = new FormulaCell[count];
+            for (int i = 0; i < count; i++) {
+                int from = (int) keys[i];
+                starts[i] = allStarts[from];
+                ends[i] = allEnds[from];
+                owners[i] = allOwners[from];
+            }
+            pendingOwners.clear();
+            removed = 0;
+            // 叶子至少有LEAF_SIZE/2个条目，节点编号不超过叶子数的4倍
+            maxEnds = new int[4 * (count / (LEAF_SIZE / 2) + 1)];
+            if (count > 0) {
+                buildMaxEnds(1, 0, count);
+            }
+        }
+
+        private int buildMaxEnds(int node, int lo, int hi) {
+            int max;
+            if (hi - lo <= LEAF_SIZE) {
+                max = Integer.MIN_VALUE;
+                for (int i = lo; i < hi; i++) {
+                    max = Math.max(max, ends[i]);
+                }
+            } else {
+                int middle = (lo + hi) >>> 1;
+                max = Math.max(buildMaxEnds(2 * node, lo, middle), buildMaxEnds(2 * node + 1, middle, hi));
+            }
+            maxEnds[node] = max;
+            return max;
+        }
+
+        private static int upperBound(int[] values, int key) {
+            int lo = 0;
+            int hi = values.length;
+            while (lo < hi) {
+                int middle = (lo + hi) >>> 1;
+                if (values[middle] <= key) {
+                    lo = middle + 1;
+                } else {
+                    hi = middle;
+                }
+            }
+            return lo;
+        }
+    }
+}
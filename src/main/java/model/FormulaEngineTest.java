@@ -0,0 +1,397 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 公式计算测试类
+ * 在小表格上随机设置公式（单元格相加、区域求和、整列求和、乘以常数）并修改、删除、追加行，
+ * 每次操作后把模型中的所有单元格与另一种直接计算的结果对照：每次都从头计算全部公式，
+ * 能从自身出发回到自身的公式为#CIRCULAR!，删除行时按同样的规则改写引用。
+ * 运行main，全部一致时输出“通过”，否则抛出IllegalStateException；第一个参数可以指定随机种子
+ */
+public class FormulaEngineTest {
+    private static final int COLUMNS = 6;
+    private static final int ROWS = 40;
+    private static final int OPERATIONS = 3000;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 20240101L;
+        Random random = new Random(seed);
+        System.out.println("开始测试公式计算，随机种子: " + seed);
+
+        testOperations(random, StorageMode.MEMORY);
+        testOperations(random, StorageMode.MAPPED);
+
+        System.out.println("\n公式计算测试通过！");
+    }
+
+    /**
+     * 随机操作序列，每次操作后比较所有单元格的值和公式
+     */
+    private static void testOperations(Random random, StorageMode storageMode) {
+        System.out.println("\n测试：随机修改后的公式结果与从头计算比较（" + storageMode + "）");
+        for (int round = 0; round < 5; round++) {
+            Sheet sheet = new Sheet();
+            for (int r = 0; r < ROWS; r++) {
+                sheet.values.add(randomRow(random));
+            }
+            ExcelDataModel model = new ExcelDataModel();
+            model.setStorageMode(storageMode);
+            List<List<String>> rows = new ArrayList<>();
+            for (String[] row : sheet.values) {
+                rows.add(Arrays.asList(row.clone()));
+            }
+            model.setData(rows, Arrays.asList("甲", "乙", "丙", "丁", "戊", "己"));
+
+            for (int op = 0; op < OPERATIONS; op++) {
+                String description = randomOperation(random, model, sheet);
+                compare(model, sheet, "第" + (round + 1) + "轮第" + (op + 1) + "次操作（" + description + "）后");
+            }
+            model.dispose();
+        }
+        System.out.println("公式结果一致");
+    }
+
+    /**
+     * 在模型和参照表格上做同一个随机操作
+     * @return 操作的描述，用于出错时的提示
+     */
+    private static String randomOperation(Random random, ExcelDataModel model, Sheet sheet) {
+        int rowCount = sheet.values.size();
+        int action = random.nextInt(20);
+        if (rowCount == 0 || action < 2) {
+            String[] row = randomRow(random);
+            model.addRow(Arrays.asList(row.clone()));
+            sheet.values.add(row);
+            return "追加行";
+        }
+        int row = random.nextInt(rowCount);
+        int column = random.nextInt(COLUMNS);
+        if (action < 10) {
+            Formula formula = randomFormula(random, rowCount);
+            model.setFormula(row, column, formula.toString());
+            sheet.formulas.put(key(row, column), formula);
+            return "设置" + cellName(row, column) + formula;
+        }
+        if (action < 18) {
+            // 有时写入与当前显示相同的值，公式应当保留
+            String value = random.nextInt(4) == 0 ? sheet.display(row, column) : randomValue(random);
+            if (!value.equals(sheet.display(row, column))) {
+                sheet.formulas.remove(key(row, column));
+                sheet.values.get(row)[column] = value;
+            }
+            model.setValueAt(row, column, value);
+            return cellName(row, column) + "改为“" + value + "”";
+        }
+        model.deleteRow(row);
+        sheet.deleteRow(row);
+        return "删除第" + (row + 2) + "行";
+    }
+
+    private static void compare(ExcelDataModel model, Sheet sheet, String when) {
+        check(model.getRowCount() == sheet.values.size(), when + "：行数不一致");
+        Map<Long, String> results = sheet.evaluate();
+        check(model.getFormulaCount() == sheet.formulas.size(), when + "：应有" + sheet.formulas.size()
+                + "个公式，实际" + model.getFormulaCount() + "个");
+        for (int r = 0; r < sheet.values.size(); r++) {
+            for (int c = 0; c < COLUMNS; c++) {
+                Formula formula = sheet.formulas.get(key(r, c));
+                String expectedFormula = formula != null ? formula.toString() : null;
+                String actualFormula = model.getFormula(r, c);
+                check(expectedFormula == null ? actualFormula == null : expectedFormula.equals(actualFormula),
+                        when + "：" + cellName(r, c) + "的公式应为" + expectedFormula + "，实际为" + actualFormula);
+                String expected = formula != null ? results.get(key(r, c)) : sheet.values.get(r)[c];
+                String actual = model.getValueAt(r, c);
+                check(expected.equals(actual), when + "：" + cellName(r, c)
+                        + (formula != null ? formula.toString() : "") + "应为“" + expected + "”，实际为“" + actual + "”");
+            }
+        }
+    }
+
+    /**
+     * 随机公式：两个单元格相加、区域求和、整列求和或单元格乘以2，引用可能超出数据范围
+     */
+    private static Formula randomFormula(Random random, int rowCount) {
+        int kind = random.nextInt(4);
+        switch (kind) {
+            case 0:
+                return new Formula(kind, randomCell(random, rowCount), randomCell(random, rowCount));
+            case 1: {
+                Ref first = randomCell(random, rowCount);
+                return new Formula(kind, new Ref(first.column, first.firstRow,
+                        first.firstRow + random.nextInt(8), false, true));
+            }
+            case 2:
+                return new Formula(kind, new Ref(random.nextInt(COLUMNS), -1, FormulaNode.MAX_ROW, true, true));
+            default:
+                return new Formula(kind, randomCell(random, rowCount));
+        }
+    }
+
+    private static Ref randomCell(Random random, int rowCount) {
+        int row = random.nextInt(rowCount + 3);
+        return new Ref(random.nextInt(COLUMNS), row, row, false, false);
+    }
+
+    private static String[] randomRow(Random random) {
+        String[] row = new String[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            row[c] = randomValue(random);
+        }
+        return row;
+    }
+
+    /**
+     * 整数或空单元格
+     */
+    private static String randomValue(Random random) {
+        return random.nextInt(5) == 0 ? "" : String.valueOf(random.nextInt(200) - 100);
+    }
+
+    private static String cellName(int row, int column) {
+        return (char) ('A' + column) + String.valueOf(row + 2);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | column;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * 参照表格：普通单元格的值和公式，每次从头计算
+     */
+    private static final class Sheet {
+        private final List<String[]> values = new ArrayList<>();
+        private final Map<Long, Formula> formulas = new HashMap<>();
+
+        /**
+         * 单元格的显示值，公式单元格为计算结果
+         */
+        String display(int row, int column) {
+            Formula formula = formulas.get(key(row, column));
+            return formula != null ? evaluate().get(key(row, column)) : values.get(row)[column];
+        }
+
+        /**
+         * 删除一行：该行的公式删除，引用该行单元格的变为#REF!，包含该行的区域缩小，下方的引用上移，整列引用不变
+         */
+        void deleteRow(int row) {
+            values.remove(row);
+            Map<Long, Formula> shifted = new HashMap<>();
+            for (Map.Entry<Long, Formula> entry : formulas.entrySet()) {
+                int formulaRow = (int) (entry.getKey() >>> 32);
+                int column = (int) (long) entry.getKey();
+                if (formulaRow == row) {
+                    continue;
+                }
+                Formula formula = entry.getValue();
+                Ref[] refs = new Ref[formula.refs.length];
+                for (int i = 0; i < refs.length; i++) {
+                    refs[i] = formula.refs[i] == null ? null : formula.refs[i].deleteRow(row);
+                }
+                shifted.put(key(formulaRow > row ? formulaRow - 1 : formulaRow, column), new Formula(formula.kind, refs));
+            }
+            formulas.clear();
+            formulas.putAll(shifted);
+        }
+
+        /**
+         * 从头计算所有公式，返回各公式单元格的显示值
+         */
+        Map<Long, String> evaluate() {
+            Set<Long> cyclic = new HashSet<>();
+            for (Long cell : formulas.keySet()) {
+                if (reaches(cell, cell)) {
+                    cyclic.add(cell);
+                }
+            }
+            Map<Long, Object> cache = new HashMap<>();
+            Map<Long, String> results = new HashMap<>();
+            for (Long cell : formulas.keySet()) {
+                Object value = value((int) (cell >>> 32), (int) (long) cell, cyclic, cache);
+                results.put(cell, value instanceof Double ? FormulaNode.formatNumber((Double) value) : (String) value);
+            }
+            return results;
+        }
+
+        /**
+         * 从公式from出发沿引用能否到达公式target
+         */
+        private boolean reaches(long from, long target) {
+            Set<Long> visited = new HashSet<>();
+            List<Long> stack = new ArrayList<>();
+            stack.add(from);
+            while (!stack.isEmpty()) {
+                long cell = stack.remove(stack.size() - 1);
+                for (long precedent : precedents(formulas.get(cell))) {
+                    if (precedent == target) {
+                        return true;
+                    }
+                    if (visited.add(precedent)) {
+                        stack.add(precedent);
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 公式直接引用的公式单元格
+         */
+        private List<Long> precedents(Formula formula) {
+            List<Long> result = new ArrayList<>();
+            for (Ref ref : formula.refs) {
+                if (ref == null) {
+                    continue;
+                }
+                for (int r = Math.max(ref.firstRow, 0); r <= ref.lastRow && r < values.size(); r++) {
+                    if (formulas.containsKey(key(r, ref.column))) {
+                        result.add(key(r, ref.column));
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 单元格的值：Double为数，String为错误，null为空单元格
+         */
+        private Object value(int row, int column, Set<Long> cyclic, Map<Long, Object> cache) {
+            if (row < 0 || row >= values.size()) {
+                return null;
+            }
+            long cell = key(row, column);
+            Formula formula = formulas.get(cell);
+            if (formula == null) {
+                String text = values.get(row)[column];
+                return text.isEmpty() ? null : (Object) Double.parseDouble(text);
+            }
+            if (cyclic.contains(cell)) {
+                return "#CIRCULAR!";
+            }
+            Object cached = cache.get(cell);
+            if (cached == null) {
+                cached = formula.evaluate(this, cyclic, cache);
+                cache.put(cell, cached);
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * 参照公式：kind为0时refs[0]+refs[1]，为1、2时SUM(refs[0])，为3时refs[0]*2；null为#REF!
+     */
+    private static final class Formula {
+        private final int kind;
+        private final Ref[] refs;
+
+        Formula(int kind, Ref... refs) {
+            this.kind = kind;
+            this.refs = refs;
+        }
+
+        /**
+         * 从左到右取值，第一个错误即为结果；SUM按行的顺序查找错误，空单元格为0，按与公式相同的顺序做浮点运算
+         */
+        Object evaluate(Sheet sheet, Set<Long> cyclic, Map<Long, Object> cache) {
+            if (kind == 1 || kind == 2) {
+                Ref ref = refs[0];
+                if (ref == null) {
+                    return "#REF!";
+                }
+                double sum = 0;
+                for (int r = Math.max(ref.firstRow, 0); r <= ref.lastRow && r < sheet.values.size(); r++) {
+                    Object value = sheet.value(r, ref.column, cyclic, cache);
+                    if (value instanceof String) {
+                        return value;
+                    }
+                    if (value != null) {
+                        sum += (Double) value;
+                    }
+                }
+                return sum;
+            }
+            double result = kind == 0 ? 0 : 2;
+            for (Ref ref : refs) {
+                if (ref == null) {
+                    return "#REF!";
+                }
+                Object value = sheet.value(ref.firstRow, ref.column, cyclic, cache);
+                if (value instanceof String) {
+                    return value;
+                }
+                double number = value == null ? 0 : (Double) value;
+                result = kind == 0 ? result + number : result * number;
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            if (kind == 1 || kind == 2) {
+                return "=SUM(" + text(refs[0]) + ")";
+            }
+            return kind == 0 ? "=" + text(refs[0]) + "+" + text(refs[1]) : "=" + text(refs[0]) + "*2";
+        }
+
+        private static String text(Ref ref) {
+            return ref == null ? "#REF!" : ref.toString();
+        }
+    }
+
+    /**
+     * 参照引用：同一列中firstRow到lastRow的单元格，整列引用的起止行为-1和MAX_ROW
+     */
+    private static final class Ref {
+        private final int column;
+        private final int firstRow;
+        private final int lastRow;
+        private final boolean wholeColumn;
+        private final boolean area;
+
+        Ref(int column, int firstRow, int lastRow, boolean wholeColumn, boolean area) {
+            this.column = column;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.wholeColumn = wholeColumn;
+            this.area = area;
+        }
+
+        /**
+         * 删除一行后的引用，引用的单个单元格被删除时返回null
+         */
+        Ref deleteRow(int row) {
+            if (wholeColumn || lastRow < row) {
+                return this;
+            }
+            if (firstRow > row) {
+                return new Ref(column, firstRow - 1, lastRow - 1, false, area);
+            }
+            if (firstRow == lastRow) {
+                return null;
+            }
+            return new Ref(column, firstRow, lastRow - 1, false, area);
+        }
+
+        @Override
+        public String toString() {
+            String name = String.valueOf((char) ('A' + column));
+            if (wholeColumn) {
+                return name + ":" + name;
+            }
+            return area ? name + (firstRow + 2) + ":" + name + (lastRow + 2) : name + (firstRow + 2);
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package model;
+
+import model.FormulaNode.CellVisitor;
+import model.FormulaNode.Context;
+import model.FormulaNode.ErrorValue;
+import model.FormulaNode.FormulaException;
+import model.FormulaNode.Reference;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 公式内置函数 - MVC架构中的Model层组件
+ * 支持常用的统计、逻辑、数学和文本函数；不支持的函数在解析时报错，单元格保留文件中的计算结果
+ *
+ * 与Excel一致：引用中的文本和逻辑值不参与SUM等统计，直接写在参数中的值会转换为数字
+ */
+final class FormulaFunctions {
+    private static final Map<String, Function> FUNCTIONS = new HashMap<>();
+
+    static {
+        register("SUM", 1, -1, (args, context) -> {
+            Statistics stats = Statistics.of(args, context);
+            return FormulaNode.number(stats.sum);
+        });
+        register("AVERAGE", 1, -1, (args, context) -> {
+            Statistics stats = Statistics.of(args, context);
+            if (stats.count == 0) {
+                throw new FormulaException(ErrorValue.DIV0);
+            }
+            return FormulaNode.number(stats.sum / stats.count);
+        });
+        register("MIN", 1, -1, (args, context) -> {
+            Statistics stats = Statistics.of(args, context);
+            return stats.count == 0 ? 0.0 : stats.min;
+        });
+        register("MAX", 1, -1, (args, context) -> {
+            Statistics stats = Statistics.of(args, context);
+            return stats.count == 0 ? 0.0 : stats.max;
+        });
+        register("PRODUCT", 1, -1, (args, context) -> {
+            Statistics stats = Statistics.of(args, context);
+            return stats.count == 0 ? 0.0 : FormulaNode.number(stats.product);
+        });
+        register("COUNT", 1, -1, (args, context) -> (double) count(args, context, false));
+        register("COUNTA", 1, -1, (args, context) -> (double) count(args, context, true));
+        register("COUNTBLANK", 1, 1, (args, context) -> {
+            Reference range = reference(args.get(0));
+            int blanks = 0;
+            for (int row = range.firstRow, last = range.lastRowIn(context); row <= last; row++) {
+                for (int column = range.firstColumn; column <= range.lastColumn; column++) {
+                    Object value = context.cell(row, column);
+                    if (value == FormulaNode.BLANK || "".equals(value)) {
+                        blanks++;
+                    }
+                }
+            }
+            return (double) blanks;
+        });
+        register("SUMIF", 2, 3, (args, context) -> conditional(args, context, false));
+        register("AVERAGEIF", 2, 3, (args, context) -> conditional(args, context, true));
+        register("COUNTIF", 2, 2, (args, context) -> {
+            Reference range = reference(args.get(0));
+            Criteria criteria = new Criteria(args.get(1).evaluate(context));
+            int matches = 0;
+            for (int row = range.firstRow, last = range.lastRowIn(context); row <= last; row++) {
+                for (int column = range.firstColumn; column <= range.lastColumn; column++) {
+                    if (criteria.matches(context.cell(row, column))) {
+                        matches++;
+                    }
+                }
+            }
+            return (double) matches;
+        });
+
+        register("IF", 2, 3, (args, context) -> {
+            if (FormulaNode.toBoolean(args.get(0).evaluate(context))) {
+                return args.get(1).evaluate(context);
+            }
+            return args.size() > 2 ? args.get(2).evaluate(context) : Boolean.FALSE;
+        });
+        register("IFERROR", 2, 2, (args, context) -> {
+            Object value = args.get(0).evaluateSafely(context);
+            return value instanceof ErrorValue ? args.get(1).evaluate(context) : value;
+        });
+        register("AND", 1, -1, (args, context) -> logical(args, context, true));
+        register("OR", 1, -1, (args, context) -> logical(args, context, false));
+        register("NOT", 1, 1, (args, context) -> !FormulaNode.toBoolean(args.get(0).evaluate(context)));
+
+        register("ABS", 1, 1, (args, context) -> Math.abs(number(args, 0, context)));
+        register("INT", 1, 1, (args, context) -> Math.floor(number(args, 0, context)));
+        register("SQRT", 1, 1, (args, context) -> FormulaNode.number(Math.sqrt(number(args, 0, context))));
+        register("POWER", 2, 2, (args, context) ->
+                FormulaNode.number(Math.pow(number(args, 0, context), number(args, 1, context))));
+        register("MOD", 2, 2, (args, context) -> {
+            double dividend = number(args, 0, context);
+            double divisor = number(args, 1, context);
+            if (divisor == 0) {
+                throw new FormulaException(ErrorValue.DIV0);
+            }
+            return dividend - divisor * Math.floor(dividend / divisor);
+        });
+        register("ROUND", 1, 2, (args, context) -> round(args, context, RoundingMode.HALF_UP));
+        register("ROUNDUP", 1, 2, (args, context) -> round(args, context, RoundingMode.UP));
+        register("ROUNDDOWN", 1, 2, (args, context) -> round(args, context, RoundingMode.DOWN));
+
+        register("LEN", 1, 1, (args, context) -> (double) text(args, 0, context).length());
+        register("UPPER", 1, 1, (args, context) -> text(args, 0, context).toUpperCase(Locale.ROOT));
+        register("LOWER", 1, 1, (args, context) -> text(args, 0, context).toLowerCase(Locale.ROOT));
+        register("TRIM", 1, 1, (args, context) -> text(args, 0, context).trim().replaceAll(" +", " "));
+        register("LEFT", 1, 2, (args, context) -> {
+            String value = text(args, 0, context);
+            int length = args.size() > 1 ? length(number(args, 1, context)) : 1;
+            return value.substring(0, Math.min(length, value.length()));
+        });
+        register("RIGHT", 1, 2, (args, context) -> {
+            String value = text(args, 0, context);
+            int length = args.size() > 1 ? length(number(args, 1, context)) : 1;
+            return value.substring(value.length() - Math.min(length, value.length()));
+        });
+        register("MID", 3, 3, (args, context) -> {
+            String value = text(args, 0, context);
+            double start = number(args, 1, context);
+            if (start < 1) {
+                throw new FormulaException(ErrorValue.VALUE);
+            }
+            int from = (int) Math.min(start - 1, value.length());
+            int length = length(number(args, 2, context));
+            return value.substring(from, Math.min(value.length(), from + length));
+        });
+        Function concatenate = register("CONCATENATE", 1, -1, (args, context) -> {
+            StringBuilder out = new StringBuilder();
+            for (FormulaNode argument : args) {
+                if (argument instanceof Reference && ((Reference) argument).area) {
+                    Reference range = (Reference) argument;
+                    for (int row = range.firstRow, last = range.lastRowIn(context); row <= last; row++) {
+                        for (int column = range.firstColumn; column <= range.lastColumn; column++) {
+                            out.append(FormulaNode.toText(context.cell(row, column)));
+                        }
+                    }
+                } else {
+                    out.append(FormulaNode.toText(argument.evaluate(context)));
+                }
+            }
+            return out.toString();
+        });
+        FUNCTIONS.put("CONCAT", new Function("CONCAT", 1, -1, concatenate.body));
+    }
+
+    private FormulaFunctions() {
+    }
+
+    /**
+     * 按名称查找函数，名称不区分大小写，不支持的函数返回null
+     */
+    static Function find(String name) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        // 较新版本的Excel在文件中给新函数加_xlfn.前缀
+        if (upper.startsWith("_XLFN.")) {
+            upper = upper.substring("_XLFN.".length());
+        }
+        return FUNCTIONS.get(upper);
+    }
+
+    private static Function register(String name, int minArguments, int maxArguments, Body body) {
+        Function function = new Function(name, minArguments, maxArguments, body);
+        FUNCTIONS.put(name, function);
+        return function;
+    }
+
+    /**
+     * 函数的计算过程，参数以语法树节点传入，由函数决定是否求值
+     */
+    interface Body {
+        Object apply(List<FormulaNode> arguments, Context context);
+    }
+
+    /**
+     * 一个内置函数及其参数个数
+     */
+    static final class Function {
+        private final String name;
+        private final int minArguments;
+        private final int maxArguments;
+        private final Body body;
+
+        Function(String name, int minArguments, int maxArguments, Body body) {
+            this.name = name;
+            this.minArguments = minArguments;
+            this.maxArguments = maxArguments;
+            this.body = body;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * 参数个数是否合法，maxArguments为-1表示不限
+         */
+        boolean accepts(int argumentCount) {
+            return argumentCount >= minArguments && (maxArguments < 0 || argumentCount <= maxArguments);
+        }
+
+        Object apply(List<FormulaNode> arguments, Context context) {
+            return body.apply(arguments, context);
+        }
+    }
+
+    // ---- 参数处理 ----
+
+    private static double number(List<FormulaNode> args, int index, Context context) {
+        return FormulaNode.toNumber(args.get(index).evaluate(context));
+    }
+
+    private static String text(List<FormulaNode> args, int index, Context context) {
+        return FormulaNode.toText(args.get(index).evaluate(context));
+    }
+
+    private static int length(double value) {
+        if (value < 0) {
+            throw new FormulaException(ErrorValue.VALUE);
+        }
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 要求参数是引用，SUMIF等函数的区域参数不能是计算结果
+     */
+    private static Reference reference(FormulaNode argument) {
+        if (!(argument instanceof Reference)) {
+            throw new FormulaException(ErrorValue.VALUE);
+        }
+        return (Reference) argument;
+    }
+
+    private static Object round(List<FormulaNode> args, Context context, RoundingMode mode) {
+        double value = number(args, 0, context);
+        int digits = args.size() > 1 ? (int) number(args, 1, context) : 0;
+        return BigDecimal.valueOf(value).setScale(digits, mode).doubleValue();
+    }
+
+    /**
+     * COUNT统计数字，COUNTA统计非空值
+     */
+    private static int count(List<FormulaNode> args, Context context, boolean nonBlank) {
+        int[] counter = new int[1];
+        CellVisitor visitor = new CellVisitor() {
+            @Override
+            public void number(double value) {
+                counter[0]++;
+            }
+
+            @Override
+            public void other(Object value) {
+                if (nonBlank && value != FormulaNode.BLANK) {
+                    counter[0]++;
+                }
+            }
+        };
+        int count = 0;
+        for (FormulaNode argument : args) {
+            if (argument instanceof Reference) {
+                ((Reference) argument).visit(context, visitor);
+            } else {
+                Object value = argument.evaluateSafely(context);
+                if (nonBlank ? value != FormulaNode.BLANK : isNumeric(value)) {
+                    count++;
+                }
+            }
+        }
+        return count + counter[0];
+    }
+
+    private static boolean isNumeric(Object value) {
+        if (value instanceof Double || value instanceof Boolean) {
+            return true;
+        }
+        if (!(value instanceof String)) {
+            return false;
+        }
+        String text = ((String) value).trim();
+        return !text.isEmpty() && !Double.isNaN(TableSorter.parseNumber(text));
+    }
+
+    /**
+     * AND在所有值为真时为真，OR在任一值为真时为真；引用中的文本和空值忽略，没有可判断的值时返回#VALUE!
+     */
+    private static Object logical(List<FormulaNode> args, Context context, boolean all) {
+        boolean seen = false;
+        boolean result = all;
+        for (FormulaNode argument : args) {
+            if (argument instanceof Reference) {
+                Reference range = (Reference) argument;
+                for (int row = range.firstRow, last = range.lastRowIn(context); row <= last; row++) {
+                    for (int column = range.firstColumn; column <= range.lastColumn; column++) {
+                        Object value = context.cell(row, column);
+                        if (value instanceof Double || value instanceof Boolean || value instanceof ErrorValue) {
+                            boolean flag = FormulaNode.toBoolean(value);
+                            result = all ? result && flag : result || flag;
+                            seen = true;
+                        }
+                    }
+                }
+            } else {
+                boolean flag = FormulaNode.toBoolean(argument.evaluate(context));
+                result = all ? result && flag : result || flag;
+                seen = true;
+            }
+        }
+        if (!seen) {
+            throw new FormulaException(ErrorValue.VALUE);
+        }
+        return result;
+    }
+
+    /**
+     * SUMIF和AVERAGEIF：求和区域省略时对条件区域本身求和，否则按相同的位移取求和区域中的单元格
+     */
+    private static Object conditional(List<FormulaNode> args, Context context, boolean average) {
+        Reference range = reference(args.get(0));
+        Criteria criteria = new Criteria(args.get(1).evaluate(context));
+        Reference target = args.size() > 2 ? reference(args.get(2)) : range;
+        double sum = 0;
+        int count = 0;
+        for (int row = range.firstRow, last = range.lastRowIn(context); row <= last; row++) {
+            for (int column = range.firstColumn; column <= range.lastColumn; column++) {
+                if (!criteria.matches(context.cell(row, column))) {
+                    continue;
+                }
+                Object value = context.cell(target.firstRow + row - range.firstRow,
+                        target.firstColumn + column - range.firstColumn);
+                if (value instanceof ErrorValue) {
+                    throw new FormulaException((ErrorValue) value);
+                }
+                if (value instanceof Double) {
+                    sum += (Double) value;
+                    count++;
+                }
+            }
+        }
+        if (!average) {
+            return FormulaNode.number(sum);
+        }
+        if (count == 0) {
+            throw new FormulaException(ErrorValue.DIV0);
+        }
+        return FormulaNode.number(sum / count);
+    }
+
+    /**
+     * SUM、AVERAGE、MIN、MAX、PRODUCT共用的统计：引用中只取数字，直接给出的参数转换为数字
+     */
+    private static final class Statistics implements CellVisitor {
+        private double sum;
+        private double product = 1;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private int count;
+
+        static Statistics of(List<FormulaNode> args, Context context) {
+            Statistics stats = new Statistics();
+            for (FormulaNode argument : args) {
+                if (argument instanceof Reference) {
+                    ((Reference) argument).visit(context, stats);
+                } else {
+                    stats.number(FormulaNode.toNumber(argument.evaluate(context)));
+                }
+            }
+            return stats;
+        }
+
+        @Override
+        public void other(Object value) {
+            if (value instanceof ErrorValue) {
+                throw new FormulaException((ErrorValue) value);
+            }
+        }
+
+        @Override
+        public void number(double value) {
+            sum += value;
+            product *= value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            count++;
+        }
+    }
+
+    /**
+     * COUNTIF等函数的条件：可以带比较运算符前缀（如">5"、"<>北京"），文本相等比较支持*和?通配符
+     */
+    private static final class Criteria {
+        private final String operator;
+        private final Object operand;
+        private final Pattern pattern;
+
+        Criteria(Object criteria) {
+            if (criteria instanceof ErrorValue) {
+                throw new FormulaException((ErrorValue) criteria);
+            }
+            String op = "=";
+            Object value = criteria;
+            if (criteria instanceof String) {
+                String text = (String) criteria;
+                for (String prefix : new String[]{"<=", ">=", "<>", "<", ">", "="}) {
+                    if (text.startsWith(prefix)) {
+                        op = prefix;
+                        text = text.substring(prefix.length());
+                        break;
+                    }
+                }
+                value = FormulaNode.parseCellText(text);
+                if (value == FormulaNode.BLANK) {
+                    value = "";
+                }
+            }
+            this.operator = op;
+            this.operand = value;
+            String text = operand instanceof String ? (String) operand : null;
+            boolean wildcard = text != null && (text.indexOf('*') >= 0 || text.indexOf('?') >= 0)
+                    && ("=".equals(op) || "<>".equals(op));
+            this.pattern = wildcard ? wildcardPattern(text) : null;
+        }
+
+        boolean matches(Object value) {
+            if (value instanceof ErrorValue) {
+                return false;
+            }
+            if (pattern != null) {
+                boolean found = value instanceof String && pattern.matcher((String) value).matches();
+                return "=".equals(operator) == found;
+            }
+            if ("".equals(operand)) {
+                boolean blank = value == FormulaNode.BLANK || "".equals(value);
+                return "=".equals(operator) ? blank : !"<>".equals(operator) || !blank;
+            }
+            if (value == FormulaNode.BLANK) {
+                return "<>".equals(operator);
+            }
+            // 数字条件只与数字比较，文本条件只与文本比较
+            if ((operand instanceof Double) != (value instanceof Double)) {
+                return "<>".equals(operator);
+            }
+            int order = FormulaNode.compare(value, operand);
+            switch (operator) {
+                case "<":
+                    return order < 0;
+                case ">":
+                    return order > 0;
+                case "<=":
+                    return order <= 0;
+                case ">=":
+                    return order >= 0;
+                case "<>":
+                    return order != 0;
+                default:
+                    return order == 0;
+            }
+        }
+
+        private static Pattern wildcardPattern(String text) {
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+        }
+    }
+}
@@ -0,0 +1,715 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+/**
+ * 公式语法树节点 - MVC架构中的Model层组件
+ * 由FormulaParser生成，求值时通过Context读取单元格；节点创建后不再修改，可以在多个线程中同时求值
+ *
+ * 求值结果是Double、String、Boolean、BLANK或ErrorValue之一。
+ * 行号与模型一致：表头为-1，数据行从0开始，对应公式中的第1行和第2行起
+ */
+abstract class FormulaNode {
+    /** 空单元格 */
+    static final Object BLANK = Blank.VALUE;
+
+    /** 整列引用（如A:A）的结束行 */
+    static final int MAX_ROW = Integer.MAX_VALUE - 2;
+
+    private enum Blank { VALUE }
+
+    /**
+     * 公式错误值
+     */
+    enum ErrorValue {
+        NULL("#NULL!"),
+        DIV0("#DIV/0!"),
+        VALUE("#VALUE!"),
+        REF("#REF!"),
+        NAME("#NAME?"),
+        NUM("#NUM!"),
+        NA("#N/A"),
+        CIRCULAR("#CIRCULAR!");
+
+        private final String text;
+
+        ErrorValue(String text) {
+            this.text = text;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        /**
+         * 由错误文本查找错误值，不是错误文本时返回null
+         */
+        static ErrorValue fromText(String text) {
+            for (ErrorValue error : values()) {
+                if (error.text.equalsIgnoreCase(text)) {
+                    return error;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 求值时读取单元格的来源
+     */
+    interface Context {
+        /**
+         * 单元格的值，超出数据范围时返回BLANK
+         */
+        Object cell(int row, int column);
+
+        /**
+         * 数据行数，整列引用只读到最后一行
+         */
+        int rowCount();
+
+        /**
+         * 依次访问一列中[firstRow, lastRow]范围内的单元格，区域函数用它成段读取，不必逐个调用cell
+         */
+        default void visit(int column, int firstRow, int lastRow, CellVisitor visitor) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                dispatch(cell(row, column), visitor);
+            }
+        }
+    }
+
+    /**
+     * 逐个接收区域中的单元格，数字单独回调以免装箱
+     */
+    interface CellVisitor {
+        void number(double value);
+
+        /**
+         * 文本、逻辑值、空值或错误值
+         */
+        void other(Object value);
+    }
+
+    /**
+     * 按值的类型回调
+     */
+    static void dispatch(Object value, CellVisitor visitor) {
+        if (value instanceof Double) {
+            visitor.number((Double) value);
+        } else {
+            visitor.other(value);
+        }
+    }
+
+    /**
+     * 求值
+     * @throws FormulaException 计算出错时抛出，由调用方转换为错误值
+     */
+    abstract Object evaluate(Context context);
+
+    /**
+     * 按公式语法输出，不含开头的等号
+     */
+    abstract void write(StringBuilder out);
+
+    /**
+     * 替换公式中的引用，映射返回null的引用变为#REF!；没有引用被替换时返回自身
+     */
+    FormulaNode transform(UnaryOperator<Reference> mapper) {
+        return this;
+    }
+
+    /**
+     * 收集公式中的所有引用
+     */
+    void collectReferences(List<Reference> out) {
+    }
+
+    /**
+     * 完整的公式文本（以等号开头）
+     */
+    String toFormula() {
+        StringBuilder out = new StringBuilder("=");
+        write(out);
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toFormula();
+    }
+
+    /**
+     * 求值并把计算错误转换为错误值
+     */
+    final Object evaluateSafely(Context context) {
+        try {
+            return evaluate(context);
+        } catch (FormulaException e) {
+            return e.getError();
+        } catch (ArithmeticException e) {
+            return ErrorValue.NUM;
+        }
+    }
+
+    // ---- 值的转换 ----
+
+    /**
+     * 把单元格中保存的文本转换为公式中的值：空串为BLANK，数字文本为Double，true/false为Boolean
+     */
+    static Object parseCellText(String text) {
+        if (text == null || text.isEmpty()) {
+            return BLANK;
+        }
+        double number = TableSorter.parseNumber(text);
+        if (!Double.isNaN(number)) {
+            return number;
+        }
+        if ("true".equalsIgnoreCase(text)) {
+            return Boolean.TRUE;
+        }
+        if ("false".equalsIgnoreCase(text)) {
+            return Boolean.FALSE;
+        }
+        if (text.charAt(0) == '#') {
+            ErrorValue error = ErrorValue.fromText(text);
+            if (error != null) {
+                return error;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 把公式结果转换为单元格文本，格式与导入的单元格一致
+     */
+    static String formatValue(Object value) {
+        if (value instanceof Double) {
+            return formatNumber((Double) value);
+        }
+        if (value instanceof ErrorValue) {
+            return ((ErrorValue) value).getText();
+        }
+        if (value == BLANK) {
+            return "0";
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * 整数不带小数点，其他数保留15位有效数字，避免二进制误差显示出来
+     */
+    static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        double magnitude = Math.abs(value);
+        if (Double.isNaN(value) || Double.isInfinite(value) || magnitude < 1e-9 || magnitude >= 1e15) {
+            return String.valueOf(value);
+        }
+        return new BigDecimal(value).round(new MathContext(15)).stripTrailingZeros().toPlainString();
+    }
+
+    static double toNumber(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value == BLANK) {
+            return 0;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof ErrorValue) {
+            throw new FormulaException((ErrorValue) value);
+        }
+        String text = ((String) value).trim();
+        double number = text.isEmpty() ? Double.NaN : TableSorter.parseNumber(text);
+        if (Double.isNaN(number)) {
+            throw new FormulaException(ErrorValue.VALUE);
+        }
+        return number;
+    }
+
+    static String toText(Object value) {
+        if (value instanceof ErrorValue) {
+            throw new FormulaException((ErrorValue) value);
+        }
+        if (value == BLANK) {
+            return "";
+        }
+        if (value instanceof Double) {
+            return formatNumber((Double) value);
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "TRUE" : "FALSE";
+        }
+        return (String) value;
+    }
+
+    static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Double) {
+            return (Double) value != 0;
+        }
+        if (value == BLANK) {
+            return false;
+        }
+        if (value instanceof ErrorValue) {
+            throw new FormulaException((ErrorValue) value);
+        }
+        String text = (String) value;
+        if ("TRUE".equalsIgnoreCase(text)) {
+            return true;
+        }
+        if ("FALSE".equalsIgnoreCase(text)) {
+            return false;
+        }
+        throw new FormulaException(ErrorValue.VALUE);
+    }
+
+    /**
+     * 按Excel的规则比较两个值：数字小于文本小于逻辑值，文本不区分大小写，空值按另一方的类型取0或空串
+     */
+    static int compare(Object left, Object right) {
+        if (left instanceof ErrorValue) {
+            throw new FormulaException((ErrorValue) left);
+        }
+        if (right instanceof ErrorValue) {
+            throw new FormulaException((ErrorValue) right);
+        }
+        if (left == BLANK) {
+            left = right instanceof String ? "" : right instanceof Boolean ? Boolean.FALSE : (Object) 0.0;
+        }
+        if (right == BLANK) {
+            right = left instanceof String ? "" : left instanceof Boolean ? Boolean.FALSE : (Object) 0.0;
+        }
+        int leftRank = typeRank(left);
+        int rightRank = typeRank(right);
+        if (leftRank != rightRank) {
+            return Integer.compare(leftRank, rightRank);
+        }
+        if (left instanceof Double) {
+            return Double.compare((Double) left, (Double) right);
+        }
+        if (left instanceof Boolean) {
+            return Boolean.compare((Boolean) left, (Boolean) right);
+        }
+        return ((String) left).toUpperCase(Locale.ROOT).compareTo(((String) right).toUpperCase(Locale.ROOT));
+    }
+
+    private static int typeRank(Object value) {
+        return value instanceof Double ? 0 : value instanceof String ? 1 : 2;
+    }
+
+    /**
+     * 检查计算结果，非有限数转换为#NUM!
+     */
+    static Object number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new FormulaException(ErrorValue.NUM);
+        }
+        return value;
+    }
+
+    /**
+     * 列号转换为列字母，0对应A
+     */
+    static String columnName(int column) {
+        StringBuilder name = new StringBuilder();
+        for (int c = column + 1; c > 0; c = (c - 1) / 26) {
+            name.append((char) ('A' + (c - 1) % 26));
+        }
+        return name.reverse().toString();
+    }
+
+    // ---- 节点类型 ----
+
+    /**
+     * 常量：数字、文本、逻辑值、错误值或省略的参数
+     */
+    static final class Literal extends FormulaNode {
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(Context context) {
+            return value;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            if (value instanceof String) {
+                out.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+            } else if (value instanceof Boolean) {
+                out.append((Boolean) value ? "TRUE" : "FALSE");
+            } else if (value instanceof Double) {
+                out.append(formatNumber((Double) value));
+            } else if (value instanceof ErrorValue) {
+                out.append(((ErrorValue) value).getText());
+            }
+        }
+    }
+
+    /**
+     * 单元格或区域引用；区域的两个角已按左上、右下排好
+     */
+    static final class Reference extends FormulaNode {
+        final int firstRow;
+        final int firstColumn;
+        final int lastRow;
+        final int lastColumn;
+        final boolean absoluteFirstRow;
+        final boolean absoluteFirstColumn;
+        final boolean absoluteLastRow;
+        final boolean absoluteLastColumn;
+        final boolean area;
+        final boolean wholeColumns;
+
+        Reference(int firstRow, int firstColumn, int lastRow, int lastColumn,
+                  boolean absoluteFirstRow, boolean absoluteFirstColumn,
+                  boolean absoluteLastRow, boolean absoluteLastColumn, boolean area, boolean wholeColumns) {
+            this.firstRow = firstRow;
+            this.firstColumn = firstColumn;
+            this.lastRow = lastRow;
+            this.lastColumn = lastColumn;
+            this.absoluteFirstRow = absoluteFirstRow;
+            this.absoluteFirstColumn = absoluteFirstColumn;
+            this.absoluteLastRow = absoluteLastRow;
+            this.absoluteLastColumn = absoluteLastColumn;
+            this.area = area;
+            this.wholeColumns = wholeColumns;
+        }
+
+        /**
+         * 单个单元格
+         */
+        static Reference cell(int row, int column, boolean absoluteRow, boolean absoluteColumn) {
+            return new Reference(row, column, row, column, absoluteRow, absoluteColumn,
+                    absoluteRow, absoluteColumn, false, false);
+        }
+
+        /**
+         * 复制后改变行范围，列和绝对引用标记不变
+         */
+        Reference withRows(int newFirstRow, int newLastRow) {
+            return new Reference(newFirstRow, firstColumn, newLastRow, lastColumn, absoluteFirstRow,
+                    absoluteFirstColumn, absoluteLastRow, absoluteLastColumn, area, wholeColumns);
+        }
+
+        /**
+         * 按公式所在单元格的位移平移相对引用，超出表格时返回null
+         */
+        Reference translate(int rowOffset, int columnOffset) {
+            int newFirstRow = wholeColumns || absoluteFirstRow ? firstRow : firstRow + rowOffset;
+            int newLastRow = wholeColumns || absoluteLastRow ? lastRow : lastRow + rowOffset;
+            int newFirstColumn = absoluteFirstColumn ? firstColumn : firstColumn + columnOffset;
+            int newLastColumn = absoluteLastColumn ? lastColumn : lastColumn + columnOffset;
+            if (newFirstRow < -1 || newFirstColumn < 0) {
+                return null;
+            }
+            return new Reference(newFirstRow, newFirstColumn, newLastRow, newLastColumn, absoluteFirstRow,
+                    absoluteFirstColumn, absoluteLastRow, absoluteLastColumn, area, wholeColumns);
+        }
+
+        @Override
+        Object evaluate(Context context) {
+            if (area) {
+                // 区域不能作为单个值使用
+                throw new FormulaException(ErrorValue.VALUE);
+            }
+            return context.cell(firstRow, firstColumn);
+        }
+
+        /**
+         * 区域实际要读取的最后一行，整列引用截止到最后一个数据行
+         */
+        int lastRowIn(Context context) {
+            return Math.min(lastRow, context.rowCount() - 1);
+        }
+
+        /**
+         * 逐列访问区域中的单元格
+         */
+        void visit(Context context, CellVisitor visitor) {
+            int last = lastRowIn(context);
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                context.visit(column, firstRow, last, visitor);
+            }
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            if (wholeColumns) {
+                writeColumn(out, firstColumn, absoluteFirstColumn);
+                out.append(':');
+                writeColumn(out, lastColumn, absoluteLastColumn);
+                return;
+            }
+            writeCell(out, firstRow, firstColumn, absoluteFirstRow, absoluteFirstColumn);
+            if (area) {
+                out.append(':');
+                writeCell(out, lastRow, lastColumn, absoluteLastRow, absoluteLastColumn);
+            }
+        }
+
+        private static void writeColumn(StringBuilder out, int column, boolean absolute) {
+            if (absolute) {
+                out.append('$');
+            }
+            out.append(columnName(column));
+        }
+
+        private static void writeCell(StringBuilder out, int row, int column, boolean absoluteRow,
+                                      boolean absoluteColumn) {
+            writeColumn(out, column, absoluteColumn);
+            if (absoluteRow) {
+                out.append('$');
+            }
+            out.append(row + 2);
+        }
+
+        @Override
+        FormulaNode transform(UnaryOperator<Reference> mapper) {
+            Reference mapped = mapper.apply(this);
+            return mapped != null ? mapped : new Literal(ErrorValue.REF);
+        }
+
+        @Override
+        void collectReferences(List<Reference> out) {
+            out.add(this);
+        }
+    }
+
+    /**
+     * 一元运算：负号、正号和百分号
+     */
+    static final class Unary extends FormulaNode {
+        private final char operator;
+        private final FormulaNode operand;
+
+        Unary(char operator, FormulaNode operand) {
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        @Override
+        Object evaluate(Context context) {
+            double value = toNumber(operand.evaluate(context));
+            switch (operator) {
+                case '-':
+                    return -value;
+                case '%':
+                    return value / 100;
+                default:
+                    return value;
+            }
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            if (operator == '%') {
+                operand.write(out);
+                out.append('%');
+            } else {
+                out.append(operator);
+                operand.write(out);
+            }
+        }
+
+        @Override
+        FormulaNode transform(UnaryOperator<Reference> mapper) {
+            FormulaNode mapped = operand.transform(mapper);
+            return mapped == operand ? this : new Unary(operator, mapped);
+        }
+
+        @Override
+        void collectReferences(List<Reference> out) {
+            operand.collectReferences(out);
+        }
+    }
+
+    /**
+     * 二元运算，运算符为+ - * / ^ & = <> < > <= >=之一
+     */
+    static final class Binary extends FormulaNode {
+        private final String operator;
+        private final FormulaNode left;
+        private final FormulaNode right;
+
+        Binary(String operator, FormulaNode left, FormulaNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Context context) {
+            Object a = left.evaluate(context);
+            Object b = right.evaluate(context);
+            switch (operator) {
+                case "+":
+                    return number(toNumber(a) + toNumber(b));
+                case "-":
+                    return number(toNumber(a) - toNumber(b));
+                case "*":
+                    return number(toNumber(a) * toNumber(b));
+                case "/":
+                    double dividend = toNumber(a);
+                    double divisor = toNumber(b);
+                    if (divisor == 0) {
+                        throw new FormulaException(ErrorValue.DIV0);
+                    }
+                    return number(dividend / divisor);
+                case "^":
+                    return number(Math.pow(toNumber(a), toNumber(b)));
+                case "&":
+                    return toText(a) + toText(b);
+                case "=":
+                    return compare(a, b) == 0;
+                case "<>":
+                    return compare(a, b) != 0;
+                case "<":
+                    return compare(a, b) < 0;
+                case ">":
+                    return compare(a, b) > 0;
+                case "<=":
+                    return compare(a, b) <= 0;
+                default:
+                    return compare(a, b) >= 0;
+            }
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            left.write(out);
+            out.append(operator);
+            right.write(out);
+        }
+
+        @Override
+        FormulaNode transform(UnaryOperator<Reference> mapper) {
+            FormulaNode mappedLeft = left.transform(mapper);
+            FormulaNode mappedRight = right.transform(mapper);
+            return mappedLeft == left && mappedRight == right ? this : new Binary(operator, mappedLeft, mappedRight);
+        }
+
+        @Override
+        void collectReferences(List<Reference> out) {
+            left.collectReferences(out);
+            right.collectReferences(out);
+        }
+    }
+
+    /**
+     * 括号，只为原样输出公式而保留
+     */
+    static final class Group extends FormulaNode {
+        private final FormulaNode inner;
+
+        Group(FormulaNode inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        Object evaluate(Context context) {
+            return inner.evaluate(context);
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append('(');
+            inner.write(out);
+            out.append(')');
+        }
+
+        @Override
+        FormulaNode transform(UnaryOperator<Reference> mapper) {
+            FormulaNode mapped = inner.transform(mapper);
+            return mapped == inner ? this : new Group(mapped);
+        }
+
+        @Override
+        void collectReferences(List<Reference> out) {
+            inner.collectReferences(out);
+        }
+    }
+
+    /**
+     * 函数调用，参数按需求值（IF、IFERROR只计算用到的分支）
+     */
+    static final class Call extends FormulaNode {
+        private final FormulaFunctions.Function function;
+        private final List<FormulaNode> arguments;
+
+        Call(FormulaFunctions.Function function, List<FormulaNode> arguments) {
+            this.function = function;
+            this.arguments = Collections.unmodifiableList(arguments);
+        }
+
+        @Override
+        Object evaluate(Context context) {
+            return function.apply(arguments, context);
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(function.getName()).append('(');
+            for (int i = 0; i < arguments.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                arguments.get(i).write(out);
+            }
+            out.append(')');
+        }
+
+        @Override
+        FormulaNode transform(UnaryOperator<Reference> mapper) {
+            List<FormulaNode> mapped = new ArrayList<>(arguments.size());
+            boolean changed = false;
+            for (FormulaNode argument : arguments) {
+                FormulaNode node = argument.transform(mapper);
+                changed |= node != argument;
+                mapped.add(node);
+            }
+            return changed ? new Call(function, mapped) : this;
+        }
+
+        @Override
+        void collectReferences(List<Reference> out) {
+            for (FormulaNode argument : arguments) {
+                argument.collectReferences(out);
+            }
+        }
+    }
+
+    /**
+     * 计算出错，携带对应的错误值；不记录调用栈，出错是正常的计算结果
+     */
+    static final class FormulaException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final ErrorValue error;
+
+        FormulaException(ErrorValue error) {
+            super(error.getText(), null, false, false);
+            this.error = error;
+        }
+
+        ErrorValue getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package model;
+
+import model.FormulaNode.ErrorValue;
+import model.FormulaNode.Reference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 公式解析器 - MVC架构中的Model层组件
+ * 把Excel公式文本解析为语法树，运算符优先级与Excel相同（负号高于乘方）
+ *
+ * 支持本工作表内的单元格、区域和整列引用；引用其他工作表、名称和不支持的函数时
+ * 抛出IllegalArgumentException，调用方据此保留单元格原有的值
+ */
+final class FormulaParser {
+    private static final String[] COMPARISONS = {"<=", ">=", "<>", "=", "<", ">"};
+
+    private final String text;
+    private int pos;
+
+    private FormulaParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * 解析公式，开头的等号可有可无
+     * @throws IllegalArgumentException 公式有语法错误或使用了不支持的功能
+     */
+    static FormulaNode parse(String formula) {
+        String body = formula.trim();
+        if (body.startsWith("=")) {
+            body = body.substring(1);
+        }
+        FormulaParser parser = new FormulaParser(body);
+        parser.skipSpaces();
+        if (parser.atEnd()) {
+            throw new IllegalArgumentException("公式为空");
+        }
+        FormulaNode node = parser.comparison();
+        parser.skipSpaces();
+        if (!parser.atEnd()) {
+            throw parser.error("无法识别的内容");
+        }
+        return node;
+    }
+
+    private FormulaNode comparison() {
+        FormulaNode left = concatenation();
+        while (true) {
+            skipSpaces();
+            String operator = null;
+            for (String candidate : COMPARISONS) {
+                if (text.startsWith(candidate, pos)) {
+                    operator = candidate;
+                    break;
+                }
+            }
+            if (operator == null) {
+                return left;
+            }
+            pos += operator.length();
+            left = new FormulaNode.Binary(operator, left, concatenation());
+        }
+    }
+
+    private FormulaNode concatenation() {
+        FormulaNode left = additive();
+        while (accept('&')) {
+            left = new FormulaNode.Binary("&", left, additive());
+        }
+        return left;
+    }
+
+    private FormulaNode additive() {
+        FormulaNode left = multiplicative();
+        while (true) {
+            if (accept('+')) {
+                left = new FormulaNode.Binary("+", left, multiplicative());
+            } else if (accept('-')) {
+                left = new FormulaNode.Binary("-", left, multiplicative());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private FormulaNode multiplicative() {
+        FormulaNode left = power();
+        while (true) {
+            if (accept('*')) {
+                left = new FormulaNode.Binary("*", left, power());
+            } else if (accept('/')) {
+                left = new FormulaNode.Binary("/", left, power());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private FormulaNode power() {
+        FormulaNode left = unary();
+        while (accept('^')) {
+            left = new FormulaNode.Binary("^", left, unary());
+        }
+        return left;
+    }
+
+    private FormulaNode unary() {
+        if (accept('-')) {
+            return new FormulaNode.Unary('-', unary());
+        }
+        if (accept('+')) {
+            return new FormulaNode.Unary('+', unary());
+        }
+        FormulaNode node = primary();
+        while (accept('%')) {
+            node = new FormulaNode.Unary('%', node);
+        }
+        return node;
+    }
+
+    private FormulaNode primary() {
+        skipSpaces();
+        if (atEnd()) {
+            throw error("公式不完整");
+        }
+        char c = text.charAt(pos);
+        if (c == '(') {
+            pos++;
+            FormulaNode inner = comparison();
+            expect(')');
+            return new FormulaNode.Group(inner);
+        }
+        if (c == '"') {
+            return new FormulaNode.Literal(string());
+        }
+        if (c == '#') {
+            return new FormulaNode.Literal(errorLiteral());
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return new FormulaNode.Literal(number());
+        }
+        if (c == '\'') {
+            throw error("不支持引用其他工作表");
+        }
+        if (c == '$' || Character.isLetter(c) || c == '_') {
+            return name();
+        }
+        throw error("无法识别的字符'" + c + "'");
+    }
+
+    /**
+     * 函数调用、逻辑常量或引用
+     */
+    private FormulaNode name() {
+        int start = pos;
+        String word = word();
+        skipSpaces();
+        if (!atEnd() && text.charAt(pos) == '!') {
+            throw error("不支持引用其他工作表");
+        }
+        if (!atEnd() && text.charAt(pos) == '(' && word.indexOf('$') < 0) {
+            return call(word);
+        }
+        String upper = word.toUpperCase(Locale.ROOT);
+        if ("TRUE".equals(upper)) {
+            return new FormulaNode.Literal(Boolean.TRUE);
+        }
+        if ("FALSE".equals(upper)) {
+            return new FormulaNode.Literal(Boolean.FALSE);
+        }
+        Reference first = cellReference(upper);
+        if (first != null) {
+            if (!accept(':')) {
+                return first;
+            }
+            Reference second = cellReference(word().toUpperCase(Locale.ROOT));
+            if (second == null) {
+                throw error("区域引用不完整");
+            }
+            return area(first, second);
+        }
+        long column = columnReference(upper, 0);
+        if (column >= 0 && (int) (column >>> 32) == upper.length() && accept(':')) {
+            String last = word().toUpperCase(Locale.ROOT);
+            long second = columnReference(last, 0);
+            if (second < 0 || (int) (second >>> 32) != last.length()) {
+                throw error("整列引用不完整");
+            }
+            int firstColumn = (int) column;
+            int lastColumn = (int) second;
+            boolean firstAbsolute = upper.charAt(0) == '$';
+            boolean lastAbsolute = last.charAt(0) == '$';
+            if (firstColumn > lastColumn) {
+                return new Reference(-1, lastColumn, FormulaNode.MAX_ROW, firstColumn,
+                        true, lastAbsolute, true, firstAbsolute, true, true);
+            }
+            return new Reference(-1, firstColumn, FormulaNode.MAX_ROW, lastColumn,
+                    true, firstAbsolute, true, lastAbsolute, true, true);
+        }
+        pos = start;
+        throw error("不支持的名称" + word);
+    }
+
+    private FormulaNode call(String name) {
+        FormulaFunctions.Function function = FormulaFunctions.find(name);
+        if (function == null) {
+            throw error("不支持的函数" + name);
+        }
+        expect('(');
+        List<FormulaNode> arguments = new ArrayList<>();
+        skipSpaces();
+        if (!accept(')')) {
+            do {
+                skipSpaces();
+                if (!atEnd() && (text.charAt(pos) == ',' || text.charAt(pos) == ')')) {
+                    // 省略的参数按空值处理
+                    arguments.add(new FormulaNode.Literal(FormulaNode.BLANK));
+                } else {
+                    arguments.add(comparison());
+                }
+            } while (accept(','));
+            expect(')');
+        }
+        if (!function.accepts(arguments.size())) {
+            throw new IllegalArgumentException("函数" + function.getName() + "的参数个数不正确");
+        }
+        return new FormulaNode.Call(function, arguments);
+    }
+
+    /**
+     * 识别单元格引用（如A1、$B$2），不是单元格引用时返回null
+     */
+    private Reference cellReference(String word) {
+        long column = columnReference(word, 0);
+        if (column < 0) {
+            return null;
+        }
+        int pos = (int) (column >>> 32);
+        boolean absoluteRow = pos < word.length() && word.charAt(pos) == '$';
+        if (absoluteRow) {
+            pos++;
+        }
+        int digits = word.length() - pos;
+        if (digits < 1 || digits > 10) {
+            return null;
+        }
+        long row = 0;
+        for (; pos < word.length(); pos++) {
+            char c = word.charAt(pos);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            row = row * 10 + (c - '0');
+        }
+        if (row < 1 || row > FormulaNode.MAX_ROW) {
+            throw error("行号超出范围");
+        }
+        return Reference.cell((int) row - 2, (int) column, absoluteRow, word.charAt(0) == '$');
+    }
+
+    /**
+     * 识别从start开始的列名（可带$，1到3个大写字母）；
+     * 返回值高32位是列名之后的位置，低位是列号，不是列名时返回-1
+     */
+    private static long columnReference(String word, int start) {
+        int pos = start;
+        if (pos < word.length() && word.charAt(pos) == '$') {
+            pos++;
+        }
+        int column = 0;
+        int letters = 0;
+        while (pos < word.length() && word.charAt(pos) >= 'A' && word.charAt(pos) <= 'Z') {
+            column = column * 26 + (word.charAt(pos) - 'A' + 1);
+            pos++;
+            letters++;
+        }
+        if (letters < 1 || letters > 3) {
+            return -1;
+        }
+        return ((long) pos << 32) | (column - 1);
+    }
+
+    /**
+     * 由两个角组成区域，调整为左上到右下
+     */
+    private static Reference area(Reference a, Reference b) {
+        boolean rowsSwapped = a.firstRow > b.firstRow;
+        boolean columnsSwapped = a.firstColumn > b.firstColumn;
+        Reference top = rowsSwapped ? b : a;
+        Reference bottom = rowsSwapped ? a : b;
+        Reference left = columnsSwapped ? b : a;
+        Reference right = columnsSwapped ? a : b;
+        return new Reference(top.firstRow, left.firstColumn, bottom.firstRow, right.firstColumn,
+                top.absoluteFirstRow, left.absoluteFirstColumn, bottom.absoluteFirstRow, right.absoluteFirstColumn,
+                true, false);
+    }
+
+    private String word() {
+        skipSpaces();
+        int start = pos;
+        while (!atEnd()) {
+            char c = text.charAt(pos);
+            if (c == '$' || c == '_' || c == '.' || Character.isLetterOrDigit(c)) {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (start == pos) {
+            throw error("缺少名称或引用");
+        }
+        return text.substring(start, pos);
+    }
+
+    private String string() {
+        StringBuilder value = new StringBuilder();
+        pos++;
+        while (true) {
+            if (atEnd()) {
+                throw error("字符串缺少结束引号");
+            }
+            char c = text.charAt(pos++);
+            if (c == '"') {
+                if (!atEnd() && text.charAt(pos) == '"') {
+                    value.append('"');
+                    pos++;
+                } else {
+                    return value.toString();
+                }
+            } else {
+                value.append(c);
+            }
+        }
+    }
+
+    private ErrorValue errorLiteral() {
+        for (ErrorValue error : ErrorValue.values()) {
+            String errorText = error.getText();
+            if (text.regionMatches(true, pos, errorText, 0, errorText.length())) {
+                pos += errorText.length();
+                return error;
+            }
+        }
+        throw error("无法识别的错误值");
+    }
+
+    private Double number() {
+        int start = pos;
+        while (!atEnd() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+            pos++;
+        }
+        if (!atEnd() && (text.charAt(pos) == 'E' || text.charAt(pos) == 'e')) {
+            int mark = pos++;
+            if (!atEnd() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                pos++;
+            }
+            if (atEnd() || !Character.isDigit(text.charAt(pos))) {
+                pos = mark;
+            }
+            while (!atEnd() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (!atEnd() && text.charAt(pos) == ':') {
+            throw error("不支持整行引用");
+        }
+        try {
+            return Double.parseDouble(text.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("数字格式不正确");
+        }
+    }
+
+    private boolean accept(char c) {
+        skipSpaces();
+        if (!atEnd() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!accept(c)) {
+            throw error("缺少'" + c + "'");
+        }
+    }
+
+    private void skipSpaces() {
+        while (!atEnd() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean atEnd() {
+        return pos >= text.length();
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("公式错误（第" + (pos + 1) + "个字符）：" + message);
+    }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 整数列 - MVC架构中的Model层组件
+ * 值按块存放在long[]中
+ */
+class LongColumn extends Column {
+    private long[][] values = new long[0][];
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.LONG;
+    }
+
+    @Override
+    boolean accepts(String value) {
+        return isLongText(value);
+    }
+
+    /**
+     * 获取指定行的整数值（该行非空）
+     */
+    long getLong(int row) {
+        return values[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * 直接设置指定行的整数值
+     */
+    void setLong(int row, long value) {
+        int chunk = row >>> CHUNK_SHIFT;
+        prepareWrite(chunk);
+        setBit(nulls[chunk], row & CHUNK_MASK, false);
+        values[chunk][row & CHUNK_MASK] = value;
+    }
+
+    /**
+     * 在末尾追加一个整数值
+     */
+    void addLong(long value) {
+        ensureCapacity(size + 1);
+        size++;
+        setLong(size - 1, value);
+    }
+
+    @Override
+    protected String format(int row) {
+        return Long.toString(getLong(row));
+    }
+
+    @Override
+    protected void store(int row, String value) {
+        values[row >>> CHUNK_SHIFT][row & CHUNK_MASK] = Long.parseLong(value);
+    }
+
+    @Override
+    protected void resizeChunk(int chunk, int capacity) {
+        if (chunk >= values.length) {
+            values = Arrays.copyOf(values, Math.max(chunk + 1, values.length * 2));
+        }
+        values[chunk] = values[chunk] == null ? new long[capacity] : Arrays.copyOf(values[chunk], capacity);
+    }
+
+    @Override
+    protected void removeFromChunk(int chunk, int index, int length) {
+        System.arraycopy(values[chunk], index + 1, values[chunk], index, length - index - 1);
+    }
+
+    @Override
+    protected void copyValue(int fromChunk, int fromIndex, int toChunk, int toIndex) {
+        values[toChunk][toIndex] = values[fromChunk][fromIndex];
+    }
+
+    @Override
+    protected Column shareChunks() {
+        LongColumn copy = new LongColumn();
+        copy.values = values.clone();
+        return copy;
+    }
+
+    @Override
+    protected long valueMemoryBytes() {
+        long bytes = 16 + 8L * values.length;
+        for (long[] chunk : values) {
+            if (chunk != null) {
+                bytes += 16 + 8L * chunk.length;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,483 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 磁盘映射行存储 - MVC架构中的Model层组件
+ * 行数据追加写入内存映射的临时文件，行偏移索引也放在映射文件中，
+ * 堆上只保留页表和少量最近访问的已解码行，数据量可以远大于堆内存，由操作系统页缓存负责换入换出
+ *
+ * 数据文件中每行的格式为：单元格数(int)、各单元格UTF-8字节的结束位置(int[])、单元格字节；
+ * 修改行时追加写入新版本并更新索引，旧版本占用的空间直到释放存储才回收
+ *
+ * 快照复制页表并与本存储共享映射文件：数据只追加，不会覆盖快照可见的行；
+ * 索引页记录所属纪元，快照之后修改旧纪元的页时先把它复制到新的物理页
+ */
+class MappedRowStore implements TableStore {
+    // 每个映射块的大小，单次映射不能超过2GB
+    private static final int DATA_CHUNK_BYTES = 64 << 20;
+    // 每个索引页保存的行偏移数
+    private static final int PAGE_ROWS = 8192;
+    private static final int PAGE_BYTES = PAGE_ROWS * 8;
+    private static final int INDEX_CHUNK_BYTES = 1024 * PAGE_BYTES;
+    // 缓存的已解码行数
+    private static final int CACHED_ROWS = 4096;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final MappedRegion data;
+    private final MappedRegion index;
+    // 快照不拥有映射文件，释放时不删除
+    private final boolean ownsFiles;
+    private long writePosition;
+
+    // 页表：逻辑页依次对应索引文件中的物理页，每页的行数可以不满（删除行之后）
+    private int[] pagePhysical = new int[16];
+    private int[] pageRowCounts = new int[16];
+    private int[] pageFirstRows = new int[16];
+    private int[] pageEpochs = new int[16];
+    private int pageCount;
+    private int epoch;
+    private int[] freePages = new int[16];
+    private int freePageCount;
+    private int nextPhysicalPage;
+    private int lastPageHit;
+
+    private int rowCount;
+    private int columnCount;
+
+    // 最近访问的已解码行，按数据偏移缓存；行写入后不再变化，新版本有新的偏移
+    // 按访问顺序排列的缓存在读取时也会修改，并发读取时需要同步
+    private final RowCache cache = new RowCache();
+
+    private MappedRowStore(File dataFile, File indexFile) throws IOException {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        this.data = new MappedRegion(dataFile, DATA_CHUNK_BYTES);
+        this.index = new MappedRegion(indexFile, INDEX_CHUNK_BYTES);
+        this.ownsFiles = true;
+    }
+
+    private MappedRowStore(MappedRowStore source) {
+        this.dataFile = source.dataFile;
+        this.indexFile = source.indexFile;
+        this.data = source.data;
+        this.index = source.index;
+        this.ownsFiles = false;
+    }
+
+    /**
+     * 在系统临时目录中创建存储，dispose时删除临时文件
+     */
+    static MappedRowStore createTemporary() throws IOException {
+        File dataFile = File.createTempFile("excel-rows", ".dat");
+        File indexFile = File.createTempFile("excel-rows", ".idx");
+        dataFile.deleteOnExit();
+        indexFile.deleteOnExit();
+        return new MappedRowStore(dataFile, indexFile);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public String getValue(int rowIndex, int columnIndex) {
+        String[] row = readRow(rowOffset(rowIndex));
+        return columnIndex < row.length ? row[columnIndex] : "";
+    }
+
+    @Override
+    public List<String> getRow(int rowIndex) {
+        return new ArrayList<>(Arrays.asList(readRow(rowOffset(rowIndex))));
+    }
+
+    @Override
+    public void addRow(List<String> rowData) {
+        long offset = appendRow(rowData);
+        if (pageCount == 0 || pageRowCounts[pageCount - 1] == PAGE_ROWS) {
+            addPage();
+        }
+        int page = pageCount - 1;
+        writeOffset(pagePhysical[page], pageRowCounts[page], offset);
+        pageRowCounts[page]++;
+        rowCount++;
+    }
+
+    @Override
+    public void setRow(int rowIndex, List<String> rowData) {
+        checkRow(rowIndex);
+        long offset = appendRow(rowData);
+        int page = findPage(rowIndex);
+        prepareWritePage(page);
+        writeOffset(pagePhysical[page], rowIndex - pageFirstRows[page], offset);
+    }
+
+    @Override
+    public void setValue(int rowIndex, int columnIndex, String value) {
+        String[] row = readRow(rowOffset(rowIndex));
+        String[] updated = Arrays.copyOf(row, Math.max(row.length, columnIndex + 1));
+        for (int c = row.length; c < updated.length; c++) {
+            updated[c] = "";
+        }
+        updated[columnIndex] = value;
+        setRow(rowIndex, Arrays.asList(updated));
+    }
+
+    @Override
+    public void removeRow(int rowIndex) {
+        checkRow(rowIndex);
+        int page = findPage(rowIndex);
+        prepareWritePage(page);
+        int physical = pagePhysical[page];
+        int count = pageRowCounts[page];
+        // 只在本页内前移偏移，其他页不动
+        for (int slot = rowIndex - pageFirstRows[page]; slot < count - 1; slot++) {
+            writeOffset(physical, slot, readOffset(physical, slot + 1));
+        }
+        pageRowCounts[page]--;
+        for (int p = page + 1; p < pageCount; p++) {
+            pageFirstRows[p]--;
+        }
+        if (pageRowCounts[page] == 0) {
+            removePage(page);
+        }
+        rowCount--;
+    }
+
+    /**
+     * 清空所有行；映射文件中的数据可能仍被快照使用，不回收空间
+     */
+    @Override
+    public void clear() {
+        pageCount = 0;
+        freePageCount = 0;
+        lastPageHit = 0;
+        rowCount = 0;
+        columnCount = 0;
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        return 64 + 4L * (pagePhysical.length * 3 + freePages.length) + cache.bytes;
+    }
+
+    /**
+     * 快照复制页表，代价与页数成正比；本存储进入新纪元，之后修改索引页时先复制
+     */
+    @Override
+    public TableStore snapshot() {
+        MappedRowStore copy = new MappedRowStore(this);
+        copy.pagePhysical = Arrays.copyOf(pagePhysical, pagePhysical.length);
+        copy.pageRowCounts = Arrays.copyOf(pageRowCounts, pageRowCounts.length);
+        copy.pageFirstRows = Arrays.copyOf(pageFirstRows, pageFirstRows.length);
+        copy.pageEpochs = Arrays.copyOf(pageEpochs, pageEpochs.length);
+        copy.pageCount = pageCount;
+        copy.rowCount = rowCount;
+        copy.columnCount = columnCount;
+        copy.epoch = epoch;
+        epoch++;
+        return copy;
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (cache) {
+            cache.clear();
+        }
+        if (!ownsFiles) {
+            return;
+        }
+        // 已建立的映射在关闭文件后仍然有效，尚未释放的快照可以继续读取
+        data.close();
+        index.close();
+        // 删除失败时由deleteOnExit兜底
+        dataFile.delete();
+        indexFile.delete();
+    }
+
+    /**
+     * 追加写入一行，返回该行在数据文件中的偏移
+     */
+    private long appendRow(List<String> rowData) {
+        int cells = rowData.size();
+        byte[][] encoded = new byte[cells][];
+        int length = 4 + 4 * cells;
+        for (int c = 0; c < cells; c++) {
+            String value = rowData.get(c);
+            encoded[c] = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            length += encoded[c].length;
+        }
+        if (length > DATA_CHUNK_BYTES) {
+            throw new IllegalArgumentException("行数据过大: " + length + "字节");
+        }
+        // 一行不跨映射块
+        long chunkEnd = (writePosition / DATA_CHUNK_BYTES + 1) * DATA_CHUNK_BYTES;
+        if (writePosition + length > chunkEnd) {
+            writePosition = chunkEnd;
+        }
+        long offset = writePosition;
+        ByteBuffer buffer = data.slice(offset);
+        buffer.putInt(cells);
+        int end = 0;
+        for (byte[] bytes : encoded) {
+            end += bytes.length;
+            buffer.putInt(end);
+        }
+        for (byte[] bytes : encoded) {
+            buffer.put(bytes);
+        }
+        writePosition += length;
+        columnCount = Math.max(columnCount, cells);
+        return offset;
+    }
+
+    /**
+     * 读取并解码一行，优先从缓存中取
+     */
+    private String[] readRow(long offset) {
+        String[] row;
+        synchronized (cache) {
+            row = cache.get(offset);
+        }
+        if (row != null) {
+            return row;
+        }
+        ByteBuffer buffer = data.slice(offset);
+        int cells = buffer.getInt();
+        int[] ends = new int[cells];
+        for (int c = 0; c < cells; c++) {
+            ends[c] = buffer.getInt();
+        }
+        byte[] bytes = new byte[cells > 0 ? ends[cells - 1] : 0];
+        buffer.get(bytes);
+        row = new String[cells];
+        int start = 0;
+        for (int c = 0; c < cells; c++) {
+            row[c] = new String(bytes, start, ends[c] - start, StandardCharsets.UTF_8);
+            start = ends[c];
+        }
+        synchronized (cache) {
+            cache.add(offset, row);
+        }
+        return row;
+    }
+
+    private long rowOffset(int rowIndex) {
+        checkRow(rowIndex);
+        int page = findPage(rowIndex);
+        return readOffset(pagePhysical[page], rowIndex - pageFirstRows[page]);
+    }
+
+    /**
+     * 查找行所在的逻辑页，顺序滚动时通常命中上一次的页
+     */
+    private int findPage(int rowIndex) {
+        int hit = lastPageHit;
+        if (hit < pageCount && rowIndex >= pageFirstRows[hit] && rowIndex < pageFirstRows[hit] + pageRowCounts[hit]) {
+            return hit;
+        }
+        int low = 0;
+        int high = pageCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pageFirstRows[mid] <= rowIndex) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        lastPageHit = low;
+        return low;
+    }
+
+    private void addPage() {
+        if (pageCount == pagePhysical.length) {
+            int length = pagePhysical.length * 2;
+            pagePhysical = Arrays.copyOf(pagePhysical, length);
+            pageRowCounts = Arrays.copyOf(pageRowCounts, length);
+            pageFirstRows = Arrays.copyOf(pageFirstRows, length);
+            pageEpochs = Arrays.copyOf(pageEpochs, length);
+        }
+        pagePhysical[pageCount] = allocatePhysicalPage();
+        pageRowCounts[pageCount] = 0;
+        pageFirstRows[pageCount] = rowCount;
+        pageEpochs[pageCount] = epoch;
+        pageCount++;
+    }
+
+    private void removePage(int page) {
+        // 旧纪元的页可能仍被快照引用，只回收当前纪元的页
+        if (pageEpochs[page] == epoch) {
+            if (freePageCount == freePages.length) {
+                freePages = Arrays.copyOf(freePages, freePages.length * 2);
+            }
+            freePages[freePageCount++] = pagePhysical[page];
+        }
+        int moved = pageCount - page - 1;
+        System.arraycopy(pagePhysical, page + 1, pagePhysical, page, moved);
+        System.arraycopy(pageRowCounts, page + 1, pageRowCounts, page, moved);
+        System.arraycopy(pageFirstRows, page + 1, pageFirstRows, page, moved);
+        System.arraycopy(pageEpochs, page + 1, pageEpochs, page, moved);
+        pageCount--;
+        lastPageHit = 0;
+    }
+
+    /**
+     * 修改页中已有的偏移前调用：与快照共享的页先复制到新的物理页
+     * 在页末追加偏移不影响快照（快照只读取它记录的行数以内的偏移），不需要复制
+     */
+    private void prepareWritePage(int page) {
+        if (pageEpochs[page] == epoch) {
+            return;
+        }
+        int source = pagePhysical[page];
+        int target = allocatePhysicalPage();
+        for (int slot = 0; slot < pageRowCounts[page]; slot++) {
+            writeOffset(target, slot, readOffset(source, slot));
+        }
+        pagePhysical[page] = target;
+        pageEpochs[page] = epoch;
+    }
+
+    private int allocatePhysicalPage() {
+        return freePageCount > 0 ? freePages[--freePageCount] : nextPhysicalPage++;
+    }
+
+    private long readOffset(int physicalPage, int slot) {
+        long position = (long) physicalPage * PAGE_BYTES + 8L * slot;
+        return index.chunk(position).getLong((int) (position % INDEX_CHUNK_BYTES));
+    }
+
+    private void writeOffset(int physicalPage, int slot, long offset) {
+        long position = (long) physicalPage * PAGE_BYTES + 8L * slot;
+        index.chunk(position).putLong((int) (position % INDEX_CHUNK_BYTES), offset);
+    }
+
+    private void checkRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= rowCount) {
+            throw new IndexOutOfBoundsException("行索引越界: " + rowIndex);
+        }
+    }
+
+    /**
+     * 按固定大小分块映射的文件，块在第一次访问时才映射，文件随之增长
+     */
+    private static final class MappedRegion {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final int chunkBytes;
+        // 快照与原存储共享映射块，读写可能来自不同线程
+        private final List<MappedByteBuffer> chunks = new CopyOnWriteArrayList<>();
+
+        MappedRegion(File path, int chunkBytes) throws IOException {
+            this.file = new RandomAccessFile(path, "rw");
+            this.channel = file.getChannel();
+            this.chunkBytes = chunkBytes;
+        }
+
+        /**
+         * 包含指定位置的映射块
+         */
+        MappedByteBuffer chunk(long position) {
+            int chunkIndex = (int) (position / chunkBytes);
+            if (chunkIndex < chunks.size()) {
+                return chunks.get(chunkIndex);
+            }
+            synchronized (this) {
+                return mapChunks(chunkIndex);
+            }
+        }
+
+        private MappedByteBuffer mapChunks(int chunkIndex) {
+            while (chunks.size() <= chunkIndex) {
+                try {
+                    chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * chunkBytes, chunkBytes));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("映射存储文件失败", e);
+                }
+            }
+            return chunks.get(chunkIndex);
+        }
+
+        /**
+         * 从指定位置开始、到所在块末尾的独立缓冲区
+         */
+        ByteBuffer slice(long position) {
+            ByteBuffer buffer = chunk(position).duplicate();
+            buffer.position((int) (position % chunkBytes));
+            return buffer;
+        }
+
+        void close() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // 临时文件，关闭失败不影响数据
+            }
+        }
+    }
+
+    /**
+     * 按访问顺序淘汰的已解码行缓存
+     */
+    private static final class RowCache extends LinkedHashMap<Long, String[]> {
+        private static final long serialVersionUID = 1L;
+
+        private long bytes;
+
+        RowCache() {
+            super(CACHED_ROWS * 2, 0.75f, true);
+        }
+
+        void add(long offset, String[] row) {
+            put(offset, row);
+            bytes += rowBytes(row);
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            bytes = 0;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String[]> eldest) {
+            if (size() > CACHED_ROWS) {
+                bytes -= rowBytes(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+
+        private static long rowBytes(String[] row) {
+            long bytes = 16 + 4L * row.length;
+            for (String value : row) {
+                bytes += 40 + 2L * value.length();
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package model;
+
+/**
+ * 性能统计的阶段 - MVC架构中的Model层组件
+ * 各阶段的耗时分别累计；解析包含其中的单元格转换，写入模型包含随之触发的表格刷新
+ */
+public enum MetricsPhase {
+    /** 打开文件：读取压缩包目录、共享字符串表和样式表，CSV为检测编码 */
+    FILE_OPEN("打开文件"),
+    /** 解压并解析工作表XML或CSV文本 */
+    PARSE("解压解析"),
+    /** 把单元格的原始值转换为文本（按抽样计时估算） */
+    CELL_CONVERSION("单元格转换"),
+    /** 把解析好的行写入数据模型 */
+    MODEL_POPULATION("写入模型"),
+    /** 表格按模型变化刷新 */
+    TABLE_REFRESH("刷新表格"),
+    /** 写出XLSX或CSV文件 */
+    EXPORT("导出");
+
+    private final String displayName;
+
+    MetricsPhase(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * 阶段的中文名称
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,24 @@
+package model;
+
+import java.io.PrintStream;
+
+/**
+ * 性能统计报告器 - MVC架构中的Model层组件
+ * 每处理完一个文件（导入、导出或批量处理）回调一次，可以写日志或发送到监控系统；
+ * 可能在任意线程中被回调，实现应当线程安全且尽快返回
+ */
+public interface MetricsReporter {
+
+    /**
+     * 接收一个文件的统计结果
+     * @param file 已结束的文件统计，之后不再变化
+     */
+    void report(FileMetrics file);
+
+    /**
+     * 把每个文件的统计摘要逐行打印到指定的输出流
+     */
+    static MetricsReporter printingTo(PrintStream out) {
+        return file -> out.println(file.getSummary());
+    }
+}
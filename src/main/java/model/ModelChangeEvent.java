@@ -0,0 +1,141 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 模型变化事件 - MVC架构中的Model层组件
+ * 描述一次数据修改影响的范围，观察者据此只刷新受影响的部分
+ */
+public final class ModelChangeEvent {
+
+    /**
+     * 变化类型
+     */
+    public enum Type {
+        /** 插入了[firstRow, lastRow]范围内的行 */
+        ROWS_INSERTED,
+        /** 更新了[firstRow, lastRow]范围内的行 */
+        ROWS_UPDATED,
+        /** 删除了原来位于[firstRow, lastRow]范围内的行 */
+        ROWS_DELETED,
+        /** 表头变化 */
+        HEADERS_CHANGED,
+        /** 文件名等元数据变化，表格内容不变 */
+        METADATA_CHANGED,
+        /** 全部数据被替换 */
+        DATA_CHANGED,
+        /** 批量操作合并后的多个变化，见getChanges() */
+        BATCH
+    }
+
+    /** 影响所有列 */
+    public static final int ALL_COLUMNS = -1;
+
+    private final Type type;
+    private final int firstRow;
+    private final int lastRow;
+    private final int column;
+    private final List<ModelChangeEvent> changes;
+    private final TableSnapshot snapshot;
+
+    private ModelChangeEvent(Type type, int firstRow, int lastRow, int column) {
+        this(type, firstRow, lastRow, column, Collections.<ModelChangeEvent>emptyList(), null);
+    }
+
+    private ModelChangeEvent(Type type, int firstRow, int lastRow, int column,
+                             List<ModelChangeEvent> changes, TableSnapshot snapshot) {
+        this.type = type;
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
+        this.column = column;
+        this.changes = changes;
+        this.snapshot = snapshot;
+    }
+
+    public static ModelChangeEvent rowsInserted(int firstRow, int lastRow) {
+        return new ModelChangeEvent(Type.ROWS_INSERTED, firstRow, lastRow, ALL_COLUMNS);
+    }
+
+    public static ModelChangeEvent rowsUpdated(int firstRow, int lastRow) {
+        return new ModelChangeEvent(Type.ROWS_UPDATED, firstRow, lastRow, ALL_COLUMNS);
+    }
+
+    public static ModelChangeEvent cellUpdated(int row, int column) {
+        return new ModelChangeEvent(Type.ROWS_UPDATED, row, row, column);
+    }
+
+    public static ModelChangeEvent rowsDeleted(int firstRow, int lastRow) {
+        return new ModelChangeEvent(Type.ROWS_DELETED, firstRow, lastRow, ALL_COLUMNS);
+    }
+
+    public static ModelChangeEvent headersChanged() {
+        return new ModelChangeEvent(Type.HEADERS_CHANGED, -1, -1, ALL_COLUMNS);
+    }
+
+    public static ModelChangeEvent metadataChanged() {
+        return new ModelChangeEvent(Type.METADATA_CHANGED, -1, -1, ALL_COLUMNS);
+    }
+
+    public static ModelChangeEvent dataChanged() {
+        return new ModelChangeEvent(Type.DATA_CHANGED, -1, -1, ALL_COLUMNS);
+    }
+
+    /**
+     * 批量事件，按发生顺序包含合并后的各个变化
+     */
+    public static ModelChangeEvent batch(List<ModelChangeEvent> changes) {
+        return new ModelChangeEvent(Type.BATCH, -1, -1, ALL_COLUMNS,
+                Collections.unmodifiableList(new ArrayList<>(changes)), null);
+    }
+
+    /**
+     * 附带发出通知时的数据快照
+     */
+    ModelChangeEvent withSnapshot(TableSnapshot tableSnapshot) {
+        return new ModelChangeEvent(type, firstRow, lastRow, column, changes, tableSnapshot);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    public int getLastRow() {
+        return lastRow;
+    }
+
+    /**
+     * 受影响的列，ALL_COLUMNS表示整行
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * 批量事件包含的变化，其他类型的事件返回空列表
+     */
+    public List<ModelChangeEvent> getChanges() {
+        return changes;
+    }
+
+    /**
+     * 发出通知时的数据快照，已包含本事件描述的变化；
+     * 批量事件中的子事件和未发出的事件返回null
+     */
+    public TableSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        if (type == Type.BATCH) {
+            return type + changes.toString();
+        }
+        return type + "[" + firstRow + ".." + lastRow + (column == ALL_COLUMNS ? "" : ", 列" + column) + "]";
+    }
+}
@@ -0,0 +1,304 @@
+package model;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 运行时性能统计 - MVC架构中的Model层组件
+ * 累计导入、导出和模型操作各阶段的耗时与计数，通过JMX（excelapp:type=PerformanceMetrics）查看，
+ * 每个文件处理完后交给已注册的MetricsReporter；不必挂接分析器就能看出一次导入的时间花在哪里
+ *
+ * 全进程共用一个实例，记录时只做无锁累加，可以在任意线程中调用。
+ * 启动时设置系统属性excel.metrics.log=true会把每个文件的摘要打印到标准错误
+ */
+public final class PerformanceMetrics implements PerformanceMetricsMXBean {
+    /** JMX对象名 */
+    public static final String OBJECT_NAME = "excelapp:type=PerformanceMetrics";
+
+    private static final PerformanceMetrics INSTANCE = new PerformanceMetrics();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            // 无法注册时统计仍然有效，只是不能通过JMX查看
+        }
+        if (Boolean.getBoolean("excel.metrics.log")) {
+            INSTANCE.addReporter(MetricsReporter.printingTo(System.err));
+        }
+    }
+
+    private final Map<MetricsPhase, Timer> timers = new EnumMap<>(MetricsPhase.class);
+    private final LongAdder files = new LongAdder();
+    private final LongAdder failedFiles = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder cells = new LongAdder();
+    private final LongAdder fileNanos = new LongAdder();
+    // 计入文件统计的行数，与fileNanos一起计算吞吐量；不属于任何文件的行没有对应的耗时，
+    // 同一文件既读取又写出时只算一次
+    private final LongAdder fileRows = new LongAdder();
+    private final AtomicLong modelMemoryBytes = new AtomicLong();
+    private final List<MetricsReporter> reporters = new CopyOnWriteArrayList<>();
+    private volatile String lastFileSummary = "";
+
+    private PerformanceMetrics() {
+        for (MetricsPhase phase : MetricsPhase.values()) {
+            timers.put(phase, new Timer());
+        }
+    }
+
+    /**
+     * 获取全进程共用的实例
+     */
+    public static PerformanceMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 开始统计一个文件，结束时调用FileMetrics.finish
+     * @param path 文件路径
+     * @param operation 操作名称，如“导入”“导出”
+     */
+    public FileMetrics startFile(String path, String operation) {
+        return new FileMetrics(this, path, operation);
+    }
+
+    /**
+     * 记录一个阶段的一次耗时
+     */
+    public void record(MetricsPhase phase, long nanos) {
+        timers.get(phase).add(nanos);
+    }
+
+    /**
+     * 记录一个阶段的耗时：有文件统计时同时计入该文件，否则只计入全局
+     */
+    static void record(FileMetrics file, MetricsPhase phase, long nanos) {
+        if (file != null) {
+            file.record(phase, nanos);
+        } else {
+            INSTANCE.record(phase, nanos);
+        }
+    }
+
+    /**
+     * 记录转换的单元格数
+     */
+    static void addCells(FileMetrics file, long count) {
+        if (file != null) {
+            file.addCells(count);
+        } else {
+            INSTANCE.cells.add(count);
+        }
+    }
+
+    /**
+     * 记录读取的数据行数
+     */
+    static void addRows(FileMetrics file, long count) {
+        if (file != null) {
+            file.addRows(count);
+        } else {
+            INSTANCE.rows.add(count);
+        }
+    }
+
+    /**
+     * 更新数据模型的内存估算
+     */
+    public void updateModelMemory(long bytes) {
+        modelMemoryBytes.set(bytes);
+    }
+
+    public void addReporter(MetricsReporter reporter) {
+        reporters.add(reporter);
+    }
+
+    public void removeReporter(MetricsReporter reporter) {
+        reporters.remove(reporter);
+    }
+
+    /**
+     * 一个文件处理结束（成功或失败）：计入文件级的合计并通知报告器
+     */
+    void fileFinished(FileMetrics file) {
+        files.increment();
+        if (file.isFailed()) {
+            failedFiles.increment();
+        }
+        rows.add(file.getRows());
+        rowsWritten.add(file.getRowsWritten());
+        fileRows.add(file.getRowsHandled());
+        bytes.add(file.getBytes());
+        cells.add(file.getCellsConverted());
+        fileNanos.add(file.getElapsedNanos());
+        lastFileSummary = file.getSummary();
+        for (MetricsReporter reporter : reporters) {
+            try {
+                reporter.report(file);
+            } catch (RuntimeException e) {
+                // 报告器的错误不影响文件处理
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, PhaseStatistics> getPhases() {
+        Map<String, PhaseStatistics> phases = new LinkedHashMap<>();
+        for (Map.Entry<MetricsPhase, Timer> entry : timers.entrySet()) {
+            phases.put(entry.getKey().name(), entry.getValue().statistics());
+        }
+        return phases;
+    }
+
+    /**
+     * 指定阶段的统计
+     */
+    public PhaseStatistics getPhase(MetricsPhase phase) {
+        return timers.get(phase).statistics();
+    }
+
+    @Override
+    public long getFilesProcessed() {
+        return files.sum();
+    }
+
+    @Override
+    public long getFilesFailed() {
+        return failedFiles.sum();
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    @Override
+    public long getBytesProcessed() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getCellsConverted() {
+        return cells.sum();
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        return perSecond(fileRows.sum(), fileNanos.sum());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(bytes.sum(), fileNanos.sum());
+    }
+
+    @Override
+    public long getModelMemoryBytes() {
+        return modelMemoryBytes.get();
+    }
+
+    @Override
+    public String getLastFileSummary() {
+        return lastFileSummary;
+    }
+
+    @Override
+    public void reset() {
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+        files.reset();
+        failedFiles.reset();
+        rows.reset();
+        rowsWritten.reset();
+        bytes.reset();
+        cells.reset();
+        fileNanos.reset();
+        fileRows.reset();
+        modelMemoryBytes.set(0);
+        lastFileSummary = "";
+    }
+
+    static double perSecond(long count, long nanos) {
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+
+    /**
+     * 一个阶段的累计次数和耗时
+     */
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+
+        PhaseStatistics statistics() {
+            return new PhaseStatistics(count.sum(), totalNanos.sum() / 1_000_000, maxNanos.get() / 1_000_000);
+        }
+    }
+
+    /**
+     * 阶段统计的只读快照，JMX中显示为复合数据
+     */
+    public static final class PhaseStatistics {
+        private final long count;
+        private final long totalMillis;
+        private final long maxMillis;
+
+        @ConstructorProperties({"count", "totalMillis", "maxMillis"})
+        public PhaseStatistics(long count, long totalMillis, long maxMillis) {
+            this.count = count;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        /** 记录次数 */
+        public long getCount() {
+            return count;
+        }
+
+        /** 累计耗时（毫秒） */
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        /** 单次最长耗时（毫秒） */
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return count + "次，共" + totalMillis + "毫秒，最长" + maxMillis + "毫秒";
+        }
+    }
+}
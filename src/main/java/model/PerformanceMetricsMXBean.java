@@ -0,0 +1,70 @@
+package model;
+
+import java.util.Map;
+
+/**
+ * 性能统计的JMX管理接口 - MVC架构中的Model层组件
+ * 在JConsole或VisualVM中查看excelapp:type=PerformanceMetrics，所有计数自启动（或上次重置）起累计
+ */
+public interface PerformanceMetricsMXBean {
+
+    /**
+     * 各阶段的次数和耗时，键为阶段名称
+     */
+    Map<String, PerformanceMetrics.PhaseStatistics> getPhases();
+
+    /**
+     * 处理结束的文件数，包括失败的文件
+     */
+    long getFilesProcessed();
+
+    /**
+     * 处理失败（出错或被取消）的文件数
+     */
+    long getFilesFailed();
+
+    /**
+     * 导入、合并等从文件读取的数据行数
+     */
+    long getRowsRead();
+
+    /**
+     * 导出、转换、拆分和合并写出的数据行数；合并时每行读取和写出各计一次，分别计入两项
+     */
+    long getRowsWritten();
+
+    /**
+     * 处理的文件字节数
+     */
+    long getBytesProcessed();
+
+    /**
+     * 导入时转换的单元格数
+     */
+    long getCellsConverted();
+
+    /**
+     * 按所有文件的总耗时计算的每秒行数
+     */
+    double getRowsPerSecond();
+
+    /**
+     * 按所有文件的总耗时计算的每秒字节数
+     */
+    double getBytesPerSecond();
+
+    /**
+     * 最近一次导入后各工作表数据模型的内存估算（字节）
+     */
+    long getModelMemoryBytes();
+
+    /**
+     * 最近处理完的文件的统计摘要
+     */
+    String getLastFileSummary();
+
+    /**
+     * 清零所有统计
+     */
+    void reset();
+}
@@ -0,0 +1,77 @@
+package model;
+
+import java.util.List;
+
+/**
+ * 行处理回调接口 - MVC架构中的Model层组件
+ * 流式读取Excel时逐行接收数据，读取器任何时刻只持有当前一行
+ */
+public interface RowHandler {
+
+    /**
+     * 接收表头（工作表的第一行）
+     * @param headers 表头列表
+     */
+    void handleHeaders(List<String> headers);
+
+    /**
+     * 接收一行数据
+     * @param rowIndex 数据行索引（不含表头，从0开始）
+     * @param rowData 该行各单元格的值，调用方可以直接持有该列表
+     */
+    void handleRow(int rowIndex, List<String> rowData);
+
+    /**
+     * 接收一个公式单元格的公式，在工作表的所有行读完后回调；该单元格的值（文件中缓存的计算结果）已随所在行给出
+     * @param rowIndex 数据行索引（不含表头，从0开始）
+     * @param columnIndex 列索引
+     * @param formula 公式文本（以等号开头），行号按表头为第1行、数据行依次排列计算
+     */
+    default void handleFormula(int rowIndex, int columnIndex, String formula) {
+    }
+
+    /**
+     * 开始读取工作表
+     * @param sheetName 工作表名称
+     */
+    default void startSheet(String sheetName) {
+    }
+
+    /**
+     * 工作表声明的数据范围，读取前可据此估计总行数
+     * @param rowCount 预计的数据行数（不含表头）
+     */
+    default void handleEstimatedRowCount(int rowCount) {
+    }
+
+    /**
+     * 读取进度，每读取若干行回调一次，读取结束时再回调一次
+     * @param rowsRead 已读取的数据行数
+     * @param bytesRead 已解析的工作表XML字节数
+     */
+    default void handleProgress(int rowsRead, long bytesRead) {
+    }
+
+    /**
+     * 读取结束时报告文本去重情况：各列相同的文本共用一个字符串对象
+     * @param values 参与去重的非空文本数
+     * @param reused 其中复用已有字符串的个数
+     */
+    default void handleDeduplication(long values, long reused) {
+    }
+
+    /**
+     * 读取器的耗时、单元格数和行数计入的文件统计
+     * @return 返回null时只计入全局统计
+     */
+    default FileMetrics getMetrics() {
+        return null;
+    }
+
+    /**
+     * 读取器每处理完一行都会检查，返回true时停止读取
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
@@ -0,0 +1,377 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 行筛选条件 - MVC架构中的Model层组件
+ * 精确匹配、前缀匹配和数值范围三种条件，可以用AND、OR组合；文本比较不区分大小写
+ *
+ * 前缀匹配检查整个单元格和其中的每个词（连续的字母或数字），
+ * 例如"北京"能匹配"北京市"，"chen"能匹配"Li Chen"
+ */
+public final class RowQuery {
+    /**
+     * 在所有列中查找
+     */
+    public static final int ANY_COLUMN = -1;
+
+    enum Kind { EXACT, PREFIX, RANGE, AND, OR }
+
+    private final Kind kind;
+    private final int column;
+    private final String text;
+    private final double min;
+    private final double max;
+    private final List<RowQuery> children;
+
+    private RowQuery(Kind kind, int column, String text, double min, double max, List<RowQuery> children) {
+        this.kind = kind;
+        this.column = column;
+        this.text = text;
+        this.min = min;
+        this.max = max;
+        this.children = children;
+    }
+
+    /**
+     * 单元格内容等于指定文本
+     * @param column 列索引，ANY_COLUMN表示任意一列
+     */
+    public static RowQuery exact(int column, String text) {
+        return new RowQuery(Kind.EXACT, checkColumn(column), checkText(text), 0, 0, Collections.<RowQuery>emptyList());
+    }
+
+    /**
+     * 单元格或其中的某个词以指定文本开头
+     * @param column 列索引，ANY_COLUMN表示任意一列
+     */
+    public static RowQuery prefix(int column, String text) {
+        return new RowQuery(Kind.PREFIX, checkColumn(column), checkText(text), 0, 0, Collections.<RowQuery>emptyList());
+    }
+
+    /**
+     * 单元格是数值且在[min, max]之间
+     * @param column 列索引，ANY_COLUMN表示任意一列
+     */
+    public static RowQuery range(int column, double min, double max) {
+        if (Double.isNaN(min) || Double.isNaN(max)) {
+            throw new IllegalArgumentException("范围的边界不是数值");
+        }
+        return new RowQuery(Kind.RANGE, checkColumn(column), null, min, max, Collections.<RowQuery>emptyList());
+    }
+
+    /**
+     * 所有条件都满足
+     */
+    public static RowQuery and(RowQuery... queries) {
+        return combine(Kind.AND, Arrays.asList(queries));
+    }
+
+    /**
+     * 所有条件都满足
+     */
+    public static RowQuery and(List<RowQuery> queries) {
+        return combine(Kind.AND, queries);
+    }
+
+    /**
+     * 满足任意一个条件
+     */
+    public static RowQuery or(RowQuery... queries) {
+        return combine(Kind.OR, Arrays.asList(queries));
+    }
+
+    /**
+     * 满足任意一个条件
+     */
+    public static RowQuery or(List<RowQuery> queries) {
+        return combine(Kind.OR, queries);
+    }
+
+    /**
+     * 解析搜索框中输入的条件
+     * 以空格分隔的各项同时满足，用OR分隔的各组满足其一即可（AND优先）；每一项可以是：
+     * <pre>
+     * 文本          任意一列以该文本开头
+     * =文本         任意一列等于该文本
+     * 列名:文本     该列以该文本开头
+     * 列名=文本     该列等于该文本
+     * 列名&gt;数值     该列大于该数值，同样支持&gt;=、&lt;、&lt;=
+     * 列名=最小..最大  该列在该范围内
+     * </pre>
+     * 含空格的文本用双引号括起来；列名不区分大小写，不是已有的列名时整项作为文本查找
+     * @param input 输入的条件
+     * @param headers 表头，用于查找列名
+     * @return 筛选条件
+     * @throws IllegalArgumentException 条件为空或数值格式不正确
+     */
+    public static RowQuery parse(String input, List<String> headers) {
+        List<RowQuery> alternatives = new ArrayList<>();
+        List<RowQuery> terms = new ArrayList<>();
+        for (String token : split(input)) {
+            if (token.equals("OR") || token.equals("|")) {
+                if (!terms.isEmpty()) {
+                    alternatives.add(and(terms));
+                    terms = new ArrayList<>();
+                }
+                continue;
+            }
+            terms.add(parseTerm(token, headers));
+        }
+        if (!terms.isEmpty()) {
+            alternatives.add(and(terms));
+        }
+        if (alternatives.isEmpty()) {
+            throw new IllegalArgumentException("筛选条件为空");
+        }
+        return or(alternatives);
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    int getColumn() {
+        return column;
+    }
+
+    /**
+     * 小写的匹配文本
+     */
+    String getText() {
+        return text;
+    }
+
+    double getMin() {
+        return min;
+    }
+
+    double getMax() {
+        return max;
+    }
+
+    List<RowQuery> getChildren() {
+        return children;
+    }
+
+    /**
+     * 逐行检查快照中的一行是否满足条件，没有索引时使用
+     */
+    boolean matches(TableSnapshot snapshot, int row) {
+        switch (kind) {
+            case AND:
+                for (RowQuery child : children) {
+                    if (!child.matches(snapshot, row)) {
+                        return false;
+                    }
+                }
+                return true;
+            case OR:
+                for (RowQuery child : children) {
+                    if (child.matches(snapshot, row)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                if (column != ANY_COLUMN) {
+                    return column < snapshot.getColumnCount() && matchesValue(snapshot.getValueAt(row, column));
+                }
+                for (int c = 0; c < snapshot.getColumnCount(); c++) {
+                    if (matchesValue(snapshot.getValueAt(row, c))) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+    private boolean matchesValue(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        if (kind == Kind.RANGE) {
+            double number = TableSorter.parseNumber(value);
+            return number >= min && number <= max;
+        }
+        String lower = normalize(value);
+        if (kind == Kind.EXACT) {
+            return lower.equals(text);
+        }
+        if (lower.startsWith(text)) {
+            return true;
+        }
+        for (String word : SearchIndex.words(lower)) {
+            if (word.startsWith(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        String target = column == ANY_COLUMN ? "*" : "#" + column;
+        switch (kind) {
+            case EXACT:
+                return target + "=\"" + text + "\"";
+            case PREFIX:
+                return target + ":\"" + text + "\"";
+            case RANGE:
+                return target + "=" + min + ".." + max;
+            default:
+                StringBuilder builder = new StringBuilder("(");
+                for (int i = 0; i < children.size(); i++) {
+                    if (i > 0) {
+                        builder.append(kind == Kind.AND ? " AND " : " OR ");
+                    }
+                    builder.append(children.get(i));
+                }
+                return builder.append(')').toString();
+        }
+    }
+
+    /**
+     * 统一大小写后比较
+     */
+    static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static RowQuery combine(Kind kind, List<RowQuery> queries) {
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("没有要组合的条件");
+        }
+        if (queries.size() == 1) {
+            return queries.get(0);
+        }
+        return new RowQuery(kind, ANY_COLUMN, null, 0, 0,
+                Collections.unmodifiableList(new ArrayList<>(queries)));
+    }
+
+    private static String checkText(String text) {
+        if (text == null || text.isEmpty()) {
+            throw new IllegalArgumentException("匹配的文本为空");
+        }
+        return normalize(text);
+    }
+
+    private static int checkColumn(int column) {
+        if (column < ANY_COLUMN) {
+            throw new IllegalArgumentException("列索引不能小于0");
+        }
+        return column;
+    }
+
+    private static RowQuery parseTerm(String token, List<String> headers) {
+        if (token.startsWith("=") && token.length() > 1) {
+            return exact(ANY_COLUMN, unquote(token.substring(1)));
+        }
+        int operator = operatorIndex(token);
+        if (operator > 0) {
+            int column = findColumn(unquote(token.substring(0, operator)), headers);
+            if (column >= 0) {
+                return parseCondition(column, token.substring(operator));
+            }
+        }
+        return prefix(ANY_COLUMN, unquote(token));
+    }
+
+    /**
+     * 解析列名之后的部分，以运算符开头
+     */
+    private static RowQuery parseCondition(int column, String condition) {
+        if (condition.startsWith(">=")) {
+            return range(column, parseBound(condition.substring(2)), Double.POSITIVE_INFINITY);
+        }
+        if (condition.startsWith("<=")) {
+            return range(column, Double.NEGATIVE_INFINITY, parseBound(condition.substring(2)));
+        }
+        if (condition.startsWith(">")) {
+            return range(column, Math.nextUp(parseBound(condition.substring(1))), Double.POSITIVE_INFINITY);
+        }
+        if (condition.startsWith("<")) {
+            return range(column, Double.NEGATIVE_INFINITY, Math.nextDown(parseBound(condition.substring(1))));
+        }
+        String value = unquote(condition.substring(1));
+        if (condition.startsWith(":")) {
+            return prefix(column, value);
+        }
+        int dots = value.indexOf("..");
+        if (dots > 0 && !condition.startsWith("=\"")) {
+            return range(column, parseBound(value.substring(0, dots)), parseBound(value.substring(dots + 2)));
+        }
+        return exact(column, value);
+    }
+
+    private static double parseBound(String text) {
+        double value = text.isEmpty() ? Double.NaN : TableSorter.parseNumber(text);
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("不是有效的数值: " + text);
+        }
+        return value;
+    }
+
+    /**
+     * 引号外第一个运算符（: = &gt; &lt;）的位置，没有时返回-1
+     */
+    private static int operatorIndex(String token) {
+        boolean quoted = false;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == ':' || c == '=' || c == '>' || c == '<')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int findColumn(String name, List<String> headers) {
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String unquote(String text) {
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+
+    /**
+     * 按引号外的空白拆分
+     */
+    private static List<String> split(String input) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            if (!quoted && Character.isWhitespace(c)) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+}
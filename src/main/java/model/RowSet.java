@@ -0,0 +1,63 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 行号集合 - MVC架构中的Model层组件
+ * 有序的int数组，供搜索索引记录建立索引之后新增或修改的行；
+ * 行号大多按递增顺序追加，追加时不需要移动元素
+ */
+final class RowSet {
+    private int[] ids = new int[4];
+    private int size;
+
+    /**
+     * 加入一个行号，已存在时不变
+     */
+    void add(int id) {
+        if (size == 0 || ids[size - 1] < id) {
+            ensureCapacity(size + 1);
+            ids[size++] = id;
+            return;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+    }
+
+    /**
+     * 移除一个行号，不存在时不变
+     */
+    void remove(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 把集合中的行号并入位图
+     */
+    void orInto(long[] bits) {
+        for (int i = 0; i < size; i++) {
+            Column.setBit(bits, ids[i], true);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            ids = Arrays.copyOf(ids, Column.grownLength(ids.length, capacity));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 行视图 - MVC架构中的Model层组件
+ * 显示顺序到模型行号的不可变映射，排序和筛选只生成新的映射，不移动也不复制行数据；
+ * 没有排序和筛选时为恒等映射，不占用数组
+ */
+public final class RowView {
+    private final int[] viewToModel; // null表示恒等映射
+    private final int rowCount;
+    private final int modelRowCount;
+    private volatile int[] modelToView; // 按需建立的反向映射，不可见的行为-1
+
+    private RowView(int[] viewToModel, int rowCount, int modelRowCount) {
+        this.viewToModel = viewToModel;
+        this.rowCount = rowCount;
+        this.modelRowCount = modelRowCount;
+    }
+
+    /**
+     * 恒等映射：按模型顺序显示所有行
+     */
+    public static RowView identity(int rowCount) {
+        return new RowView(null, rowCount, rowCount);
+    }
+
+    /**
+     * 由显示顺序的模型行号数组创建，数组归新视图所有
+     * @param viewToModel 第i个显示行对应的模型行号，可以只包含部分行
+     * @param modelRowCount 模型的总行数
+     */
+    static RowView of(int[] viewToModel, int modelRowCount) {
+        return new RowView(viewToModel, viewToModel.length, modelRowCount);
+    }
+
+    /**
+     * 显示的行数
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 模型的总行数
+     */
+    public int getModelRowCount() {
+        return modelRowCount;
+    }
+
+    /**
+     * 是否为恒等映射
+     */
+    public boolean isIdentity() {
+        return viewToModel == null;
+    }
+
+    /**
+     * 显示行号转换为模型行号
+     */
+    public int toModel(int viewRow) {
+        if (viewRow < 0 || viewRow >= rowCount) {
+            throw new IndexOutOfBoundsException("行索引越界: " + viewRow);
+        }
+        return viewToModel == null ? viewRow : viewToModel[viewRow];
+    }
+
+    /**
+     * 模型行号转换为显示行号，该行不可见时返回-1
+     */
+    public int toView(int modelRow) {
+        if (modelRow < 0 || modelRow >= modelRowCount) {
+            return -1;
+        }
+        if (viewToModel == null) {
+            return modelRow;
+        }
+        int[] inverse = modelToView;
+        if (inverse == null) {
+            inverse = new int[modelRowCount];
+            Arrays.fill(inverse, -1);
+            for (int view = 0; view < rowCount; view++) {
+                inverse[viewToModel[view]] = view;
+            }
+            modelToView = inverse;
+        }
+        return inverse[modelRow];
+    }
+
+    /**
+     * 保留本视图中在另一个视图里也可见的行，顺序不变
+     * 用于在排序后的顺序上应用筛选结果
+     */
+    public RowView restrictTo(RowView visible) {
+        int[] mapped = new int[Math.min(rowCount, visible.getRowCount())];
+        int size = 0;
+        for (int view = 0; view < rowCount && size < mapped.length; view++) {
+            int model = toModel(view);
+            if (visible.toView(model) >= 0) {
+                mapped[size++] = model;
+            }
+        }
+        return new RowView(Arrays.copyOf(mapped, size), size, modelRowCount);
+    }
+
+    /**
+     * 模型在firstRow处插入了若干行：之后的行号后移，新行显示在末尾
+     */
+    public RowView rowsInserted(int firstRow, int lastRow) {
+        int count = lastRow - firstRow + 1;
+        if (viewToModel == null) {
+            return identity(rowCount + count);
+        }
+        int[] mapped = Arrays.copyOf(viewToModel, rowCount + count);
+        for (int view = 0; view < rowCount; view++) {
+            if (mapped[view] >= firstRow) {
+                mapped[view] += count;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            mapped[rowCount + i] = firstRow + i;
+        }
+        return new RowView(mapped, mapped.length, modelRowCount + count);
+    }
+
+    /**
+     * 模型删除了[firstRow, lastRow]的行：这些行从视图中移除，之后的行号前移
+     */
+    public RowView rowsDeleted(int firstRow, int lastRow) {
+        int count = lastRow - firstRow + 1;
+        if (viewToModel == null) {
+            return identity(rowCount - count);
+        }
+        int[] mapped = new int[rowCount];
+        int size = 0;
+        for (int view = 0; view < rowCount; view++) {
+            int model = viewToModel[view];
+            if (model < firstRow) {
+                mapped[size++] = model;
+            } else if (model > lastRow) {
+                mapped[size++] = model - count;
+            }
+        }
+        return new RowView(Arrays.copyOf(mapped, size), size, modelRowCount - count);
+    }
+}
@@ -0,0 +1,17 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 逐行写入接口 - MVC架构中的Model层组件
+ * Excel和CSV写入器的共同接口，调用方不必关心输出格式
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * 写入一行数据
+     */
+    void writeRow(List<String> rowData) throws IOException;
+}
@@ -0,0 +1,628 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 搜索索引 - MVC架构中的Model层组件
+ * 每列一份倒排索引，把单元格文本、其中的词和数值映射到行，筛选时只访问匹配的行，不逐行扫描
+ *
+ * 索引由快照在后台一次建成（基础段：排好序的词表加紧凑的行号数组），之后的修改记入增量段，
+ * 基础段中被修改的单元格用位图标记为失效；删除只清除存活位图中的一位，不重排行号。
+ * 行号按追加顺序分配且不重复使用，模型只在末尾追加行，所以第k个存活的行号就是第k行。
+ * 不是线程安全的，由ExcelDataModel的锁保护
+ */
+final class SearchIndex {
+    // 建立之后变化的行数超过此值和基础段行数的四分之一时，应重新建立
+    private static final int MIN_COMPACTION_ROWS = 4096;
+    private static final int[] NO_WORDS = new int[0];
+
+    private final List<ColumnIndex> columns = new ArrayList<>();
+    private final int baseRows;
+    private long[] live;
+    private int nextId;
+    private int liveCount;
+    private int changedRows;
+
+    private SearchIndex(int baseRows) {
+        this.baseRows = baseRows;
+        this.live = new long[wordCount(baseRows)];
+        this.nextId = baseRows;
+        this.liveCount = baseRows;
+        Arrays.fill(live, -1L);
+        if ((baseRows & 63) != 0) {
+            live[live.length - 1] = (1L << baseRows) - 1;
+        }
+    }
+
+    /**
+     * 由快照建立索引，不持有模型的锁
+     */
+    static SearchIndex build(TableSnapshot snapshot) {
+        TableStore store = snapshot.getStore();
+        int rowCount = store.getRowCount();
+        SearchIndex index = new SearchIndex(rowCount);
+        for (int c = 0; c < store.getColumnCount(); c++) {
+            index.columns.add(ColumnIndex.build(store, c, rowCount));
+        }
+        return index;
+    }
+
+    /**
+     * 不使用索引，逐行检查快照
+     */
+    static RowView scan(TableSnapshot snapshot, RowQuery query) {
+        int rowCount = snapshot.getRowCount();
+        int[] rows = new int[16];
+        int size = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (query.matches(snapshot, row)) {
+                if (size == rows.length) {
+                    rows = Arrays.copyOf(rows, Column.grownLength(rows.length, size + 1));
+                }
+                rows[size++] = row;
+            }
+        }
+        return RowView.of(Arrays.copyOf(rows, size), rowCount);
+    }
+
+    /**
+     * 查找满足条件的行，按模型顺序返回
+     * @param columnCount 表头的列数，超出表头的列不显示，也不参与查找
+     */
+    RowView search(RowQuery query, int columnCount) {
+        long[] matches = evaluate(query, columnCount);
+        int[] rows = new int[16];
+        int size = 0;
+        int before = 0;
+        for (int word = 0; word < matches.length; word++) {
+            long liveWord = live[word];
+            long match = matches[word] & liveWord;
+            while (match != 0) {
+                long lowest = match & -match;
+                if (size == rows.length) {
+                    rows = Arrays.copyOf(rows, Column.grownLength(rows.length, size + 1));
+                }
+                rows[size++] = before + Long.bitCount(liveWord & (lowest - 1));
+                match ^= lowest;
+            }
+            before += Long.bitCount(liveWord);
+        }
+        return RowView.of(Arrays.copyOf(rows, size), liveCount);
+    }
+
+    /**
+     * 模型在末尾追加了若干行
+     */
+    void rowsAppended(List<List<String>> rows) {
+        for (List<String> row : rows) {
+            int id = nextId++;
+            if (wordCount(nextId) > live.length) {
+                live = Arrays.copyOf(live, Column.grownLength(live.length, wordCount(nextId)));
+            }
+            Column.setBit(live, id, true);
+            liveCount++;
+            changedRows++;
+            for (int c = 0; c < row.size(); c++) {
+                column(c).add(id, row.get(c));
+            }
+        }
+    }
+
+    /**
+     * 模型替换了一行
+     */
+    void rowUpdated(int row, List<String> oldRow, List<String> newRow) {
+        int id = select(row);
+        changedRows++;
+        for (int c = 0; c < Math.max(oldRow.size(), newRow.size()); c++) {
+            String oldValue = c < oldRow.size() ? oldRow.get(c) : "";
+            String newValue = c < newRow.size() ? newRow.get(c) : "";
+            if (!valueOf(oldValue).equals(valueOf(newValue))) {
+                column(c).replace(id, oldValue, newValue);
+            }
+        }
+    }
+
+    /**
+     * 模型修改了一个单元格
+     */
+    void cellUpdated(int row, int column, String oldValue, String newValue) {
+        if (!valueOf(oldValue).equals(valueOf(newValue))) {
+            changedRows++;
+            column(column).replace(select(row), oldValue, newValue);
+        }
+    }
+
+    /**
+     * 模型删除了一行
+     */
+    void rowDeleted(int row) {
+        Column.setBit(live, select(row), false);
+        liveCount--;
+        changedRows++;
+    }
+
+    /**
+     * 增量过多，重新建立可以节省内存并加快查找
+     */
+    boolean needsCompaction() {
+        return changedRows > Math.max(MIN_COMPACTION_ROWS, baseRows / 4);
+    }
+
+    /**
+     * 拆分出的词：连续的字母或数字
+     */
+    static List<String> words(String value) {
+        List<String> words = null;
+        int start = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            boolean letter = i < value.length() && Character.isLetterOrDigit(value.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                if (words == null) {
+                    words = new ArrayList<>();
+                }
+                words.add(value.substring(start, i));
+                start = -1;
+            }
+        }
+        return words != null ? words : Collections.<String>emptyList();
+    }
+
+    private long[] evaluate(RowQuery query, int columnCount) {
+        long[] result = null;
+        switch (query.getKind()) {
+            case AND:
+                for (RowQuery child : query.getChildren()) {
+                    long[] bits = evaluate(child, columnCount);
+                    if (result == null) {
+                        result = bits;
+                    } else {
+                        for (int i = 0; i < result.length; i++) {
+                            result[i] &= bits[i];
+                        }
+                    }
+                }
+                return result;
+            case OR:
+                for (RowQuery child : query.getChildren()) {
+                    long[] bits = evaluate(child, columnCount);
+                    if (result == null) {
+                        result = bits;
+                    } else {
+                        for (int i = 0; i < result.length; i++) {
+                            result[i] |= bits[i];
+                        }
+                    }
+                }
+                return result;
+            default:
+                result = new long[wordCount(nextId)];
+                int searched = Math.min(columnCount, columns.size());
+                if (query.getColumn() == RowQuery.ANY_COLUMN) {
+                    for (int c = 0; c < searched; c++) {
+                        columns.get(c).collect(query, result);
+                    }
+                } else if (query.getColumn() < searched) {
+                    columns.get(query.getColumn()).collect(query, result);
+                }
+                return result;
+        }
+    }
+
+    /**
+     * 第row个存活的行号
+     */
+    private int select(int row) {
+        int remaining = row;
+        for (int word = 0; word < live.length; word++) {
+            int count = Long.bitCount(live[word]);
+            if (remaining < count) {
+                long bits = live[word];
+                for (int i = 0; i < remaining; i++) {
+                    bits &= bits - 1;
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            remaining -= count;
+        }
+        throw new IndexOutOfBoundsException("行索引越界: " + row);
+    }
+
+    private ColumnIndex column(int column) {
+        while (columns.size() <= column) {
+            columns.add(ColumnIndex.empty());
+        }
+        return columns.get(column);
+    }
+
+    private static String valueOf(String value) {
+        return value != null ? value : "";
+    }
+
+    private static int wordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * 一列的索引：基础段加增量段
+     */
+    private static final class ColumnIndex {
+        private final TermSegment values;   // 整个单元格的文本
+        private final TermSegment words;    // 单元格中与整个文本不同的词
+        private final NumberSegment numbers;
+        private long[] stale;               // 基础段中已失效的行号
+        private final TreeMap<String, RowSet> addedValues = new TreeMap<>();
+        private final TreeMap<String, RowSet> addedWords = new TreeMap<>();
+        private final TreeMap<Double, RowSet> addedNumbers = new TreeMap<>();
+
+        private ColumnIndex(TermSegment values, TermSegment words, NumberSegment numbers) {
+            this.values = values;
+            this.words = words;
+            this.numbers = numbers;
+        }
+
+        static ColumnIndex empty() {
+            TermSegment none = new TermSegment(new String[0], new int[1], new int[0]);
+            return new ColumnIndex(none, none, new NumberSegment(new double[0], new int[0]));
+        }
+
+        /**
+         * 由存储中的一列建立基础段；文本列按字典编号缓存每个文本的结果
+         */
+        static ColumnIndex build(TableStore store, int columnIndex, int rowCount) {
+            Column column = store instanceof ColumnarTableStore
+                    ? ((ColumnarTableStore) store).getColumn(columnIndex) : null;
+            Map<String, Integer> termIds = new HashMap<>();
+            List<String> terms = new ArrayList<>();
+            int[] termOf = new int[rowCount];
+            if (column instanceof StringColumn) {
+                StringColumn strings = (StringColumn) column;
+                List<String> dictionary = strings.getDictionary();
+                int[] codeTerms = new int[dictionary.size()];
+                Arrays.fill(codeTerms, -1);
+                for (int row = 0; row < rowCount; row++) {
+                    if (column.isNull(row)) {
+                        termOf[row] = -1;
+                        continue;
+                    }
+                    int code = strings.getCode(row);
+                    if (codeTerms[code] < 0) {
+                        codeTerms[code] = termId(RowQuery.normalize(dictionary.get(code)), termIds, terms);
+                    }
+                    termOf[row] = codeTerms[code];
+                }
+            } else {
+                for (int row = 0; row < rowCount; row++) {
+                    String value = column != null ? column.get(row) : store.getValue(row, columnIndex);
+                    termOf[row] = value.isEmpty() ? -1 : termId(RowQuery.normalize(value), termIds, terms);
+                }
+            }
+
+            // 整个文本
+            String[] sortedTerms = terms.toArray(new String[0]);
+            Arrays.sort(sortedTerms);
+            int[] termRanks = new int[sortedTerms.length];
+            for (int i = 0; i < sortedTerms.length; i++) {
+                termRanks[termIds.get(sortedTerms[i])] = i;
+            }
+            int[] rankOf = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                rankOf[row] = termOf[row] < 0 ? -1 : termRanks[termOf[row]];
+            }
+            TermSegment values = TermSegment.build(sortedTerms, rankOf, null);
+
+            // 与整个文本不同的词
+            Map<String, Integer> wordIds = new HashMap<>();
+            List<String> wordList = new ArrayList<>();
+            int[][] termWords = new int[sortedTerms.length][];
+            for (int i = 0; i < sortedTerms.length; i++) {
+                termWords[i] = NO_WORDS;
+                for (String word : words(sortedTerms[i])) {
+                    if (!word.equals(sortedTerms[i])) {
+                        int id = termId(word, wordIds, wordList);
+                        if (!contains(termWords[i], id)) {
+                            termWords[i] = Arrays.copyOf(termWords[i], termWords[i].length + 1);
+                            termWords[i][termWords[i].length - 1] = id;
+                        }
+                    }
+                }
+            }
+            String[] sortedWords = wordList.toArray(new String[0]);
+            Arrays.sort(sortedWords);
+            int[] wordRanks = new int[sortedWords.length];
+            for (int i = 0; i < sortedWords.length; i++) {
+                wordRanks[wordIds.get(sortedWords[i])] = i;
+            }
+            for (int[] ids : termWords) {
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = wordRanks[ids[i]];
+                }
+            }
+            TermSegment words = TermSegment.build(sortedWords, rankOf, termWords);
+
+            // 数值：按值排序的文本编号，行号取自整个文本的基础段
+            List<Integer> numeric = new ArrayList<>();
+            double[] parsed = new double[sortedTerms.length];
+            for (int i = 0; i < sortedTerms.length; i++) {
+                parsed[i] = TableSorter.parseNumber(sortedTerms[i]);
+                if (!Double.isNaN(parsed[i])) {
+                    numeric.add(i);
+                }
+            }
+            numeric.sort((a, b) -> Double.compare(parsed[a], parsed[b]));
+            double[] numberValues = new double[numeric.size()];
+            int[] numberTerms = new int[numeric.size()];
+            for (int i = 0; i < numberValues.length; i++) {
+                numberTerms[i] = numeric.get(i);
+                numberValues[i] = parsed[numberTerms[i]];
+            }
+            return new ColumnIndex(values, words, new NumberSegment(numberValues, numberTerms));
+        }
+
+        /**
+         * 把满足单个条件的行号并入结果
+         */
+        void collect(RowQuery query, long[] result) {
+            String text = query.getText();
+            switch (query.getKind()) {
+                case EXACT:
+                    int term = values.find(text);
+                    if (term >= 0) {
+                        values.collect(term, term + 1, result, stale);
+                    }
+                    RowSet added = addedValues.get(text);
+                    if (added != null) {
+                        added.orInto(result);
+                    }
+                    break;
+                case PREFIX:
+                    values.collectPrefix(text, result, stale);
+                    words.collectPrefix(text, result, stale);
+                    collectPrefix(addedValues, text, result);
+                    collectPrefix(addedWords, text, result);
+                    break;
+                case RANGE:
+                    double min = query.getMin();
+                    double max = query.getMax();
+                    for (int i = numbers.lowerBound(min); i < numbers.values.length && numbers.values[i] <= max; i++) {
+                        values.collect(numbers.terms[i], numbers.terms[i] + 1, result, stale);
+                    }
+                    if (min <= max) {
+                        for (RowSet rows : addedNumbers.subMap(normalizeZero(min), true, normalizeZero(max), true).values()) {
+                            rows.orInto(result);
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("不是单个条件: " + query);
+            }
+        }
+
+        void add(int id, String value) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            String lower = RowQuery.normalize(value);
+            addTo(addedValues, lower, id);
+            for (String word : words(lower)) {
+                if (!word.equals(lower)) {
+                    addTo(addedWords, word, id);
+                }
+            }
+            double number = TableSorter.parseNumber(lower);
+            if (!Double.isNaN(number)) {
+                addTo(addedNumbers, normalizeZero(number), id);
+            }
+        }
+
+        /**
+         * 单元格的值改变：基础段中的旧值标记为失效，增量段中的旧值直接移除
+         */
+        void replace(int id, String oldValue, String newValue) {
+            if (id < values.rowLimit() && (stale == null || !Column.getBit(stale, id))) {
+                if (stale == null) {
+                    stale = new long[wordCount(values.rowLimit())];
+                }
+                Column.setBit(stale, id, true);
+            } else if (oldValue != null && !oldValue.isEmpty()) {
+                String lower = RowQuery.normalize(oldValue);
+                removeFrom(addedValues, lower, id);
+                for (String word : words(lower)) {
+                    removeFrom(addedWords, word, id);
+                }
+                double number = TableSorter.parseNumber(lower);
+                if (!Double.isNaN(number)) {
+                    removeFrom(addedNumbers, normalizeZero(number), id);
+                }
+            }
+            add(id, newValue);
+        }
+
+        private static void collectPrefix(TreeMap<String, RowSet> map, String prefix, long[] result) {
+            for (Map.Entry<String, RowSet> entry : map.tailMap(prefix).entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                entry.getValue().orInto(result);
+            }
+        }
+
+        private static <K> void addTo(TreeMap<K, RowSet> map, K key, int id) {
+            RowSet rows = map.get(key);
+            if (rows == null) {
+                rows = new RowSet();
+                map.put(key, rows);
+            }
+            rows.add(id);
+        }
+
+        private static <K> void removeFrom(TreeMap<K, RowSet> map, K key, int id) {
+            RowSet rows = map.get(key);
+            if (rows != null) {
+                rows.remove(id);
+                if (rows.isEmpty()) {
+                    map.remove(key);
+                }
+            }
+        }
+
+        /**
+         * -0.0与0.0在TreeMap中视为不同的键，统一为0.0
+         */
+        private static double normalizeZero(double value) {
+            return value == 0 ? 0.0 : value;
+        }
+
+        private static int termId(String term, Map<String, Integer> ids, List<String> terms) {
+            Integer id = ids.get(term);
+            if (id == null) {
+                id = terms.size();
+                ids.put(term, id);
+                terms.add(term);
+            }
+            return id;
+        }
+
+        private static boolean contains(int[] values, int value) {
+            for (int v : values) {
+                if (v == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 排好序的词表，第i个词的行号为ids[offsets[i]]到ids[offsets[i+1]-1]，按行号递增；
+     * 相邻的词的行号在数组中也相邻，前缀查找只需扫描一段连续的数组
+     */
+    private static final class TermSegment {
+        private final String[] terms;
+        private final int[] offsets;
+        private final int[] ids;
+        private int rowLimit;
+
+        TermSegment(String[] terms, int[] offsets, int[] ids) {
+            this.terms = terms;
+            this.offsets = offsets;
+            this.ids = ids;
+        }
+
+        /**
+         * @param terms 排好序的词
+         * @param rowTerms 各行的编号，-1表示空值
+         * @param termLists 每个编号对应的词的下标，为null时编号就是词的下标
+         */
+        static TermSegment build(String[] terms, int[] rowTerms, int[][] termLists) {
+            int[] offsets = new int[terms.length + 1];
+            for (int term : rowTerms) {
+                if (term < 0) {
+                    continue;
+                }
+                if (termLists == null) {
+                    offsets[term + 1]++;
+                    continue;
+                }
+                for (int t : termLists[term]) {
+                    offsets[t + 1]++;
+                }
+            }
+            for (int i = 0; i < terms.length; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] ids = new int[offsets[terms.length]];
+            int[] next = Arrays.copyOf(offsets, terms.length);
+            for (int row = 0; row < rowTerms.length; row++) {
+                int term = rowTerms[row];
+                if (term < 0) {
+                    continue;
+                }
+                if (termLists == null) {
+                    ids[next[term]++] = row;
+                    continue;
+                }
+                for (int t : termLists[term]) {
+                    ids[next[t]++] = row;
+                }
+            }
+            TermSegment segment = new TermSegment(terms, offsets, ids);
+            segment.rowLimit = rowTerms.length;
+            return segment;
+        }
+
+        /**
+         * 基础段覆盖的行号上限
+         */
+        int rowLimit() {
+            return rowLimit;
+        }
+
+        int find(String term) {
+            int index = Arrays.binarySearch(terms, term);
+            return index >= 0 ? index : -1;
+        }
+
+        void collectPrefix(String prefix, long[] result, long[] stale) {
+            int from = Arrays.binarySearch(terms, prefix);
+            if (from < 0) {
+                from = -from - 1;
+            }
+            int to = from;
+            while (to < terms.length && terms[to].startsWith(prefix)) {
+                to++;
+            }
+            collect(from, to, result, stale);
+        }
+
+        /**
+         * 把第from到to-1个词的行号并入结果，跳过已失效的行
+         */
+        void collect(int from, int to, long[] result, long[] stale) {
+            for (int i = offsets[from]; i < offsets[to]; i++) {
+                int id = ids[i];
+                if (stale == null || !Column.getBit(stale, id)) {
+                    result[id >>> 6] |= 1L << id;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按值排序的数值文本，terms为其在整个文本词表中的下标
+     */
+    private static final class NumberSegment {
+        private final double[] values;
+        private final int[] terms;
+
+        NumberSegment(double[] values, int[] terms) {
+            this.values = values;
+            this.terms = terms;
+        }
+
+        /**
+         * 第一个不小于min的位置
+         */
+        int lowerBound(double min) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < min) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 搜索索引测试类
+ * 在随机数据上比较索引查询与逐行检查（SearchIndex.scan）的结果：先在建好的索引上查询，
+ * 再在模型上做增删改（包括建立索引期间的修改），每批修改后重新比较。
+ * 运行main，全部一致时输出“通过”，否则抛出IllegalStateException；第一个参数可以指定随机种子
+ */
+public class SearchIndexTest {
+    private static final String[] WORDS = {"北京", "北京市", "北海", "上海", "Li", "li", "Chen", "chen",
+            "Li Chen", "chen-wei", "A-12", "a-1", "北京 朝阳", "朝阳区", "x", ""};
+    private static final int COLUMNS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 20240101L;
+        Random random = new Random(seed);
+        System.out.println("开始测试搜索索引，随机种子: " + seed);
+
+        testBuiltIndex(random);
+        testUpdates(random, StorageMode.MEMORY);
+        testUpdates(random, StorageMode.MAPPED);
+
+        System.out.println("\n搜索索引测试通过！");
+    }
+
+    /**
+     * 由快照建立索引，随机查询与逐行检查比较
+     */
+    private static void testBuiltIndex(Random random) {
+        System.out.println("\n测试1：建好的索引与逐行检查比较");
+        for (int round = 0; round < 5; round++) {
+            ExcelDataModel model = new ExcelDataModel();
+            model.setData(randomRows(random, 2000 + random.nextInt(3000)), headers());
+            TableSnapshot snapshot = model.snapshot();
+            SearchIndex index = SearchIndex.build(snapshot);
+            for (int q = 0; q < 300; q++) {
+                RowQuery query = randomQuery(random, 2);
+                compare(index.search(query, COLUMNS), SearchIndex.scan(snapshot, query), query);
+            }
+            model.dispose();
+        }
+        System.out.println("建好的索引查询结果一致");
+    }
+
+    /**
+     * 在模型上随机增删改，建立索引期间和建好之后的修改都要反映在查询结果中
+     */
+    private static void testUpdates(Random random, StorageMode storageMode) throws InterruptedException {
+        System.out.println("\n测试2：增删改后的索引与逐行检查比较（" + storageMode + "）");
+        ExcelDataModel model = new ExcelDataModel();
+        model.setStorageMode(storageMode);
+        model.setData(randomRows(random, 10000), headers());
+        model.buildSearchIndex();
+        // 建立期间的修改先记录下来，建好后应用到新索引
+        randomEdits(model, random, 200);
+        for (int round = 0; round < 12; round++) {
+            waitForIndex(model);
+            for (int q = 0; q < 50; q++) {
+                RowQuery query = randomQuery(random, 2);
+                TableSnapshot snapshot = model.snapshot();
+                check(model.isSearchIndexReady(), "索引应当已建好");
+                compare(model.filter(snapshot, query), SearchIndex.scan(snapshot, query), query);
+            }
+            // 修改较多时增量超过阈值，下次筛选会重新建立索引
+            randomEdits(model, random, round % 4 == 3 ? 3000 : 300);
+        }
+        System.out.println("共" + model.getRowCount() + "行，增删改后查询结果一致");
+        model.dispose();
+    }
+
+    private static void randomEdits(ExcelDataModel model, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            int rowCount = model.getRowCount();
+            int action = random.nextInt(10);
+            if (action < 2 || rowCount == 0) {
+                model.addRow(randomRow(random));
+            } else if (action == 2) {
+                List<List<String>> rows = new ArrayList<>();
+                for (int r = random.nextInt(20); r >= 0; r--) {
+                    rows.add(randomRow(random));
+                }
+                model.addRows(rows);
+            } else if (action < 5) {
+                model.updateRow(random.nextInt(rowCount), randomRow(random));
+            } else if (action < 8) {
+                int column = random.nextInt(COLUMNS);
+                model.setValueAt(random.nextInt(rowCount), column, randomValue(random, column));
+            } else {
+                model.deleteRow(random.nextInt(rowCount));
+            }
+        }
+    }
+
+    private static void waitForIndex(ExcelDataModel model) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60000;
+        while (!model.isSearchIndexReady()) {
+            check(System.currentTimeMillis() < deadline, "等待建立索引超时");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void compare(RowView indexed, RowView scanned, RowQuery query) {
+        int[] expected = rows(scanned);
+        int[] actual = rows(indexed);
+        if (!Arrays.equals(expected, actual)) {
+            int first = 0;
+            while (first < expected.length && first < actual.length && expected[first] == actual[first]) {
+                first++;
+            }
+            throw new IllegalStateException("查询" + query + "：逐行检查得到" + expected.length + "行，索引得到"
+                    + actual.length + "行，第" + first + "个结果起不同");
+        }
+        check(indexed.getModelRowCount() == scanned.getModelRowCount(), "查询" + query + "：模型行数不一致");
+    }
+
+    private static int[] rows(RowView view) {
+        int[] rows = new int[view.getRowCount()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = view.toModel(i);
+        }
+        return rows;
+    }
+
+    /**
+     * 随机的精确、前缀、范围条件及其AND/OR组合，列可以是任意一列
+     */
+    private static RowQuery randomQuery(Random random, int depth) {
+        int kind = random.nextInt(depth > 0 ? 5 : 3);
+        int column = random.nextInt(4) == 0 ? RowQuery.ANY_COLUMN : random.nextInt(COLUMNS);
+        switch (kind) {
+            case 0: {
+                String word = WORDS[random.nextInt(WORDS.length - 1)];
+                return RowQuery.exact(column, random.nextBoolean() ? word : word.toUpperCase());
+            }
+            case 1: {
+                String word = WORDS[random.nextInt(WORDS.length - 1)];
+                return RowQuery.prefix(column, word.substring(0, 1 + random.nextInt(word.length())));
+            }
+            case 2: {
+                double min = random.nextInt(2000) - 1000 + (random.nextBoolean() ? 0.5 : 0);
+                return RowQuery.range(column, min, min + random.nextInt(500));
+            }
+            case 3:
+                return RowQuery.and(randomQuery(random, depth - 1), randomQuery(random, depth - 1));
+            default:
+                return RowQuery.or(randomQuery(random, depth - 1), randomQuery(random, depth - 1));
+        }
+    }
+
+    private static List<String> headers() {
+        return Arrays.asList("城市", "姓名", "数量", "金额", "备注");
+    }
+
+    private static List<List<String>> randomRows(Random random, int count) {
+        List<List<String>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(randomRow(random));
+        }
+        return rows;
+    }
+
+    /**
+     * 随机的一行，偶尔比表头短
+     */
+    private static List<String> randomRow(Random random) {
+        int width = random.nextInt(20) == 0 ? random.nextInt(COLUMNS) : COLUMNS;
+        List<String> row = new ArrayList<>(width);
+        for (int c = 0; c < width; c++) {
+            row.add(randomValue(random, c));
+        }
+        return row;
+    }
+
+    /**
+     * 前两列是文本，第三、四列是整数和小数，最后一列文本和数字混合
+     */
+    private static String randomValue(Random random, int column) {
+        if (random.nextInt(15) == 0) {
+            return "";
+        }
+        switch (column) {
+            case 2:
+                return String.valueOf(random.nextInt(2000) - 1000);
+            case 3:
+                return String.valueOf((random.nextInt(200000) - 100000) / 100.0);
+            case 4:
+                return random.nextBoolean() ? WORDS[random.nextInt(WORDS.length)] : String.valueOf(random.nextInt(100));
+            default:
+                return WORDS[random.nextInt(WORDS.length)];
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package model;
+
+import java.util.List;
+
+/**
+ * 工作表处理器工厂 - MVC架构中的Model层组件
+ * 并行读取多个工作表时，为每个工作表创建独立的行处理器
+ */
+public interface SheetHandlerFactory {
+
+    /**
+     * 开始读取工作簿，在解析任何工作表之前调用一次
+     * @param sheetNames 按工作簿顺序排列的工作表名称
+     */
+    default void startWorkbook(List<String> sheetNames) {
+    }
+
+    /**
+     * 打开工作簿的耗时计入的文件统计，各工作表的统计由其行处理器的getMetrics给出
+     * @return 返回null时只计入全局统计
+     */
+    default FileMetrics getMetrics() {
+        return null;
+    }
+
+    /**
+     * 为指定工作表创建行处理器；不同工作表的处理器会在不同线程中被回调
+     * @param sheetIndex 工作表索引
+     * @param sheetName 工作表名称
+     */
+    RowHandler createHandler(int sheetIndex, String sheetName);
+}
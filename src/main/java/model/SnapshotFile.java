@@ -0,0 +1,664 @@
+package model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 工作簿二进制快照文件 - MVC架构中的Model层组件
+ * 把解析好的各工作表按列写入源文件旁的隐藏文件（.文件名.snapshot），
+ * 再次打开未修改的工作簿时直接按列读回，不再解压和解析XML
+ *
+ * 文件以源文件的大小、修改时间和内容CRC32为键：大小和修改时间一致时直接使用；
+ * 只有修改时间变化时核对CRC32，内容未变仍可使用。
+ * 文件头之后是若干数据块，每块记录原始长度和存储长度，可选用Deflater压缩，读取时按块整块读入
+ */
+public class SnapshotFile {
+    private static final int MAGIC = 0x58534E50; // "XSNP"
+    // 版本2起只为不含公式的工作簿写快照，版本1的快照可能丢失了公式，不再使用
+    private static final int VERSION = 2;
+    private static final int FLAG_COMPRESSED = 1;
+    // 魔数、版本、标志，源文件大小、修改时间、CRC32
+    private static final int HEADER_BYTES = 12 + 24;
+    private static final int MTIME_OFFSET = 20;
+    private static final int BLOCK_BYTES = 1 << 20;
+
+    private static final byte TYPE_LONG = 0;
+    private static final byte TYPE_DOUBLE = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_DICTIONARY = 3;
+    private static final byte TYPE_TEXT = 4;
+
+    private final Path source;
+    private final long sourceSize;
+    private final long sourceModified;
+    private boolean compress = true;
+
+    /**
+     * 创建源文件对应的快照文件，并记录源文件此刻的大小和修改时间
+     * @param sourcePath 源文件路径
+     * @throws IOException 文件操作异常
+     */
+    public SnapshotFile(String sourcePath) throws IOException {
+        this.source = Paths.get(sourcePath).toAbsolutePath();
+        this.sourceSize = Files.size(source);
+        this.sourceModified = Files.getLastModifiedTime(source).toMillis();
+    }
+
+    /**
+     * 设置写入时是否压缩，压缩后文件约小几倍，读取稍慢
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * 写入时是否压缩
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    /**
+     * 创建时源文件的大小
+     */
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    /**
+     * 创建时源文件的修改时间（毫秒）
+     */
+    public long getSourceModified() {
+        return sourceModified;
+    }
+
+    /**
+     * 快照文件的位置：源文件所在目录不可写时放在临时目录中
+     */
+    public Path getPath() {
+        Path sibling = siblingPath();
+        if (Files.exists(sibling)) {
+            return sibling;
+        }
+        Path fallback = fallbackPath();
+        return Files.exists(fallback) ? fallback : sibling;
+    }
+
+    /**
+     * 快照是否存在且与源文件内容一致
+     * 只有修改时间不同时计算源文件的CRC32核对，一致则更新快照中记录的修改时间
+     * @throws IOException 文件操作异常
+     */
+    public boolean isUpToDate() throws IOException {
+        Path path = getPath();
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (!readFully(channel, header)) {
+                return false;
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return false;
+        }
+        header.getInt();
+        long size = header.getLong();
+        long modified = header.getLong();
+        long crc = header.getLong();
+        if (size != sourceSize) {
+            return false;
+        }
+        if (modified == sourceModified) {
+            return true;
+        }
+        if (crc != checksum(source)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer update = ByteBuffer.allocate(8);
+            update.putLong(0, sourceModified);
+            channel.write(update, MTIME_OFFSET);
+        } catch (IOException e) {
+            // 快照不可写时下次仍需核对CRC32，不影响使用
+        }
+        return true;
+    }
+
+    /**
+     * 读取快照中的各工作表
+     * @return 按工作簿顺序排列的工作表名称及其数据
+     * @throws IOException 文件操作异常或快照已损坏
+     */
+    public Map<String, TableSnapshot> read() throws IOException {
+        try (FileChannel channel = FileChannel.open(getPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (!readFully(channel, header)) {
+                throw new EOFException("快照文件不完整");
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("不是有效的快照文件");
+            }
+            BlockReader in = new BlockReader(channel);
+            try {
+                int sheetCount = in.getInt();
+                Map<String, TableSnapshot> sheets = new LinkedHashMap<>();
+                for (int i = 0; i < sheetCount; i++) {
+                    String name = in.getString();
+                    List<String> headers = Collections.unmodifiableList(readStrings(in));
+                    sheets.put(name, new TableSnapshot(readTable(in), headers));
+                }
+                return sheets;
+            } finally {
+                in.close();
+            }
+        } catch (DataFormatException | RuntimeException e) {
+            throw new IOException("快照文件已损坏", e);
+        }
+    }
+
+    /**
+     * 写入快照：先写临时文件，完成后替换，读取方不会看到写了一半的文件
+     * 写入期间源文件被修改时放弃写入
+     * @param sheets 按工作簿顺序排列的工作表名称及其数据
+     * @throws IOException 文件操作异常
+     */
+    public void write(Map<String, TableSnapshot> sheets) throws IOException {
+        long crc = checksum(source);
+        try {
+            write(siblingPath(), sheets, crc);
+        } catch (IOException e) {
+            Files.createDirectories(fallbackPath().getParent());
+            write(fallbackPath(), sheets, crc);
+        }
+    }
+
+    /**
+     * 删除快照文件
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(siblingPath());
+        Files.deleteIfExists(fallbackPath());
+    }
+
+    private void write(Path target, Map<String, TableSnapshot> sheets, long crc) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(compress ? FLAG_COMPRESSED : 0);
+            header.putLong(sourceSize).putLong(sourceModified).putLong(crc);
+            header.flip();
+            writeFully(channel, header);
+
+            BlockWriter out = new BlockWriter(channel, compress);
+            out.putInt(sheets.size());
+            for (Map.Entry<String, TableSnapshot> sheet : sheets.entrySet()) {
+                out.putString(sheet.getKey());
+                writeStrings(out, sheet.getValue().getHeaders());
+                writeTable(out, sheet.getValue().getStore());
+            }
+            out.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (Files.size(source) != sourceSize || Files.getLastModifiedTime(source).toMillis() != sourceModified) {
+            Files.deleteIfExists(temp);
+            return;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path siblingPath() {
+        return source.resolveSibling("." + source.getFileName() + ".snapshot");
+    }
+
+    private Path fallbackPath() {
+        String key = Integer.toHexString(source.toString().hashCode());
+        return Paths.get(System.getProperty("java.io.tmpdir"), "excel-snapshots",
+                key + "-" + source.getFileName() + ".snapshot");
+    }
+
+    /**
+     * 按列写出：每行宽度，然后每列的类型、空值位图和非空值
+     * 列式存储直接写出基本类型值和文本字典，其他存储的列按文本写出
+     */
+    private static void writeTable(BlockWriter out, TableStore store) throws IOException {
+        int rowCount = store.getRowCount();
+        int columnCount = store.getColumnCount();
+        ColumnarTableStore columnar = store instanceof ColumnarTableStore ? (ColumnarTableStore) store : null;
+        out.putInt(rowCount);
+        out.putInt(columnCount);
+        int[] widths = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            widths[row] = columnar != null ? columnar.getRowWidth(row) : store.getRow(row).size();
+            out.putInt(widths[row]);
+        }
+        for (int c = 0; c < columnCount; c++) {
+            if (columnar != null) {
+                writeColumn(out, columnar.getColumn(c), rowCount);
+            } else {
+                writeTextColumn(out, store, c, widths);
+            }
+        }
+    }
+
+    private static void writeColumn(BlockWriter out, Column column, int rowCount) throws IOException {
+        switch (column.getType()) {
+            case LONG: {
+                out.putByte(TYPE_LONG);
+                writeNulls(out, column, rowCount);
+                LongColumn longs = (LongColumn) column;
+                for (int row = 0; row < rowCount; row++) {
+                    if (!column.isNull(row)) {
+                        out.putLong(longs.getLong(row));
+                    }
+                }
+                break;
+            }
+            case DOUBLE: {
+                out.putByte(TYPE_DOUBLE);
+                writeNulls(out, column, rowCount);
+                DoubleColumn doubles = (DoubleColumn) column;
+                for (int row = 0; row < rowCount; row++) {
+                    if (!column.isNull(row)) {
+                        out.putDouble(doubles.getDouble(row));
+                        out.putByte((byte) (doubles.isIntegral(row) ? 1 : 0));
+                    }
+                }
+                break;
+            }
+            case BOOLEAN: {
+                out.putByte(TYPE_BOOLEAN);
+                writeNulls(out, column, rowCount);
+                BooleanColumn booleans = (BooleanColumn) column;
+                for (int row = 0; row < rowCount; row++) {
+                    if (!column.isNull(row)) {
+                        out.putByte((byte) (booleans.getBoolean(row) ? 1 : 0));
+                    }
+                }
+                break;
+            }
+            default: {
+                out.putByte(TYPE_DICTIONARY);
+                writeNulls(out, column, rowCount);
+                StringColumn strings = (StringColumn) column;
+                writeStrings(out, strings.getDictionary());
+                for (int row = 0; row < rowCount; row++) {
+                    if (!column.isNull(row)) {
+                        out.putInt(strings.getCode(row));
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    private static void writeTextColumn(BlockWriter out, TableStore store, int c, int[] widths) throws IOException {
+        out.putByte(TYPE_TEXT);
+        int rowCount = widths.length;
+        long[] nulls = new long[(rowCount + 63) >>> 6];
+        for (int row = 0; row < rowCount; row++) {
+            if (c >= widths[row] || store.getValue(row, c).isEmpty()) {
+                nulls[row >>> 6] |= 1L << row;
+            }
+        }
+        for (long word : nulls) {
+            out.putLong(word);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            if ((nulls[row >>> 6] & (1L << row)) == 0) {
+                out.putString(store.getValue(row, c));
+            }
+        }
+    }
+
+    private static void writeNulls(BlockWriter out, Column column, int rowCount) throws IOException {
+        for (int word = 0; word < (rowCount + 63) >>> 6; word++) {
+            long bits = 0;
+            int end = Math.min(rowCount, (word + 1) << 6);
+            for (int row = word << 6; row < end; row++) {
+                if (column.isNull(row)) {
+                    bits |= 1L << row;
+                }
+            }
+            out.putLong(bits);
+        }
+    }
+
+    private static void writeStrings(BlockWriter out, List<String> values) throws IOException {
+        out.putInt(values.size());
+        for (String value : values) {
+            out.putString(value);
+        }
+    }
+
+    private static ColumnarTableStore readTable(BlockReader in) throws IOException, DataFormatException {
+        int rowCount = in.getInt();
+        int columnCount = in.getInt();
+        LongColumn rowWidths = (LongColumn) Column.create(ColumnType.LONG, rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            rowWidths.addLong(in.getInt());
+        }
+        List<Column> columns = new ArrayList<>(columnCount);
+        for (int c = 0; c < columnCount; c++) {
+            columns.add(readColumn(in, rowCount));
+        }
+        return ColumnarTableStore.fromColumns(columns, rowWidths, rowCount);
+    }
+
+    private static Column readColumn(BlockReader in, int rowCount) throws IOException, DataFormatException {
+        byte type = in.getByte();
+        long[] nulls = new long[(rowCount + 63) >>> 6];
+        for (int word = 0; word < nulls.length; word++) {
+            nulls[word] = in.getLong();
+        }
+        switch (type) {
+            case TYPE_LONG: {
+                LongColumn column = (LongColumn) Column.create(ColumnType.LONG, rowCount);
+                for (int row = 0; row < rowCount; row++) {
+                    if (isNull(nulls, row)) {
+                        column.add("");
+                    } else {
+                        column.addLong(in.getLong());
+                    }
+                }
+                return column;
+            }
+            case TYPE_DOUBLE: {
+                DoubleColumn column = (DoubleColumn) Column.create(ColumnType.DOUBLE, rowCount);
+                for (int row = 0; row < rowCount; row++) {
+                    if (isNull(nulls, row)) {
+                        column.add("");
+                    } else {
+                        double value = in.getDouble();
+                        column.addDouble(value, in.getByte() != 0);
+                    }
+                }
+                return column;
+            }
+            case TYPE_BOOLEAN: {
+                BooleanColumn column = (BooleanColumn) Column.create(ColumnType.BOOLEAN, rowCount);
+                for (int row = 0; row < rowCount; row++) {
+                    if (isNull(nulls, row)) {
+                        column.add("");
+                    } else {
+                        column.addBoolean(in.getByte() != 0);
+                    }
+                }
+                return column;
+            }
+            case TYPE_DICTIONARY: {
+                List<String> dictionary = readStrings(in);
+                StringColumn column = StringColumn.withDictionary(dictionary.toArray(new String[0]), rowCount);
+                for (int row = 0; row < rowCount; row++) {
+                    if (isNull(nulls, row)) {
+                        column.add("");
+                    } else {
+                        column.addCode(in.getInt());
+                    }
+                }
+                return column;
+            }
+            case TYPE_TEXT: {
+                Column column = Column.create(ColumnType.STRING, rowCount);
+                for (int row = 0; row < rowCount; row++) {
+                    column.add(isNull(nulls, row) ? "" : in.getString());
+                }
+                return column;
+            }
+            default:
+                throw new IOException("未知的列类型: " + type);
+        }
+    }
+
+    private static List<String> readStrings(BlockReader in) throws IOException, DataFormatException {
+        int count = in.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.getString());
+        }
+        return values;
+    }
+
+    private static boolean isNull(long[] nulls, int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * 计算文件内容的CRC32，按大块读入
+     */
+    private static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 把数据攒成块写出，每块前写原始长度和存储长度，两者相等表示未压缩，原始长度为0表示结束
+     */
+    private static final class BlockWriter {
+        private final FileChannel channel;
+        private final Deflater deflater;
+        private ByteBuffer buffer = ByteBuffer.allocate(BLOCK_BYTES);
+        private byte[] compressed = new byte[0];
+
+        BlockWriter(FileChannel channel, boolean compress) {
+            this.channel = channel;
+            this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        /**
+         * 写入长度前缀和UTF-8字节
+         */
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void finish() throws IOException {
+            flush();
+            ByteBuffer end = ByteBuffer.allocate(8);
+            end.putInt(0).putInt(0).flip();
+            writeFully(channel, end);
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            flush();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes);
+            }
+        }
+
+        private void flush() throws IOException {
+            int length = buffer.position();
+            if (length == 0) {
+                return;
+            }
+            byte[] data = buffer.array();
+            int stored = length;
+            if (deflater != null) {
+                if (compressed.length < length) {
+                    compressed = new byte[length];
+                }
+                deflater.reset();
+                deflater.setInput(data, 0, length);
+                deflater.finish();
+                int size = deflater.deflate(compressed, 0, length);
+                // 压缩后没有变小（或装不下）时按原样存储
+                if (deflater.finished() && size < length) {
+                    data = compressed;
+                    stored = size;
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(length).putInt(stored).flip();
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(data, 0, stored));
+            buffer.clear();
+        }
+    }
+
+    /**
+     * 按块读入并解压，供按顺序读取基本类型和文本
+     */
+    private static final class BlockReader {
+        private final FileChannel channel;
+        private final Inflater inflater = new Inflater();
+        private final ByteBuffer blockHeader = ByteBuffer.allocate(8);
+        private ByteBuffer stored = ByteBuffer.allocate(0);
+        private ByteBuffer buffer = ByteBuffer.allocate(BLOCK_BYTES);
+
+        BlockReader(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        byte getByte() throws IOException, DataFormatException {
+            ensure(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException, DataFormatException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException, DataFormatException {
+            ensure(8);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException, DataFormatException {
+            ensure(8);
+            return buffer.getDouble();
+        }
+
+        void close() {
+            inflater.end();
+        }
+
+        String getString() throws IOException, DataFormatException {
+            int length = getInt();
+            ensure(length);
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        /**
+         * 保证缓冲区中至少有bytes个未读字节，不足时读入后续的块
+         */
+        private void ensure(int bytes) throws IOException, DataFormatException {
+            while (buffer.remaining() < bytes) {
+                blockHeader.clear();
+                if (!readFully(channel, blockHeader)) {
+                    throw new EOFException("快照文件不完整");
+                }
+                int length = blockHeader.getInt(0);
+                int storedLength = blockHeader.getInt(4);
+                if (length <= 0) {
+                    throw new EOFException("快照文件不完整");
+                }
+                buffer.compact();
+                if (buffer.remaining() < length) {
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.position() + length);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+                if (stored.capacity() < storedLength) {
+                    stored = ByteBuffer.allocate(storedLength);
+                }
+                stored.clear().limit(storedLength);
+                if (!readFully(channel, stored)) {
+                    throw new EOFException("快照文件不完整");
+                }
+                if (storedLength == length) {
+                    buffer.put(stored.array(), 0, length);
+                } else {
+                    inflater.reset();
+                    inflater.setInput(stored.array(), 0, storedLength);
+                    int inflated = inflater.inflate(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                    if (inflated != length) {
+                        throw new DataFormatException("数据块长度不符");
+                    }
+                    buffer.position(buffer.position() + length);
+                }
+                buffer.flip();
+            }
+        }
+    }
+}
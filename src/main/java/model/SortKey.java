@@ -0,0 +1,66 @@
+package model;
+
+/**
+ * 排序键 - MVC架构中的Model层组件
+ * 按哪一列、以什么方向排序；多个排序键依次作为主次关键字
+ */
+public final class SortKey {
+    private final int column;
+    private final boolean ascending;
+
+    public SortKey(int column, boolean ascending) {
+        if (column < 0) {
+            throw new IllegalArgumentException("列索引不能小于0");
+        }
+        this.column = column;
+        this.ascending = ascending;
+    }
+
+    /**
+     * 按指定列升序
+     */
+    public static SortKey ascending(int column) {
+        return new SortKey(column, true);
+    }
+
+    /**
+     * 按指定列降序
+     */
+    public static SortKey descending(int column) {
+        return new SortKey(column, false);
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * 同一列、相反方向的排序键
+     */
+    public SortKey reversed() {
+        return new SortKey(column, !ascending);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SortKey)) {
+            return false;
+        }
+        SortKey other = (SortKey) o;
+        return column == other.column && ascending == other.ascending;
+    }
+
+    @Override
+    public int hashCode() {
+        return column * 2 + (ascending ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return column + (ascending ? " 升序" : " 降序");
+    }
+}
@@ -0,0 +1,12 @@
+package model;
+
+/**
+ * 数据存储方式 - MVC架构中的Model层组件
+ * 打开文件时选择，决定ExcelDataModel的数据放在堆内还是磁盘映射文件中
+ */
+public enum StorageMode {
+    /** 堆内列式存储，适合能放进内存的表格 */
+    MEMORY,
+    /** 磁盘映射行存储，适合比堆内存更大的表格 */
+    MAPPED
+}
@@ -0,0 +1,256 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文本列 - MVC架构中的Model层组件
+ * 字典编码：每个不同的文本只存一份，各行只保存其在字典中的编号；
+ * 编号按字典大小用byte、short或int数组存放，低基数列每行只占一两个字节，字典变大时整列加宽
+ *
+ * 字典只追加不修改，快照与原列共享字典数组，只读取快照时已有的编号；
+ * 快照的副本被写入时先复制字典
+ */
+class StringColumn extends Column {
+    // 字典不超过256项时用byteCodes，不超过65536项时用shortCodes，否则用intCodes，同一时刻只有一个不为null
+    private static final int BYTE_LIMIT = 1 << 8;
+    private static final int SHORT_LIMIT = 1 << 16;
+
+    private byte[][] byteCodes = new byte[0][];
+    private short[][] shortCodes;
+    private int[][] intCodes;
+    private String[] dictionary = new String[16];
+    private int dictionarySize;
+    private Map<String, Integer> codeIndex = new HashMap<>();
+    private long dictionaryBytes;
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.STRING;
+    }
+
+    @Override
+    boolean accepts(String value) {
+        return true;
+    }
+
+    /**
+     * 由已有的字典创建空列，之后用addCode按编号追加
+     */
+    static StringColumn withDictionary(String[] dictionary, int capacity) {
+        StringColumn column = new StringColumn();
+        column.dictionary = dictionary.length > 0 ? dictionary : new String[16];
+        column.dictionarySize = dictionary.length;
+        // 反查表在首次写入时才建立，只读取时不需要
+        column.codeIndex = null;
+        column.widenFor(dictionary.length);
+        for (String value : dictionary) {
+            column.dictionaryBytes += 40 + 2L * value.length() + 8 + 48;
+        }
+        column.ensureCapacity(capacity);
+        return column;
+    }
+
+    /**
+     * 在末尾追加字典中已有的编号
+     */
+    void addCode(int code) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        int chunk = row >>> CHUNK_SHIFT;
+        prepareWrite(chunk);
+        setBit(nulls[chunk], row & CHUNK_MASK, false);
+        setCode(chunk, row & CHUNK_MASK, code);
+    }
+
+    /**
+     * 获取指定行在字典中的编号（该行非空）
+     */
+    int getCode(int row) {
+        int chunk = row >>> CHUNK_SHIFT;
+        int index = row & CHUNK_MASK;
+        if (byteCodes != null) {
+            return byteCodes[chunk][index] & 0xFF;
+        }
+        if (shortCodes != null) {
+            return shortCodes[chunk][index] & 0xFFFF;
+        }
+        return intCodes[chunk][index];
+    }
+
+    private void setCode(int chunk, int index, int code) {
+        if (byteCodes != null) {
+            byteCodes[chunk][index] = (byte) code;
+        } else if (shortCodes != null) {
+            shortCodes[chunk][index] = (short) code;
+        } else {
+            intCodes[chunk][index] = code;
+        }
+    }
+
+    /**
+     * 保证编号数组能表示size个不同的编号，不够时把所有块换成更宽的新数组；
+     * 快照仍持有原来的数组，不受影响
+     */
+    private void widenFor(int size) {
+        if (byteCodes != null && size > BYTE_LIMIT) {
+            if (size > SHORT_LIMIT) {
+                intCodes = new int[byteCodes.length][];
+                for (int chunk = 0; chunk < byteCodes.length; chunk++) {
+                    byte[] narrow = byteCodes[chunk];
+                    if (narrow != null) {
+                        int[] wide = new int[narrow.length];
+                        for (int i = 0; i < narrow.length; i++) {
+                            wide[i] = narrow[i] & 0xFF;
+                        }
+                        intCodes[chunk] = wide;
+                    }
+                }
+            } else {
+                shortCodes = new short[byteCodes.length][];
+                for (int chunk = 0; chunk < byteCodes.length; chunk++) {
+                    byte[] narrow = byteCodes[chunk];
+                    if (narrow != null) {
+                        short[] wide = new short[narrow.length];
+                        for (int i = 0; i < narrow.length; i++) {
+                            wide[i] = (short) (narrow[i] & 0xFF);
+                        }
+                        shortCodes[chunk] = wide;
+                    }
+                }
+            }
+            byteCodes = null;
+        }
+        if (shortCodes != null && size > SHORT_LIMIT) {
+            intCodes = new int[shortCodes.length][];
+            for (int chunk = 0; chunk < shortCodes.length; chunk++) {
+                short[] narrow = shortCodes[chunk];
+                if (narrow != null) {
+                    int[] wide = new int[narrow.length];
+                    for (int i = 0; i < narrow.length; i++) {
+                        wide[i] = narrow[i] & 0xFFFF;
+                    }
+                    intCodes[chunk] = wide;
+                }
+            }
+            shortCodes = null;
+        }
+    }
+
+    /**
+     * 获取字典，下标即编号
+     */
+    List<String> getDictionary() {
+        return Collections.unmodifiableList(Arrays.asList(dictionary).subList(0, dictionarySize));
+    }
+
+    @Override
+    protected String format(int row) {
+        return dictionary[getCode(row)];
+    }
+
+    @Override
+    protected void store(int row, String value) {
+        if (codeIndex == null) {
+            // 写入快照的副本（或从字典恢复的列）：先复制字典，不再与原列共享
+            dictionary = Arrays.copyOf(dictionary, dictionary.length);
+            codeIndex = new HashMap<>(dictionarySize * 2);
+            for (int code = 0; code < dictionarySize; code++) {
+                codeIndex.put(dictionary[code], code);
+            }
+        }
+        Integer code = codeIndex.get(value);
+        if (code == null) {
+            code = dictionarySize;
+            if (dictionarySize == dictionary.length) {
+                // 换成新数组，快照仍持有旧数组
+                dictionary = Arrays.copyOf(dictionary, dictionary.length * 2);
+            }
+            dictionary[dictionarySize++] = value;
+            codeIndex.put(value, code);
+            widenFor(dictionarySize);
+            // 字符串对象、字典引用和散列表条目
+            dictionaryBytes += 40 + 2L * value.length() + 8 + 48;
+        }
+        setCode(row >>> CHUNK_SHIFT, row & CHUNK_MASK, code);
+    }
+
+    @Override
+    protected void resizeChunk(int chunk, int capacity) {
+        if (byteCodes != null) {
+            if (chunk >= byteCodes.length) {
+                byteCodes = Arrays.copyOf(byteCodes, Math.max(chunk + 1, byteCodes.length * 2));
+            }
+            byte[] old = byteCodes[chunk];
+            byteCodes[chunk] = old == null ? new byte[capacity] : Arrays.copyOf(old, capacity);
+        } else if (shortCodes != null) {
+            if (chunk >= shortCodes.length) {
+                shortCodes = Arrays.copyOf(shortCodes, Math.max(chunk + 1, shortCodes.length * 2));
+            }
+            short[] old = shortCodes[chunk];
+            shortCodes[chunk] = old == null ? new short[capacity] : Arrays.copyOf(old, capacity);
+        } else {
+            if (chunk >= intCodes.length) {
+                intCodes = Arrays.copyOf(intCodes, Math.max(chunk + 1, intCodes.length * 2));
+            }
+            int[] old = intCodes[chunk];
+            intCodes[chunk] = old == null ? new int[capacity] : Arrays.copyOf(old, capacity);
+        }
+    }
+
+    @Override
+    protected void removeFromChunk(int chunk, int index, int length) {
+        Object codes = byteCodes != null ? byteCodes[chunk] : shortCodes != null ? shortCodes[chunk] : intCodes[chunk];
+        System.arraycopy(codes, index + 1, codes, index, length - index - 1);
+    }
+
+    @Override
+    protected void copyValue(int fromChunk, int fromIndex, int toChunk, int toIndex) {
+        if (byteCodes != null) {
+            byteCodes[toChunk][toIndex] = byteCodes[fromChunk][fromIndex];
+        } else if (shortCodes != null) {
+            shortCodes[toChunk][toIndex] = shortCodes[fromChunk][fromIndex];
+        } else {
+            intCodes[toChunk][toIndex] = intCodes[fromChunk][fromIndex];
+        }
+    }
+
+    @Override
+    protected Column shareChunks() {
+        StringColumn copy = new StringColumn();
+        copy.byteCodes = byteCodes != null ? byteCodes.clone() : null;
+        copy.shortCodes = shortCodes != null ? shortCodes.clone() : null;
+        copy.intCodes = intCodes != null ? intCodes.clone() : null;
+        copy.dictionary = dictionary;
+        copy.dictionarySize = dictionarySize;
+        // 快照通常只读，反查表在首次写入时才建立
+        copy.codeIndex = null;
+        copy.dictionaryBytes = dictionaryBytes;
+        return copy;
+    }
+
+    @Override
+    protected long valueMemoryBytes() {
+        long bytes = 16 + 8L * dictionary.length + dictionaryBytes;
+        if (byteCodes != null) {
+            bytes += 8L * byteCodes.length;
+            for (byte[] chunk : byteCodes) {
+                bytes += chunk != null ? 16 + chunk.length : 0;
+            }
+        } else if (shortCodes != null) {
+            bytes += 8L * shortCodes.length;
+            for (short[] chunk : shortCodes) {
+                bytes += chunk != null ? 16 + 2L * chunk.length : 0;
+            }
+        } else {
+            bytes += 8L * intCodes.length;
+            for (int[] chunk : intCodes) {
+                bytes += chunk != null ? 16 + 4L * chunk.length : 0;
+            }
+        }
+        return bytes;
+    }
+}
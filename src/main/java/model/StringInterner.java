@@ -0,0 +1,164 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 导入时的文本去重表 - MVC架构中的Model层组件
+ * 每列一张开放寻址散列表，同一列中相同的文本只保留一个String对象，并统计去重比例
+ *
+ * 重复值多的列（状态、地区、客户名等）读完后各行共享少量字符串；
+ * 某列不同的值过多且很少重复时停止为该列收录新值，避免为编号之类的列保存整列文本
+ */
+final class StringInterner {
+    // 超过该长度的文本很少重复，不收录
+    private static final int MAX_LENGTH = 64;
+    // 每列最多收录的不同文本数
+    private static final int MAX_ENTRIES = 1 << 16;
+
+    private Table[] tables = new Table[0];
+    private long lookups;
+    private long reused;
+
+    /**
+     * 返回与value相同的已收录文本，尚未收录时收录并返回value本身
+     */
+    String intern(int column, String value) {
+        int length = value.length();
+        if (length == 0 || length > MAX_LENGTH) {
+            return value;
+        }
+        int hash = value.hashCode();
+        Table table = table(column);
+        int slot = hash & table.mask;
+        for (String entry; (entry = table.entries[slot]) != null; slot = (slot + 1) & table.mask) {
+            if (table.hashes[slot] == hash && entry.equals(value)) {
+                lookups++;
+                reused++;
+                return entry;
+            }
+        }
+        lookups++;
+        table.add(slot, hash, value);
+        return value;
+    }
+
+    /**
+     * 与intern(int, String)相同，但直接按字符数组中的一段查找，已收录时不创建新字符串
+     */
+    String intern(int column, char[] chars, int from, int to) {
+        int length = to - from;
+        if (length == 0) {
+            return "";
+        }
+        if (length > MAX_LENGTH) {
+            return new String(chars, from, length);
+        }
+        // 与String.hashCode相同的算法，收录后两种查找方式得到同一散列值
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        Table table = table(column);
+        int slot = hash & table.mask;
+        for (String entry; (entry = table.entries[slot]) != null; slot = (slot + 1) & table.mask) {
+            if (table.hashes[slot] == hash && matches(entry, chars, from, length)) {
+                lookups++;
+                reused++;
+                return entry;
+            }
+        }
+        lookups++;
+        String value = new String(chars, from, length);
+        table.add(slot, hash, value);
+        return value;
+    }
+
+    /**
+     * 查找过的非空文本数
+     */
+    long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * 其中直接复用已有字符串的次数
+     */
+    long getReused() {
+        return reused;
+    }
+
+    /**
+     * 去重比例：复用次数占查找次数的比例，没有查找时为0
+     */
+    double getDedupRatio() {
+        return lookups == 0 ? 0 : (double) reused / lookups;
+    }
+
+    private Table table(int column) {
+        if (column >= tables.length) {
+            tables = Arrays.copyOf(tables, Math.max(column + 1, tables.length * 2));
+        }
+        Table table = tables[column];
+        if (table == null) {
+            table = new Table();
+            tables[column] = table;
+        }
+        return table;
+    }
+
+    private static boolean matches(String entry, char[] chars, int from, int length) {
+        if (entry.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (entry.charAt(i) != chars[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一列的散列表，装载因子不超过1/2
+     */
+    private static final class Table {
+        private String[] entries = new String[16];
+        private int[] hashes = new int[16];
+        private int mask = 15;
+        private int size;
+        private boolean full;
+
+        void add(int slot, int hash, String value) {
+            if (full) {
+                return;
+            }
+            entries[slot] = value;
+            hashes[slot] = hash;
+            size++;
+            if (size >= MAX_ENTRIES) {
+                // 已收录的值仍可复用，只是不再增加
+                full = true;
+            } else if (size * 2 > entries.length) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            String[] oldEntries = entries;
+            int[] oldHashes = hashes;
+            entries = new String[oldEntries.length * 2];
+            hashes = new int[oldEntries.length * 2];
+            mask = entries.length - 1;
+            for (int i = 0; i < oldEntries.length; i++) {
+                if (oldEntries[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (entries[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    entries[slot] = oldEntries[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,611 @@
+package model;
+
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 合成工作簿生成器 - MVC架构中的Model层组件
+ * 按指定的行数、列数、列类型比例、文本取值个数、公式列数和工作表数生成XLSX或CSV文件，
+ * 用于复现大文件的性能问题；逐行流式写出，生成千万单元格的文件也只占用少量内存
+ *
+ * 同样的参数和随机种子每次生成相同的内容，CSV与XLSX第一个工作表的数据相同。
+ * XLSX中数字、日期和布尔值写为对应类型的单元格，取值有限的文本写入共享字符串表（取值保存在内存中），
+ * 公式单元格同时保存计算结果，与Excel保存的文件结构一致；CSV没有公式，公式列写出计算结果
+ */
+public class SyntheticWorkbookGenerator {
+    /** 默认的列类型比例 */
+    public static final String DEFAULT_MIX = "text:3,integer:2,decimal:2,date:1,boolean:1";
+
+    /**
+     * 数据列的类型
+     */
+    public enum ColumnType {
+        TEXT("文本"),
+        INTEGER("整数"),
+        DECIMAL("金额"),
+        DATE("日期"),
+        BOOLEAN("标志");
+
+        private final String header;
+
+        ColumnType(String header) {
+            this.header = header;
+        }
+    }
+
+    private static final String[] WORDS = {"北京", "上海", "广州", "深圳", "杭州", "成都", "武汉", "南京",
+            "已完成", "处理中", "待审核", "已取消", "华东", "华南", "西北", "东北"};
+    // 2020-01-01的Excel日期序号，日期在此后十年内
+    private static final int FIRST_DATE = 43831;
+    private static final int DATE_SPAN = 3650;
+    private static final LocalDate EXCEL_EPOCH = LocalDate.of(1899, 12, 30);
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String SPREADSHEET_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String PACKAGE_RELATIONSHIPS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String DOCUMENT_RELATIONSHIPS =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String CONTENT_TYPE_PREFIX = "application/vnd.openxmlformats-officedocument.spreadsheetml.";
+    // 样式1为日期格式，其余单元格使用默认样式0
+    private static final String STYLES = XML_HEADER + "<styleSheet xmlns=\"" + SPREADSHEET_MAIN + "\">"
+            + "<numFmts count=\"1\"><numFmt numFmtId=\"164\" formatCode=\"yyyy-mm-dd\"/></numFmts>"
+            + "<fonts count=\"1\"><font><sz val=\"11\"/><name val=\"等线\"/></font></fonts>"
+            + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+            + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"2\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+            + "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/></cellXfs>"
+            + "<cellStyles count=\"1\"><cellStyle name=\"常规\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+            + "</styleSheet>";
+
+    private int rows = 100000;
+    private int columns = 10;
+    private int sheets = 1;
+    private int formulaColumns;
+    private int textCardinality = 1000;
+    private long seed = 20240101L;
+    private Map<ColumnType, Integer> mix = parseMix(DEFAULT_MIX);
+
+    /**
+     * 设置每个工作表的数据行数（不含表头）
+     */
+    public void setRows(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("行数不能为负数");
+        }
+        this.rows = rows;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * 设置数据列数（不含公式列）
+     */
+    public void setColumns(int columns) {
+        if (columns <= 0) {
+            throw new IllegalArgumentException("列数必须大于0");
+        }
+        this.columns = columns;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * 设置工作表数，CSV只能有一个工作表
+     */
+    public void setSheets(int sheets) {
+        if (sheets <= 0) {
+            throw new IllegalArgumentException("工作表数必须大于0");
+        }
+        this.sheets = sheets;
+    }
+
+    public int getSheets() {
+        return sheets;
+    }
+
+    /**
+     * 设置追加在数据列之后的公式列数，公式引用同一行的数字列
+     */
+    public void setFormulaColumns(int formulaColumns) {
+        if (formulaColumns < 0) {
+            throw new IllegalArgumentException("公式列数不能为负数");
+        }
+        this.formulaColumns = formulaColumns;
+    }
+
+    public int getFormulaColumns() {
+        return formulaColumns;
+    }
+
+    /**
+     * 设置每个文本列不同取值的个数，0表示每个单元格的文本都不相同
+     */
+    public void setTextCardinality(int textCardinality) {
+        if (textCardinality < 0) {
+            throw new IllegalArgumentException("文本取值个数不能为负数");
+        }
+        this.textCardinality = textCardinality;
+    }
+
+    public int getTextCardinality() {
+        return textCardinality;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * 设置各列类型的比例，列按比例交错分配
+     */
+    public void setMix(Map<ColumnType, Integer> mix) {
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一种列类型");
+        }
+        this.mix = new EnumMap<>(mix);
+    }
+
+    public Map<ColumnType, Integer> getMix() {
+        return new EnumMap<>(mix);
+    }
+
+    /**
+     * 解析列类型比例，如“text:3,integer:2,date:1”；类型名不区分大小写，省略比例时为1
+     * @throws IllegalArgumentException 类型名或比例无效
+     */
+    public static Map<ColumnType, Integer> parseMix(String spec) {
+        Map<ColumnType, Integer> mix = new EnumMap<>(ColumnType.class);
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int colon = part.indexOf(':');
+            String name = colon >= 0 ? part.substring(0, colon).trim() : part;
+            int weight;
+            try {
+                weight = colon >= 0 ? Integer.parseInt(part.substring(colon + 1).trim()) : 1;
+                mix.put(ColumnType.valueOf(name.toUpperCase(Locale.ROOT)), weight);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("无效的列类型比例: " + part);
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("无效的列类型比例: " + part);
+            }
+        }
+        mix.values().removeIf(weight -> weight == 0);
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一种列类型: " + spec);
+        }
+        return mix;
+    }
+
+    /**
+     * 各数据列的类型：按比例平滑交错分配，相同类型的列不会聚在一起
+     */
+    public List<ColumnType> columnTypes() {
+        List<ColumnType> types = new ArrayList<>(columns);
+        Map<ColumnType, Integer> current = new EnumMap<>(ColumnType.class);
+        int total = 0;
+        for (int weight : mix.values()) {
+            total += weight;
+        }
+        for (int c = 0; c < columns; c++) {
+            ColumnType chosen = null;
+            for (Map.Entry<ColumnType, Integer> entry : mix.entrySet()) {
+                int value = current.getOrDefault(entry.getKey(), 0) + entry.getValue();
+                current.put(entry.getKey(), value);
+                if (chosen == null || value > current.get(chosen)) {
+                    chosen = entry.getKey();
+                }
+            }
+            current.put(chosen, current.get(chosen) - total);
+            types.add(chosen);
+        }
+        return types;
+    }
+
+    /**
+     * 表头：各数据列按类型命名，公式列在最后
+     */
+    public List<String> headers() {
+        List<String> headers = new ArrayList<>();
+        List<ColumnType> types = columnTypes();
+        for (int c = 0; c < types.size(); c++) {
+            headers.add(types.get(c).header + (c + 1));
+        }
+        for (int f = 0; f < formulaColumns; f++) {
+            headers.add("公式" + (f + 1));
+        }
+        return headers;
+    }
+
+    /**
+     * 每个工作表的单元格数（含表头）
+     */
+    public long cellsPerSheet() {
+        return (long) (rows + 1) * (columns + formulaColumns);
+    }
+
+    /**
+     * 生成文件，格式由扩展名决定（.xlsx、.csv或.tsv）
+     * @param output 输出文件，已存在时覆盖
+     * @throws IOException 文件写入失败
+     * @throws IllegalArgumentException CSV/TSV指定了多个工作表
+     */
+    public void generate(Path output) throws IOException {
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (CsvDataAccess.isCsvFile(output.toString())) {
+            if (sheets != 1) {
+                throw new IllegalArgumentException("CSV/TSV文件只能有一个工作表");
+            }
+            writeCsv(output);
+        } else {
+            writeXlsx(output);
+        }
+    }
+
+    private void writeCsv(Path output) throws IOException {
+        Layout layout = new Layout();
+        try (CsvWriter writer = new CsvDataAccess().openCsvWriter(output.toString(), layout.headers)) {
+            Random random = new Random(seed);
+            double[] numbers = new double[columns];
+            List<String> row = new ArrayList<>(Arrays.asList(new String[layout.headers.size()]));
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    ColumnType type = layout.types.get(c);
+                    switch (type) {
+                        case TEXT:
+                            row.set(c, layout.text(c, r, random));
+                            break;
+                        case BOOLEAN:
+                            row.set(c, String.valueOf(random.nextBoolean()));
+                            break;
+                        case DATE:
+                            numbers[c] = FIRST_DATE + random.nextInt(DATE_SPAN);
+                            row.set(c, EXCEL_EPOCH.plusDays((long) numbers[c]).toString());
+                            break;
+                        default:
+                            numbers[c] = number(type, random);
+                            row.set(c, CellFormatter.formatGeneral(numbers[c]));
+                            break;
+                    }
+                }
+                for (int f = 0; f < formulaColumns; f++) {
+                    row.set(columns + f, CellFormatter.formatGeneral(layout.formulaValue(f, numbers)));
+                }
+                writer.writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * 直接写出SpreadsheetML各部件：文本取值预先确定，共享字符串表可以先于工作表写出，
+     * 不必像通用的流式写入那样先把工作表写到临时文件
+     */
+    private void writeXlsx(Path output) throws IOException {
+        Layout layout = new Layout();
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))) {
+            // 优先保证生成速度，解析时解压的开销与默认压缩级别相差不大
+            zip.setLevel(Deflater.BEST_SPEED);
+            Writer out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 1 << 16);
+            writeEntry(zip, out, "[Content_Types].xml", contentTypes());
+            writeEntry(zip, out, "_rels/.rels", XML_HEADER + "<Relationships xmlns=\"" + PACKAGE_RELATIONSHIPS + "\">"
+                    + relationship(1, "officeDocument", "xl/workbook.xml") + "</Relationships>");
+            writeEntry(zip, out, "xl/workbook.xml", workbook());
+            writeEntry(zip, out, "xl/_rels/workbook.xml.rels", workbookRelationships());
+            writeEntry(zip, out, "xl/styles.xml", STYLES);
+            zip.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+            writeSharedStrings(out, layout.sharedStrings);
+            out.flush();
+            zip.closeEntry();
+            for (int s = 0; s < sheets; s++) {
+                zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + (s + 1) + ".xml"));
+                writeSheet(out, layout, new Random(seed + s));
+                out.flush();
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private void writeSheet(Writer out, Layout layout, Random random) throws IOException {
+        int width = layout.headers.size();
+        String[] letters = new String[width];
+        for (int c = 0; c < width; c++) {
+            letters[c] = CellReference.convertNumToColString(c);
+        }
+        out.write(XML_HEADER);
+        out.write("<worksheet xmlns=\"" + SPREADSHEET_MAIN + "\"><dimension ref=\"A1:"
+                + letters[width - 1] + (rows + 1) + "\"/><sheetData><row r=\"1\">");
+        for (int c = 0; c < width; c++) {
+            out.write("<c r=\"" + letters[c] + "1\" t=\"s\"><v>" + c + "</v></c>");
+        }
+        out.write("</row>");
+
+        double[] numbers = new double[columns];
+        StringBuilder row = new StringBuilder(1024);
+        for (int r = 0; r < rows; r++) {
+            int sheetRow = r + 2;
+            row.setLength(0);
+            row.append("<row r=\"").append(sheetRow).append("\">");
+            for (int c = 0; c < columns; c++) {
+                row.append("<c r=\"").append(letters[c]).append(sheetRow).append('"');
+                ColumnType type = layout.types.get(c);
+                switch (type) {
+                    case TEXT:
+                        if (layout.sharedIndexes[c] != null) {
+                            row.append(" t=\"s\"><v>").append(layout.sharedIndex(c, random)).append("</v></c>");
+                        } else {
+                            row.append(" t=\"inlineStr\"><is><t>");
+                            escape(row, layout.text(c, r, random));
+                            row.append("</t></is></c>");
+                        }
+                        break;
+                    case BOOLEAN:
+                        row.append(" t=\"b\"><v>").append(random.nextBoolean() ? '1' : '0').append("</v></c>");
+                        break;
+                    case DATE:
+                        numbers[c] = FIRST_DATE + random.nextInt(DATE_SPAN);
+                        row.append(" s=\"1\"><v>").append((int) numbers[c]).append("</v></c>");
+                        break;
+                    default:
+                        numbers[c] = number(type, random);
+                        row.append("><v>").append(CellFormatter.formatGeneral(numbers[c])).append("</v></c>");
+                        break;
+                }
+            }
+            for (int f = 0; f < formulaColumns; f++) {
+                // 同时保存计算结果，读取时与Excel保存的文件一样取缓存值
+                row.append("<c r=\"").append(letters[columns + f]).append(sheetRow).append("\"><f>");
+                escape(row, layout.formula(f, sheetRow));
+                row.append("</f><v>").append(CellFormatter.formatGeneral(layout.formulaValue(f, numbers)))
+                        .append("</v></c>");
+            }
+            row.append("</row>");
+            out.append(row);
+        }
+        out.write("</sheetData></worksheet>");
+    }
+
+    private static void writeSharedStrings(Writer out, List<String> strings) throws IOException {
+        out.write(XML_HEADER);
+        out.write("<sst xmlns=\"" + SPREADSHEET_MAIN + "\" count=\"" + strings.size()
+                + "\" uniqueCount=\"" + strings.size() + "\">");
+        StringBuilder item = new StringBuilder();
+        for (String text : strings) {
+            item.setLength(0);
+            item.append("<si><t>");
+            escape(item, text);
+            item.append("</t></si>");
+            out.append(item);
+        }
+        out.write("</sst>");
+    }
+
+    private static void writeEntry(ZipOutputStream zip, Writer out, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private String contentTypes() {
+        StringBuilder xml = new StringBuilder(XML_HEADER);
+        xml.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+                .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+                .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+                .append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"").append(CONTENT_TYPE_PREFIX)
+                .append("sheet.main+xml\"/>");
+        for (int s = 1; s <= sheets; s++) {
+            xml.append("<Override PartName=\"/xl/worksheets/sheet").append(s).append(".xml\" ContentType=\"")
+                    .append(CONTENT_TYPE_PREFIX).append("worksheet+xml\"/>");
+        }
+        xml.append("<Override PartName=\"/xl/styles.xml\" ContentType=\"").append(CONTENT_TYPE_PREFIX)
+                .append("styles+xml\"/>")
+                .append("<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"").append(CONTENT_TYPE_PREFIX)
+                .append("sharedStrings+xml\"/>")
+                .append("</Types>");
+        return xml.toString();
+    }
+
+    private String workbook() {
+        StringBuilder xml = new StringBuilder(XML_HEADER);
+        xml.append("<workbook xmlns=\"").append(SPREADSHEET_MAIN).append("\" xmlns:r=\"")
+                .append(DOCUMENT_RELATIONSHIPS).append("\"><sheets>");
+        for (int s = 1; s <= sheets; s++) {
+            xml.append("<sheet name=\"数据").append(s).append("\" sheetId=\"").append(s)
+                    .append("\" r:id=\"rId").append(s).append("\"/>");
+        }
+        return xml.append("</sheets></workbook>").toString();
+    }
+
+    private String workbookRelationships() {
+        StringBuilder xml = new StringBuilder(XML_HEADER);
+        xml.append("<Relationships xmlns=\"").append(PACKAGE_RELATIONSHIPS).append("\">");
+        for (int s = 1; s <= sheets; s++) {
+            xml.append(relationship(s, "worksheet", "worksheets/sheet" + s + ".xml"));
+        }
+        xml.append(relationship(sheets + 1, "styles", "styles.xml"))
+                .append(relationship(sheets + 2, "sharedStrings", "sharedStrings.xml"));
+        return xml.append("</Relationships>").toString();
+    }
+
+    private static String relationship(int id, String type, String target) {
+        return "<Relationship Id=\"rId" + id + "\" Type=\"" + DOCUMENT_RELATIONSHIPS + "/" + type
+                + "\" Target=\"" + target + "\"/>";
+    }
+
+    private static void escape(StringBuilder out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+    }
+
+    private static double number(ColumnType type, Random random) {
+        if (type == ColumnType.INTEGER) {
+            return random.nextInt(1_000_000);
+        }
+        return random.nextInt(10_000_000) / 100.0;
+    }
+
+    /**
+     * 一次生成所用的列布局：列类型、文本取值和公式引用的列
+     */
+    private final class Layout {
+        private final List<ColumnType> types = columnTypes();
+        private final List<String> headers = headers();
+        // 公式引用的数字列（整数和金额），没有数字列时公式统计该行的非空单元格数
+        private final int[] numericColumns;
+        private final String[][] textValues = new String[columns][];
+        // 共享字符串表（表头在前，各文本列的取值去重后在后），以及各文本列取值在表中的位置
+        private final List<String> sharedStrings = new ArrayList<>(headers);
+        private final int[][] sharedIndexes = new int[columns][];
+
+        Layout() {
+            int[] numeric = new int[columns];
+            int count = 0;
+            Map<String, Integer> positions = new HashMap<>();
+            for (int c = 0; c < columns; c++) {
+                ColumnType type = types.get(c);
+                if (type == ColumnType.INTEGER || type == ColumnType.DECIMAL) {
+                    numeric[count++] = c;
+                }
+                if (type == ColumnType.TEXT && textCardinality > 0) {
+                    textValues[c] = textPool(c);
+                    sharedIndexes[c] = new int[textCardinality];
+                    for (int i = 0; i < textCardinality; i++) {
+                        String text = textValues[c][i];
+                        Integer position = positions.get(text);
+                        if (position == null) {
+                            position = sharedStrings.size();
+                            positions.put(text, position);
+                            sharedStrings.add(text);
+                        }
+                        sharedIndexes[c][i] = position;
+                    }
+                }
+            }
+            numericColumns = Arrays.copyOf(numeric, count);
+        }
+
+        private String[] textPool(int column) {
+            String[] pool = new String[textCardinality];
+            for (int i = 0; i < pool.length; i++) {
+                String word = WORDS[(i + column) % WORDS.length];
+                pool[i] = i < WORDS.length ? word : word + "-" + (i / WORDS.length);
+            }
+            return pool;
+        }
+
+        /**
+         * 文本列的下一个取值在共享字符串表中的位置，与text按相同的方式取随机数
+         */
+        int sharedIndex(int column, Random random) {
+            int[] indexes = sharedIndexes[column];
+            return indexes[random.nextInt(indexes.length)];
+        }
+
+        String text(int column, int row, Random random) {
+            String[] pool = textValues[column];
+            if (pool == null) {
+                return "编号" + (column + 1) + "-" + row;
+            }
+            return pool[random.nextInt(pool.length)];
+        }
+
+        /**
+         * 第f个公式列在指定工作表行的公式，按四种写法轮换
+         */
+        String formula(int f, int sheetRow) {
+            if (numericColumns.length == 0) {
+                return "COUNTA(" + cell(0, sheetRow) + ":" + cell(columns - 1, sheetRow) + ")";
+            }
+            String a = cell(numericColumns[f % numericColumns.length], sheetRow);
+            String b = cell(numericColumns[(f + 1) % numericColumns.length], sheetRow);
+            switch (f % 4) {
+                case 0:
+                    return "ROUND(" + a + "*1.1,2)";
+                case 1:
+                    return a + "+" + b;
+                case 2:
+                    return "IF(" + a + ">" + b + "," + a + "," + b + ")";
+                default:
+                    return a + "*" + b;
+            }
+        }
+
+        /**
+         * 公式的计算结果
+         */
+        double formulaValue(int f, double[] numbers) {
+            if (numericColumns.length == 0) {
+                return columns;
+            }
+            double a = numbers[numericColumns[f % numericColumns.length]];
+            double b = numbers[numericColumns[(f + 1) % numericColumns.length]];
+            switch (f % 4) {
+                case 0:
+                    return BigDecimal.valueOf(a * 1.1).setScale(2, RoundingMode.HALF_UP).doubleValue();
+                case 1:
+                    return a + b;
+                case 2:
+                    return Math.max(a, b);
+                default:
+                    return a * b;
+            }
+        }
+
+        private String cell(int column, int sheetRow) {
+            return CellReference.convertNumToColString(column) + sheetRow;
+        }
+    }
+}
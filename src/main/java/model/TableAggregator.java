@@ -0,0 +1,1113 @@
+package model;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 分组汇总器 - MVC架构中的Model层组件
+ * 按一列或多列分组，对每组计算计数、求和、平均值、最小值、最大值和不同值个数
+ *
+ * 每个分组列先转换为整数编号，多列的编号合并为每行一个组号；之后把行分块交给ForkJoin任务，
+ * 每个任务在自己的数组中按组号累加列中的基本类型值，各块的部分结果再逐级合并。
+ * 结果是一张新表，分组列在前并按其升序排列，可以显示在新的工作表中或直接导出
+ */
+public final class TableAggregator {
+    // 每个任务至少处理的行数
+    private static final int MIN_CHUNK_ROWS = 1 << 15;
+    // 合并后的组号范围超过此值和行数时重新编为紧凑的组号
+    private static final int DENSE_GROUP_LIMIT = 1 << 16;
+    // 统计不同值个数时，组数与不同值个数之积不超过此值则每段行使用位图
+    private static final long DISTINCT_BITMAP_BITS = 1L << 22;
+
+    private TableAggregator() {
+    }
+
+    /**
+     * 分组汇总
+     * @param snapshot 表格快照
+     * @param groupColumns 分组列，为空时整张表作为一组
+     * @param aggregates 汇总项，每项在结果中占一列
+     * @return 汇总结果，表头为分组列的表头和各汇总项的名称
+     * @throws IllegalArgumentException 没有汇总项或列索引超出表头范围
+     */
+    public static TableSnapshot aggregate(TableSnapshot snapshot, List<Integer> groupColumns,
+                                          List<Aggregate> aggregates) {
+        List<String> headers = snapshot.getHeaders();
+        if (aggregates.isEmpty()) {
+            throw new IllegalArgumentException("没有要计算的汇总项");
+        }
+        for (int column : groupColumns) {
+            checkColumn(column, headers.size());
+        }
+        for (Aggregate aggregate : aggregates) {
+            if (aggregate.getColumn() != Aggregate.ROWS) {
+                checkColumn(aggregate.getColumn(), headers.size());
+            }
+        }
+
+        Inputs inputs = new Inputs(snapshot.getStore());
+        Groups groups = groupRows(inputs, groupColumns);
+        Partial total;
+        try {
+            total = run(inputs, groups, aggregates, false);
+        } catch (ArithmeticException e) {
+            // 整数之和超出long的范围，改用double累加
+            total = run(inputs, groups, aggregates, true);
+        }
+        for (Accumulator accumulator : total.accumulators) {
+            if (accumulator != null) {
+                accumulator.finish();
+            }
+        }
+
+        List<String> resultHeaders = new ArrayList<>();
+        for (int column : groupColumns) {
+            resultHeaders.add(headers.get(column));
+        }
+        for (Aggregate aggregate : aggregates) {
+            resultHeaders.add(aggregate.getLabel(
+                    aggregate.getColumn() == Aggregate.ROWS ? "" : headers.get(aggregate.getColumn())));
+        }
+        int[] emitted = nonEmptyGroups(total.rowCounts, groupColumns.isEmpty());
+        if (!groupColumns.isEmpty() && emitted.length > 1) {
+            // 先只由分组列排序，再按排好的顺序生成结果的所有列
+            List<Column> keyColumns = new ArrayList<>();
+            List<SortKey> keys = new ArrayList<>();
+            for (int i = 0; i < groupColumns.size(); i++) {
+                keyColumns.add(labelColumn(inputs, groupColumns.get(i), total.firstRows, emitted));
+                keys.add(SortKey.ascending(i));
+            }
+            RowView order = TableSorter.sort(new TableSnapshot(createStore(keyColumns, emitted.length),
+                    resultHeaders.subList(0, keyColumns.size())), keys);
+            int[] sorted = new int[emitted.length];
+            for (int view = 0; view < sorted.length; view++) {
+                sorted[view] = emitted[order.toModel(view)];
+            }
+            emitted = sorted;
+        }
+
+        List<Column> columns = new ArrayList<>();
+        for (int column : groupColumns) {
+            columns.add(labelColumn(inputs, column, total.firstRows, emitted));
+        }
+        for (Accumulator accumulator : total.accumulators) {
+            columns.add(accumulator == null ? longColumn(total.rowCounts, emitted) : accumulator.results(emitted));
+        }
+        return new TableSnapshot(createStore(columns, emitted.length), Collections.unmodifiableList(resultHeaders));
+    }
+
+    private static void checkColumn(int column, int columnCount) {
+        if (column < 0 || column >= columnCount) {
+            throw new IllegalArgumentException("列索引越界: " + column);
+        }
+    }
+
+    /**
+     * 有行的组，不分组时整张表总是一组
+     */
+    private static int[] nonEmptyGroups(long[] rowCounts, boolean single) {
+        if (single) {
+            return new int[]{0};
+        }
+        int count = 0;
+        for (long rows : rowCounts) {
+            if (rows != 0) {
+                count++;
+            }
+        }
+        int[] groups = new int[count];
+        for (int group = 0, i = 0; group < rowCounts.length; group++) {
+            if (rowCounts[group] != 0) {
+                groups[i++] = group;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 分组列在结果中的列：同组各行的值相同，取每组第一行的值，保留原列的类型
+     */
+    private static Column labelColumn(Inputs inputs, int column, int[] firstRows, int[] groups) {
+        Column data = inputs.column(column);
+        if (data instanceof StringColumn) {
+            StringColumn strings = (StringColumn) data;
+            StringColumn labels = StringColumn.withDictionary(strings.getDictionary().toArray(new String[0]), groups.length);
+            for (int group : groups) {
+                int row = firstRows[group];
+                if (data.isNull(row)) {
+                    labels.add("");
+                } else {
+                    labels.addCode(strings.getCode(row));
+                }
+            }
+            return labels;
+        }
+        if (data instanceof LongColumn) {
+            LongColumn longs = (LongColumn) data;
+            LongColumn labels = (LongColumn) Column.create(ColumnType.LONG, groups.length);
+            for (int group : groups) {
+                int row = firstRows[group];
+                if (data.isNull(row)) {
+                    labels.add("");
+                } else {
+                    labels.addLong(longs.getLong(row));
+                }
+            }
+            return labels;
+        }
+        if (data instanceof DoubleColumn) {
+            DoubleColumn doubles = (DoubleColumn) data;
+            DoubleColumn labels = (DoubleColumn) Column.create(ColumnType.DOUBLE, groups.length);
+            for (int group : groups) {
+                int row = firstRows[group];
+                if (data.isNull(row)) {
+                    labels.add("");
+                } else {
+                    labels.addDouble(doubles.getDouble(row), doubles.isIntegral(row));
+                }
+            }
+            return labels;
+        }
+        Coded coded = inputs.coded(column);
+        List<String> values = new ArrayList<>(groups.length);
+        for (int group : groups) {
+            int code = coded.codes[firstRows[group]];
+            values.add(code < 0 ? "" : coded.labels[code]);
+        }
+        return textColumn(values);
+    }
+
+    /**
+     * 每组一个整数，如行数、计数
+     */
+    private static Column longColumn(long[] values, int[] groups) {
+        LongColumn column = (LongColumn) Column.create(ColumnType.LONG, groups.length);
+        for (int group : groups) {
+            column.addLong(values[group]);
+        }
+        return column;
+    }
+
+    /**
+     * 每组一个计算出的数值，没有参与计算的值的组为空值
+     * @param average 是否除以参与计算的值的个数
+     */
+    private static Column numberColumn(double[] values, long[] counts, int[] groups, boolean average) {
+        DoubleColumn column = (DoubleColumn) Column.create(ColumnType.DOUBLE, groups.length);
+        for (int group : groups) {
+            if (counts[group] == 0) {
+                column.add("");
+            } else {
+                addNumber(column, average ? values[group] / counts[group] : values[group]);
+            }
+        }
+        return column;
+    }
+
+    /**
+     * 追加一个计算出的数值，不超过15位的整数显示时不带小数部分
+     */
+    private static void addNumber(DoubleColumn column, double value) {
+        column.addDouble(value, value == Math.rint(value) && Math.abs(value) < 1e15);
+    }
+
+    /**
+     * 由文本构建列，与导入时一样按内容推断列的类型
+     */
+    private static Column textColumn(List<String> values) {
+        ColumnType type = null;
+        for (String value : values) {
+            if (!value.isEmpty()) {
+                type = Column.widen(type, Column.classify(value));
+                if (type == ColumnType.STRING) {
+                    break;
+                }
+            }
+        }
+        Column column = Column.create(type != null ? type : ColumnType.STRING, values.size());
+        for (String value : values) {
+            if (!value.isEmpty() && !column.accepts(value)) {
+                column = column.convertTo(ColumnType.STRING);
+            }
+            column.add(value);
+        }
+        return column;
+    }
+
+    private static ColumnarTableStore createStore(List<Column> columns, int rowCount) {
+        LongColumn rowWidths = (LongColumn) Column.create(ColumnType.LONG, rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            rowWidths.addLong(columns.size());
+        }
+        return ColumnarTableStore.fromColumns(columns, rowWidths, rowCount);
+    }
+
+    /**
+     * 计算每行的组号：各分组列的编号按混合进制合并，空值单独编号
+     */
+    private static Groups groupRows(Inputs inputs, List<Integer> groupColumns) {
+        int rowCount = inputs.rowCount;
+        if (groupColumns.isEmpty()) {
+            return new Groups(new int[rowCount], 1);
+        }
+        long limit = Math.max(DENSE_GROUP_LIMIT, rowCount);
+        long[] combined = new long[rowCount];
+        long range = 1;
+        for (int column : groupColumns) {
+            Coded coded = inputs.coded(column);
+            int[] codes = coded.codes;
+            int nullCode = coded.cardinality;
+            long radix = nullCode + 1;
+            for (int row = 0; row < rowCount; row++) {
+                int code = codes[row];
+                combined[row] = combined[row] * radix + (code < 0 ? nullCode : code);
+            }
+            range *= radix;
+            if (range > limit) {
+                range = densify(combined);
+            }
+        }
+        int[] ids = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            ids[row] = (int) combined[row];
+        }
+        return new Groups(ids, (int) range);
+    }
+
+    /**
+     * 就地把值按首次出现的顺序重新编号，返回不同值的个数
+     */
+    private static int densify(long[] values) {
+        CodeTable table = new CodeTable();
+        for (int row = 0; row < values.length; row++) {
+            values[row] = table.codeOf(values[row]);
+        }
+        return table.size();
+    }
+
+    /**
+     * 在公共ForkJoin线程池中分块累加，块的大小保证每块的部分结果不比块本身大
+     */
+    private static Partial run(Inputs inputs, Groups groups, List<Aggregate> aggregates, boolean floatingSums) {
+        Accumulator[] prototypes = new Accumulator[aggregates.size()];
+        for (int i = 0; i < prototypes.length; i++) {
+            prototypes[i] = accumulator(inputs, aggregates.get(i), floatingSums);
+        }
+        int rowCount = inputs.rowCount;
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int chunkRows = Math.max(MIN_CHUNK_ROWS, Math.max(groups.count, rowCount / (4 * parallelism)));
+        return ForkJoinPool.commonPool().invoke(new ChunkTask(groups, prototypes, 0, rowCount, chunkRows));
+    }
+
+    /**
+     * 按列的存储类型选择累加方式，统计行数时返回null
+     */
+    private static Accumulator accumulator(Inputs inputs, Aggregate aggregate, boolean floatingSums) {
+        int column = aggregate.getColumn();
+        AggregateFunction function = aggregate.getFunction();
+        if (column == Aggregate.ROWS) {
+            return null;
+        }
+        if (function == AggregateFunction.DISTINCT) {
+            return new DistinctAccumulator(inputs.coded(column), 0);
+        }
+        Column data = inputs.column(column);
+        if (data instanceof LongColumn) {
+            return new LongAccumulator((LongColumn) data, function, floatingSums, 0);
+        }
+        if (data instanceof DoubleColumn) {
+            return new DoubleAccumulator((DoubleColumn) data, function, 0);
+        }
+        Coded coded = inputs.coded(column);
+        if (function == AggregateFunction.MIN || function == AggregateFunction.MAX) {
+            coded.prepareRanks();
+        } else if (function == AggregateFunction.SUM || function == AggregateFunction.AVERAGE) {
+            coded.prepareNumbers();
+        }
+        return new CodedAccumulator(coded, function, 0);
+    }
+
+    /**
+     * 汇总的数据来源，缓存各列的编号，同一列只编号一次
+     */
+    private static final class Inputs {
+        private final TableStore store;
+        private final int rowCount;
+        private final Map<Integer, Coded> codedColumns = new HashMap<>();
+
+        Inputs(TableStore store) {
+            this.store = store;
+            this.rowCount = store.getRowCount();
+        }
+
+        /**
+         * 列式存储中的列，非列式存储或整列为空时返回null
+         */
+        Column column(int column) {
+            if (store instanceof ColumnarTableStore && column < store.getColumnCount()) {
+                return ((ColumnarTableStore) store).getColumn(column);
+            }
+            return null;
+        }
+
+        /**
+         * 列中每行的值编号
+         */
+        Coded coded(int column) {
+            Coded coded = codedColumns.get(column);
+            if (coded == null) {
+                coded = encode(column);
+                codedColumns.put(column, coded);
+            }
+            return coded;
+        }
+
+        private Coded encode(int column) {
+            int[] codes = new int[rowCount];
+            Column data = column(column);
+            if (data instanceof StringColumn) {
+                StringColumn strings = (StringColumn) data;
+                for (int row = 0; row < rowCount; row++) {
+                    codes[row] = data.isNull(row) ? -1 : strings.getCode(row);
+                }
+                return new Coded(codes, strings.getDictionary().toArray(new String[0]));
+            }
+            if (data instanceof BooleanColumn) {
+                BooleanColumn booleans = (BooleanColumn) data;
+                for (int row = 0; row < rowCount; row++) {
+                    codes[row] = data.isNull(row) ? -1 : booleans.getBoolean(row) ? 1 : 0;
+                }
+                return new Coded(codes, new String[]{"false", "true"});
+            }
+            if (data instanceof LongColumn || data instanceof DoubleColumn) {
+                // 数值列按值的二进制表示编号，只用于分组和统计不同值
+                CodeTable table = new CodeTable();
+                LongColumn longs = data instanceof LongColumn ? (LongColumn) data : null;
+                DoubleColumn doubles = data instanceof DoubleColumn ? (DoubleColumn) data : null;
+                for (int row = 0; row < rowCount; row++) {
+                    if (data.isNull(row)) {
+                        codes[row] = -1;
+                    } else if (longs != null) {
+                        codes[row] = table.codeOf(longs.getLong(row));
+                    } else {
+                        double value = doubles.getDouble(row);
+                        // -0.0与0.0视为同一个值
+                        codes[row] = table.codeOf(Double.doubleToLongBits(value == 0 ? 0 : value));
+                    }
+                }
+                return new Coded(codes, table.size());
+            }
+            if (store instanceof ColumnarTableStore) {
+                // 超出存储列数，整列为空
+                Arrays.fill(codes, -1);
+                return new Coded(codes, new String[0]);
+            }
+            // 非列式存储：逐行读取文本并建立临时字典
+            Map<String, Integer> codeIndex = new HashMap<>();
+            List<String> dictionary = new ArrayList<>();
+            for (int row = 0; row < rowCount; row++) {
+                String value = store.getValue(row, column);
+                if (value == null || value.isEmpty()) {
+                    codes[row] = -1;
+                    continue;
+                }
+                Integer code = codeIndex.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    codeIndex.put(value, code);
+                    dictionary.add(value);
+                }
+                codes[row] = code;
+            }
+            return new Coded(codes, dictionary.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 一列按值编号的结果：每行的编号（空值为-1）和编号对应的文本
+     * 数值列只有编号，没有文本
+     */
+    private static final class Coded {
+        final int[] codes;
+        final int cardinality;
+        final String[] labels;
+        double[] numbers;  // 编号对应的数值，不是数值时为NaN
+        int[] ranks;       // 编号对应的排序名次
+
+        Coded(int[] codes, String[] labels) {
+            this.codes = codes;
+            this.cardinality = labels.length;
+            this.labels = labels;
+        }
+
+        Coded(int[] codes, int cardinality) {
+            this.codes = codes;
+            this.cardinality = cardinality;
+            this.labels = null;
+        }
+
+        /**
+         * 解析每个文本的数值，在分块计算之前调用
+         */
+        void prepareNumbers() {
+            if (numbers == null) {
+                double[] parsed = new double[cardinality];
+                for (int code = 0; code < cardinality; code++) {
+                    parsed[code] = TableSorter.parseNumber(labels[code]);
+                }
+                numbers = parsed;
+            }
+        }
+
+        /**
+         * 按排序规则计算每个文本的名次，在分块计算之前调用
+         */
+        void prepareRanks() {
+            if (ranks == null) {
+                int[] computed = new int[cardinality];
+                TableSorter.rankDictionary(labels, computed, Collator.getInstance(Locale.getDefault()));
+                ranks = computed;
+            }
+        }
+    }
+
+    /**
+     * 每行的组号和组的个数
+     */
+    private static final class Groups {
+        final int[] ids;
+        final int count;
+
+        Groups(int[] ids, int count) {
+            this.ids = ids;
+            this.count = count;
+        }
+    }
+
+    /**
+     * long到紧凑编号的开放寻址散列表，编号按首次出现的顺序分配
+     */
+    private static final class CodeTable {
+        private long[] keys = new long[1024];
+        private int[] codes = new int[1024]; // 编号加1，0表示空位
+        private int shift = 64 - 10;
+        private int size;
+
+        int codeOf(long key) {
+            int mask = keys.length - 1;
+            int slot = slot(key);
+            while (codes[slot] != 0) {
+                if (keys[slot] == key) {
+                    return codes[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size * 2 >= keys.length) {
+                grow();
+                return codeOf(key);
+            }
+            keys[slot] = key;
+            codes[slot] = ++size;
+            return size - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int slot(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCodes = codes;
+            keys = new long[oldKeys.length * 2];
+            codes = new int[oldCodes.length * 2];
+            shift--;
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCodes[i] != 0) {
+                    int slot = slot(oldKeys[i]);
+                    while (codes[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    codes[slot] = oldCodes[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * 拆分行范围的ForkJoin任务，较小的范围直接累加，两半的部分结果合并后返回
+     */
+    private static final class ChunkTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final Groups groups;
+        private final Accumulator[] prototypes;
+        private final int from;
+        private final int to;
+        private final int chunkRows;
+
+        ChunkTask(Groups groups, Accumulator[] prototypes, int from, int to, int chunkRows) {
+            this.groups = groups;
+            this.prototypes = prototypes;
+            this.from = from;
+            this.to = to;
+            this.chunkRows = chunkRows;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= chunkRows) {
+                Partial partial = new Partial(groups.count, prototypes);
+                partial.accumulate(groups.ids, from, to);
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(groups, prototypes, from, middle, chunkRows);
+            left.fork();
+            Partial right = new ChunkTask(groups, prototypes, middle, to, chunkRows).compute();
+            Partial result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+
+    /**
+     * 一段连续行的部分结果：每组的行数、第一行和各汇总项的累加值
+     */
+    private static final class Partial {
+        final long[] rowCounts;
+        final int[] firstRows;
+        final Accumulator[] accumulators;
+
+        Partial(int groupCount, Accumulator[] prototypes) {
+            rowCounts = new long[groupCount];
+            firstRows = new int[groupCount];
+            accumulators = new Accumulator[prototypes.length];
+            for (int i = 0; i < prototypes.length; i++) {
+                accumulators[i] = prototypes[i] == null ? null : prototypes[i].create(groupCount);
+            }
+        }
+
+        void accumulate(int[] groups, int from, int to) {
+            long[] counts = rowCounts;
+            for (int row = from; row < to; row++) {
+                int group = groups[row];
+                if (counts[group]++ == 0) {
+                    firstRows[group] = row;
+                }
+            }
+            for (Accumulator accumulator : accumulators) {
+                if (accumulator != null) {
+                    accumulator.accumulate(groups, from, to);
+                }
+            }
+        }
+
+        /**
+         * 合并其后一段行的部分结果
+         */
+        void merge(Partial next) {
+            for (int group = 0; group < rowCounts.length; group++) {
+                if (next.rowCounts[group] != 0) {
+                    if (rowCounts[group] == 0) {
+                        firstRows[group] = next.firstRows[group];
+                    }
+                    rowCounts[group] += next.rowCounts[group];
+                }
+            }
+            for (int i = 0; i < accumulators.length; i++) {
+                if (accumulators[i] != null) {
+                    accumulators[i].merge(next.accumulators[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个汇总项在一段行上按组累加的值
+     */
+    private abstract static class Accumulator {
+        final AggregateFunction function;
+        final long[] counts; // 每组参与计算的值的个数
+
+        Accumulator(AggregateFunction function, int groupCount) {
+            this.function = function;
+            this.counts = new long[groupCount];
+        }
+
+        /**
+         * 创建同一汇总项的空累加器，供另一段行使用
+         */
+        abstract Accumulator create(int groupCount);
+
+        /**
+         * 累加[from, to)中的行
+         */
+        abstract void accumulate(int[] groups, int from, int to);
+
+        /**
+         * 合并同一汇总项在其后一段行上的累加值
+         */
+        abstract void merge(Accumulator next);
+
+        /**
+         * 所有部分结果合并之后调用
+         */
+        void finish() {
+        }
+
+        /**
+         * 按给定的顺序生成各组的结果列，没有可计算的值的组为空值
+         */
+        abstract Column results(int[] groups);
+    }
+
+    /**
+     * 整数列：和在long中精确累加，溢出时抛出ArithmeticException，由调用方改用double重新计算
+     */
+    private static final class LongAccumulator extends Accumulator {
+        private final LongColumn column;
+        private final boolean floating;
+        private final long[] values; // 整数之和、最小值或最大值
+        private final double[] sums; // 改用double累加时的和
+
+        LongAccumulator(LongColumn column, AggregateFunction function, boolean floating, int groupCount) {
+            super(function, groupCount);
+            this.column = column;
+            this.floating = floating;
+            boolean summing = function == AggregateFunction.SUM || function == AggregateFunction.AVERAGE;
+            this.values = function != AggregateFunction.COUNT && !(floating && summing) ? new long[groupCount] : null;
+            this.sums = floating && summing ? new double[groupCount] : null;
+        }
+
+        @Override
+        Accumulator create(int groupCount) {
+            return new LongAccumulator(column, function, floating, groupCount);
+        }
+
+        @Override
+        void accumulate(int[] groups, int from, int to) {
+            LongColumn column = this.column;
+            long[] counts = this.counts;
+            long[] values = this.values;
+            switch (function) {
+                case COUNT:
+                    for (int row = from; row < to; row++) {
+                        if (!column.isNull(row)) {
+                            counts[groups[row]]++;
+                        }
+                    }
+                    break;
+                case SUM:
+                case AVERAGE:
+                    if (sums != null) {
+                        double[] sums = this.sums;
+                        for (int row = from; row < to; row++) {
+                            if (!column.isNull(row)) {
+                                int group = groups[row];
+                                counts[group]++;
+                                sums[group] += column.getLong(row);
+                            }
+                        }
+                    } else {
+                        for (int row = from; row < to; row++) {
+                            if (!column.isNull(row)) {
+                                int group = groups[row];
+                                counts[group]++;
+                                values[group] = Math.addExact(values[group], column.getLong(row));
+                            }
+                        }
+                    }
+                    break;
+                case MIN:
+                    for (int row = from; row < to; row++) {
+                        if (!column.isNull(row)) {
+                            int group = groups[row];
+                            long value = column.getLong(row);
+                            if (counts[group]++ == 0 || value < values[group]) {
+                                values[group] = value;
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    for (int row = from; row < to; row++) {
+                        if (!column.isNull(row)) {
+                            int group = groups[row];
+                            long value = column.getLong(row);
+                            if (counts[group]++ == 0 || value > values[group]) {
+                                values[group] = value;
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        void merge(Accumulator next) {
+            LongAccumulator other = (LongAccumulator) next;
+            for (int group = 0; group < counts.length; group++) {
+                if (other.counts[group] == 0) {
+                    continue;
+                }
+                if (sums != null) {
+                    sums[group] += other.sums[group];
+                } else if (function == AggregateFunction.SUM || function == AggregateFunction.AVERAGE) {
+                    values[group] = Math.addExact(values[group], other.values[group]);
+                } else if (function == AggregateFunction.MIN) {
+                    values[group] = counts[group] == 0 ? other.values[group] : Math.min(values[group], other.values[group]);
+                } else if (function == AggregateFunction.MAX) {
+                    values[group] = counts[group] == 0 ? other.values[group] : Math.max(values[group], other.values[group]);
+                }
+                counts[group] += other.counts[group];
+            }
+        }
+
+        @Override
+        Column results(int[] groups) {
+            if (function == AggregateFunction.COUNT) {
+                return longColumn(counts, groups);
+            }
+            if (sums != null || function == AggregateFunction.AVERAGE) {
+                DoubleColumn column = (DoubleColumn) Column.create(ColumnType.DOUBLE, groups.length);
+                for (int group : groups) {
+                    if (counts[group] == 0) {
+                        column.add("");
+                    } else {
+                        double sum = sums != null ? sums[group] : values[group];
+                        addNumber(column, function == AggregateFunction.AVERAGE ? sum / counts[group] : sum);
+                    }
+                }
+                return column;
+            }
+            LongColumn column = (LongColumn) Column.create(ColumnType.LONG, groups.length);
+            for (int group : groups) {
+                if (counts[group] == 0) {
+                    column.add("");
+                } else {
+                    column.addLong(values[group]);
+                }
+            }
+            return column;
+        }
+    }
+
+    /**
+     * 小数列
+     */
+    private static final class DoubleAccumulator extends Accumulator {
+        private final DoubleColumn column;
+        private final double[] values; // 和、最小值或最大值
+
+        DoubleAccumulator(DoubleColumn column, AggregateFunction function, int groupCount) {
+            super(function, groupCount);
+            this.column = column;
+            this.values = function != AggregateFunction.COUNT ? new double[groupCount] : null;
+        }
+
+        @Override
+        Accumulator create(int groupCount) {
+            return new DoubleAccumulator(column, function, groupCount);
+        }
+
+        @Override
+        void accumulate(int[] groups, int from, int to) {
+            DoubleColumn column = this.column;
+            long[] counts = this.counts;
+            double[] values = this.values;
+            switch (function) {
+                case COUNT:
+                    for (int row = from; row < to; row++) {
+                        if (!column.isNull(row)) {
+                            counts[groups[row]]++;
+                        }
+                    }
+                    break;
+                case SUM:
+                case AVERAGE:
+                    for (int row = from; row < to; row++) {
+                        if (!column.isNull(row)) {
+                            int group = groups[row];
+                            counts[group]++;
+                            values[group] += column.getDouble(row);
+                        }
+                    }
+                    break;
+                case MIN:
+                    for (int row = from; row < to; row++) {
+                        if (!column.isNull(row)) {
+                            int group = groups[row];
+                            double value = column.getDouble(row);
+                            if (counts[group]++ == 0 || value < values[group]) {
+                                values[group] = value;
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    for (int row = from; row < to; row++) {
+                        if (!column.isNull(row)) {
+                            int group = groups[row];
+                            double value = column.getDouble(row);
+                            if (counts[group]++ == 0 || value > values[group]) {
+                                values[group] = value;
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        void merge(Accumulator next) {
+            DoubleAccumulator other = (DoubleAccumulator) next;
+            for (int group = 0; group < counts.length; group++) {
+                if (other.counts[group] == 0) {
+                    continue;
+                }
+                if (function == AggregateFunction.SUM || function == AggregateFunction.AVERAGE) {
+                    values[group] += other.values[group];
+                } else if (function == AggregateFunction.MIN) {
+                    values[group] = counts[group] == 0 ? other.values[group] : Math.min(values[group], other.values[group]);
+                } else if (function == AggregateFunction.MAX) {
+                    values[group] = counts[group] == 0 ? other.values[group] : Math.max(values[group], other.values[group]);
+                }
+                counts[group] += other.counts[group];
+            }
+        }
+
+        @Override
+        Column results(int[] groups) {
+            if (function == AggregateFunction.COUNT) {
+                return longColumn(counts, groups);
+            }
+            return numberColumn(values, counts, groups, function == AggregateFunction.AVERAGE);
+        }
+    }
+
+    /**
+     * 文本、布尔列和非列式存储：按编号计算，数值和名次只对每个不同的文本计算一次
+     * 求和与平均值只计入能解析为数值的文本，最小值和最大值按排序时的顺序比较
+     */
+    private static final class CodedAccumulator extends Accumulator {
+        private final Coded coded;
+        private final double[] sums;
+        private final int[] best; // 最小值或最大值的编号
+
+        CodedAccumulator(Coded coded, AggregateFunction function, int groupCount) {
+            super(function, groupCount);
+            this.coded = coded;
+            boolean summing = function == AggregateFunction.SUM || function == AggregateFunction.AVERAGE;
+            this.sums = summing ? new double[groupCount] : null;
+            this.best = function == AggregateFunction.MIN || function == AggregateFunction.MAX ? new int[groupCount] : null;
+        }
+
+        @Override
+        Accumulator create(int groupCount) {
+            return new CodedAccumulator(coded, function, groupCount);
+        }
+
+        @Override
+        void accumulate(int[] groups, int from, int to) {
+            int[] codes = coded.codes;
+            long[] counts = this.counts;
+            switch (function) {
+                case COUNT:
+                    for (int row = from; row < to; row++) {
+                        if (codes[row] >= 0) {
+                            counts[groups[row]]++;
+                        }
+                    }
+                    break;
+                case SUM:
+                case AVERAGE:
+                    double[] numbers = coded.numbers;
+                    double[] sums = this.sums;
+                    for (int row = from; row < to; row++) {
+                        int code = codes[row];
+                        if (code >= 0 && !Double.isNaN(numbers[code])) {
+                            int group = groups[row];
+                            counts[group]++;
+                            sums[group] += numbers[code];
+                        }
+                    }
+                    break;
+                default:
+                    int[] ranks = coded.ranks;
+                    int[] best = this.best;
+                    int sign = function == AggregateFunction.MIN ? 1 : -1;
+                    for (int row = from; row < to; row++) {
+                        int code = codes[row];
+                        if (code >= 0) {
+                            int group = groups[row];
+                            if (counts[group]++ == 0 || sign * (ranks[code] - ranks[best[group]]) < 0) {
+                                best[group] = code;
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        void merge(Accumulator next) {
+            CodedAccumulator other = (CodedAccumulator) next;
+            int sign = function == AggregateFunction.MIN ? 1 : -1;
+            for (int group = 0; group < counts.length; group++) {
+                if (other.counts[group] == 0) {
+                    continue;
+                }
+                if (sums != null) {
+                    sums[group] += other.sums[group];
+                } else if (best != null && (counts[group] == 0
+                        || sign * (coded.ranks[other.best[group]] - coded.ranks[best[group]]) < 0)) {
+                    best[group] = other.best[group];
+                }
+                counts[group] += other.counts[group];
+            }
+        }
+
+        @Override
+        Column results(int[] groups) {
+            if (function == AggregateFunction.COUNT) {
+                return longColumn(counts, groups);
+            }
+            if (sums != null) {
+                return numberColumn(sums, counts, groups, function == AggregateFunction.AVERAGE);
+            }
+            List<String> values = new ArrayList<>(groups.length);
+            for (int group : groups) {
+                values.add(counts[group] == 0 ? "" : coded.labels[best[group]]);
+            }
+            return textColumn(values);
+        }
+    }
+
+    /**
+     * 不同值个数：组数与不同值个数之积较小时每段行用一个位图记录出现过的（组号, 编号），合并时按位或；
+     * 否则收集排序去重的（组号, 编号）对，合并时归并两个有序数组
+     */
+    private static final class DistinctAccumulator extends Accumulator {
+        private final Coded coded;
+        private final long radix;
+        private final long[] bits;          // 位图，第(组号 * 基数 + 编号)位表示出现过
+        private long[] pairs = new long[0]; // 组号 * 基数 + 编号，升序且不重复
+
+        DistinctAccumulator(Coded coded, int groupCount) {
+            super(AggregateFunction.DISTINCT, groupCount);
+            this.coded = coded;
+            this.radix = Math.max(1, coded.cardinality);
+            long bitCount = groupCount * radix;
+            this.bits = bitCount <= DISTINCT_BITMAP_BITS ? new long[(int) ((bitCount + 63) >>> 6)] : null;
+        }
+
+        @Override
+        Accumulator create(int groupCount) {
+            return new DistinctAccumulator(coded, groupCount);
+        }
+
+        @Override
+        void accumulate(int[] groups, int from, int to) {
+            int[] codes = coded.codes;
+            long radix = this.radix;
+            if (bits != null) {
+                long[] bits = this.bits;
+                for (int row = from; row < to; row++) {
+                    int code = codes[row];
+                    if (code >= 0) {
+                        long bit = groups[row] * radix + code;
+                        bits[(int) (bit >>> 6)] |= 1L << bit;
+                    }
+                }
+                return;
+            }
+            long[] collected = new long[to - from];
+            int size = 0;
+            for (int row = from; row < to; row++) {
+                int code = codes[row];
+                if (code >= 0) {
+                    collected[size++] = groups[row] * radix + code;
+                }
+            }
+            Arrays.sort(collected, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || collected[i] != collected[i - 1]) {
+                    collected[distinct++] = collected[i];
+                }
+            }
+            pairs = Arrays.copyOf(collected, distinct);
+        }
+
+        @Override
+        void merge(Accumulator next) {
+            DistinctAccumulator other = (DistinctAccumulator) next;
+            if (bits != null) {
+                for (int i = 0; i < bits.length; i++) {
+                    bits[i] |= other.bits[i];
+                }
+                return;
+            }
+            long[] a = pairs;
+            long[] b = other.pairs;
+            long[] merged = new long[a.length + b.length];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    merged[size++] = a[i++];
+                } else if (a[i] > b[j]) {
+                    merged[size++] = b[j++];
+                } else {
+                    merged[size++] = a[i++];
+                    j++;
+                }
+            }
+            while (i < a.length) {
+                merged[size++] = a[i++];
+            }
+            while (j < b.length) {
+                merged[size++] = b[j++];
+            }
+            pairs = size == merged.length ? merged : Arrays.copyOf(merged, size);
+        }
+
+        @Override
+        void finish() {
+            if (bits != null) {
+                for (int word = 0; word < bits.length; word++) {
+                    long remaining = bits[word];
+                    while (remaining != 0) {
+                        long bit = ((long) word << 6) + Long.numberOfTrailingZeros(remaining);
+                        counts[(int) (bit / radix)]++;
+                        remaining &= remaining - 1;
+                    }
+                }
+                return;
+            }
+            for (long pair : pairs) {
+                counts[(int) (pair / radix)]++;
+            }
+        }
+
+        @Override
+        Column results(int[] groups) {
+            return longColumn(counts, groups);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 分组汇总测试类
+ * 在随机数据上把TableAggregator的结果与逐组直接计算的结果对照：多列分组（包括空值分组）、
+ * 行数、计数、求和、平均值、最小值、最大值和不同值个数，数据量足以分块并行计算，
+ * 其中一列是接近long上限的大整数，求和会溢出并改用double累加。
+ * 运行main，全部一致时输出“通过”，否则抛出IllegalStateException；第一个参数可以指定随机种子
+ */
+public class TableAggregatorTest {
+    private static final String[] CITIES = {"北京", "上海", "广州", "深圳", "Li", "li", "Chen", "chen-wei"};
+    private static final String[] NOTES = {"待定", "完成", "x", "A-12", "-", "备注"};
+    private static final int COLUMNS = 8;
+    private static final int ROWS = 100000;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 20240101L;
+        Random random = new Random(seed);
+        System.out.println("开始测试分组汇总，随机种子: " + seed);
+
+        testAggregates(random, StorageMode.MEMORY);
+        testAggregates(random, StorageMode.MAPPED);
+        testOverflow(random);
+
+        System.out.println("\n分组汇总测试通过！");
+    }
+
+    /**
+     * 随机选择分组列和汇总项，与逐组计算的结果比较
+     */
+    private static void testAggregates(Random random, StorageMode storageMode) {
+        System.out.println("\n测试1：随机分组汇总与逐组计算比较（" + storageMode + "）");
+        for (int round = 0; round < 3; round++) {
+            ExcelDataModel model = new ExcelDataModel();
+            model.setStorageMode(storageMode);
+            model.setData(randomRows(random, ROWS), headers());
+            TableSnapshot snapshot = model.snapshot();
+            for (int q = 0; q < 8; q++) {
+                List<Integer> groupColumns = randomGroupColumns(random);
+                List<Aggregate> aggregates = randomAggregates(random);
+                compare(snapshot, groupColumns, aggregates);
+            }
+            model.dispose();
+        }
+        System.out.println("分组汇总结果一致");
+    }
+
+    /**
+     * 大整数列的和超出long的范围
+     */
+    private static void testOverflow(Random random) {
+        System.out.println("\n测试2：整数之和溢出");
+        ExcelDataModel model = new ExcelDataModel();
+        model.setData(randomRows(random, ROWS), headers());
+        TableSnapshot snapshot = model.snapshot();
+        compare(snapshot, Collections.<Integer>emptyList(),
+                Arrays.asList(Aggregate.sum(6), Aggregate.average(6), Aggregate.sum(3), Aggregate.rowCount()));
+        compare(snapshot, Arrays.asList(1, 2),
+                Arrays.asList(Aggregate.sum(6), Aggregate.min(6), Aggregate.max(6), Aggregate.sum(3)));
+        model.dispose();
+        System.out.println("溢出后的求和结果一致");
+    }
+
+    private static void compare(TableSnapshot snapshot, List<Integer> groupColumns, List<Aggregate> aggregates) {
+        String name = "分组" + groupColumns + "汇总" + aggregates;
+        TableSnapshot result = TableAggregator.aggregate(snapshot, groupColumns, aggregates);
+        Map<List<String>, List<Integer>> groups = groupRows(snapshot, groupColumns);
+        check(result.getRowCount() == groups.size(), name + "：应有" + groups.size() + "组，实际" + result.getRowCount() + "组");
+        check(result.getHeaders().size() == groupColumns.size() + aggregates.size(), name + "：结果列数不正确");
+
+        // 结果按分组列升序排列
+        if (!groupColumns.isEmpty()) {
+            List<SortKey> keys = new ArrayList<>();
+            for (int i = 0; i < groupColumns.size(); i++) {
+                keys.add(SortKey.ascending(i));
+            }
+            RowView order = TableSorter.sort(result, keys);
+            for (int view = 0; view < result.getRowCount(); view++) {
+                check(sameKey(result, order.toModel(view), view, groupColumns.size()), name + "：结果没有按分组列排序");
+            }
+        }
+
+        Map<Integer, int[]> ranks = new HashMap<>();
+        Set<List<String>> seen = new HashSet<>();
+        for (int row = 0; row < result.getRowCount(); row++) {
+            List<String> key = new ArrayList<>();
+            for (int i = 0; i < groupColumns.size(); i++) {
+                key.add(result.getValueAt(row, i));
+            }
+            List<Integer> rows = groups.get(key);
+            check(rows != null, name + "：多出分组" + key);
+            check(seen.add(key), name + "：分组" + key + "重复");
+            for (int i = 0; i < aggregates.size(); i++) {
+                Aggregate aggregate = aggregates.get(i);
+                String expected = expected(snapshot, aggregate, rows, ranks);
+                String actual = result.getValueAt(row, groupColumns.size() + i);
+                check(sameValue(expected, actual), name + "：分组" + key + "的" + aggregate
+                        + "应为“" + expected + "”，实际为“" + actual + "”");
+            }
+        }
+    }
+
+    /**
+     * 每行按该列升序排序后的位置
+     */
+    private static int[] ranks(TableSnapshot snapshot, int column) {
+        RowView order = TableSorter.sort(snapshot, Collections.singletonList(SortKey.ascending(column)));
+        int[] ranks = new int[snapshot.getRowCount()];
+        for (int view = 0; view < ranks.length; view++) {
+            ranks[order.toModel(view)] = view;
+        }
+        return ranks;
+    }
+
+    private static boolean sameKey(TableSnapshot result, int a, int b, int columns) {
+        for (int c = 0; c < columns; c++) {
+            if (!result.getValueAt(a, c).equals(result.getValueAt(b, c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按分组列的显示值逐行分组
+     */
+    private static Map<List<String>, List<Integer>> groupRows(TableSnapshot snapshot, List<Integer> groupColumns) {
+        Map<List<String>, List<Integer>> groups = new HashMap<>();
+        for (int row = 0; row < snapshot.getRowCount(); row++) {
+            List<String> key = new ArrayList<>();
+            for (int column : groupColumns) {
+                key.add(snapshot.getValueAt(row, column));
+            }
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+        }
+        if (groups.isEmpty() && groupColumns.isEmpty()) {
+            groups.put(Collections.<String>emptyList(), Collections.<Integer>emptyList());
+        }
+        return groups;
+    }
+
+    /**
+     * 直接由组内各行计算汇总值：求和用精确的十进制累加，最小值和最大值取组内按该列排序最前和最后的值
+     */
+    private static String expected(TableSnapshot snapshot, Aggregate aggregate, List<Integer> rows,
+                                   Map<Integer, int[]> ranks) {
+        int column = aggregate.getColumn();
+        if (column == Aggregate.ROWS) {
+            return String.valueOf(rows.size());
+        }
+        switch (aggregate.getFunction()) {
+            case COUNT: {
+                int count = 0;
+                for (int row : rows) {
+                    if (!snapshot.getValueAt(row, column).isEmpty()) {
+                        count++;
+                    }
+                }
+                return String.valueOf(count);
+            }
+            case SUM:
+            case AVERAGE: {
+                BigDecimal sum = BigDecimal.ZERO;
+                int count = 0;
+                for (int row : rows) {
+                    String value = snapshot.getValueAt(row, column);
+                    double number = value.isEmpty() ? Double.NaN : TableSorter.parseNumber(value);
+                    if (!Double.isNaN(number)) {
+                        sum = sum.add(new BigDecimal(number));
+                        count++;
+                    }
+                }
+                if (count == 0) {
+                    return "";
+                }
+                double total = sum.doubleValue();
+                return String.valueOf(aggregate.getFunction() == AggregateFunction.SUM ? total : total / count);
+            }
+            case MIN:
+            case MAX: {
+                int[] order = ranks.computeIfAbsent(column, c -> ranks(snapshot, c));
+                String first = null;
+                String last = null;
+                int firstRank = Integer.MAX_VALUE;
+                int lastRank = -1;
+                for (int row : rows) {
+                    String value = snapshot.getValueAt(row, column);
+                    if (!value.isEmpty()) {
+                        if (order[row] < firstRank) {
+                            firstRank = order[row];
+                            first = value;
+                        }
+                        if (order[row] > lastRank) {
+                            lastRank = order[row];
+                            last = value;
+                        }
+                    }
+                }
+                if (first == null) {
+                    return "";
+                }
+                return aggregate.getFunction() == AggregateFunction.MIN ? first : last;
+            }
+            default: {
+                Set<String> distinct = new HashSet<>();
+                for (int row : rows) {
+                    String value = snapshot.getValueAt(row, column);
+                    if (!value.isEmpty()) {
+                        distinct.add(value);
+                    }
+                }
+                return String.valueOf(distinct.size());
+            }
+        }
+    }
+
+    /**
+     * 数值允许舍入误差，其他值必须相同
+     */
+    private static boolean sameValue(String expected, String actual) {
+        if (expected.equals(actual)) {
+            return true;
+        }
+        if (expected.isEmpty() || actual.isEmpty()) {
+            return false;
+        }
+        double a = TableSorter.parseNumber(expected);
+        double b = TableSorter.parseNumber(actual);
+        if (Double.isNaN(a) || Double.isNaN(b)) {
+            return false;
+        }
+        return Math.abs(a - b) <= 1e-9 * Math.max(1, Math.max(Math.abs(a), Math.abs(b)));
+    }
+
+    private static List<Integer> randomGroupColumns(Random random) {
+        List<Integer> candidates = new ArrayList<>(Arrays.asList(0, 1, 2, 5, 7));
+        Collections.shuffle(candidates, random);
+        return new ArrayList<>(candidates.subList(0, random.nextInt(3)));
+    }
+
+    private static List<Aggregate> randomAggregates(Random random) {
+        List<Aggregate> aggregates = new ArrayList<>();
+        aggregates.add(Aggregate.rowCount());
+        for (int i = random.nextInt(6); i >= 0; i--) {
+            int column = random.nextInt(COLUMNS);
+            switch (random.nextInt(6)) {
+                case 0:
+                    aggregates.add(Aggregate.count(column));
+                    break;
+                case 1:
+                    aggregates.add(Aggregate.sum(column));
+                    break;
+                case 2:
+                    aggregates.add(Aggregate.average(column));
+                    break;
+                case 3:
+                    aggregates.add(Aggregate.min(column));
+                    break;
+                case 4:
+                    aggregates.add(Aggregate.max(column));
+                    break;
+                default:
+                    aggregates.add(Aggregate.distinct(column));
+                    break;
+            }
+        }
+        return aggregates;
+    }
+
+    private static List<String> headers() {
+        return Arrays.asList("城市", "类别", "标志", "数量", "金额", "日期", "大数", "备注");
+    }
+
+    private static List<List<String>> randomRows(Random random, int count) {
+        List<List<String>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<String> row = new ArrayList<>(COLUMNS);
+            for (int c = 0; c < COLUMNS; c++) {
+                row.add(randomValue(random, c));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 文本、小整数、布尔、整数、小数、日期、接近long上限的大整数，最后一列文本和数字混合
+     */
+    private static String randomValue(Random random, int column) {
+        if (random.nextInt(12) == 0) {
+            return "";
+        }
+        switch (column) {
+            case 0:
+                return CITIES[random.nextInt(CITIES.length)];
+            case 1:
+                return String.valueOf(random.nextInt(7) - 2);
+            case 2:
+                return String.valueOf(random.nextBoolean());
+            case 3:
+                return String.valueOf(random.nextInt(2000000) - 1000000);
+            case 4:
+                return String.valueOf((random.nextInt(200000) - 100000) / 100.0);
+            case 5:
+                return String.format("2024-%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28));
+            case 6:
+                return String.valueOf(Long.MAX_VALUE / 4 - random.nextInt(1000000));
+            default:
+                return random.nextBoolean() ? NOTES[random.nextInt(NOTES.length)] : String.valueOf(random.nextInt(100));
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * 表格数据快照 - MVC架构中的Model层组件
+ * 某一时刻的表头和数据的只读视图，之后对模型的修改不影响快照，
+ * 导出、界面刷新和后台任务可以在编辑继续进行的同时读取一致的数据
+ */
+public final class TableSnapshot {
+    private final TableStore store;
+    private final List<String> headers;
+
+    TableSnapshot(TableStore store, List<String> headers) {
+        this.store = store;
+        this.headers = headers;
+    }
+
+    /**
+     * 快照底层的存储，只能读取
+     */
+    TableStore getStore() {
+        return store;
+    }
+
+    /**
+     * 获取表头（只读）
+     */
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * 获取数据行数
+     */
+    public int getRowCount() {
+        return store.getRowCount();
+    }
+
+    /**
+     * 获取列数（基于表头）
+     */
+    public int getColumnCount() {
+        return headers.size();
+    }
+
+    /**
+     * 获取单元格的值，超出该行宽度时返回空字符串
+     */
+    public String getValueAt(int rowIndex, int columnIndex) {
+        return store.getValue(rowIndex, columnIndex);
+    }
+
+    /**
+     * 获取一行数据的副本
+     */
+    public List<String> getRow(int rowIndex) {
+        return store.getRow(rowIndex);
+    }
+
+    /**
+     * 获取所有数据的只读列表视图，每行在访问时才取出
+     */
+    public List<List<String>> getRows() {
+        return new AbstractList<List<String>>() {
+            @Override
+            public List<String> get(int index) {
+                return store.getRow(index);
+            }
+
+            @Override
+            public int size() {
+                return store.getRowCount();
+            }
+        };
+    }
+}
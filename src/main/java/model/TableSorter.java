@@ -0,0 +1,454 @@
+package model;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 表格排序器 - MVC架构中的Model层组件
+ * 多列排序，结果是行号的排列（RowView），不移动也不复制行数据
+ *
+ * 每个排序键先把各行转换为整数名次：数值、布尔列直接比较原始值；文本列只对字典中的
+ * 不同文本排序，全部是数值或日期时按数值或时间，否则数值在前、文本按区域设置的排序规则；
+ * 空值总是排在最后。多个键的名次合并后与行号拼成long并行排序，行号使排序保持稳定
+ */
+public final class TableSorter {
+    // 超过此行数时使用并行流计算名次
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private TableSorter() {
+    }
+
+    /**
+     * 按默认区域设置排序
+     * @param snapshot 表格快照
+     * @param keys 排序键，依次为主次关键字
+     * @return 排序后的行视图
+     */
+    public static RowView sort(TableSnapshot snapshot, List<SortKey> keys) {
+        return sort(snapshot, keys, Locale.getDefault());
+    }
+
+    /**
+     * 排序
+     * @param snapshot 表格快照
+     * @param keys 排序键，依次为主次关键字
+     * @param locale 比较文本使用的区域设置
+     * @return 排序后的行视图
+     */
+    public static RowView sort(TableSnapshot snapshot, List<SortKey> keys, Locale locale) {
+        TableStore store = snapshot.getStore();
+        int rowCount = store.getRowCount();
+        if (keys.isEmpty() || rowCount < 2) {
+            return RowView.identity(rowCount);
+        }
+
+        Collator collator = Collator.getInstance(locale);
+        long[] combined = null;
+        long distinct = 1;
+        for (SortKey key : keys) {
+            Ranks ranks = rank(store, key, collator);
+            if (combined == null) {
+                combined = new long[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    combined[row] = ranks.ranks[row];
+                }
+                distinct = ranks.distinct;
+                continue;
+            }
+            if (bits(distinct) + bits(ranks.distinct) > 62) {
+                distinct = densify(combined);
+            }
+            for (int row = 0; row < rowCount; row++) {
+                combined[row] = combined[row] * ranks.distinct + ranks.ranks[row];
+            }
+            distinct *= ranks.distinct;
+        }
+
+        int rowBits = bits(rowCount);
+        if (bits(distinct) + rowBits > 63) {
+            densify(combined);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            combined[row] = combined[row] << rowBits | row;
+        }
+        Arrays.parallelSort(combined);
+        long rowMask = (1L << rowBits) - 1;
+        int[] viewToModel = new int[rowCount];
+        for (int view = 0; view < rowCount; view++) {
+            viewToModel[view] = (int) (combined[view] & rowMask);
+        }
+        return RowView.of(viewToModel, rowCount);
+    }
+
+    /**
+     * 计算一个排序键下各行的名次
+     */
+    private static Ranks rank(TableStore store, SortKey key, Collator collator) {
+        int rowCount = store.getRowCount();
+        int column = key.getColumn();
+        Ranks ranks;
+        if (column >= store.getColumnCount()) {
+            // 整列为空
+            ranks = new Ranks(new int[rowCount], 1);
+        } else if (store instanceof ColumnarTableStore) {
+            ranks = rankColumn(((ColumnarTableStore) store).getColumn(column), rowCount, collator);
+        } else {
+            ranks = rankValues(store, column, collator);
+        }
+        if (!key.isAscending()) {
+            // 只翻转非空值的名次，空值仍在最后
+            int last = ranks.distinct - 1;
+            int[] values = ranks.ranks;
+            for (int row = 0; row < rowCount; row++) {
+                if (values[row] != last) {
+                    values[row] = last - 1 - values[row];
+                }
+            }
+        }
+        return ranks;
+    }
+
+    private static Ranks rankColumn(Column column, int rowCount, Collator collator) {
+        if (column instanceof StringColumn) {
+            StringColumn strings = (StringColumn) column;
+            List<String> dictionary = strings.getDictionary();
+            int[] codes = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                codes[row] = column.isNull(row) ? -1 : strings.getCode(row);
+            }
+            return rankCodes(codes, dictionary.toArray(new String[0]), collator);
+        }
+        if (column instanceof BooleanColumn) {
+            BooleanColumn booleans = (BooleanColumn) column;
+            int[] ranks = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                ranks[row] = column.isNull(row) ? 2 : booleans.getBoolean(row) ? 1 : 0;
+            }
+            return new Ranks(ranks, 3);
+        }
+        boolean[] nulls = new boolean[rowCount];
+        long[] keys = new long[rowCount];
+        if (column instanceof LongColumn) {
+            LongColumn longs = (LongColumn) column;
+            for (int row = 0; row < rowCount; row++) {
+                nulls[row] = column.isNull(row);
+                keys[row] = nulls[row] ? 0 : longs.getLong(row);
+            }
+        } else {
+            DoubleColumn doubles = (DoubleColumn) column;
+            for (int row = 0; row < rowCount; row++) {
+                nulls[row] = column.isNull(row);
+                keys[row] = nulls[row] ? 0 : sortableBits(doubles.getDouble(row));
+            }
+        }
+        return rankKeys(keys, nulls);
+    }
+
+    /**
+     * 非列式存储：先按文本建立临时字典，只保留不同的文本
+     */
+    private static Ranks rankValues(TableStore store, int column, Collator collator) {
+        int rowCount = store.getRowCount();
+        Map<String, Integer> codeIndex = new HashMap<>();
+        int[] codes = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            String value = store.getValue(row, column);
+            if (value == null || value.isEmpty()) {
+                codes[row] = -1;
+                continue;
+            }
+            Integer code = codeIndex.get(value);
+            if (code == null) {
+                code = codeIndex.size();
+                codeIndex.put(value, code);
+            }
+            codes[row] = code;
+        }
+        String[] dictionary = new String[codeIndex.size()];
+        for (Map.Entry<String, Integer> entry : codeIndex.entrySet()) {
+            dictionary[entry.getValue()] = entry.getKey();
+        }
+        return rankCodes(codes, dictionary, collator);
+    }
+
+    /**
+     * 按字典编号计算名次：只对字典排序，编号为-1的行为空值
+     */
+    private static Ranks rankCodes(int[] codes, String[] dictionary, Collator collator) {
+        int[] dictionaryRanks = new int[dictionary.length];
+        int distinct = rankDictionary(dictionary, dictionaryRanks, collator);
+        int[] ranks = new int[codes.length];
+        for (int row = 0; row < codes.length; row++) {
+            ranks[row] = codes[row] < 0 ? distinct : dictionaryRanks[codes[row]];
+        }
+        return new Ranks(ranks, distinct + 1);
+    }
+
+    /**
+     * 计算字典中每个文本的名次，返回不同名次的个数
+     * 全部为日期时按时间排序；否则数值在前按大小排序，文本在后按排序规则排序
+     */
+    static int rankDictionary(String[] dictionary, int[] ranks, Collator collator) {
+        int size = dictionary.length;
+        long[] dates = new long[size];
+        boolean allDates = size > 0;
+        for (int i = 0; i < size && allDates; i++) {
+            dates[i] = DateValues.parseMillis(dictionary[i]);
+            allDates = dates[i] != DateValues.INVALID;
+        }
+        if (allDates) {
+            return denseRanks(dates, ranks);
+        }
+
+        // 数值部分
+        long[] numbers = new long[size];
+        boolean[] isText = new boolean[size];
+        int textCount = 0;
+        for (int i = 0; i < size; i++) {
+            double number = parseNumber(dictionary[i]);
+            if (Double.isNaN(number)) {
+                isText[i] = true;
+                textCount++;
+            } else {
+                numbers[i] = sortableBits(number);
+            }
+        }
+        int numberDistinct = 0;
+        if (textCount < size) {
+            long[] numberKeys = new long[size - textCount];
+            int[] numberRanks = new int[numberKeys.length];
+            for (int i = 0, n = 0; i < size; i++) {
+                if (!isText[i]) {
+                    numberKeys[n++] = numbers[i];
+                }
+            }
+            numberDistinct = denseRanks(numberKeys, numberRanks);
+            for (int i = 0, n = 0; i < size; i++) {
+                if (!isText[i]) {
+                    ranks[i] = numberRanks[n++];
+                }
+            }
+        }
+        if (textCount == 0) {
+            return numberDistinct;
+        }
+
+        // 文本部分：每个线程使用自己的排序规则副本生成排序键
+        RankedKey[] keys = new RankedKey[textCount];
+        int[] textIndexes = new int[textCount];
+        for (int i = 0, t = 0; i < size; i++) {
+            if (isText[i]) {
+                textIndexes[t++] = i;
+            }
+        }
+        ThreadLocal<Collator> collators = ThreadLocal.withInitial(() -> (Collator) collator.clone());
+        IntStream indexes = IntStream.range(0, textCount);
+        if (textCount >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(t -> keys[t] = new RankedKey(
+                collators.get().getCollationKey(dictionary[textIndexes[t]]), textIndexes[t]));
+        Arrays.parallelSort(keys);
+        int rank = numberDistinct - 1;
+        for (int t = 0; t < textCount; t++) {
+            if (t == 0 || keys[t].key.compareTo(keys[t - 1].key) != 0) {
+                rank++;
+            }
+            ranks[keys[t].index] = rank;
+        }
+        return rank + 1;
+    }
+
+    /**
+     * 按可比较的长整数键计算名次，空值排在最后
+     */
+    private static Ranks rankKeys(long[] keys, boolean[] nulls) {
+        int[] ranks = new int[keys.length];
+        int distinct = denseRanks(keys, nulls, ranks);
+        for (int row = 0; row < keys.length; row++) {
+            if (nulls[row]) {
+                ranks[row] = distinct;
+            }
+        }
+        return new Ranks(ranks, distinct + 1);
+    }
+
+    /**
+     * 把键转换为从0开始的紧凑名次，相等的键名次相同，返回不同名次的个数
+     */
+    private static int denseRanks(long[] keys, int[] ranks) {
+        return denseRanks(keys, null, ranks);
+    }
+
+    /**
+     * 计算非空键的紧凑名次，返回不同名次的个数；空键的名次不设置
+     * 键减去最小值后取高位与行号拼成long排序，一次排序后顺序扫描即可得到名次；
+     * 高位相同而低位不同的少数键再在组内按完整的键排序
+     */
+    private static int denseRanks(long[] keys, boolean[] nulls, int[] ranks) {
+        int count = keys.length;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int nonNull = 0;
+        for (int row = 0; row < count; row++) {
+            if (nulls == null || !nulls[row]) {
+                min = Math.min(min, keys[row]);
+                max = Math.max(max, keys[row]);
+                nonNull++;
+            }
+        }
+        if (nonNull == 0) {
+            return 0;
+        }
+        int rowBits = bits(count);
+        int rangeBits = 64 - Long.numberOfLeadingZeros(max - min);
+        int shift = Math.max(0, rangeBits - (63 - rowBits));
+        long[] packed = new long[nonNull];
+        for (int row = 0, n = 0; row < count; row++) {
+            if (nulls == null || !nulls[row]) {
+                packed[n++] = (keys[row] - min) >>> shift << rowBits | row;
+            }
+        }
+        Arrays.parallelSort(packed);
+
+        long rowMask = (1L << rowBits) - 1;
+        int rank = -1;
+        int group = 0;
+        while (group < nonNull) {
+            long prefix = packed[group] >>> rowBits;
+            int end = group + 1;
+            while (end < nonNull && packed[end] >>> rowBits == prefix) {
+                end++;
+            }
+            if (shift == 0) {
+                rank++;
+                for (int i = group; i < end; i++) {
+                    ranks[(int) (packed[i] & rowMask)] = rank;
+                }
+            } else {
+                rank = rankGroup(keys, packed, group, end, rowMask, ranks, rank);
+            }
+            group = end;
+        }
+        return rank + 1;
+    }
+
+    /**
+     * 高位相同的一组键按完整的键排名，返回组内最后一个名次
+     */
+    private static int rankGroup(long[] keys, long[] packed, int from, int to, long rowMask, int[] ranks, int rank) {
+        if (to - from == 1) {
+            ranks[(int) (packed[from] & rowMask)] = rank + 1;
+            return rank + 1;
+        }
+        long[] sorted = new long[to - from];
+        for (int i = from; i < to; i++) {
+            sorted[i - from] = keys[(int) (packed[i] & rowMask)];
+        }
+        int distinct = unique(sorted);
+        for (int i = from; i < to; i++) {
+            int row = (int) (packed[i] & rowMask);
+            ranks[row] = rank + 1 + Arrays.binarySearch(sorted, 0, distinct, keys[row]);
+        }
+        return rank + distinct;
+    }
+
+    /**
+     * 就地把合并后的名次压缩为紧凑名次，返回不同名次的个数
+     */
+    private static long densify(long[] values) {
+        long[] sorted = values.clone();
+        int distinct = unique(sorted);
+        IntStream rows = IntStream.range(0, values.length);
+        if (values.length >= PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        rows.forEach(row -> values[row] = Arrays.binarySearch(sorted, 0, distinct, values[row]));
+        return distinct;
+    }
+
+    /**
+     * 排序并去重，返回不同值的个数（位于数组开头）
+     */
+    private static int unique(long[] values) {
+        Arrays.parallelSort(values);
+        int distinct = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * 把double转换为按有符号整数比较时顺序一致的long
+     */
+    private static long sortableBits(double value) {
+        if (value == 0) {
+            // -0.0与0.0视为相等
+            value = 0;
+        }
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ (bits >> 63 & Long.MAX_VALUE);
+    }
+
+    /**
+     * 解析数值文本，不是数值时返回NaN
+     */
+    static double parseNumber(String value) {
+        char first = value.charAt(0);
+        if ((first < '0' || first > '9') && first != '-' && first != '+' && first != '.') {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * 表示0到value-1所需的位数
+     */
+    private static int bits(long value) {
+        return value <= 1 ? 1 : 64 - Long.numberOfLeadingZeros(value - 1);
+    }
+
+    /**
+     * 各行的名次，空值的名次为distinct-1
+     */
+    private static final class Ranks {
+        private final int[] ranks;
+        private final int distinct;
+
+        Ranks(int[] ranks, int distinct) {
+            this.ranks = ranks;
+            this.distinct = distinct;
+        }
+    }
+
+    /**
+     * 带字典下标的排序键
+     */
+    private static final class RankedKey implements Comparable<RankedKey> {
+        private final CollationKey key;
+        private final int index;
+
+        RankedKey(CollationKey key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(RankedKey other) {
+            return key.compareTo(other.key);
+        }
+    }
+}
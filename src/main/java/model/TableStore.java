@@ -0,0 +1,81 @@
+package model;
+
+import java.util.List;
+
+/**
+ * 表格数据存储接口 - MVC架构中的Model层组件
+ * ExcelDataModel通过该接口存取数据行，具体存储方式由实现类决定
+ */
+interface TableStore {
+
+    /**
+     * 数据行数
+     */
+    int getRowCount();
+
+    /**
+     * 存储中最宽的行的列数
+     */
+    int getColumnCount();
+
+    /**
+     * 获取单元格的值，超出该行宽度时返回空字符串
+     */
+    String getValue(int rowIndex, int columnIndex);
+
+    /**
+     * 获取一行数据的副本，长度与写入时一致
+     */
+    List<String> getRow(int rowIndex);
+
+    /**
+     * 在末尾追加一行
+     */
+    void addRow(List<String> rowData);
+
+    /**
+     * 在末尾依次追加多行
+     */
+    default void addRows(List<List<String>> rows) {
+        for (List<String> row : rows) {
+            addRow(row);
+        }
+    }
+
+    /**
+     * 替换指定行
+     */
+    void setRow(int rowIndex, List<String> rowData);
+
+    /**
+     * 修改单个单元格，列超出该行宽度时该行自动加宽
+     */
+    void setValue(int rowIndex, int columnIndex, String value);
+
+    /**
+     * 删除指定行
+     */
+    void removeRow(int rowIndex);
+
+    /**
+     * 清空所有行
+     */
+    void clear();
+
+    /**
+     * 估算存储占用的堆内存字节数
+     */
+    long estimateMemoryBytes();
+
+    /**
+     * 生成当前数据的只读快照，之后对本存储的修改不影响快照
+     * 快照与本存储共享未修改的部分，代价远小于复制全部数据
+     */
+    TableStore snapshot();
+
+    /**
+     * 释放存储占用的外部资源（如映射文件），之后不能再使用
+     */
+    default void dispose() {
+    }
+}
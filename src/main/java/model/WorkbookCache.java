@@ -0,0 +1,281 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已解析工作簿缓存 - MVC架构中的Model层组件
+ * 以规范路径、文件大小和修改时间为键缓存各工作表的快照，切换回最近打开过的文件时不必重新读取
+ *
+ * 按最近使用顺序淘汰，缓存的数据总量不超过堆内存预算；数据通过软引用持有，
+ * 内存紧张时垃圾回收器可以提前回收，回收后视为未命中
+ */
+public class WorkbookCache {
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReferenceQueue<Map<String, TableSnapshot>> collected = new ReferenceQueue<>();
+    private long budgetBytes;
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long collections;
+
+    /**
+     * 创建缓存，预算为最大堆内存的四分之一
+     */
+    public WorkbookCache() {
+        this(Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * @param budgetBytes 缓存数据的堆内存预算（字节）
+     */
+    public WorkbookCache(long budgetBytes) {
+        setBudgetBytes(budgetBytes);
+    }
+
+    /**
+     * 查找文件对应的工作表快照，文件已修改或已被淘汰时返回null
+     * @param filePath 文件路径
+     * @return 按工作簿顺序排列的工作表名称及其数据
+     */
+    public synchronized Map<String, TableSnapshot> get(String filePath) {
+        purgeCollected();
+        Key key = Key.of(filePath);
+        Entry entry = key != null ? entries.get(key) : null;
+        Map<String, TableSnapshot> sheets = entry != null ? entry.get() : null;
+        if (sheets == null) {
+            misses++;
+            if (key != null) {
+                // 文件已修改，旧版本不会再命中
+                removePath(key.path);
+            }
+            return null;
+        }
+        hits++;
+        return sheets;
+    }
+
+    /**
+     * 缓存文件的工作表快照，替换同一文件的旧版本
+     * 只缓存列式存储的快照；磁盘映射存储的快照依赖模型的映射文件，不缓存。
+     * 文件的大小和修改时间应在读取之前取得，读取期间文件被替换时不缓存，旧数据不会以新版本的键命中
+     * @param filePath 文件路径
+     * @param sourceSize 开始读取时文件的大小
+     * @param sourceModified 开始读取时文件的修改时间（毫秒）
+     * @param sheets 按工作簿顺序排列的工作表名称及其数据
+     */
+    public synchronized void put(String filePath, long sourceSize, long sourceModified,
+                                 Map<String, TableSnapshot> sheets) {
+        purgeCollected();
+        Key key = Key.of(filePath);
+        if (key == null) {
+            return;
+        }
+        if (key.size != sourceSize || key.modified != sourceModified) {
+            removePath(key.path);
+            return;
+        }
+        long bytes = 0;
+        for (TableSnapshot sheet : sheets.values()) {
+            if (!(sheet.getStore() instanceof ColumnarTableStore)) {
+                return;
+            }
+            bytes += sheet.getStore().estimateMemoryBytes();
+        }
+        removePath(key.path);
+        if (bytes > budgetBytes) {
+            return;
+        }
+        Entry entry = new Entry(key, Collections.unmodifiableMap(new LinkedHashMap<>(sheets)), bytes, collected);
+        entries.put(key, entry);
+        currentBytes += bytes;
+        evictToBudget();
+    }
+
+    /**
+     * 移除文件的缓存
+     */
+    public synchronized void invalidate(String filePath) {
+        Key key = Key.of(filePath);
+        if (key != null) {
+            removePath(key.path);
+        }
+    }
+
+    /**
+     * 清空缓存，统计数据保留
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * 设置堆内存预算，超出的部分立即按最近最少使用淘汰
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("内存预算不能小于0");
+        }
+        this.budgetBytes = budgetBytes;
+        evictToBudget();
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * 当前缓存数据的估算字节数
+     */
+    public synchronized long getCurrentBytes() {
+        purgeCollected();
+        return currentBytes;
+    }
+
+    /**
+     * 当前缓存的文件数
+     */
+    public synchronized int size() {
+        purgeCollected();
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * 因超出预算被淘汰的次数
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * 因内存紧张被垃圾回收器回收的次数
+     */
+    public synchronized long getCollectedCount() {
+        return collections;
+    }
+
+    /**
+     * 命中率，没有查找过时为0
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("缓存%d个文件，%.1f/%.1f MB，命中%d次，未命中%d次，淘汰%d次，回收%d次",
+                entries.size(), currentBytes / 1048576.0, budgetBytes / 1048576.0,
+                hits, misses, evictions, collections);
+    }
+
+    private void evictToBudget() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (currentBytes > budgetBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            currentBytes -= eldest.bytes;
+            evictions++;
+        }
+    }
+
+    private void removePath(String path) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.key.path.equals(path)) {
+                it.remove();
+                currentBytes -= entry.bytes;
+            }
+        }
+    }
+
+    /**
+     * 移除已被垃圾回收器回收的条目
+     */
+    private void purgeCollected() {
+        Entry entry;
+        while ((entry = (Entry) collected.poll()) != null) {
+            if (entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+                currentBytes -= entry.bytes;
+                collections++;
+            }
+        }
+    }
+
+    /**
+     * 缓存键：规范路径、文件大小和修改时间，文件被修改后键随之改变
+     */
+    private static final class Key {
+        private final String path;
+        private final long size;
+        private final long modified;
+
+        private Key(String path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * 文件不存在或无法访问时返回null
+         */
+        static Key of(String filePath) {
+            try {
+                File file = new File(filePath).getCanonicalFile();
+                Path path = file.toPath();
+                return new Key(file.getPath(), Files.size(path), Files.getLastModifiedTime(path).toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return path.equals(other.path) && size == other.size && modified == other.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode() * 31 + Long.hashCode(size) * 17 + Long.hashCode(modified);
+        }
+    }
+
+    /**
+     * 软引用持有的缓存条目
+     */
+    private static final class Entry extends SoftReference<Map<String, TableSnapshot>> {
+        private final Key key;
+        private final long bytes;
+
+        Entry(Key key, Map<String, TableSnapshot> sheets, long bytes,
+              ReferenceQueue<Map<String, TableSnapshot>> queue) {
+            super(sheets, queue);
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package model;
+
+import org.apache.poi.xssf.model.StylesTable;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工作表SAX事件处理器 - MVC架构中的Model层组件
+ * 逐个解析sheetN.xml中的行和单元格，每解析完一行就交给RowHandler，不保留已处理的行；
+ * 同一列中相同的单元格文本共用一个字符串对象
+ *
+ * 公式单元格的值取文件中缓存的计算结果，公式文本另外收集（共享公式按主单元格平移展开），
+ * 工作表读完后统一回调；工作表中有空行被跳过时，公式中的行号换算为数据行的位置
+ */
+class XlsxSheetHandler extends DefaultHandler {
+    // 每读取这么多行报告一次进度
+    private static final int PROGRESS_INTERVAL = 1024;
+    // 每隔这么多个单元格对转换计时一次，按比例估算转换总耗时，避免每个单元格都调用nanoTime
+    private static final int CONVERSION_SAMPLE = 64;
+
+    private final List<String> sharedStrings;
+    private final StylesTable styles;
+    private final boolean date1904;
+    private final RowHandler handler;
+    private final CountingInputStream input;
+
+    private final StringBuilder text = new StringBuilder();
+    private final StringInterner interner = new StringInterner();
+    // 按样式编号缓存的数字格式化器，首次遇到该样式时创建
+    private CellFormatter[] formatters = new CellFormatter[0];
+    private boolean capturing;
+    private boolean inInlineString;
+    private boolean inPhonetic;
+    private long cellCount;
+    private long sampledConversionNanos;
+
+    private List<String> currentRow;
+    private boolean headersDone;
+    private int dataRowIndex;
+    private int sheetRow;           // 当前行在工作表中的行号，从1开始
+    private int headerSheetRow;
+    private int[] sheetRows;        // 表头和各数据行在工作表中的行号，行号连续时为null
+
+    // 公式：共享公式的主单元格按编号保存，工作表读完后回调
+    private final Map<String, SharedFormula> sharedFormulas = new HashMap<>();
+    private final List<PendingFormula> formulas = new ArrayList<>();
+    private final List<PendingFormula> rowFormulas = new ArrayList<>();
+
+    // 当前单元格的状态
+    private int nextColumn;
+    private int cellColumn;
+    private String cellType;
+    private int cellStyle;
+    private boolean cellHasFormula;
+    private String formulaType;
+    private String formulaGroup;
+    private String formulaText;
+    private String rawValue;
+
+    XlsxSheetHandler(List<String> sharedStrings, StylesTable styles, boolean date1904,
+                     RowHandler handler, CountingInputStream input) {
+        this.sharedStrings = sharedStrings;
+        this.styles = styles;
+        this.date1904 = date1904;
+        this.handler = handler;
+        this.input = input;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        switch (localName) {
+            case "dimension":
+                reportDimension(attributes.getValue("ref"));
+                break;
+            case "row":
+                currentRow = new ArrayList<>();
+                nextColumn = 0;
+                String rowNumber = attributes.getValue("r");
+                sheetRow = rowNumber != null ? Integer.parseInt(rowNumber) : sheetRow + 1;
+                break;
+            case "c":
+                String ref = attributes.getValue("r");
+                cellColumn = ref != null ? columnIndex(ref) : nextColumn;
+                cellType = attributes.getValue("t");
+                String style = attributes.getValue("s");
+                cellStyle = style != null ? Integer.parseInt(style) : 0;
+                cellHasFormula = false;
+                rawValue = null;
+                break;
+            case "v":
+                text.setLength(0);
+                capturing = true;
+                break;
+            case "f":
+                cellHasFormula = true;
+                formulaType = attributes.getValue("t");
+                formulaGroup = attributes.getValue("si");
+                text.setLength(0);
+                capturing = true;
+                break;
+            case "is":
+                inInlineString = true;
+                text.setLength(0);
+                break;
+            case "rPh":
+                inPhonetic = true;
+                break;
+            case "t":
+                capturing = inInlineString && !inPhonetic;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        switch (localName) {
+            case "v":
+                rawValue = text.toString();
+                capturing = false;
+                break;
+            case "f":
+                formulaText = text.toString();
+                capturing = false;
+                break;
+            case "t":
+                capturing = false;
+                break;
+            case "rPh":
+                inPhonetic = false;
+                break;
+            case "is":
+                rawValue = text.toString();
+                inInlineString = false;
+                break;
+            case "c":
+                setCell(cellColumn, timedConvertCellValue());
+                if (cellHasFormula) {
+                    collectFormula();
+                }
+                nextColumn = cellColumn + 1;
+                break;
+            case "row":
+                dispatchRow();
+                if (handler.isCancelled()) {
+                    throw new StopParsingException();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void endDocument() {
+        for (PendingFormula formula : formulas) {
+            String text = sheetRows == null ? formula.text : rebase(formula.text);
+            if (text != null) {
+                handler.handleFormula(formula.row, formula.column, text);
+            }
+        }
+        handler.handleDeduplication(interner.getLookups(), interner.getReused());
+        FileMetrics metrics = handler.getMetrics();
+        PerformanceMetrics.record(metrics, MetricsPhase.CELL_CONVERSION, sampledConversionNanos * CONVERSION_SAMPLE);
+        PerformanceMetrics.addCells(metrics, cellCount);
+        PerformanceMetrics.addRows(metrics, dataRowIndex);
+        handler.handleProgress(dataRowIndex, input.getCount());
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (capturing) {
+            text.append(ch, start, length);
+        }
+    }
+
+    /**
+     * 将单元格值放到当前行的指定列，中间缺失的单元格补空字符串
+     */
+    private void setCell(int column, String value) {
+        value = interner.intern(column, value);
+        while (currentRow.size() < column) {
+            currentRow.add("");
+        }
+        if (column < currentRow.size()) {
+            currentRow.set(column, value);
+        } else {
+            currentRow.add(value);
+        }
+    }
+
+    /**
+     * 当前行解析完毕：第一行作为表头，其余非空行作为数据行
+     */
+    private void dispatchRow() {
+        if (!headersDone) {
+            headersDone = true;
+            headerSheetRow = sheetRow;
+            if (sheetRow != 1) {
+                trackSheetRows();
+            }
+            handler.handleHeaders(currentRow);
+        } else if (!currentRow.isEmpty()) {
+            if (sheetRows == null && sheetRow != dataRowIndex + 2) {
+                trackSheetRows();
+            }
+            if (sheetRows != null) {
+                if (dataRowIndex + 1 == sheetRows.length) {
+                    sheetRows = Arrays.copyOf(sheetRows, sheetRows.length * 2);
+                }
+                sheetRows[dataRowIndex + 1] = sheetRow;
+            }
+            for (PendingFormula formula : rowFormulas) {
+                formula.row = dataRowIndex;
+                formulas.add(formula);
+            }
+            handler.handleRow(dataRowIndex++, currentRow);
+            if (dataRowIndex % PROGRESS_INTERVAL == 0) {
+                handler.handleProgress(dataRowIndex, input.getCount());
+            }
+        }
+        rowFormulas.clear();
+        currentRow = null;
+    }
+
+    /**
+     * 发现行号不连续，开始记录各行在工作表中的行号；此前的行都是连续的
+     */
+    private void trackSheetRows() {
+        sheetRows = new int[Math.max(16, dataRowIndex * 2 + 2)];
+        sheetRows[0] = headerSheetRow;
+        for (int i = 0; i < dataRowIndex; i++) {
+            sheetRows[i + 1] = i + 2;
+        }
+    }
+
+    /**
+     * 记录当前单元格的公式；共享公式的其他单元格按与主单元格的位移平移引用，
+     * 数组公式等不支持的类型不记录，单元格只保留计算结果
+     */
+    private void collectFormula() {
+        String formula = null;
+        if ("shared".equals(formulaType) && formulaGroup != null) {
+            if (formulaText != null && !formulaText.isEmpty()) {
+                sharedFormulas.put(formulaGroup, new SharedFormula(formulaText, sheetRow, cellColumn));
+                formula = "=" + formulaText;
+            } else {
+                SharedFormula master = sharedFormulas.get(formulaGroup);
+                if (master != null) {
+                    formula = master.translate(sheetRow - master.row, cellColumn - master.column);
+                }
+            }
+        } else if ((formulaType == null || "normal".equals(formulaType))
+                && formulaText != null && !formulaText.isEmpty()) {
+            formula = "=" + formulaText;
+        }
+        if (formula != null) {
+            rowFormulas.add(new PendingFormula(cellColumn, formula));
+        }
+        formulaType = null;
+        formulaGroup = null;
+        formulaText = null;
+    }
+
+    /**
+     * 把公式中工作表的行号换算为模型的行号（表头为第1行，数据行依次排列）；
+     * 引用了被跳过的空行时返回null，该公式不登记
+     */
+    private String rebase(String formula) {
+        FormulaNode node;
+        try {
+            node = FormulaParser.parse(formula);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int rowCount = dataRowIndex + 1;
+        boolean[] lost = new boolean[1];
+        FormulaNode rebased = node.transform(reference -> {
+            if (reference.wholeColumns) {
+                return reference;
+            }
+            // 引用中的行号从-1开始，工作表行号为其加2
+            int first = Arrays.binarySearch(sheetRows, 0, rowCount, reference.firstRow + 2);
+            int last = Arrays.binarySearch(sheetRows, 0, rowCount, reference.lastRow + 2);
+            if (!reference.area) {
+                if (first < 0) {
+                    lost[0] = true;
+                    return reference;
+                }
+                return reference.withRows(first - 1, first - 1);
+            }
+            int firstIndex = first >= 0 ? first : -first - 1;
+            int lastIndex = last >= 0 ? last : -last - 2;
+            if (firstIndex > lastIndex) {
+                lost[0] = true;
+                return reference;
+            }
+            return reference.withRows(firstIndex - 1, lastIndex - 1);
+        });
+        return lost[0] ? null : rebased.toFormula();
+    }
+
+    /**
+     * 由dimension元素（如"A1:E3001"）估计数据行数
+     */
+    private void reportDimension(String ref) {
+        if (ref == null) {
+            return;
+        }
+        int colon = ref.indexOf(':');
+        String last = colon >= 0 ? ref.substring(colon + 1) : ref;
+        int digits = 0;
+        while (digits < last.length() && !Character.isDigit(last.charAt(digits))) {
+            digits++;
+        }
+        if (digits < last.length()) {
+            try {
+                handler.handleEstimatedRowCount(Math.max(Integer.parseInt(last.substring(digits)) - 1, 0));
+            } catch (NumberFormatException e) {
+                // 忽略无法识别的范围
+            }
+        }
+    }
+
+    /**
+     * 转换单元格值，按采样间隔计时
+     */
+    private String timedConvertCellValue() {
+        if (cellCount++ % CONVERSION_SAMPLE != 0) {
+            return convertCellValue();
+        }
+        long start = System.nanoTime();
+        String value = convertCellValue();
+        sampledConversionNanos += System.nanoTime() - start;
+        return value;
+    }
+
+    /**
+     * 按单元格类型把原始值转换为字符串
+     */
+    private String convertCellValue() {
+        if (rawValue == null) {
+            return "";
+        }
+        if (cellType == null || "n".equals(cellType)) {
+            return convertNumeric(Double.parseDouble(rawValue));
+        }
+        switch (cellType) {
+            case "s":
+                return sharedStrings.get(Integer.parseInt(rawValue.trim()));
+            case "inlineStr":
+            case "str":
+                return rawValue;
+            case "b":
+                return String.valueOf("1".equals(rawValue) || "true".equals(rawValue));
+            default:
+                // 错误值等其他类型
+                return "";
+        }
+    }
+
+    private String convertNumeric(double value) {
+        if (cellHasFormula) {
+            // 公式单元格沿用缓存结果
+            return String.valueOf(value);
+        }
+        return formatter(cellStyle).format(value);
+    }
+
+    private CellFormatter formatter(int style) {
+        if (style < 0) {
+            return CellFormatter.GENERAL;
+        }
+        if (style >= formatters.length) {
+            formatters = Arrays.copyOf(formatters, Math.max(style + 1, formatters.length * 2));
+        }
+        CellFormatter formatter = formatters[style];
+        if (formatter == null) {
+            formatter = CellFormatter.forStyle(styles, style, date1904);
+            formatters[style] = formatter;
+        }
+        return formatter;
+    }
+
+    /**
+     * 共享公式的主单元格，其他单元格的公式由它平移得到
+     */
+    private static final class SharedFormula {
+        private final String text;
+        private final int row;
+        private final int column;
+        private FormulaNode node;
+        private boolean unsupported;
+
+        SharedFormula(String text, int row, int column) {
+            this.text = text;
+            this.row = row;
+            this.column = column;
+        }
+
+        /**
+         * 平移后的公式，主单元格的公式不受支持时返回null
+         */
+        String translate(int rowOffset, int columnOffset) {
+            if (node == null && !unsupported) {
+                try {
+                    node = FormulaParser.parse(text);
+                } catch (IllegalArgumentException e) {
+                    unsupported = true;
+                }
+            }
+            if (unsupported) {
+                return null;
+            }
+            return node.transform(reference -> reference.translate(rowOffset, columnOffset)).toFormula();
+        }
+    }
+
+    /**
+     * 等待回调的公式
+     */
+    private static final class PendingFormula {
+        private int row;
+        private final int column;
+        private final String text;
+
+        PendingFormula(int column, String text) {
+            this.column = column;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 处理器要求停止读取时抛出，由读取器捕获
+     */
+    static final class StopParsingException extends SAXException {
+        private static final long serialVersionUID = 1L;
+
+        StopParsingException() {
+            super("读取已取消");
+        }
+    }
+
+    /**
+     * 由单元格引用（如"AB12"）计算列号，从0开始
+     */
+    static int columnIndex(String ref) {
+        int column = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+}
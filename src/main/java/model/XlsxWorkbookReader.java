@@ -0,0 +1,279 @@
+package model;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * XLSX流式读取器 - MVC架构中的Model层组件
+ * 基于XSSFReader和SAX事件解析工作表，不构建整个工作簿的DOM
+ */
+class XlsxWorkbookReader implements Closeable {
+    private final OPCPackage pkg;
+    private final XSSFReader reader;
+    private final List<String> sharedStrings;
+    private final StylesTable styles;
+    private final boolean date1904;
+
+    private XlsxWorkbookReader(OPCPackage pkg) throws IOException, OpenXML4JException, SAXException {
+        this.pkg = pkg;
+        this.reader = new XSSFReader(pkg);
+        this.sharedStrings = readSharedStrings();
+        this.styles = reader.getStylesTable();
+        this.date1904 = readDate1904();
+    }
+
+    /**
+     * 以只读方式打开XLSX文件
+     */
+    static XlsxWorkbookReader open(String filePath) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(new File(filePath), PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException("无法打开Excel文件: " + e.getMessage(), e);
+        }
+        try {
+            return new XlsxWorkbookReader(pkg);
+        } catch (OpenXML4JException | SAXException e) {
+            pkg.revert();
+            throw new IOException("解析Excel文件失败: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    /**
+     * 流式读取指定索引的工作表
+     * @return 工作表存在时返回true
+     */
+    boolean readSheet(int sheetIndex, RowHandler handler) throws IOException {
+        List<SheetRef> sheets = listSheets();
+        if (sheetIndex >= sheets.size()) {
+            return false;
+        }
+        SheetRef sheet = sheets.get(sheetIndex);
+        handler.startSheet(sheet.name);
+        parseSheet(sheet.part, handler);
+        return true;
+    }
+
+    /**
+     * 按工作簿顺序列出所有工作表名称
+     */
+    List<String> getSheetNames() throws IOException {
+        return getNames(listSheets());
+    }
+
+    /**
+     * 在有界的ForkJoin线程池中并行读取所有工作表，每个工作表使用工厂创建的处理器
+     * @param parallelism 最多同时解析的工作表数
+     */
+    void readAllSheets(SheetHandlerFactory factory, int parallelism) throws IOException {
+        final List<SheetRef> sheets = listSheets();
+        factory.startWorkbook(getNames(sheets));
+        if (sheets.isEmpty()) {
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, sheets.size())));
+        try {
+            List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < sheets.size(); i++) {
+                final SheetRef sheet = sheets.get(i);
+                final RowHandler handler = factory.createHandler(i, sheet.name);
+                tasks.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        handler.startSheet(sheet.name);
+                        parseSheet(sheet.part, handler);
+                        return null;
+                    }
+                }));
+            }
+            for (ForkJoinTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("读取工作表时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("解析Excel文件失败: " + cause.getMessage(), cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() {
+        // 只读打开的包使用revert()释放，close()会尝试保存
+        pkg.revert();
+    }
+
+    /**
+     * 解析一个工作表部件；多个工作表可以在不同线程中同时解析
+     */
+    private void parseSheet(PackagePart part, RowHandler handler) throws IOException {
+        long start = System.nanoTime();
+        try (InputStream in = part.getInputStream()) {
+            CountingInputStream counting = new CountingInputStream(in);
+            parse(counting, new XlsxSheetHandler(sharedStrings, styles, date1904, handler, counting));
+        } catch (XlsxSheetHandler.StopParsingException e) {
+            // 处理器取消了读取
+        } catch (SAXException e) {
+            throw new IOException("解析Excel文件失败: " + e.getMessage(), e);
+        } finally {
+            // 解压和解析的耗时，包含单元格转换和处理器回调
+            PerformanceMetrics.record(handler.getMetrics(), MetricsPhase.PARSE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 按工作簿顺序列出工作表
+     */
+    private List<SheetRef> listSheets() throws IOException {
+        List<SheetRef> sheets = new ArrayList<>();
+        try {
+            XSSFReader.SheetIterator iterator = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (iterator.hasNext()) {
+                // next()会打开工作表的输入流，这里只需要名称和部件
+                iterator.next().close();
+                sheets.add(new SheetRef(iterator.getSheetName(), iterator.getSheetPart()));
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException("解析Excel文件失败: " + e.getMessage(), e);
+        }
+        return sheets;
+    }
+
+    private static List<String> getNames(List<SheetRef> sheets) {
+        List<String> names = new ArrayList<>();
+        for (SheetRef sheet : sheets) {
+            names.add(sheet.name);
+        }
+        return names;
+    }
+
+    /**
+     * 读取共享字符串表，只保留纯文本
+     */
+    private List<String> readSharedStrings() throws IOException, SAXException {
+        final List<String> strings = new ArrayList<>();
+        List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+        if (parts.isEmpty()) {
+            return strings;
+        }
+        try (InputStream in = parts.get(0).getInputStream()) {
+            parse(in, new DefaultHandler() {
+                private final StringBuilder text = new StringBuilder();
+                private boolean capturing;
+                private boolean inPhonetic;
+
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("si".equals(localName)) {
+                        text.setLength(0);
+                    } else if ("rPh".equals(localName)) {
+                        inPhonetic = true;
+                    } else if ("t".equals(localName)) {
+                        capturing = !inPhonetic;
+                    }
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) {
+                    if ("si".equals(localName)) {
+                        strings.add(text.toString());
+                    } else if ("rPh".equals(localName)) {
+                        inPhonetic = false;
+                    } else if ("t".equals(localName)) {
+                        capturing = false;
+                    }
+                }
+
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    if (capturing) {
+                        text.append(ch, start, length);
+                    }
+                }
+            });
+        }
+        return strings;
+    }
+
+    /**
+     * 读取工作簿是否使用1904日期系统
+     */
+    private boolean readDate1904() throws IOException, InvalidFormatException, SAXException {
+        final boolean[] result = new boolean[1];
+        try (InputStream in = reader.getWorkbookData()) {
+            parse(in, new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        result[0] = "1".equals(value) || "true".equals(value);
+                    }
+                }
+            });
+        }
+        return result[0];
+    }
+
+    private static void parse(InputStream in, ContentHandler contentHandler) throws IOException, SAXException {
+        try {
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+            xmlReader.setContentHandler(contentHandler);
+            xmlReader.parse(new InputSource(in));
+        } catch (ParserConfigurationException e) {
+            throw new IOException("无法创建XML解析器: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 工作表名称及其在包中的部件
+     */
+    private static final class SheetRef {
+        private final String name;
+        private final PackagePart part;
+
+        SheetRef(String name, PackagePart part) {
+            this.name = name;
+            this.part = part;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package view;
+
+import controller.BatchController;
+import controller.ScaleTestRunner;
+import model.CsvDataAccess;
+import model.ExcelDataAccess;
+import model.SyntheticWorkbookGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量处理命令行入口 - MVC架构中的View层组件
+ * 不启动图形界面，解析命令行参数后交给BatchController，处理完成后输出吞吐量统计；
+ * 另有生成合成工作簿（generate）和规模测试（scale）两个命令，用于复现大文件的性能问题
+ */
+public class BatchCli {
+
+    public static void main(String[] args) {
+        // 服务器上没有显示器，不初始化任何图形组件
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args));
+    }
+
+    /**
+     * 执行命令
+     * @return 进程退出码：0成功，1有文件处理失败，2参数错误
+     */
+    static int run(String[] args) {
+        List<String> positional = new ArrayList<>();
+        int workers = Runtime.getRuntime().availableProcessors();
+        int windowSize = ExcelDataAccess.DEFAULT_STREAMING_WINDOW_SIZE;
+        int rowsPerFile = -1;
+        String format = "xlsx";
+        SyntheticWorkbookGenerator generator = new SyntheticWorkbookGenerator();
+        List<Integer> steps = new ArrayList<>();
+        int edits = 1000;
+        boolean keepFiles = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--workers":
+                        workers = Integer.parseInt(args[++i]);
+                        if (workers <= 0) {
+                            throw new IllegalArgumentException("线程数必须大于0");
+                        }
+                        break;
+                    case "--window":
+                        windowSize = Integer.parseInt(args[++i]);
+                        if (windowSize <= 0) {
+                            throw new IllegalArgumentException("窗口行数必须大于0");
+                        }
+                        break;
+                    case "--rows":
+                        rowsPerFile = Integer.parseInt(args[++i]);
+                        break;
+                    case "--format":
+                        format = args[++i];
+                        break;
+                    case "--columns":
+                        generator.setColumns(Integer.parseInt(args[++i]));
+                        break;
+                    case "--sheets":
+                        generator.setSheets(Integer.parseInt(args[++i]));
+                        break;
+                    case "--formulas":
+                        generator.setFormulaColumns(Integer.parseInt(args[++i]));
+                        break;
+                    case "--cardinality":
+                        generator.setTextCardinality(Integer.parseInt(args[++i]));
+                        break;
+                    case "--mix":
+                        generator.setMix(SyntheticWorkbookGenerator.parseMix(args[++i]));
+                        break;
+                    case "--seed":
+                        generator.setSeed(Long.parseLong(args[++i]));
+                        break;
+                    case "--steps":
+                        for (String step : args[++i].split(",")) {
+                            steps.add(Integer.parseInt(step.trim()));
+                        }
+                        break;
+                    case "--edits":
+                        edits = Integer.parseInt(args[++i]);
+                        break;
+                    case "--keep":
+                        keepFiles = true;
+                        break;
+                    default:
+                        positional.add(args[i]);
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            if (e instanceof IllegalArgumentException && !(e instanceof NumberFormatException)) {
+                System.err.println(e.getMessage());
+            }
+            printUsage();
+            return 2;
+        }
+        if (!positional.isEmpty() && positional.get(0).equals("generate")) {
+            if (positional.size() != 2) {
+                printUsage();
+                return 2;
+            }
+            if (rowsPerFile >= 0) {
+                generator.setRows(rowsPerFile);
+            }
+            return generate(generator, Paths.get(positional.get(1)));
+        }
+        if (!positional.isEmpty() && positional.get(0).equals("scale")) {
+            if (positional.size() != 2 || steps.isEmpty() || edits < 0
+                    || !(format.equals("xlsx") || format.equals("csv") || format.equals("tsv"))) {
+                printUsage();
+                return 2;
+            }
+            ScaleTestRunner runner = new ScaleTestRunner(new ExcelDataAccess(), new CsvDataAccess(), generator);
+            runner.setFormat(format);
+            runner.setEdits(edits);
+            runner.setKeepFiles(keepFiles);
+            return scale(runner, steps, Paths.get(positional.get(1)));
+        }
+        if (positional.size() != 3 || ("split".equals(positional.get(0)) && rowsPerFile <= 0)
+                || !(format.equals("xlsx") || format.equals("csv") || format.equals("tsv"))) {
+            printUsage();
+            return 2;
+        }
+
+        String command = positional.get(0);
+        Path output = Paths.get(positional.get(2));
+        ExcelDataAccess dataAccess = new ExcelDataAccess();
+        dataAccess.setStreamingWindowSize(windowSize);
+        // 每个工作线程只解析一个文件，工作表级并行不再额外开线程
+        dataAccess.setParallelism(1);
+        try {
+            List<Path> inputs = BatchController.findInputs(positional.get(1));
+            if (inputs.isEmpty()) {
+                System.err.println("没有找到输入文件: " + positional.get(1));
+                return 2;
+            }
+            System.out.printf("找到%d个文件，使用%d个工作线程%n", inputs.size(), workers);
+
+            BatchController controller = new BatchController(dataAccess, workers);
+            controller.setOutputFormat(format);
+            BatchController.Summary summary;
+            switch (command) {
+                case "convert":
+                    summary = controller.convert(inputs, output);
+                    break;
+                case "merge":
+                    summary = controller.merge(inputs, output);
+                    break;
+                case "split":
+                    summary = controller.split(inputs, output, rowsPerFile);
+                    break;
+                default:
+                    printUsage();
+                    return 2;
+            }
+            printSummary(summary);
+            return summary.getFailures().isEmpty() ? 0 : 1;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("处理失败: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * 生成合成工作簿
+     */
+    private static int generate(SyntheticWorkbookGenerator generator, Path output) {
+        long start = System.nanoTime();
+        try {
+            generator.generate(output);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long cells = generator.cellsPerSheet() * generator.getSheets();
+            System.out.printf("已生成%s：%d个工作表，每个%d行%d列，共%d个单元格，%.1f MB，用时%.1f秒（%.0f单元格/秒）%n",
+                    output, generator.getSheets(), generator.getRows(),
+                    generator.getColumns() + generator.getFormulaColumns(), cells,
+                    Files.size(output) / 1048576.0, seconds, cells / seconds);
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("生成失败: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * 规模测试：输出各阶段的耗时、堆内存峰值和增长阶数，结果另存为工作目录中的scale-results.csv
+     */
+    private static int scale(ScaleTestRunner runner, List<Integer> steps, Path workDir) {
+        runner.setLog(System.out);
+        try {
+            ScaleTestRunner.Report report = runner.run(steps, workDir);
+            System.out.println();
+            System.out.print(report.format());
+            Path results = workDir.resolve("scale-results.csv");
+            report.writeCsv(results);
+            System.out.println("结果已保存到" + results);
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("规模测试失败: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static void printSummary(BatchController.Summary summary) {
+        System.out.printf("完成：%d个文件，%d行，用时%.1f秒%n",
+                summary.getFiles(), summary.getRows(), summary.getElapsedSeconds());
+        System.out.printf("吞吐量：%.1f文件/秒，%.0f行/秒%n",
+                summary.getFilesPerSecond(), summary.getRowsPerSecond());
+        System.out.printf("堆内存峰值：%.1f MB%n", summary.getPeakHeapBytes() / 1048576.0);
+        if (!summary.getFailures().isEmpty()) {
+            System.err.println("失败的文件（" + summary.getFailures().size() + "）：");
+            for (String failure : summary.getFailures()) {
+                System.err.println("  " + failure);
+            }
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("用法：");
+        System.err.println("  BatchCli convert <输入目录或通配符> <输出目录> [--format xlsx|csv|tsv] [--workers N] [--window N]");
+        System.err.println("  BatchCli merge   <输入目录或通配符> <输出文件> [--workers N] [--window N]");
+        System.err.println("  BatchCli split   <输入目录或通配符> <输出目录> --rows N [--format xlsx|csv|tsv] [--workers N] [--window N]");
+        System.err.println("通配符示例：data/2024-*.xlsx、archive/**.csv（请用引号避免被shell展开）");
+        System.err.println("输入可以是.xlsx、.csv或.tsv文件，只处理每个文件的第一个工作表；merge的输出格式由输出文件扩展名决定");
+        System.err.println("--format为输出格式，默认xlsx；--window为流式写入时内存中保留的行数");
+        System.err.println("  BatchCli generate <输出文件> [--rows N] [--columns N] [--sheets N] [--formulas N] [--cardinality N] [--mix 类型比例] [--seed N]");
+        System.err.println("  BatchCli scale    <工作目录> --steps 行数1,行数2,... [--format xlsx|csv|tsv] [--edits N] [--keep] [生成参数]");
+        System.err.println("generate按扩展名生成.xlsx、.csv或.tsv文件；--rows为每个工作表的数据行数，--formulas为追加的公式列数，");
+        System.err.println("--cardinality为每个文本列不同取值的个数（0表示全不相同），--mix如" + SyntheticWorkbookGenerator.DEFAULT_MIX
+                + "（类型：text、integer、decimal、date、boolean）");
+        System.err.println("scale按各行数依次生成、导入、建立索引、编辑、排序、筛选和导出，输出耗时、堆内存峰值和增长阶数；--keep保留生成的文件");
+    }
+}
@@ -0,0 +1,248 @@
+package view;
+
+import controller.ExcelController;
+import model.ExcelDataModel;
+import model.ModelChangeEvent;
+import model.RowQuery;
+import model.RowView;
+import model.SortKey;
+import model.TableSnapshot;
+import model.TableSorter;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Excel表格模型 - MVC架构中的View层组件
+ * 从ExcelDataModel的快照按需读取单元格，不复制数据；
+ * 快照随变化事件一起更新，表格看到的行数和内容总是与已处理的事件一致
+ *
+ * 排序和筛选后通过行视图（RowView）把显示行号映射到模型行号，模型中的行顺序不变；
+ * 之后的插入、删除和修改事件按映射转换为显示行号，新插入的行显示在末尾
+ */
+public class ExcelTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private final ExcelDataModel model;
+    private ExcelController controller;
+    private TableSnapshot data;
+    private RowView order;  // 排序后的全部行
+    private RowView rows;   // 显示的行：order中满足筛选条件的行
+    private List<SortKey> sortKeys = Collections.emptyList();
+    private RowQuery filter;
+
+    public ExcelTableModel(ExcelDataModel model) {
+        this.model = model;
+        this.data = model.snapshot();
+        this.order = RowView.identity(data.getRowCount());
+        this.rows = order;
+    }
+
+    /**
+     * 设置控制器，单元格编辑通过控制器写回模型
+     */
+    public void setController(ExcelController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * 读取最新的快照并通知表格结构变化，排序和筛选随之取消
+     */
+    public void refresh() {
+        reset(model.snapshot());
+    }
+
+    /**
+     * 改为显示指定的快照并通知表格结构变化，排序和筛选随之取消
+     */
+    private void reset(TableSnapshot snapshot) {
+        data = snapshot;
+        order = RowView.identity(data.getRowCount());
+        rows = order;
+        sortKeys = Collections.emptyList();
+        filter = null;
+        fireTableStructureChanged();
+    }
+
+    /**
+     * 按指定的列排序显示顺序，排序键为空时恢复模型顺序
+     * 在表格当前显示的快照上排序，与已处理的事件保持一致
+     * @param keys 排序键，依次为主次关键字
+     */
+    public void sort(List<SortKey> keys) {
+        order = keys.isEmpty() ? RowView.identity(data.getRowCount()) : TableSorter.sort(data, keys);
+        rows = filter == null ? order : order.restrictTo(rows);
+        sortKeys = Collections.unmodifiableList(new ArrayList<>(keys));
+        fireTableDataChanged();
+    }
+
+    /**
+     * 只显示满足条件的行，保持当前的排序；条件为null时显示所有行
+     * 在表格当前显示的快照上筛选，模型的搜索索引与之一致时直接查索引
+     * @param query 筛选条件
+     */
+    public void filter(RowQuery query) {
+        if (query == null) {
+            rows = order;
+        } else {
+            RowView matched = model.filter(data, query);
+            rows = order.isIdentity() ? matched : order.restrictTo(matched);
+        }
+        filter = query;
+        fireTableDataChanged();
+    }
+
+    /**
+     * 获取当前的筛选条件，未筛选时为null
+     */
+    public RowQuery getFilter() {
+        return filter;
+    }
+
+    /**
+     * 获取当前的排序键，未排序时为空列表
+     */
+    public List<SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * 显示行号转换为模型行号
+     */
+    public int toModelRow(int viewRow) {
+        return rows.toModel(viewRow);
+    }
+
+    /**
+     * 模型行号转换为显示行号，该行不可见时返回-1
+     */
+    public int toViewRow(int modelRow) {
+        return rows.toView(modelRow);
+    }
+
+    /**
+     * 按模型变化事件只通知受影响的行或单元格
+     */
+    public void applyChange(ModelChangeEvent event) {
+        if (event.getSnapshot() != null) {
+            data = event.getSnapshot();
+        }
+        switch (event.getType()) {
+            case ROWS_INSERTED:
+                rowsInserted(event.getFirstRow(), event.getLastRow());
+                break;
+            case ROWS_UPDATED:
+                rowsUpdated(event.getFirstRow(), event.getLastRow(), event.getColumn());
+                break;
+            case ROWS_DELETED:
+                rowsDeleted(event.getFirstRow(), event.getLastRow());
+                break;
+            case HEADERS_CHANGED:
+                // 行不变，保留排序和筛选
+                fireTableStructureChanged();
+                break;
+            case DATA_CHANGED:
+                // 用事件携带的快照，不重新读取模型：模型可能已有尚未处理的后续事件
+                reset(data);
+                break;
+            case BATCH:
+                for (ModelChangeEvent change : event.getChanges()) {
+                    applyChange(change);
+                }
+                break;
+            default:
+                // 元数据变化不影响表格内容
+                break;
+        }
+    }
+
+    private void rowsInserted(int firstRow, int lastRow) {
+        int viewFirst = rows.isIdentity() ? firstRow : rows.getRowCount();
+        order = order.rowsInserted(firstRow, lastRow);
+        rows = rows.rowsInserted(firstRow, lastRow);
+        fireTableRowsInserted(viewFirst, viewFirst + lastRow - firstRow);
+    }
+
+    private void rowsUpdated(int firstRow, int lastRow, int column) {
+        if (rows.isIdentity()) {
+            if (column != ModelChangeEvent.ALL_COLUMNS && firstRow == lastRow) {
+                fireTableCellUpdated(firstRow, column);
+            } else {
+                fireTableRowsUpdated(firstRow, lastRow);
+            }
+            return;
+        }
+        // 修改不重新排序，行留在原来的显示位置
+        if (firstRow == lastRow) {
+            int viewRow = rows.toView(firstRow);
+            if (viewRow < 0) {
+                return;
+            }
+            if (column != ModelChangeEvent.ALL_COLUMNS) {
+                fireTableCellUpdated(viewRow, column);
+            } else {
+                fireTableRowsUpdated(viewRow, viewRow);
+            }
+        } else if (rows.getRowCount() > 0) {
+            fireTableRowsUpdated(0, rows.getRowCount() - 1);
+        }
+    }
+
+    private void rowsDeleted(int firstRow, int lastRow) {
+        order = order.rowsDeleted(firstRow, lastRow);
+        if (rows.isIdentity()) {
+            rows = rows.rowsDeleted(firstRow, lastRow);
+            fireTableRowsDeleted(firstRow, lastRow);
+            return;
+        }
+        if (firstRow == lastRow) {
+            int viewRow = rows.toView(firstRow);
+            rows = rows.rowsDeleted(firstRow, lastRow);
+            if (viewRow >= 0) {
+                fireTableRowsDeleted(viewRow, viewRow);
+            }
+            return;
+        }
+        rows = rows.rowsDeleted(firstRow, lastRow);
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.getRowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return data.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return data.getHeaders().get(column);
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return data.getValueAt(rows.toModel(rowIndex), columnIndex);
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return true; // 允许单元格编辑
+    }
+
+    @Override
+    public void setValueAt(Object value, int rowIndex, int columnIndex) {
+        if (controller != null) {
+            controller.updateCell(rows.toModel(rowIndex), columnIndex, value != null ? value.toString() : "");
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package view;
 
 import controller.ExcelController;
+import model.Aggregate;
+import model.AggregateFunction;
+import model.ExcelDataModel;
+import model.ModelChangeEvent;
+import model.RowQuery;
+import model.SortKey;
+import model.StorageMode;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableCellRenderer;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -17,10 +26,16 @@ import java.util.List;
  * 负责用户界面展示和用户输入接收
  */
 public class ExcelView extends JFrame {
-    private JTable table;
-    private DefaultTableModel tableModel;
+    private JTabbedPane sheetTabs;
+    private JPopupMenu tablePopupMenu;
+    private final List<JTable> sheetTables = new ArrayList<>();
+    private final List<ExcelTableModel> sheetTableModels = new ArrayList<>();
+    private boolean updatingTabs;
     private ExcelController controller;
     private JToolBar toolBar;
+    private JLabel statusLabel;
+    private JProgressBar progressBar;
+    private JButton cancelImportButton;
 
     /**
      * 构造函数，初始化用户界面
@@ -38,6 +53,74 @@ public class ExcelView extends JFrame {
      */
     public void setController(ExcelController controller) {
         this.controller = controller;
+        for (ExcelTableModel tableModel : sheetTableModels) {
+            tableModel.setController(controller);
+        }
+    }
+
+    /**
+     * 为每个工作表创建一个标签页，表格直接从对应的模型读取数据
+     * @param sheetNames 工作表名称
+     * @param models 与名称一一对应的数据模型
+     */
+    public void setSheets(List<String> sheetNames, List<ExcelDataModel> models) {
+        updatingTabs = true;
+        try {
+            sheetTabs.removeAll();
+            sheetTables.clear();
+            sheetTableModels.clear();
+            for (int i = 0; i < models.size(); i++) {
+                addSheet(sheetNames.get(i), models.get(i));
+            }
+        } finally {
+            updatingTabs = false;
+        }
+        if (sheetTabs.getTabCount() > 0) {
+            sheetTabs.setSelectedIndex(0);
+        }
+    }
+
+    /**
+     * 在末尾添加一个工作表标签页并切换到该工作表
+     */
+    public void appendSheet(String sheetName, ExcelDataModel model) {
+        addSheet(sheetName, model);
+        sheetTabs.setSelectedIndex(sheetTabs.getTabCount() - 1);
+    }
+
+    /**
+     * 添加一个工作表标签页
+     */
+    private void addSheet(String sheetName, ExcelDataModel model) {
+        ExcelTableModel tableModel = new ExcelTableModel(model);
+        tableModel.setController(controller);
+        JTable table = new JTable(tableModel);
+        table.setComponentPopupMenu(tablePopupMenu);
+        // 点击表头按该列排序，表头文字后显示排序方向
+        JTableHeader header = table.getTableHeader();
+        TableCellRenderer headerRenderer = header.getDefaultRenderer();
+        header.setDefaultRenderer((t, value, selected, focused, row, column) ->
+                headerRenderer.getTableCellRendererComponent(t,
+                        sortedHeader(tableModel, value, t.convertColumnIndexToModel(column)),
+                        selected, focused, row, column));
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (SwingUtilities.isLeftMouseButton(e)) {
+                    handleHeaderClicked(table, tableModel, e);
+                }
+            }
+        });
+        sheetTables.add(table);
+        sheetTableModels.add(tableModel);
+        sheetTabs.addTab(sheetName, new JScrollPane(table));
+    }
+
+    /**
+     * 当前选中的工作表索引
+     */
+    public int getSelectedSheetIndex() {
+        return sheetTabs.getSelectedIndex();
     }
 
     /**
@@ -66,6 +149,13 @@ public class ExcelView extends JFrame {
 
         fileMenu.addSeparator();
 
+        // 勾选后新打开的表格存放在磁盘映射文件中，用于超出内存的大文件
+        JCheckBoxMenuItem mappedStorageItem = new JCheckBoxMenuItem("磁盘映射存储");
+        mappedStorageItem.addActionListener(e -> handleStorageMode(mappedStorageItem.isSelected()));
+        fileMenu.add(mappedStorageItem);
+
+        fileMenu.addSeparator();
+
         JMenuItem exitItem = new JMenuItem("退出");
         exitItem.addActionListener(e -> System.exit(0));
         fileMenu.add(exitItem);
@@ -82,6 +172,14 @@ public class ExcelView extends JFrame {
         deleteRowItem.addActionListener(e -> handleDeleteRow());
         editMenu.add(deleteRowItem);
 
+        JMenuItem unsortItem = new JMenuItem("取消排序");
+        unsortItem.addActionListener(e -> handleUnsort());
+        editMenu.add(unsortItem);
+
+        JMenuItem aggregateItem = new JMenuItem("分类汇总...");
+        aggregateItem.addActionListener(e -> handleAggregate());
+        editMenu.add(aggregateItem);
+
         JMenuItem clearItem = new JMenuItem("清空所有");
         clearItem.addActionListener(e -> handleClear());
         editMenu.add(clearItem);
@@ -113,69 +211,135 @@ public class ExcelView extends JFrame {
         deleteRowButton.addActionListener(e -> handleDeleteRow());
         toolBar.add(deleteRowButton);
 
-        // 创建表格
-        tableModel = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return true; // 允许单元格编辑
-            }
-        };
-
-        table = new JTable(tableModel);
-        table.getSelectionModel().addListSelectionListener(e -> {
-            // 当用户编辑单元格时，更新数据
-            table.getModel().addTableModelListener(evt -> {
-                int row = evt.getFirstRow();
-                int column = evt.getColumn();
-                if (row >= 0 && column >= 0) {
-                    updateRowData(row);
-                }
-            });
-        });
-
-        // 添加右键菜单
-        JPopupMenu popupMenu = new JPopupMenu();
+        // 筛选框：回车后只显示满足条件的行，清空后回车显示所有行
+        toolBar.addSeparator();
+        toolBar.add(new JLabel("筛选："));
+        JTextField filterField = new JTextField(20);
+        filterField.setToolTipText("<html>文本：任意一列以该文本开头；=文本：任意一列等于该文本<br>"
+                + "列名:文本、列名=文本、列名&gt;数值、列名=最小..最大<br>"
+                + "空格分隔的各项同时满足，OR分隔的各组满足其一</html>");
+        filterField.addActionListener(e -> handleFilter(filterField.getText()));
+        toolBar.add(filterField);
+
+        // 右键菜单，所有工作表的表格共用
+        tablePopupMenu = new JPopupMenu();
         JMenuItem addRowPopup = new JMenuItem("添加行");
         addRowPopup.addActionListener(e -> handleAddRow());
-        popupMenu.add(addRowPopup);
+        tablePopupMenu.add(addRowPopup);
 
         JMenuItem deleteRowPopup = new JMenuItem("删除行");
         deleteRowPopup.addActionListener(e -> handleDeleteRow());
-        popupMenu.add(deleteRowPopup);
+        tablePopupMenu.add(deleteRowPopup);
+
+        JMenuItem unsortPopup = new JMenuItem("取消排序");
+        unsortPopup.addActionListener(e -> handleUnsort());
+        tablePopupMenu.add(unsortPopup);
+
+        // 每个工作表一个标签页，表格由setSheets创建
+        sheetTabs = new JTabbedPane(JTabbedPane.BOTTOM);
+        sheetTabs.addChangeListener(e -> handleSheetSelected());
+        add(sheetTabs, BorderLayout.CENTER);
+
+        // 创建状态栏，导入时显示进度条和取消按钮
+        JPanel statusBar = new JPanel(new BorderLayout(8, 0));
+        statusLabel = new JLabel("就绪");
+        statusBar.add(statusLabel, BorderLayout.CENTER);
+
+        JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        progressPanel.add(progressBar);
+        cancelImportButton = new JButton("取消导入");
+        cancelImportButton.addActionListener(e -> handleCancelImport());
+        cancelImportButton.setVisible(false);
+        progressPanel.add(cancelImportButton);
+        statusBar.add(progressPanel, BorderLayout.EAST);
+
+        add(statusBar, BorderLayout.SOUTH);
+    }
 
-        table.setComponentPopupMenu(popupMenu);
+    /**
+     * 更新表格数据
+     * 表格按需从模型读取可见的单元格，这里只需通知表格刷新
+     */
+    public void updateTable() {
+        for (ExcelTableModel tableModel : sheetTableModels) {
+            tableModel.refresh();
+        }
+    }
 
-        // 添加表格到滚动面板
-        JScrollPane scrollPane = new JScrollPane(table);
-        add(scrollPane, BorderLayout.CENTER);
+    /**
+     * 按模型变化事件增量刷新指定工作表的表格
+     */
+    public void applyModelChange(int sheetIndex, ModelChangeEvent event) {
+        if (sheetIndex >= 0 && sheetIndex < sheetTableModels.size()) {
+            sheetTableModels.get(sheetIndex).applyChange(event);
+        }
+    }
 
-        // 创建状态栏
-        JLabel statusLabel = new JLabel("就绪");
-        add(statusLabel, BorderLayout.SOUTH);
+    /**
+     * 只显示工作表中满足条件的行，条件为null时显示所有行
+     * @return 显示的行数
+     */
+    public int filterSheet(int sheetIndex, RowQuery query) {
+        if (sheetIndex < 0 || sheetIndex >= sheetTableModels.size()) {
+            return 0;
+        }
+        ExcelTableModel tableModel = sheetTableModels.get(sheetIndex);
+        tableModel.filter(query);
+        return tableModel.getRowCount();
+    }
 
-        // 创建默认空白表格
-        updateTable(new ArrayList<>(), new ArrayList<>());
+    /**
+     * 按指定的列排序工作表的显示顺序
+     */
+    public void sortSheet(int sheetIndex, List<SortKey> keys) {
+        if (sheetIndex >= 0 && sheetIndex < sheetTableModels.size()) {
+            sheetTableModels.get(sheetIndex).sort(keys);
+            sheetTables.get(sheetIndex).getTableHeader().repaint();
+        }
     }
 
     /**
-     * 更新表格数据
+     * 显示或隐藏导入进度
      */
-    public void updateTable(List<String> headers, List<List<String>> data) {
-        // 清空现有表格模型
-        tableModel.setRowCount(0);
-        tableModel.setColumnCount(0);
-
-        // 设置表头
-        if (!headers.isEmpty()) {
-            tableModel.setColumnIdentifiers(headers.toArray());
+    public void setImportInProgress(boolean inProgress) {
+        progressBar.setVisible(inProgress);
+        cancelImportButton.setVisible(inProgress);
+        if (inProgress) {
+            progressBar.setIndeterminate(true);
+            progressBar.setString("");
+            setStatus("正在导入...");
         }
+    }
 
-        // 添加数据行
-        for (List<String> row : data) {
-            tableModel.addRow(row.toArray());
+    /**
+     * 更新导入进度
+     * @param rowsLoaded 已载入的行数
+     * @param estimatedRows 预计的总行数，未知时为-1
+     * @param bytesRead 已解析的字节数
+     */
+    public void updateImportProgress(int rowsLoaded, int estimatedRows, long bytesRead) {
+        if (estimatedRows > 0) {
+            int percent = (int) Math.min(100, 100L * rowsLoaded / estimatedRows);
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(percent);
+            progressBar.setString(percent + "%");
+            setStatus(String.format("正在导入：已载入%d行 / 约%d行，已解析%.1f MB",
+                    rowsLoaded, estimatedRows, bytesRead / 1048576.0));
+        } else {
+            setStatus(String.format("正在导入：已载入%d行，已解析%.1f MB", rowsLoaded, bytesRead / 1048576.0));
         }
     }
 
+    /**
+     * 设置状态栏文字
+     */
+    public void setStatus(String text) {
+        statusLabel.setText(text);
+    }
+
     /**
      * 更新窗口标题
      */
@@ -183,6 +347,16 @@ public class ExcelView extends JFrame {
         setTitle("Excel处理应用程序 - " + fileName);
     }
 
+    /**
+     * 处理切换工作表
+     */
+    private void handleSheetSelected() {
+        int index = sheetTabs.getSelectedIndex();
+        if (!updatingTabs && controller != null && index >= 0) {
+            controller.setActiveSheet(index);
+        }
+    }
+
     /**
      * 处理新建文件
      */
@@ -201,6 +375,15 @@ public class ExcelView extends JFrame {
         }
     }
 
+    /**
+     * 处理取消导入
+     */
+    private void handleCancelImport() {
+        if (controller != null) {
+            controller.cancelImport();
+        }
+    }
+
     /**
      * 处理导出Excel
      */
@@ -210,11 +393,24 @@ public class ExcelView extends JFrame {
         }
     }
 
+    /**
+     * 处理切换存储方式
+     */
+    private void handleStorageMode(boolean mapped) {
+        if (controller != null) {
+            controller.setStorageMode(mapped ? StorageMode.MAPPED : StorageMode.MEMORY);
+            setStatus(mapped ? "之后打开的文件将使用磁盘映射存储" : "之后打开的文件将使用内存存储");
+        }
+    }
+
     /**
      * 处理添加行
      */
     private void handleAddRow() {
-        if (controller != null && tableModel.getColumnCount() > 0) {
+        int sheetIndex = getSelectedSheetIndex();
+        ExcelTableModel tableModel = sheetIndex >= 0 ? sheetTableModels.get(sheetIndex) : null;
+        if (controller != null && tableModel != null && tableModel.getColumnCount() > 0) {
+            JTable table = sheetTables.get(sheetIndex);
             List<String> newRow = new ArrayList<>();
             for (int i = 0; i < tableModel.getColumnCount(); i++) {
                 newRow.add(""); // 添加空单元格
@@ -233,10 +429,12 @@ public class ExcelView extends JFrame {
      * 处理删除行
      */
     private void handleDeleteRow() {
-        if (controller != null) {
-            int selectedRow = table.getSelectedRow();
+        int sheetIndex = getSelectedSheetIndex();
+        if (controller != null && sheetIndex >= 0) {
+            int selectedRow = sheetTables.get(sheetIndex).getSelectedRow();
             if (selectedRow >= 0) {
-                controller.deleteRow(selectedRow);
+                // 排序后显示顺序与模型不同，按模型行号删除
+                controller.deleteRow(sheetTableModels.get(sheetIndex).toModelRow(selectedRow));
             } else {
                 JOptionPane.showMessageDialog(this, "请先选择要删除的行", "提示", JOptionPane.INFORMATION_MESSAGE);
             }
@@ -244,25 +442,136 @@ public class ExcelView extends JFrame {
     }
 
     /**
-     * 处理清空所有数据
+     * 处理点击表头：依次切换升序、降序、不排序；按住Shift点击时把该列追加为次要排序键
      */
-    private void handleClear() {
+    private void handleHeaderClicked(JTable table, ExcelTableModel tableModel, MouseEvent e) {
+        int viewColumn = table.columnAtPoint(e.getPoint());
+        if (controller == null || viewColumn < 0) {
+            return;
+        }
+        int column = table.convertColumnIndexToModel(viewColumn);
+        List<SortKey> keys = new ArrayList<>(tableModel.getSortKeys());
+        int index = -1;
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).getColumn() == column) {
+                index = i;
+            }
+        }
+        if (e.isShiftDown()) {
+            if (index < 0) {
+                keys.add(SortKey.ascending(column));
+            } else if (keys.get(index).isAscending()) {
+                keys.set(index, keys.get(index).reversed());
+            } else {
+                keys.remove(index);
+            }
+        } else if (index == 0 && keys.size() == 1) {
+            keys = keys.get(0).isAscending()
+                    ? Collections.singletonList(SortKey.descending(column))
+                    : Collections.<SortKey>emptyList();
+        } else {
+            keys = Collections.singletonList(SortKey.ascending(column));
+        }
+        controller.sortRows(keys);
+    }
+
+    /**
+     * 表头文字后加上排序方向，多列排序时再加上排序键的次序
+     */
+    private static Object sortedHeader(ExcelTableModel tableModel, Object value, int column) {
+        List<SortKey> keys = tableModel.getSortKeys();
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).getColumn() == column) {
+                String arrow = keys.get(i).isAscending() ? " ▲" : " ▼";
+                return value + arrow + (keys.size() > 1 ? String.valueOf(i + 1) : "");
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 处理筛选
+     */
+    private void handleFilter(String text) {
         if (controller != null) {
-            controller.clearAllData();
+            controller.filterRows(text);
         }
     }
 
     /**
-     * 更新行数据到模型
+     * 处理取消排序
      */
-    private void updateRowData(int rowIndex) {
-        if (controller != null && rowIndex >= 0 && rowIndex < tableModel.getRowCount()) {
-            List<String> rowData = new ArrayList<>();
-            for (int i = 0; i < tableModel.getColumnCount(); i++) {
-                Object value = tableModel.getValueAt(rowIndex, i);
-                rowData.add(value != null ? value.toString() : "");
+    private void handleUnsort() {
+        if (controller != null) {
+            controller.sortRows(Collections.<SortKey>emptyList());
+        }
+    }
+
+    /**
+     * 处理分类汇总：选择分组列、要汇总的列和统计方式，每组的行数总是列在结果中
+     */
+    private void handleAggregate() {
+        int sheetIndex = getSelectedSheetIndex();
+        ExcelTableModel tableModel = sheetIndex >= 0 ? sheetTableModels.get(sheetIndex) : null;
+        if (controller == null || tableModel == null || tableModel.getColumnCount() == 0) {
+            JOptionPane.showMessageDialog(this, "请先创建或导入表格", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String[] columnNames = new String[tableModel.getColumnCount()];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = tableModel.getColumnName(i);
+        }
+        JList<String> groupList = new JList<>(columnNames);
+        JList<String> valueList = new JList<>(columnNames);
+        JPanel functionPanel = new JPanel(new GridLayout(0, 1));
+        List<JCheckBox> functionBoxes = new ArrayList<>();
+        for (AggregateFunction function : AggregateFunction.values()) {
+            JCheckBox box = new JCheckBox(function.getLabel(), function == AggregateFunction.SUM);
+            functionBoxes.add(box);
+            functionPanel.add(box);
+        }
+        JPanel panel = new JPanel(new GridLayout(1, 3, 8, 0));
+        panel.add(titledPanel("分组列", new JScrollPane(groupList)));
+        panel.add(titledPanel("汇总列", new JScrollPane(valueList)));
+        panel.add(titledPanel("统计方式", functionPanel));
+
+        int option = JOptionPane.showConfirmDialog(this, panel, "分类汇总",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        List<Integer> groupColumns = new ArrayList<>();
+        for (int column : groupList.getSelectedIndices()) {
+            groupColumns.add(column);
+        }
+        List<Aggregate> aggregates = new ArrayList<>();
+        aggregates.add(Aggregate.rowCount());
+        for (int column : valueList.getSelectedIndices()) {
+            for (int i = 0; i < functionBoxes.size(); i++) {
+                if (functionBoxes.get(i).isSelected()) {
+                    aggregates.add(new Aggregate(AggregateFunction.values()[i], column));
+                }
             }
-            controller.updateRow(rowIndex, rowData);
+        }
+        controller.aggregateRows(groupColumns, aggregates);
+    }
+
+    /**
+     * 带标题边框的面板
+     */
+    private static JPanel titledPanel(String title, Component content) {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(BorderFactory.createTitledBorder(title));
+        panel.add(content, BorderLayout.CENTER);
+        return panel;
+    }
+
+    /**
+     * 处理清空所有数据
+     */
+    private void handleClear() {
+        if (controller != null) {
+            controller.clearAllData();
         }
     }
 }
\ No newline at end of file